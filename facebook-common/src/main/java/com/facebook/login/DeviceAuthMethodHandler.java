@@ -25,6 +25,7 @@ import android.os.Parcelable;
 import androidx.fragment.app.FragmentActivity;
 import com.facebook.AccessToken;
 import com.facebook.AccessTokenSource;
+import com.facebook.internal.SdkExecutors;
 import java.util.Collection;
 import java.util.Date;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -101,7 +102,7 @@ class DeviceAuthMethodHandler extends LoginMethodHandler {
 
   public static synchronized ScheduledThreadPoolExecutor getBackgroundExecutor() {
     if (backgroundExecutor == null) {
-      backgroundExecutor = new ScheduledThreadPoolExecutor(1);
+      backgroundExecutor = SdkExecutors.getSerialLane("device_auth");
     }
 
     return backgroundExecutor;
@@ -44,6 +44,7 @@ import com.facebook.GraphResponse;
 import com.facebook.HttpMethod;
 import com.facebook.common.R;
 import com.facebook.devicerequests.internal.DeviceRequestsHelper;
+import com.facebook.internal.SdkExecutors;
 import com.facebook.internal.Validate;
 import com.facebook.share.model.ShareContent;
 import com.facebook.share.model.ShareLinkContent;
@@ -228,7 +229,7 @@ public class DeviceShareDialogFragment extends DialogFragment {
 
   private static synchronized ScheduledThreadPoolExecutor getBackgroundExecutor() {
     if (backgroundExecutor == null) {
-      backgroundExecutor = new ScheduledThreadPoolExecutor(1);
+      backgroundExecutor = SdkExecutors.getSerialLane("device_share");
     }
     return backgroundExecutor;
   }
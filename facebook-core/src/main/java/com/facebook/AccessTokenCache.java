@@ -20,9 +20,9 @@
 
 package com.facebook;
 
-import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import com.facebook.internal.SettingsStore;
 import com.facebook.internal.Validate;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -43,8 +43,11 @@ class AccessTokenCache {
 
   public AccessTokenCache() {
     this(
-        FacebookSdk.getApplicationContext()
-            .getSharedPreferences(AccessTokenManager.SHARED_PREFERENCES_NAME, Context.MODE_PRIVATE),
+        // ProfileCache still keeps the profile in the same preferences file
+        SettingsStore.getSharedPreferences(
+            AccessTokenManager.SHARED_PREFERENCES_NAME,
+            AccessTokenManager.SHARED_PREFERENCES_NAME,
+            CACHED_ACCESS_TOKEN_KEY),
         new SharedPreferencesTokenCachingStrategyFactory());
   }
 
@@ -27,7 +27,6 @@ import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.Signature;
-import android.os.AsyncTask;
 import android.util.Base64;
 import android.util.Log;
 import androidx.annotation.Nullable;
@@ -40,11 +39,15 @@ import com.facebook.appevents.internal.AppEventsLoggerUtility;
 import com.facebook.core.BuildConfig;
 import com.facebook.internal.AttributionIdentifiers;
 import com.facebook.internal.BoltsMeasurementEventListener;
+import com.facebook.internal.FeatureActivation;
 import com.facebook.internal.FeatureManager;
 import com.facebook.internal.FetchedAppSettingsManager;
+import com.facebook.internal.InitializationGraph;
 import com.facebook.internal.LockOnGetVariable;
 import com.facebook.internal.NativeProtocol;
+import com.facebook.internal.SdkExecutors;
 import com.facebook.internal.ServerProtocol;
+import com.facebook.internal.SettingsStore;
 import com.facebook.internal.Utility;
 import com.facebook.internal.Validate;
 import com.facebook.internal.instrument.InstrumentManager;
@@ -80,6 +83,7 @@ public final class FacebookSdk {
   private static volatile @Nullable String applicationName;
   private static volatile String appClientToken;
   private static volatile Boolean codelessDebugLogEnabled;
+  private static volatile Boolean lazyFeatureActivationEnabled;
   private static final String FACEBOOK_COM = "facebook.com";
   private static final String FB_GG = "fb.gg";
   private static volatile String facebookDomain = FACEBOOK_COM;
@@ -87,12 +91,13 @@ public final class FacebookSdk {
   private static volatile boolean isDebugEnabled = BuildConfig.DEBUG;
   private static boolean isLegacyTokenUpgradeSupported = false;
   private static LockOnGetVariable<File> cacheDir;
+  @Nullable private static InitializationGraph initializationGraph;
   private static Context applicationContext;
   private static int callbackRequestCodeOffset = DEFAULT_CALLBACK_REQUEST_CODE_OFFSET;
   private static final Object LOCK = new Object();
   private static String graphApiVersion = ServerProtocol.getDefaultAPIVersion();
-  public static boolean hasCustomTabsPrefetching = false;
-  public static boolean ignoreAppSwitchToLoggedOut = false;
+  public static volatile boolean hasCustomTabsPrefetching = false;
+  public static volatile boolean ignoreAppSwitchToLoggedOut = false;
 
   private static final int MAX_REQUEST_CODE_RANGE = 100;
 
@@ -146,6 +151,14 @@ public final class FacebookSdk {
   /** The key for the monitor enable in the Android manifest. */
   public static final String MONITOR_ENABLED_PROPERTY = "com.facebook.sdk.MonitorEnabled";
 
+  /** The key for the lazy activation of optional features in the Android manifest. */
+  public static final String LAZY_FEATURE_ACTIVATION_ENABLED_PROPERTY =
+      "com.facebook.sdk.LazyFeatureActivationEnabled";
+
+  /** The key for running the SDK background work on virtual threads in the Android manifest. */
+  public static final String VIRTUAL_THREADS_ENABLED_PROPERTY =
+      "com.facebook.sdk.VirtualThreadsEnabled";
+
   /** The key for modes in data processing options. */
   public static final String DATA_PROCESSION_OPTIONS = "data_processing_options";
 
@@ -308,21 +321,8 @@ public final class FacebookSdk {
       fullyInitialize();
     }
 
-    // Register ActivityLifecycleTracker callbacks now, so will log activate app event properly
-    if ((FacebookSdk.applicationContext instanceof Application)
-        && UserSettingsManager.getAutoLogAppEventsEnabled()) {
-      ActivityLifecycleTracker.startTracking(
-          (Application) FacebookSdk.applicationContext, applicationId);
-    }
-
-    // Load app settings from network so that dialog configs are available
-    FetchedAppSettingsManager.loadAppSettingsAsync();
-
-    // Fetch available protocol versions from the apps on the device
-    NativeProtocol.updateAllAvailableProtocolVersionsAsync();
-
-    BoltsMeasurementEventListener.getInstance(FacebookSdk.applicationContext);
-
+    // Set before any background step is scheduled, since those may use the cache directory.
+    // The directory itself is only looked up on first use.
     cacheDir =
         new LockOnGetVariable<File>(
             new Callable<File>() {
@@ -332,90 +332,221 @@ public final class FacebookSdk {
               }
             });
 
-    FeatureManager.checkFeature(
-        FeatureManager.Feature.Instrument,
-        new FeatureManager.Callback() {
+    initializationGraph = new InitializationGraph(getExecutor());
+
+    // Parse the settings of the SDK components off the main thread
+    initializationGraph.addStep(
+        "settings_store",
+        InitializationGraph.Mode.BACKGROUND,
+        new Runnable() {
+          @Override
+          public void run() {
+            SettingsStore.load();
+          }
+        });
+
+    // Register ActivityLifecycleTracker callbacks now, so will log activate app event properly
+    initializationGraph.addStep(
+        "activity_lifecycle_tracker",
+        InitializationGraph.Mode.MAIN,
+        new Runnable() {
           @Override
-          public void onCompleted(boolean enabled) {
-            if (enabled) {
-              InstrumentManager.start();
+          public void run() {
+            if ((FacebookSdk.applicationContext instanceof Application)
+                && UserSettingsManager.getAutoLogAppEventsEnabled()) {
+              ActivityLifecycleTracker.startTracking(
+                  (Application) FacebookSdk.applicationContext, applicationId);
             }
           }
         });
 
-    FeatureManager.checkFeature(
+    initializationGraph.addStep(
+        "bolts_measurement",
+        InitializationGraph.Mode.MAIN,
+        new Runnable() {
+          @Override
+          public void run() {
+            BoltsMeasurementEventListener.getInstance(FacebookSdk.applicationContext);
+          }
+        });
+
+    // Load app settings from network so that dialog configs are available
+    initializationGraph.addStep(
+        "app_settings",
+        InitializationGraph.Mode.BACKGROUND,
+        new Runnable() {
+          @Override
+          public void run() {
+            FetchedAppSettingsManager.loadAppSettingsAsync();
+          }
+        });
+
+    addSubsystemStep(
+        FeatureManager.Feature.Instrument,
+        InitializationGraph.Mode.BACKGROUND,
+        true,
+        new Runnable() {
+          @Override
+          public void run() {
+            InstrumentManager.start();
+          }
+        });
+
+    addSubsystemStep(
         FeatureManager.Feature.AppEvents,
-        new FeatureManager.Callback() {
+        InitializationGraph.Mode.BACKGROUND,
+        false,
+        new Runnable() {
           @Override
-          public void onCompleted(boolean enabled) {
-            if (enabled) {
-              AppEventsManager.start();
-            }
+          public void run() {
+            AppEventsManager.start();
           }
         });
 
-    FeatureManager.checkFeature(
+    addFeatureStep(
         FeatureManager.Feature.ChromeCustomTabsPrefetching,
-        new FeatureManager.Callback() {
+        InitializationGraph.Mode.BACKGROUND,
+        new Runnable() {
           @Override
-          public void onCompleted(boolean enabled) {
-            if (enabled) {
-              hasCustomTabsPrefetching = true;
-            }
+          public void run() {
+            hasCustomTabsPrefetching = true;
           }
         });
 
-    FeatureManager.checkFeature(
+    addFeatureStep(
         FeatureManager.Feature.IgnoreAppSwitchToLoggedOut,
-        new FeatureManager.Callback() {
+        InitializationGraph.Mode.BACKGROUND,
+        new Runnable() {
           @Override
-          public void onCompleted(boolean enabled) {
-            if (enabled) {
-              ignoreAppSwitchToLoggedOut = true;
-            }
+          public void run() {
+            ignoreAppSwitchToLoggedOut = true;
           }
         });
 
-    FeatureManager.checkFeature(
+    addSubsystemStep(
         FeatureManager.Feature.Monitoring,
-        new FeatureManager.Callback() {
+        InitializationGraph.Mode.AFTER_FIRST_FRAME,
+        true,
+        new Runnable() {
+          @Override
+          public void run() {
+            MonitorManager.start();
+          }
+        });
+
+    // Fetch available protocol versions from the apps on the device
+    initializationGraph.addStep(
+        "native_protocol",
+        InitializationGraph.Mode.AFTER_FIRST_FRAME,
+        new Runnable() {
+          @Override
+          public void run() {
+            NativeProtocol.updateAllAvailableProtocolVersionsAsync();
+          }
+        });
+
+    initializationGraph.addStep(
+        "access_token_profile",
+        InitializationGraph.Mode.BACKGROUND,
+        new Runnable() {
           @Override
-          public void onCompleted(boolean enabled) {
-            if (enabled) {
-              MonitorManager.start();
+          public void run() {
+            AccessTokenManager.getInstance().loadCurrentAccessToken();
+            ProfileManager.getInstance().loadCurrentProfile();
+            if (AccessToken.isCurrentAccessTokenActive() && Profile.getCurrentProfile() == null) {
+              // Access token and profile went out of sync due to a network or caching
+              // issue, retry
+              Profile.fetchProfileForCurrentAccessToken();
             }
           }
         });
 
-    FutureTask<Void> futureTask =
-        new FutureTask<>(
-            new Callable<Void>() {
-              @Override
-              public Void call() throws Exception {
-                AccessTokenManager.getInstance().loadCurrentAccessToken();
-                ProfileManager.getInstance().loadCurrentProfile();
-                if (AccessToken.isCurrentAccessTokenActive()
-                    && Profile.getCurrentProfile() == null) {
-                  // Access token and profile went out of sync due to a network or caching
-                  // issue, retry
-                  Profile.fetchProfileForCurrentAccessToken();
-                }
+    initializationGraph.addStep(
+        "initialize_callback",
+        InitializationGraph.Mode.BACKGROUND,
+        new Runnable() {
+          @Override
+          public void run() {
+            if (callback != null) {
+              callback.onInitialized();
+            }
+          }
+        },
+        "access_token_profile");
 
-                if (callback != null) {
-                  callback.onInitialized();
-                }
+    initializationGraph.addStep(
+        "app_events_logger",
+        InitializationGraph.Mode.BACKGROUND,
+        new Runnable() {
+          @Override
+          public void run() {
+            AppEventsLogger.initializeLib(FacebookSdk.applicationContext, applicationId);
+            UserSettingsManager.logIfAutoAppLinkEnabled();
+          }
+        });
 
-                AppEventsLogger.initializeLib(FacebookSdk.applicationContext, applicationId);
+    // Flush any app events that might have been persisted during last run. With lazy activation
+    // they are sent with the first flush once app events are used.
+    if (!getLazyFeatureActivationEnabled()) {
+      initializationGraph.addStep(
+          "flush_persisted_events",
+          InitializationGraph.Mode.AFTER_FIRST_FRAME,
+          new Runnable() {
+            @Override
+            public void run() {
+              AppEventsLogger.newLogger(applicationContext.getApplicationContext()).flush();
+            }
+          },
+          "app_events_logger");
+    }
 
-                UserSettingsManager.logIfAutoAppLinkEnabled();
+    initializationGraph.start();
+  }
 
-                // Flush any app events that might have been persisted during last run.
-                AppEventsLogger.newLogger(applicationContext.getApplicationContext()).flush();
+  private static void addFeatureStep(
+      final FeatureManager.Feature feature,
+      InitializationGraph.Mode mode,
+      final Runnable onEnabled) {
+    initializationGraph.addStep(
+        "feature_" + feature.name(),
+        mode,
+        new Runnable() {
+          @Override
+          public void run() {
+            FeatureManager.checkFeature(
+                feature,
+                new FeatureManager.Callback() {
+                  @Override
+                  public void onCompleted(boolean enabled) {
+                    if (enabled) {
+                      onEnabled.run();
+                    }
+                  }
+                });
+          }
+        });
+  }
 
-                return null;
-              }
-            });
-    getExecutor().execute(futureTask);
+  private static void addSubsystemStep(
+      FeatureManager.Feature feature,
+      InitializationGraph.Mode mode,
+      boolean activateOnGateKeeper,
+      Runnable start) {
+    if (getLazyFeatureActivationEnabled()) {
+      FeatureActivation.register(feature, activateOnGateKeeper, start);
+    } else {
+      addFeatureStep(feature, mode, start);
+    }
+  }
+
+  /**
+   * Returns the startup graph built by {@link #sdkInitialize}, whose trace has the start time and
+   * duration of each initialization step, or null if the sdk is not initialized.
+   */
+  @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+  @Nullable
+  public static InitializationGraph getInitializationGraph() {
+    return initializationGraph;
   }
 
   /**
@@ -557,15 +688,15 @@ public final class FacebookSdk {
   /**
    * Returns the Executor used by the SDK for non-AsyncTask background work.
    *
-   * <p>By default this uses AsyncTask Executor via reflection if the API level is high enough.
-   * Otherwise this creates a new Executor with defaults similar to those used in AsyncTask.
+   * <p>By default this is the shared I/O pool of the SDK, with bounds similar to those used in
+   * AsyncTask.
    *
    * @return an Executor used by the SDK. This will never be null.
    */
   public static Executor getExecutor() {
     synchronized (LOCK) {
       if (FacebookSdk.executor == null) {
-        FacebookSdk.executor = AsyncTask.THREAD_POOL_EXECUTOR;
+        FacebookSdk.executor = SdkExecutors.getIoExecutor();
       }
     }
     return FacebookSdk.executor;
@@ -859,6 +990,15 @@ public final class FacebookSdk {
     if (codelessDebugLogEnabled == null) {
       codelessDebugLogEnabled = ai.metaData.getBoolean(CODELESS_DEBUG_LOG_ENABLED_PROPERTY, false);
     }
+
+    if (lazyFeatureActivationEnabled == null) {
+      lazyFeatureActivationEnabled =
+          ai.metaData.getBoolean(LAZY_FEATURE_ACTIVATION_ENABLED_PROPERTY, false);
+    }
+
+    if (ai.metaData.getBoolean(VIRTUAL_THREADS_ENABLED_PROPERTY, false)) {
+      SdkExecutors.setVirtualThreadsEnabled(true);
+    }
   }
 
   /**
@@ -1040,6 +1180,27 @@ public final class FacebookSdk {
     codelessDebugLogEnabled = flag;
   }
 
+  /**
+   * Gets the flag of lazy feature activation. When it is on, instrumentation, app events and
+   * monitoring are not started by {@link #sdkInitialize}, but the first time app events are logged,
+   * or for instrumentation and monitoring, once the gatekeepers fetched from the server enable
+   * them.
+   *
+   * @return the lazy feature activation flag
+   */
+  public static boolean getLazyFeatureActivationEnabled() {
+    return lazyFeatureActivationEnabled != null && lazyFeatureActivationEnabled;
+  }
+
+  /**
+   * Sets the flag of lazy feature activation. It has to be set before the sdk is initialized.
+   *
+   * @param flag true or false
+   */
+  public static void setLazyFeatureActivationEnabled(boolean flag) {
+    lazyFeatureActivationEnabled = flag;
+  }
+
   /**
    * Gets the flag of Monitor Feature
    *
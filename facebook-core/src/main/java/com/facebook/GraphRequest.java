@@ -30,6 +30,8 @@ import android.util.Log;
 import android.util.Pair;
 import androidx.annotation.Nullable;
 import com.facebook.internal.*;
+import com.facebook.internal.logging.monitor.Monitor;
+import com.facebook.internal.logging.monitor.PerformanceEventName;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -1044,7 +1046,15 @@ public class GraphRequest {
     try {
       connection = createConnection(url);
 
-      serializeToUrlConnection(requests, connection);
+      boolean isMeasured =
+          Monitor.startMeasurePerfFor(PerformanceEventName.GRAPH_REQUEST_SERIALIZE);
+      try {
+        serializeToUrlConnection(requests, connection);
+      } finally {
+        if (isMeasured) {
+          Monitor.stopMeasurePerfFor(PerformanceEventName.GRAPH_REQUEST_SERIALIZE);
+        }
+      }
     } catch (IOException | JSONException e) {
       Utility.disconnectQuietly(connection);
 
@@ -24,6 +24,8 @@ import android.util.Log;
 import com.facebook.internal.FacebookRequestErrorClassification;
 import com.facebook.internal.Logger;
 import com.facebook.internal.Utility;
+import com.facebook.internal.logging.monitor.Monitor;
+import com.facebook.internal.logging.monitor.PerformanceEventName;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.io.IOException;
@@ -246,13 +248,27 @@ public class GraphResponse {
         throw new FacebookException(msg);
       }
 
-      if (connection.getResponseCode() >= 400) {
-        stream = connection.getErrorStream();
-      } else {
-        stream = connection.getInputStream();
+      boolean isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.GRAPH_REQUEST_CONNECT);
+      try {
+        if (connection.getResponseCode() >= 400) {
+          stream = connection.getErrorStream();
+        } else {
+          stream = connection.getInputStream();
+        }
+      } finally {
+        if (isMeasured) {
+          Monitor.stopMeasurePerfFor(PerformanceEventName.GRAPH_REQUEST_CONNECT);
+        }
       }
 
-      return createResponsesFromStream(stream, connection, requests);
+      isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.GRAPH_REQUEST_PARSE);
+      try {
+        return createResponsesFromStream(stream, connection, requests);
+      } finally {
+        if (isMeasured) {
+          Monitor.stopMeasurePerfFor(PerformanceEventName.GRAPH_REQUEST_PARSE);
+        }
+      }
     } catch (FacebookException facebookException) {
       Logger.log(
           LoggingBehavior.REQUESTS, RESPONSE_LOG_TAG, "Response <Error>: %s", facebookException);
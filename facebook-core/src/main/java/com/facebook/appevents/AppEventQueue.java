@@ -33,13 +33,15 @@ import com.facebook.LoggingBehavior;
 import com.facebook.internal.FetchedAppSettings;
 import com.facebook.internal.FetchedAppSettingsManager;
 import com.facebook.internal.Logger;
+import com.facebook.internal.SdkExecutors;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
+import com.facebook.internal.logging.monitor.Monitor;
+import com.facebook.internal.logging.monitor.PerformanceEventName;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -56,7 +58,7 @@ class AppEventQueue {
 
   private static volatile AppEventCollection appEventCollection = new AppEventCollection();
   private static final ScheduledExecutorService singleThreadExecutor =
-      Executors.newSingleThreadScheduledExecutor();
+      SdkExecutors.getSerialLane("app_events");
   private static ScheduledFuture scheduledFuture;
 
   // Only call for the singleThreadExecutor
@@ -150,16 +152,24 @@ class AppEventQueue {
     Context context = FacebookSdk.getApplicationContext();
     boolean limitEventUsage = FacebookSdk.getLimitEventAndDataUsage(context);
 
+    boolean isMeasured =
+        Monitor.startMeasurePerfFor(PerformanceEventName.APP_EVENTS_FLUSH_BUILD_REQUESTS);
     List<GraphRequest> requestsToExecute = new ArrayList<>();
-    for (AccessTokenAppIdPair accessTokenAppId : appEventCollection.keySet()) {
-      GraphRequest request =
-          buildRequestForSession(
-              accessTokenAppId,
-              appEventCollection.get(accessTokenAppId),
-              limitEventUsage,
-              flushResults);
-      if (request != null) {
-        requestsToExecute.add(request);
+    try {
+      for (AccessTokenAppIdPair accessTokenAppId : appEventCollection.keySet()) {
+        GraphRequest request =
+            buildRequestForSession(
+                accessTokenAppId,
+                appEventCollection.get(accessTokenAppId),
+                limitEventUsage,
+                flushResults);
+        if (request != null) {
+          requestsToExecute.add(request);
+        }
+      }
+    } finally {
+      if (isMeasured) {
+        Monitor.stopMeasurePerfFor(PerformanceEventName.APP_EVENTS_FLUSH_BUILD_REQUESTS);
       }
     }
 
@@ -171,10 +181,17 @@ class AppEventQueue {
           flushResults.numEvents,
           reason.toString());
 
-      for (GraphRequest request : requestsToExecute) {
-        // Execute the request synchronously. Callbacks will take care of handling errors
-        // and updating our final overall result.
-        request.executeAndWait();
+      isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.APP_EVENTS_FLUSH_SEND);
+      try {
+        for (GraphRequest request : requestsToExecute) {
+          // Execute the request synchronously. Callbacks will take care of handling errors
+          // and updating our final overall result.
+          request.executeAndWait();
+        }
+      } finally {
+        if (isMeasured) {
+          Monitor.stopMeasurePerfFor(PerformanceEventName.APP_EVENTS_FLUSH_SEND);
+        }
       }
       return flushResults;
     }
@@ -26,6 +26,8 @@ import com.facebook.FacebookSdk;
 import com.facebook.appevents.internal.AppEventUtility;
 import com.facebook.internal.Utility;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
+import com.facebook.internal.logging.monitor.Monitor;
+import com.facebook.internal.logging.monitor.PerformanceEventName;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.io.BufferedInputStream;
@@ -71,6 +73,7 @@ class AppEventStore {
   // Only call from singleThreadExecutor
   public static synchronized PersistedEvents readAndClearStore() {
     AppEventUtility.assertIsNotMainThread();
+    boolean isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.APP_EVENT_STORE_READ);
 
     MovedClassObjectInputStream ois = null;
     PersistedEvents persistedEvents = null;
@@ -97,17 +100,21 @@ class AppEventStore {
       } catch (Exception ex) {
         Log.w(TAG, "Got unexpected exception when removing events file: ", ex);
       }
+
+      if (isMeasured) {
+        Monitor.stopMeasurePerfFor(PerformanceEventName.APP_EVENT_STORE_READ);
+      }
     }
 
     if (persistedEvents == null) {
       persistedEvents = new PersistedEvents();
     }
-
     return persistedEvents;
   }
 
   // Only call from singleThreadExecutor
   private static void saveEventsToDisk(PersistedEvents eventsToPersist) {
+    boolean isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.APP_EVENT_STORE_WRITE);
     ObjectOutputStream oos = null;
     Context context = FacebookSdk.getApplicationContext();
     try {
@@ -124,6 +131,9 @@ class AppEventStore {
       }
     } finally {
       Utility.closeQuietly(oos);
+      if (isMeasured) {
+        Monitor.stopMeasurePerfFor(PerformanceEventName.APP_EVENT_STORE_WRITE);
+      }
     }
   }
 
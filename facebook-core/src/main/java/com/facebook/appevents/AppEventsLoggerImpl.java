@@ -39,10 +39,13 @@ import com.facebook.appevents.internal.ActivityLifecycleTracker;
 import com.facebook.appevents.internal.AutomaticAnalyticsLogger;
 import com.facebook.appevents.internal.Constants;
 import com.facebook.internal.AnalyticsEvents;
+import com.facebook.internal.FeatureActivation;
+import com.facebook.internal.FeatureManager;
 import com.facebook.internal.FetchedAppGateKeepersManager;
 import com.facebook.internal.FetchedAppSettingsManager;
 import com.facebook.internal.InstallReferrerUtil;
 import com.facebook.internal.Logger;
+import com.facebook.internal.SdkExecutors;
 import com.facebook.internal.Utility;
 import com.facebook.internal.Validate;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
@@ -94,6 +97,7 @@ class AppEventsLoggerImpl {
           "The Facebook sdk must be initialized before calling " + "activateApp");
     }
 
+    FeatureActivation.activate(FeatureManager.Feature.AppEvents);
     AnalyticsUserIDStore.initStore();
     UserDataStore.initStore();
 
@@ -485,6 +489,7 @@ class AppEventsLoggerImpl {
 
   AppEventsLoggerImpl(String activityName, String applicationId, AccessToken accessToken) {
     Validate.sdkInitialized();
+    FeatureActivation.activate(FeatureManager.Feature.AppEvents);
     this.contextName = activityName;
 
     if (accessToken == null) {
@@ -514,7 +519,7 @@ class AppEventsLoggerImpl {
       // Having single runner thread enforces ordered execution of tasks,
       // which matters in some cases e.g. making sure user id is set before
       // trying to update user properties for a given id
-      backgroundExecutor = new ScheduledThreadPoolExecutor(1);
+      backgroundExecutor = SdkExecutors.getSerialLane("analytics");
     }
 
     final Runnable attributionRecheckRunnable =
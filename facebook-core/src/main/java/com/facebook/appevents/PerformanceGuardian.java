@@ -20,20 +20,28 @@
 
 package com.facebook.appevents;
 
-import android.content.Context;
 import android.content.SharedPreferences;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
-import com.facebook.FacebookSdk;
+import androidx.annotation.VisibleForTesting;
+import com.facebook.internal.SettingsStore;
 import com.facebook.internal.Utility;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 /**
- * Avoid process activities which process time exceed threshold. Reboot the process if app version
- * changed.
+ * Track how long activities take to process, and process activities that keep exceeding the
+ * threshold less and less often: every second time, then every fourth time and so on. An
+ * activity that is processed fast enough again gets back its sampling rate step by step. All
+ * sampling rates are reset when app version changed.
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 @AutoHandleExceptions
@@ -41,7 +49,8 @@ public class PerformanceGuardian {
 
   public enum UseCase {
     CODELESS,
-    SUGGESTED_EVENT;
+    SUGGESTED_EVENT,
+    AAM;
   }
 
   private static boolean initialized = false;
@@ -49,95 +58,271 @@ public class PerformanceGuardian {
 
   private static final String BANNED_ACTIVITY_STORE = "com.facebook.internal.BANNED_ACTIVITY";
   private static final String CACHE_APP_VERSION = "app_version";
+  private static final String SAMPLING_LEVELS_SUFFIX = "_sampling_levels";
   private static final Integer ACTIVITY_PROCESS_TIME_THRESHOLD = 40; // ms
   private static final Integer MAX_EXCEED_LIMIT_COUNT = 3;
-  private static final Set<String> bannedSuggestedEventActivitySet = new HashSet<>();
-  private static final Set<String> bannedCodelessActivitySet = new HashSet<>();
-  private static final Map<String, Integer> activityProcessTimeMapCodeless = new HashMap<>();
-  private static final Map<String, Integer> activityProcessTimeMapSe = new HashMap<>();
+  // fast processes in a row that earn back one sampling level
+  private static final int RECOVERY_COUNT = 3;
+  // an activity at the last level is processed once every 2^MAX_SAMPLING_LEVEL times
+  @VisibleForTesting static final int MAX_SAMPLING_LEVEL = 5;
+  // process time buckets of [0, 1), [1, 2), [2, 4) ... microseconds, the last one unbounded
+  private static final int HISTOGRAM_BUCKET_COUNT = 20;
+
+  private static final Map<String, ActivityStats> activityStatsCodeless = new HashMap<>();
+  private static final Map<String, ActivityStats> activityStatsSe = new HashMap<>();
+  private static final Map<String, ActivityStats> activityStatsAam = new HashMap<>();
+
+  // process times are kept in microseconds, most passes take less than a millisecond
+  private static class ActivityStats {
+    final int[] histogram = new int[HISTOGRAM_BUCKET_COUNT];
+    int processCount;
+    long totalProcessTime;
+    long maxProcessTime;
+    int coalescedCount;
+    int skippedCount;
+
+    int samplingLevel;
+    int exceedLimitCount;
+    int recoveryCount;
+    int sampleCount;
+    int droppedCount;
+
+    void addProcessTime(long processTime) {
+      processCount++;
+      totalProcessTime += processTime;
+      maxProcessTime = Math.max(maxProcessTime, processTime);
+      histogram[getBucket(processTime)]++;
+    }
+
+    /** Upper bound of the bucket holding the given fraction of the process times. */
+    long getPercentile(double fraction) {
+      int rank = (int) Math.ceil(fraction * processCount);
+      int count = 0;
+      for (int i = 0; i < HISTOGRAM_BUCKET_COUNT - 1; i++) {
+        count += histogram[i];
+        if (count >= rank) {
+          return Math.min(1L << i, maxProcessTime);
+        }
+      }
+      return maxProcessTime;
+    }
+
+    private static int getBucket(long processTime) {
+      int bucket = 0;
+      while (bucket < HISTOGRAM_BUCKET_COUNT - 1 && processTime >= (1L << bucket)) {
+        bucket++;
+      }
+      return bucket;
+    }
+  }
 
   private static synchronized void initializeIfNotYet() {
     if (initialized) {
       return;
     }
-    sharedPreferences =
-        FacebookSdk.getApplicationContext()
-            .getSharedPreferences(BANNED_ACTIVITY_STORE, Context.MODE_PRIVATE);
+    sharedPreferences = SettingsStore.getSharedPreferences(BANNED_ACTIVITY_STORE);
 
     String cachedVersion = sharedPreferences.getString(CACHE_APP_VERSION, "");
     if (!isCacheValid(cachedVersion)) {
       sharedPreferences.edit().clear().apply();
     } else {
-      bannedCodelessActivitySet.addAll(
-          sharedPreferences.getStringSet(UseCase.CODELESS.toString(), new HashSet<String>()));
-      bannedSuggestedEventActivitySet.addAll(
-          sharedPreferences.getStringSet(
-              UseCase.SUGGESTED_EVENT.toString(), new HashSet<String>()));
+      for (UseCase useCase : UseCase.values()) {
+        loadSamplingLevels(useCase);
+      }
     }
     initialized = true;
   }
 
+  private static void loadSamplingLevels(UseCase useCase) {
+    Map<String, ActivityStats> statsMap = getActivityStatsMap(useCase);
+    // activities banned before sampling levels existed
+    Set<String> bannedActivitySet =
+        sharedPreferences.getStringSet(useCase.toString(), new HashSet<String>());
+    if (bannedActivitySet != null) {
+      for (String activityName : bannedActivitySet) {
+        getActivityStats(statsMap, activityName).samplingLevel = MAX_SAMPLING_LEVEL;
+      }
+    }
+
+    String samplingLevels = sharedPreferences.getString(useCase + SAMPLING_LEVELS_SUFFIX, null);
+    if (samplingLevels == null) {
+      return;
+    }
+    try {
+      JSONObject json = new JSONObject(samplingLevels);
+      Iterator<String> activityNames = json.keys();
+      while (activityNames.hasNext()) {
+        String activityName = activityNames.next();
+        getActivityStats(statsMap, activityName).samplingLevel =
+            Math.min(json.getInt(activityName), MAX_SAMPLING_LEVEL);
+      }
+    } catch (JSONException e) {
+      /* no op */
+    }
+  }
+
   /**
-   * Return true when current activity is banned. Activities which process time exceed limit
-   * multiple times will be added into banned set.
+   * Return true when current activity should not be processed this time. Activities which process
+   * time keep exceeding the limit are only processed once every few times.
    */
-  public static boolean isBannedActivity(String activityName, UseCase useCase) {
+  public static synchronized boolean isBannedActivity(String activityName, UseCase useCase) {
     initializeIfNotYet();
 
-    switch (useCase) {
-      case CODELESS:
-        return bannedCodelessActivitySet.contains(activityName);
-      case SUGGESTED_EVENT:
-        return bannedSuggestedEventActivitySet.contains(activityName);
+    ActivityStats stats = getActivityStatsMap(useCase).get(activityName);
+    if (stats == null || stats.samplingLevel == 0) {
+      return false;
+    }
+    stats.sampleCount++;
+    if (stats.sampleCount % (1 << stats.samplingLevel) == 0) {
+      return false;
     }
-    return false;
+    stats.droppedCount++;
+    return true;
   }
 
   /**
-   * Calculate current activity process time. Return without action if current process time is
-   * normal. Add current activity to banned activity set if exceed activity process time threshold.
-   * Update app version.
+   * Calculate current activity process time and add it to the activity stats. Lower the sampling
+   * rate of current activity if it exceeded the process time threshold multiple times, raise it
+   * again if it stayed under the threshold multiple times in a row. Update app version.
    */
-  public static void limitProcessTime(
+  public static synchronized void limitProcessTime(
       String activityName, UseCase useCase, long startTime, long endTime) {
     initializeIfNotYet();
 
+    if (activityName == null) {
+      return;
+    }
     long processTime = endTime - startTime;
-    if (activityName == null || processTime < ACTIVITY_PROCESS_TIME_THRESHOLD) {
+    ActivityStats stats = getActivityStats(getActivityStatsMap(useCase), activityName);
+    stats.addProcessTime(TimeUnit.MILLISECONDS.toMicros(processTime));
+
+    int previousSamplingLevel = stats.samplingLevel;
+    if (processTime < ACTIVITY_PROCESS_TIME_THRESHOLD) {
+      stats.recoveryCount++;
+      if (stats.recoveryCount >= RECOVERY_COUNT && stats.samplingLevel > 0) {
+        stats.samplingLevel--;
+        stats.recoveryCount = 0;
+        stats.exceedLimitCount = 0;
+      }
+    } else {
+      stats.recoveryCount = 0;
+      stats.exceedLimitCount++;
+      if (stats.exceedLimitCount >= MAX_EXCEED_LIMIT_COUNT
+          && stats.samplingLevel < MAX_SAMPLING_LEVEL) {
+        stats.samplingLevel++;
+        stats.exceedLimitCount = 0;
+      }
+    }
+    if (stats.samplingLevel != previousSamplingLevel) {
+      saveSamplingLevels(useCase);
+    }
+  }
+
+  /**
+   * Record one pass of work done for current activity: how long it took in microseconds, how
+   * many requests for work were folded into it, and how many units of work it could skip because
+   * their input had not changed. It does not change the sampling rate of the activity.
+   */
+  public static synchronized void reportProcessStats(
+      String activityName,
+      UseCase useCase,
+      long processTimeMicros,
+      int coalescedCount,
+      int skippedCount) {
+    if (activityName == null) {
       return;
     }
+    ActivityStats stats = getActivityStats(getActivityStatsMap(useCase), activityName);
+    stats.addProcessTime(processTimeMicros);
+    stats.coalescedCount += coalescedCount;
+    stats.skippedCount += skippedCount;
+  }
 
+  /** Return the stats of current activity, or null if there are none. */
+  @Nullable
+  public static synchronized JSONObject getProcessStats(String activityName, UseCase useCase) {
+    ActivityStats stats = getActivityStatsMap(useCase).get(activityName);
+    if (stats == null) {
+      return null;
+    }
+    try {
+      return toJSONObject(stats);
+    } catch (JSONException e) {
+      return null;
+    }
+  }
+
+  /** Return the stats of every activity of the use case, keyed by activity name. */
+  public static synchronized JSONObject getProcessStats(UseCase useCase) {
+    JSONObject json = new JSONObject();
+    for (Map.Entry<String, ActivityStats> entry : getActivityStatsMap(useCase).entrySet()) {
+      try {
+        json.put(entry.getKey(), toJSONObject(entry.getValue()));
+      } catch (JSONException e) {
+        /* no op */
+      }
+    }
+    return json;
+  }
+
+  private static JSONObject toJSONObject(ActivityStats stats) throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put("process_count", stats.processCount);
+    json.put("total_process_time_us", stats.totalProcessTime);
+    json.put("max_process_time_us", stats.maxProcessTime);
+    json.put("p50_process_time_us", stats.getPercentile(0.5));
+    json.put("p90_process_time_us", stats.getPercentile(0.9));
+    json.put("p99_process_time_us", stats.getPercentile(0.99));
+    JSONArray histogram = new JSONArray();
+    for (int count : stats.histogram) {
+      histogram.put(count);
+    }
+    json.put("process_time_histogram", histogram);
+    json.put("coalesced_count", stats.coalescedCount);
+    json.put("skipped_count", stats.skippedCount);
+    json.put("sampling_rate", 1.0 / (1 << stats.samplingLevel));
+    json.put("dropped_count", stats.droppedCount);
+    return json;
+  }
+
+  private static Map<String, ActivityStats> getActivityStatsMap(UseCase useCase) {
     switch (useCase) {
       case CODELESS:
-        updateActivityMap(
-            useCase, activityName, activityProcessTimeMapCodeless, bannedCodelessActivitySet);
-        break;
+        return activityStatsCodeless;
       case SUGGESTED_EVENT:
-        updateActivityMap(
-            useCase, activityName, activityProcessTimeMapSe, bannedSuggestedEventActivitySet);
-        break;
+        return activityStatsSe;
+      default:
+        return activityStatsAam;
     }
   }
 
-  private static void updateActivityMap(
-      UseCase useCase,
-      String activityName,
-      Map<String, Integer> activityExceedLimitCountMap,
-      Set<String> bannedActivitySet) {
-    int curExceedLimitCount = 0;
-    if (activityExceedLimitCountMap.containsKey(activityName)) {
-      curExceedLimitCount = activityExceedLimitCountMap.get(activityName);
-    }
-    activityExceedLimitCountMap.put(activityName, curExceedLimitCount + 1);
-    if (curExceedLimitCount + 1 >= MAX_EXCEED_LIMIT_COUNT) {
-      bannedActivitySet.add(activityName);
-
-      sharedPreferences
-          .edit()
-          .putStringSet(useCase.toString(), bannedActivitySet)
-          .putString(CACHE_APP_VERSION, Utility.getAppVersion())
-          .apply();
+  private static ActivityStats getActivityStats(
+      Map<String, ActivityStats> statsMap, String activityName) {
+    ActivityStats stats = statsMap.get(activityName);
+    if (stats == null) {
+      stats = new ActivityStats();
+      statsMap.put(activityName, stats);
+    }
+    return stats;
+  }
+
+  private static void saveSamplingLevels(UseCase useCase) {
+    JSONObject samplingLevels = new JSONObject();
+    for (Map.Entry<String, ActivityStats> entry : getActivityStatsMap(useCase).entrySet()) {
+      if (entry.getValue().samplingLevel > 0) {
+        try {
+          samplingLevels.put(entry.getKey(), entry.getValue().samplingLevel);
+        } catch (JSONException e) {
+          /* no op */
+        }
+      }
     }
+    sharedPreferences
+        .edit()
+        .remove(useCase.toString())
+        .putString(useCase + SAMPLING_LEVELS_SUFFIX, samplingLevels.toString())
+        .putString(CACHE_APP_VERSION, Utility.getAppVersion())
+        .apply();
   }
 
   private static boolean isCacheValid(String previousVersion) {
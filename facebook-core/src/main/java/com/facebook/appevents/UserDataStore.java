@@ -22,13 +22,13 @@ package com.facebook.appevents;
 
 import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.util.Log;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
-import com.facebook.FacebookSdk;
 import com.facebook.appevents.aam.MetadataRule;
+import com.facebook.internal.SettingsStore;
 import com.facebook.internal.Utility;
+import com.facebook.internal.WriteBehindStore;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -42,11 +42,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public class UserDataStore {
   private static final String TAG = UserDataStore.class.getSimpleName();
+  private static final String USER_DATA_STORE = "com.facebook.appevents.UserDataStore";
   private static final String USER_DATA_KEY = "com.facebook.appevents.UserDataStore.userData";
   private static final String INTERNAL_USER_DATA_KEY =
       "com.facebook.appevents.UserDataStore.internalUserData";
 
   private static SharedPreferences sharedPreferences;
+  private static WriteBehindStore store;
   private static AtomicBoolean initialized = new AtomicBoolean(false);
   private static final int MAX_NUM = 5;
   private static final String DATA_SEPARATOR = ",";
@@ -54,6 +56,21 @@ public class UserDataStore {
       new ConcurrentHashMap<>();
   private static final ConcurrentHashMap<String, String> internalHashedUserData =
       new ConcurrentHashMap<>();
+  // serialize the user data when it is written, not on every update
+  private static final WriteBehindStore.ValueProvider externalUserDataProvider =
+      new WriteBehindStore.ValueProvider() {
+        @Override
+        public String getValue() {
+          return Utility.mapToJsonStr(externalHashedUserData);
+        }
+      };
+  private static final WriteBehindStore.ValueProvider internalUserDataProvider =
+      new WriteBehindStore.ValueProvider() {
+        @Override
+        public String getValue() {
+          return Utility.mapToJsonStr(internalHashedUserData);
+        }
+      };
 
   /** User data types */
   public static final String EMAIL = "em";
@@ -75,18 +92,12 @@ public class UserDataStore {
     initAndWait();
   }
 
-  private static void writeDataIntoCache(final String key, final String value) {
-    FacebookSdk.getExecutor()
-        .execute(
-            new Runnable() {
-              @Override
-              public void run() {
-                if (!initialized.get()) {
-                  initAndWait();
-                }
-                sharedPreferences.edit().putString(key, value).apply();
-              }
-            });
+  private static void writeDataIntoCache(
+      final String key, final WriteBehindStore.ValueProvider valueProvider) {
+    if (!initialized.get()) {
+      initAndWait();
+    }
+    store.markDirty(key, valueProvider);
   }
 
   static void setUserDataAndHash(final Bundle ud) {
@@ -102,9 +113,8 @@ public class UserDataStore {
 
                 updateHashUserData(ud);
 
-                writeDataIntoCache(USER_DATA_KEY, Utility.mapToJsonStr(externalHashedUserData));
-                writeDataIntoCache(
-                    INTERNAL_USER_DATA_KEY, Utility.mapToJsonStr(internalHashedUserData));
+                writeDataIntoCache(USER_DATA_KEY, externalUserDataProvider);
+                writeDataIntoCache(INTERNAL_USER_DATA_KEY, internalUserDataProvider);
               }
             });
   }
@@ -165,7 +175,7 @@ public class UserDataStore {
                   initAndWait();
                 }
                 externalHashedUserData.clear();
-                sharedPreferences.edit().putString(USER_DATA_KEY, null).apply();
+                writeDataIntoCache(USER_DATA_KEY, externalUserDataProvider);
               }
             });
   }
@@ -204,12 +214,15 @@ public class UserDataStore {
     if (initialized.get()) {
       return;
     }
+    // the user data used to be kept in the default preferences of the app
     sharedPreferences =
-        PreferenceManager.getDefaultSharedPreferences(FacebookSdk.getApplicationContext());
+        SettingsStore.getSharedPreferences(
+            USER_DATA_STORE, null, USER_DATA_KEY, INTERNAL_USER_DATA_KEY);
     String externalUdRaw = sharedPreferences.getString(USER_DATA_KEY, "");
     String internalUdRaw = sharedPreferences.getString(INTERNAL_USER_DATA_KEY, "");
     externalHashedUserData.putAll(Utility.JsonStrToMap(externalUdRaw));
     internalHashedUserData.putAll(Utility.JsonStrToMap(internalUdRaw));
+    store = new WriteBehindStore(sharedPreferences);
     initialized.set(true);
   }
 
@@ -235,7 +248,7 @@ public class UserDataStore {
     }
   }
 
-  static void setInternalUd(final Map<String, String> ud) {
+  static synchronized void setInternalUd(final Map<String, String> ud) {
     if (!initialized.get()) {
       initAndWait();
     }
@@ -275,7 +288,7 @@ public class UserDataStore {
       }
     }
 
-    writeDataIntoCache(INTERNAL_USER_DATA_KEY, Utility.mapToJsonStr(internalHashedUserData));
+    writeDataIntoCache(INTERNAL_USER_DATA_KEY, internalUserDataProvider);
   }
 
   private static String normalizeData(String type, String data) {
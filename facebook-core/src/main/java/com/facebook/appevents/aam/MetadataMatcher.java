@@ -25,15 +25,22 @@ import android.view.View;
 import android.widget.EditText;
 import android.widget.TextView;
 import com.facebook.appevents.codeless.internal.ViewHierarchy;
+import com.facebook.internal.KeywordMatcher;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.regex.Pattern;
 
 @AutoHandleExceptions
 final class MetadataMatcher {
   private static final String TAG = MetadataMatcher.class.getCanonicalName();
   private static final int MAX_INDICATOR_LENGTH = 100;
+  // bounds of the text indicators collection around a view, which runs on the UI thread
+  private static final int MAX_TEXT_INDICATOR_DEPTH = 10;
+  private static final int MAX_TEXT_INDICATOR_VIEWS = 100;
 
+  /** Returns the indicators of the view. They are lowercased by {@link #findKeys}. */
   static List<String> getCurrentViewIndicators(View view) {
     List<String> indicators = new ArrayList<>();
     // Hint
@@ -65,64 +72,84 @@ final class MetadataMatcher {
     List<String> validIndicators = new ArrayList<>();
     for (String indicator : indicators) {
       if (!indicator.isEmpty() && indicator.length() <= MAX_INDICATOR_LENGTH) {
-        validIndicators.add(indicator.toLowerCase());
+        validIndicators.add(indicator);
       }
     }
     return validIndicators;
   }
 
+  /**
+   * Returns the texts of the siblings of the view and of their descendants, at most {@link
+   * #MAX_TEXT_INDICATOR_DEPTH} levels down and {@link #MAX_TEXT_INDICATOR_VIEWS} views in total.
+   * They are lowercased by {@link #findKeys}.
+   */
   static List<String> getAroundViewIndicators(View view) {
     List<String> aroundTextIndicators = new ArrayList<>();
     View parentView = ViewHierarchy.getParentOfView(view);
     if (parentView != null) {
+      int[] remainingViews = {MAX_TEXT_INDICATOR_VIEWS};
       for (View child : ViewHierarchy.getChildrenOfView(parentView)) {
+        if (remainingViews[0] <= 0) {
+          break;
+        }
         if (view != child) {
-          aroundTextIndicators.addAll(MetadataMatcher.getTextIndicators(child));
+          getTextIndicators(child, aroundTextIndicators, 0, remainingViews);
         }
       }
     }
     return aroundTextIndicators;
   }
 
-  static boolean matchIndicator(List<String> indicators, List<String> keys) {
+  /**
+   * Returns the ids of every key of {@code keyMatcher} contained in one of the indicators, with a
+   * single scan of each indicator however many rules there are.
+   */
+  static BitSet findKeys(List<String> indicators, KeywordMatcher keyMatcher) {
+    BitSet foundKeys = new BitSet(keyMatcher.getKeywordCount());
     for (String indicator : indicators) {
-      if (matchIndicator(indicator, keys)) {
-        return true;
-      }
+      keyMatcher.findAll(indicator.toLowerCase(), foundKeys);
     }
-    return false;
+    return foundKeys;
   }
 
-  static boolean matchIndicator(String indicator, List<String> keys) {
-    for (String key : keys) {
-      if (indicator.contains(key)) {
-        return true;
-      }
-    }
-    return false;
+  /** Returns true if one of the indicators contains one of the keys of the rule. */
+  static boolean matchIndicator(BitSet foundKeys, MetadataRule rule) {
+    return foundKeys.intersects(rule.getKeyIds());
   }
 
-  static boolean matchValue(String text, String rule) {
-    return text.matches(rule);
+  static boolean matchValue(String text, Pattern rule) {
+    return rule.matcher(text).matches();
   }
 
   static List<String> getTextIndicators(View view) {
     List<String> indicators = new ArrayList<>();
+    getTextIndicators(view, indicators, 0, new int[] {MAX_TEXT_INDICATOR_VIEWS});
+    return indicators;
+  }
+
+  private static void getTextIndicators(
+      View view, List<String> indicators, int depth, int[] remainingViews) {
+    if (remainingViews[0] <= 0) {
+      return;
+    }
+    remainingViews[0]--;
     if (view instanceof EditText) {
-      return indicators;
+      return;
     }
     if (view instanceof TextView) {
-      String text = ((TextView) view).getText().toString();
-      if (!text.isEmpty() && text.length() < MAX_INDICATOR_LENGTH) {
-        indicators.add(text.toLowerCase());
+      CharSequence text = ((TextView) view).getText();
+      if (text != null && text.length() > 0 && text.length() < MAX_INDICATOR_LENGTH) {
+        indicators.add(text.toString());
       }
-      return indicators;
+      return;
+    }
+    if (depth >= MAX_TEXT_INDICATOR_DEPTH) {
+      return;
     }
 
     List<View> children = ViewHierarchy.getChildrenOfView(view);
     for (View child : children) {
-      indicators.addAll(getTextIndicators(child));
+      getTextIndicators(child, indicators, depth + 1, remainingViews);
     }
-    return indicators;
   }
 }
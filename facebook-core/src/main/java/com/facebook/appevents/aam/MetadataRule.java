@@ -20,14 +20,22 @@
 
 package com.facebook.appevents.aam;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import com.facebook.internal.KeywordMatcher;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -35,22 +43,29 @@ import org.json.JSONObject;
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public final class MetadataRule {
   private static final String TAG = MetadataRule.class.getCanonicalName();
-  private static final Set<MetadataRule> rules = new HashSet<>();
+  // replaced as a whole on update, never modified
+  private static volatile Set<MetadataRule> rules = Collections.emptySet();
   private static final String FIELD_K = "k";
   private static final String FIELD_V = "v";
   private static final String FIELD_K_DELIMITER = ",";
   private String name;
   private List<String> keyRules;
   private String valRule;
+  @Nullable private Pattern valPattern;
+  // the keys of all the rules updated together, and the ids of the keys of this rule among them
+  private KeywordMatcher keyMatcher;
+  private BitSet keyIds;
 
   private MetadataRule(String name, List<String> keyRules, String valRule) {
     this.name = name;
     this.keyRules = keyRules;
     this.valRule = valRule;
+    this.valPattern = valRule.isEmpty() ? null : Pattern.compile(valRule);
   }
 
+  /** Returns the current rules. All the rules returned by one call share the same key matcher. */
   static Set<MetadataRule> getRules() {
-    return new HashSet<>(rules);
+    return rules;
   }
 
   String getName() {
@@ -65,16 +80,31 @@ public final class MetadataRule {
     return valRule;
   }
 
+  /** The compiled value rule, or null if the rule matches any value. */
+  @Nullable
+  Pattern getValPattern() {
+    return valPattern;
+  }
+
+  KeywordMatcher getKeyMatcher() {
+    return keyMatcher;
+  }
+
+  BitSet getKeyIds() {
+    return keyIds;
+  }
+
   static void updateRules(String rulesFromServer) {
     try {
-      rules.clear();
       JSONObject jsonObject = new JSONObject(rulesFromServer);
-      constructRules(jsonObject);
+      rules = constructRules(jsonObject);
     } catch (JSONException e) {
+      rules = Collections.emptySet();
     }
   }
 
-  private static void constructRules(JSONObject jsonObject) {
+  private static Set<MetadataRule> constructRules(JSONObject jsonObject) {
+    Set<MetadataRule> newRules = new HashSet<>();
     Iterator<String> keys = jsonObject.keys();
     while (keys.hasNext()) {
       String key = keys.next();
@@ -87,8 +117,33 @@ public final class MetadataRule {
       if (k.isEmpty()) {
         continue;
       }
-      rules.add(new MetadataRule(key, Arrays.asList(k.split(FIELD_K_DELIMITER)), v));
+      try {
+        newRules.add(new MetadataRule(key, Arrays.asList(k.split(FIELD_K_DELIMITER)), v));
+      } catch (PatternSyntaxException e) {
+        /* no op */
+      }
+    }
+
+    // one automaton for the keys of every rule
+    Map<String, Integer> keyIds = new HashMap<>();
+    List<String> allKeys = new ArrayList<>();
+    for (MetadataRule r : newRules) {
+      r.keyIds = new BitSet();
+      for (String keyRule : r.keyRules) {
+        Integer id = keyIds.get(keyRule);
+        if (id == null) {
+          id = allKeys.size();
+          keyIds.put(keyRule, id);
+          allKeys.add(keyRule);
+        }
+        r.keyIds.set(id);
+      }
+    }
+    KeywordMatcher keyMatcher = KeywordMatcher.build(allKeys, false);
+    for (MetadataRule r : newRules) {
+      r.keyMatcher = keyMatcher;
     }
+    return Collections.unmodifiableSet(newRules);
   }
 
   public static Set<String> getEnabledRuleNames() {
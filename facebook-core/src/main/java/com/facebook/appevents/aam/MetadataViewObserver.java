@@ -28,16 +28,22 @@ import android.view.ViewTreeObserver;
 import android.widget.EditText;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
+import com.facebook.FacebookSdk;
 import com.facebook.appevents.InternalAppEventsLogger;
+import com.facebook.appevents.PerformanceGuardian;
 import com.facebook.appevents.internal.AppEventUtility;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 
 @AutoHandleExceptions
 final class MetadataViewObserver implements ViewTreeObserver.OnGlobalFocusChangeListener {
@@ -134,38 +140,117 @@ final class MetadataViewObserver implements ViewTreeObserver.OnGlobalFocusChange
   }
 
   private void processEditText(final View view) {
+    long startTime = System.nanoTime();
     final String text = ((EditText) view).getText().toString().trim().toLowerCase();
     if (text.isEmpty() || processedText.contains(text) || text.length() > MAX_TEXT_LENGTH) {
       return;
     }
     processedText.add(text);
-    Map<String, String> userData = new HashMap<>();
 
-    List<String> currentViewIndicators = MetadataMatcher.getCurrentViewIndicators(view);
-    List<String> aroundTextIndicators = null;
+    // only take what the matching needs from the views on the UI thread, the indicators around
+    // the view are only collected if a rule needs them
+    final List<String> currentViewIndicators = MetadataMatcher.getCurrentViewIndicators(view);
+    reportProcessTime(startTime);
 
+    final WeakReference<View> viewReference = new WeakReference<>(view);
+    FacebookSdk.getExecutor()
+        .execute(
+            new Runnable() {
+              @Override
+              public void run() {
+                matchRules(text, currentViewIndicators, viewReference);
+              }
+            });
+  }
+
+  private void matchRules(
+      final String text, List<String> currentViewIndicators, final WeakReference<View> view) {
+    final Map<String, String> userData = new HashMap<>();
+    final List<MetadataRule> unmatchedRules = new ArrayList<>();
+
+    // keys found in the indicators, looked up once for all the rules
+    BitSet currentViewKeys = null;
     for (MetadataRule rule : MetadataRule.getRules()) {
       String normalizedText = preNormalize(rule.getName(), text);
       // 1. match value if value rule is not empty
-      if (!rule.getValRule().isEmpty()
-          && !MetadataMatcher.matchValue(normalizedText, rule.getValRule())) {
+      Pattern valPattern = rule.getValPattern();
+      if (valPattern != null && !MetadataMatcher.matchValue(normalizedText, valPattern)) {
         continue;
       }
 
       // 2. match indicator
-      if (MetadataMatcher.matchIndicator(currentViewIndicators, rule.getKeyRules())) {
+      if (currentViewKeys == null) {
+        currentViewKeys = MetadataMatcher.findKeys(currentViewIndicators, rule.getKeyMatcher());
+      }
+      if (MetadataMatcher.matchIndicator(currentViewKeys, rule)) {
         putUserData(userData, rule.getName(), normalizedText);
-        continue;
+      } else {
+        unmatchedRules.add(rule);
       }
-      // only fetch once
-      if (aroundTextIndicators == null) {
-        aroundTextIndicators = MetadataMatcher.getAroundViewIndicators(view);
+    }
+    if (unmatchedRules.isEmpty()) {
+      setUserData(userData);
+      return;
+    }
+
+    runOnUIThread(
+        new Runnable() {
+          @Override
+          public void run() {
+            View currentView = view.get();
+            if (currentView == null) {
+              setUserData(userData);
+              return;
+            }
+            long startTime = System.nanoTime();
+            final List<String> aroundTextIndicators =
+                MetadataMatcher.getAroundViewIndicators(currentView);
+            reportProcessTime(startTime);
+            FacebookSdk.getExecutor()
+                .execute(
+                    new Runnable() {
+                      @Override
+                      public void run() {
+                        matchAroundRules(text, aroundTextIndicators, unmatchedRules, userData);
+                      }
+                    });
+          }
+        });
+  }
+
+  private static void matchAroundRules(
+      String text,
+      List<String> aroundTextIndicators,
+      List<MetadataRule> rules,
+      Map<String, String> userData) {
+    BitSet aroundTextKeys = null;
+    for (MetadataRule rule : rules) {
+      if (aroundTextKeys == null) {
+        aroundTextKeys = MetadataMatcher.findKeys(aroundTextIndicators, rule.getKeyMatcher());
       }
-      if (MetadataMatcher.matchIndicator(aroundTextIndicators, rule.getKeyRules())) {
-        putUserData(userData, rule.getName(), normalizedText);
+      if (MetadataMatcher.matchIndicator(aroundTextKeys, rule)) {
+        putUserData(userData, rule.getName(), preNormalize(rule.getName(), text));
       }
     }
-    InternalAppEventsLogger.setInternalUserData(userData);
+    setUserData(userData);
+  }
+
+  private static void setUserData(Map<String, String> userData) {
+    if (!userData.isEmpty()) {
+      InternalAppEventsLogger.setInternalUserData(userData);
+    }
+  }
+
+  private void reportProcessTime(long startTimeNanos) {
+    Activity activity = activityWeakReference.get();
+    if (activity != null) {
+      PerformanceGuardian.reportProcessStats(
+          activity.getClass().getSimpleName(),
+          PerformanceGuardian.UseCase.AAM,
+          TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTimeNanos),
+          0,
+          0);
+    }
   }
 
   private static String preNormalize(String key, String val) {
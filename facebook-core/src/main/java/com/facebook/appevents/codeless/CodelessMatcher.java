@@ -50,6 +50,8 @@ import com.facebook.internal.FetchedAppSettingsManager;
 import com.facebook.internal.InternalSettings;
 import com.facebook.internal.Utility;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
+import com.facebook.internal.logging.monitor.Monitor;
+import com.facebook.internal.logging.monitor.PerformanceEventName;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.lang.ref.WeakReference;
@@ -60,12 +62,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
 
 @ExcusesForDesignViolations(@Excuse(type = "MISSING_UNIT_TEST", reason = "Legacy"))
 @AutoHandleExceptions
 class CodelessMatcher {
-  private static final String PARENT_CLASS_NAME = "..";
-  private static final String CURRENT_CLASS_NAME = ".";
+  static final String PARENT_CLASS_NAME = "..";
+  static final String CURRENT_CLASS_NAME = ".";
   private static final String TAG = CodelessMatcher.class.getCanonicalName();
 
   private final Handler uiThreadHandler;
@@ -223,11 +226,30 @@ class CodelessMatcher {
       implements ViewTreeObserver.OnGlobalLayoutListener,
           ViewTreeObserver.OnScrollChangedListener,
           Runnable {
+    // layout and scroll callbacks are folded into at most one match every frame
+    private static final long FRAME_INTERVAL_MS = 16;
+    // how long a frame may spend matching before the rest of the match moves to the next frame
+    private static final long FRAME_BUDGET_NANOS = 8 * 1000 * 1000;
+
     private WeakReference<View> rootView;
     @Nullable private List<EventBinding> eventBindings;
+    @Nullable private EventBindingTree eventBindingTree;
     private final Handler handler;
     private HashSet<String> listenerSet;
     private final String activityName;
+    private final Runnable matchSliceRunnable =
+        new Runnable() {
+          @Override
+          public void run() {
+            runMatchSlice();
+          }
+        };
+    @Nullable private EventBindingTree.Pass pass;
+    private boolean isMatchRequested;
+    private boolean isMatchSliceScheduled;
+    private long lastMatchSliceTime;
+    private long passTimeNanos;
+    private int coalescedCount;
 
     public ViewMatcher(
         View rootView, Handler handler, HashSet<String> listenerSet, final String activityName) {
@@ -248,6 +270,7 @@ class CodelessMatcher {
       }
 
       this.eventBindings = EventBinding.parseArray(appSettings.getEventBindings());
+      this.eventBindingTree = new EventBindingTree(this.eventBindings, this.activityName);
 
       if (this.eventBindings != null) {
         View rootView = this.rootView.get();
@@ -271,19 +294,97 @@ class CodelessMatcher {
 
     @Override
     public void onGlobalLayout() {
-      startMatch();
+      requestMatch();
     }
 
     @Override
     public void onScrollChanged() {
-      startMatch();
+      requestMatch();
+    }
+
+    private void requestMatch() {
+      if (this.eventBindingTree == null) {
+        return;
+      }
+      this.isMatchRequested = true;
+      if (this.isMatchSliceScheduled) {
+        this.coalescedCount++;
+        return;
+      }
+      scheduleMatchSlice();
+    }
+
+    private void scheduleMatchSlice() {
+      this.isMatchSliceScheduled = true;
+      long delay = this.lastMatchSliceTime + FRAME_INTERVAL_MS - SystemClock.uptimeMillis();
+      this.handler.postDelayed(this.matchSliceRunnable, Math.max(0, delay));
+    }
+
+    /**
+     * Runs the current match for one frame budget, starting a new one if a match was requested
+     * since the last one started. Listeners are attached once the whole hierarchy was matched.
+     */
+    private void runMatchSlice() {
+      this.isMatchSliceScheduled = false;
+      View rootView = this.rootView.get();
+      if (this.eventBindingTree == null || rootView == null) {
+        this.pass = null;
+        return;
+      }
+      if (this.pass == null) {
+        if (!this.isMatchRequested) {
+          return;
+        }
+        this.isMatchRequested = false;
+        this.pass = this.eventBindingTree.newPass(rootView);
+        this.passTimeNanos = 0;
+      }
+
+      this.lastMatchSliceTime = SystemClock.uptimeMillis();
+      boolean isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.CODELESS_MATCH);
+      long startTime = System.nanoTime();
+      boolean isFinished;
+      try {
+        isFinished = this.pass.run(FRAME_BUDGET_NANOS);
+        if (isFinished) {
+          attachListeners(this.pass.getResult(), rootView);
+        }
+        this.passTimeNanos += System.nanoTime() - startTime;
+      } finally {
+        if (isMeasured) {
+          Monitor.stopMeasurePerfFor(PerformanceEventName.CODELESS_MATCH);
+        }
+      }
+
+      if (isFinished) {
+        PerformanceGuardian.reportProcessStats(
+            this.activityName,
+            PerformanceGuardian.UseCase.CODELESS,
+            TimeUnit.NANOSECONDS.toMicros(this.passTimeNanos),
+            this.coalescedCount,
+            this.pass.getSkippedCount());
+        this.coalescedCount = 0;
+        this.pass = null;
+        if (this.isMatchRequested) {
+          scheduleMatchSlice();
+        }
+      } else {
+        scheduleMatchSlice();
+      }
     }
 
     private void startMatch() {
-      if (this.eventBindings != null && this.rootView.get() != null) {
-        for (int i = 0; i < this.eventBindings.size(); i++) {
-          EventBinding binding = this.eventBindings.get(i);
-          findView(binding, this.rootView.get());
+      View rootView = this.rootView.get();
+      if (this.eventBindingTree != null && rootView != null) {
+        attachListeners(this.eventBindingTree.match(rootView), rootView);
+      }
+    }
+
+    private void attachListeners(List<List<MatchedView>> matchedViews, View rootView) {
+      for (int i = 0; i < matchedViews.size(); i++) {
+        EventBinding binding = this.eventBindingTree.getBinding(i);
+        for (MatchedView view : matchedViews.get(i)) {
+          attachListener(view, rootView, binding);
         }
       }
     }
@@ -376,7 +477,7 @@ class CodelessMatcher {
       return result;
     }
 
-    private static boolean isTheSameView(
+    static boolean isTheSameView(
         final View targetView, final PathComponent pathElement, final int index) {
       if (pathElement.index != -1 && index != pathElement.index) {
         return false;
@@ -448,7 +549,7 @@ class CodelessMatcher {
       return true;
     }
 
-    private static List<View> findVisibleChildren(ViewGroup viewGroup) {
+    static List<View> findVisibleChildren(ViewGroup viewGroup) {
       List<View> visibleViews = new ArrayList<>();
       final int childCount = viewGroup.getChildCount();
       for (int i = 0; i < childCount; i++) {
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.appevents.codeless;
+
+import static com.facebook.appevents.codeless.internal.PathComponent.MatchBitmaskType;
+
+import android.text.TextUtils;
+import android.view.View;
+import android.view.ViewGroup;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import com.facebook.appevents.codeless.CodelessMatcher.MatchedView;
+import com.facebook.appevents.codeless.CodelessMatcher.ViewMatcher;
+import com.facebook.appevents.codeless.internal.Constants;
+import com.facebook.appevents.codeless.internal.EventBinding;
+import com.facebook.appevents.codeless.internal.PathComponent;
+import com.facebook.appevents.codeless.internal.ViewHierarchy;
+import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The view paths of a list of event bindings compiled into a prefix tree, so that a single
+ * traversal of the view hierarchy matches all of them. Bindings sharing a path prefix share its
+ * nodes, and each path component is compared with a view once rather than once per binding.
+ *
+ * <p>The matches of every binding are the same, and in the same order, as those of {@link
+ * ViewMatcher#findViewByPath} from the root view. Paths stepping up to a parent view are rare and
+ * are still matched one binding at a time.
+ *
+ * <p>The outcome of comparing a view with a path component is kept until the view changes what
+ * the comparison looks at, so views left alone between passes are not compared again.
+ */
+@AutoHandleExceptions
+@UiThread
+final class EventBindingTree {
+
+  // how many views are visited between two looks at the clock
+  private static final int VIEWS_PER_CLOCK_CHECK = 16;
+
+  private final List<EventBinding> bindings;
+  private final Node root = new Node();
+  private final List<Integer> parentPathBindings = new ArrayList<>();
+  private final String activityName;
+  // the bitmask of everything the path components compare besides the class name and index
+  private int matchBitmask;
+  private final Map<View, ViewState> viewStates = new WeakHashMap<>();
+
+  EventBindingTree(List<EventBinding> bindings, String activityName) {
+    this.bindings = bindings;
+    this.activityName = activityName;
+    for (int i = 0; i < bindings.size(); i++) {
+      add(i, bindings.get(i));
+    }
+  }
+
+  int size() {
+    return bindings.size();
+  }
+
+  EventBinding getBinding(int i) {
+    return bindings.get(i);
+  }
+
+  /**
+   * Returns the views matched by each binding, indexed the same way as the bindings. A binding
+   * for another activity, or with a path deeper than {@link Constants#MAX_TREE_DEPTH}, matches
+   * nothing.
+   */
+  List<List<MatchedView>> match(View rootView) {
+    Pass pass = newPass(rootView);
+    pass.run(Long.MAX_VALUE);
+    return pass.getResult();
+  }
+
+  /** Starts a match of {@code rootView} that can be run over several frames. */
+  Pass newPass(View rootView) {
+    return new Pass(rootView);
+  }
+
+  private void add(int bindingIndex, EventBinding binding) {
+    if (binding == null) {
+      return;
+    }
+    if (!TextUtils.isEmpty(binding.getActivityName())
+        && !binding.getActivityName().equals(activityName)) {
+      return;
+    }
+    List<PathComponent> path = binding.getViewPath();
+    if (path.size() > Constants.MAX_TREE_DEPTH) {
+      return;
+    }
+
+    Node node = root;
+    for (PathComponent component : path) {
+      if (component.className.equals(CodelessMatcher.PARENT_CLASS_NAME)) {
+        parentPathBindings.add(bindingIndex);
+        return;
+      } else if (component.className.equals(CodelessMatcher.CURRENT_CLASS_NAME)) {
+        // the rest of the path is never looked at
+        node.currentViewBindings.add(bindingIndex);
+        return;
+      }
+      node = node.getOrAddChild(component);
+      matchBitmask |= component.matchBitmask;
+    }
+    node.completedBindings.add(bindingIndex);
+  }
+
+  /**
+   * A match of the tree against a view hierarchy. Views are visited in the same pre-order as
+   * {@link ViewMatcher#findViewByPath}, from an explicit stack so that the traversal can stop
+   * when its time is up and carry on later.
+   */
+  final class Pass {
+    private final View rootView;
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private final List<List<MatchedView>> result;
+    private int skippedCount;
+    private boolean finished;
+
+    private Pass(View rootView) {
+      this.rootView = rootView;
+      result = new ArrayList<>(bindings.size());
+      for (int i = 0; i < bindings.size(); i++) {
+        result.add(new ArrayList<MatchedView>());
+      }
+      if (rootView != null) {
+        frames.push(
+            new Frame(
+                rootView,
+                -1,
+                activityName,
+                Collections.singletonList(root),
+                root.completedBindings));
+      }
+    }
+
+    /**
+     * Visits views for up to {@code budgetNanos}, and returns true once the whole hierarchy has
+     * been matched.
+     */
+    boolean run(long budgetNanos) {
+      if (finished) {
+        return true;
+      }
+      long start = System.nanoTime();
+      int visited = 0;
+      while (!frames.isEmpty()) {
+        visit(frames.pop());
+        if (++visited % VIEWS_PER_CLOCK_CHECK == 0
+            && System.nanoTime() - start >= budgetNanos
+            && !frames.isEmpty()) {
+          return false;
+        }
+      }
+      if (rootView != null) {
+        for (int i : parentPathBindings) {
+          EventBinding binding = bindings.get(i);
+          result.set(
+              i,
+              ViewMatcher.findViewByPath(
+                  binding, rootView, binding.getViewPath(), 0, -1, activityName));
+        }
+      }
+      finished = true;
+      return true;
+    }
+
+    /** The views matched by each binding, complete once {@link #run} has returned true. */
+    List<List<MatchedView>> getResult() {
+      return result;
+    }
+
+    /** How many comparisons of a view with a path component were answered from earlier passes. */
+    int getSkippedCount() {
+      return skippedCount;
+    }
+
+    /**
+     * Matches the view of {@code frame}, at depth n, against the nodes of the tree at depth n,
+     * then pushes its visible children with the nodes the view matched. Bindings whose whole path
+     * matched an ancestor of the view match the view as well.
+     */
+    private void visit(Frame frame) {
+      final View view = frame.view;
+      final int index = frame.index;
+      final String mapKey = frame.parentMapKey + "." + String.valueOf(index);
+      final List<Integer> completedBindings = frame.completedBindings;
+      for (int binding : completedBindings) {
+        result.get(binding).add(new MatchedView(view, mapKey));
+      }
+
+      List<Node> childNodes = null;
+      List<Integer> childCompletedBindings = completedBindings;
+      for (Node node : frame.nodes) {
+        for (int binding : node.currentViewBindings) {
+          result.get(binding).add(new MatchedView(view, mapKey));
+        }
+        for (int i = 0; i < node.children.size(); i++) {
+          if (!isTheSameView(view, node.components.get(i), index)) {
+            continue;
+          }
+          Node child = node.children.get(i);
+          if (!child.completedBindings.isEmpty()) {
+            for (int binding : child.completedBindings) {
+              result.get(binding).add(new MatchedView(view, mapKey));
+            }
+            if (childCompletedBindings == completedBindings) {
+              childCompletedBindings = new ArrayList<>(completedBindings);
+            }
+            childCompletedBindings.addAll(child.completedBindings);
+          }
+          if (child.hasPathsBelow()) {
+            if (childNodes == null) {
+              childNodes = new ArrayList<>();
+            }
+            childNodes.add(child);
+          }
+        }
+      }
+
+      if ((childNodes == null && childCompletedBindings.isEmpty())
+          || !(view instanceof ViewGroup)) {
+        return;
+      }
+      if (childNodes == null) {
+        childNodes = Collections.emptyList();
+      }
+      List<View> visibleViews = ViewMatcher.findVisibleChildren((ViewGroup) view);
+      // pushed last to first so that they are visited first to last
+      for (int i = visibleViews.size() - 1; i >= 0; i--) {
+        frames.push(new Frame(visibleViews.get(i), i, mapKey, childNodes, childCompletedBindings));
+      }
+    }
+
+    private boolean isTheSameView(View view, PathComponent component, int index) {
+      ViewState state = viewStates.get(view);
+      if (state == null || !state.isUnchanged(view, index, matchBitmask)) {
+        state = new ViewState(view, index, matchBitmask);
+        viewStates.put(view, state);
+      }
+      Boolean isTheSameView = state.results.get(component);
+      if (isTheSameView != null) {
+        skippedCount++;
+        return isTheSameView;
+      }
+      isTheSameView = ViewMatcher.isTheSameView(view, component, index);
+      state.results.put(component, isTheSameView);
+      return isTheSameView;
+    }
+  }
+
+  private static class Frame {
+    final View view;
+    final int index;
+    final String parentMapKey;
+    final List<Node> nodes;
+    final List<Integer> completedBindings;
+
+    Frame(
+        View view,
+        int index,
+        String parentMapKey,
+        List<Node> nodes,
+        List<Integer> completedBindings) {
+      this.view = view;
+      this.index = index;
+      this.parentMapKey = parentMapKey;
+      this.nodes = nodes;
+      this.completedBindings = completedBindings;
+    }
+  }
+
+  /**
+   * What {@link ViewMatcher#isTheSameView} looks at in a view, besides its class, and the outcome
+   * of each comparison made while it stayed the same.
+   */
+  private static class ViewState {
+    final int index;
+    final int id;
+    @Nullable final String text;
+    @Nullable final String description;
+    @Nullable final String hint;
+    @Nullable final String tag;
+    final Map<PathComponent, Boolean> results = new IdentityHashMap<>();
+
+    ViewState(View view, int index, int matchBitmask) {
+      this.index = index;
+      this.id = view.getId();
+      this.text = isSet(matchBitmask, MatchBitmaskType.TEXT) ? getText(view) : null;
+      this.description =
+          isSet(matchBitmask, MatchBitmaskType.DESCRIPTION) ? getDescription(view) : null;
+      this.hint = isSet(matchBitmask, MatchBitmaskType.HINT) ? getHint(view) : null;
+      this.tag = isSet(matchBitmask, MatchBitmaskType.TAG) ? getTag(view) : null;
+    }
+
+    boolean isUnchanged(View view, int index, int matchBitmask) {
+      return this.index == index
+          && this.id == view.getId()
+          && (!isSet(matchBitmask, MatchBitmaskType.TEXT) || getText(view).equals(text))
+          && (!isSet(matchBitmask, MatchBitmaskType.DESCRIPTION)
+              || getDescription(view).equals(description))
+          && (!isSet(matchBitmask, MatchBitmaskType.HINT) || getHint(view).equals(hint))
+          && (!isSet(matchBitmask, MatchBitmaskType.TAG) || getTag(view).equals(tag));
+    }
+
+    private static boolean isSet(int matchBitmask, MatchBitmaskType type) {
+      return (matchBitmask & type.getValue()) > 0;
+    }
+
+    private static String getText(View view) {
+      return ViewHierarchy.getTextOfView(view);
+    }
+
+    private static String getDescription(View view) {
+      return view.getContentDescription() == null
+          ? ""
+          : String.valueOf(view.getContentDescription());
+    }
+
+    private static String getHint(View view) {
+      return ViewHierarchy.getHintOfView(view);
+    }
+
+    private static String getTag(View view) {
+      return view.getTag() == null ? "" : String.valueOf(view.getTag());
+    }
+  }
+
+  private static class Node {
+    // components and children are parallel, in the order the components were first seen
+    final List<PathComponent> components = new ArrayList<>();
+    final List<Node> children = new ArrayList<>();
+    final Map<PathComponent, Node> childrenByComponent = new HashMap<>();
+    // bindings whose path ends here
+    final List<Integer> completedBindings = new ArrayList<>();
+    // bindings whose next path component is "." and match the view itself
+    final List<Integer> currentViewBindings = new ArrayList<>();
+
+    Node getOrAddChild(PathComponent component) {
+      Node child = childrenByComponent.get(component);
+      if (child == null) {
+        child = new Node();
+        childrenByComponent.put(component, child);
+        components.add(component);
+        children.add(child);
+      }
+      return child;
+    }
+
+    boolean hasPathsBelow() {
+      return !children.isEmpty() || !currentViewBindings.isEmpty();
+    }
+  }
+}
@@ -38,10 +38,12 @@ import com.facebook.GraphResponse;
 import com.facebook.LoggingBehavior;
 import com.facebook.appevents.codeless.internal.Constants;
 import com.facebook.appevents.codeless.internal.UnityReflection;
-import com.facebook.appevents.codeless.internal.ViewHierarchy;
+import com.facebook.appevents.codeless.internal.ViewHierarchyWriter;
+import com.facebook.appevents.codeless.internal.ViewTreeHashes;
 import com.facebook.appevents.internal.AppEventUtility;
 import com.facebook.internal.InternalSettings;
 import com.facebook.internal.Logger;
+import com.facebook.internal.SdkExecutors;
 import com.facebook.internal.Utility;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import com.facebook.internal.qualityvalidation.Excuse;
@@ -49,13 +51,11 @@ import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.io.ByteArrayOutputStream;
 import java.lang.ref.WeakReference;
 import java.util.Locale;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -71,8 +71,10 @@ public class ViewIndexer {
 
   private final Handler uiThreadHandler;
   private WeakReference<Activity> activityReference;
-  private Timer indexingTimer;
+  @Nullable private ScheduledFuture<?> indexingFuture;
   private String previousDigest;
+  // hashes of the last view tree the server accepted
+  @Nullable private volatile ViewTreeHashes uploadedTreeHashes;
   private static ViewIndexer instance;
 
   public ViewIndexer(Activity activity) {
@@ -83,8 +85,8 @@ public class ViewIndexer {
   }
 
   public void schedule() {
-    final TimerTask indexingTask =
-        new TimerTask() {
+    final Runnable indexingTask =
+        new Runnable() {
           @Override
           public void run() {
             try {
@@ -104,6 +106,23 @@ public class ViewIndexer {
                 return;
               }
 
+              // Written and hashed in one pass here rather than on the UI thread. An unchanged
+              // tree is neither uploaded nor screenshotted again.
+              StringBuilder rootViewInfo = new StringBuilder();
+              ViewTreeHashes.Builder hashesBuilder = new ViewTreeHashes.Builder();
+              ViewHierarchyWriter.write(rootView, rootViewInfo, hashesBuilder);
+              ViewTreeHashes treeHashes = hashesBuilder.build();
+              int changedViewCount = treeHashes.countChangedViews(uploadedTreeHashes);
+              if (changedViewCount == 0) {
+                return;
+              }
+              Logger.log(
+                  LoggingBehavior.APP_EVENTS,
+                  TAG,
+                  "%d of %d views changed since the last upload",
+                  changedViewCount,
+                  treeHashes.getViewCount());
+
               final FutureTask<String> screenshotFuture =
                   new FutureTask<>(new ScreenshotTaker(rootView));
               uiThreadHandler.post(screenshotFuture);
@@ -115,22 +134,18 @@ public class ViewIndexer {
                 Log.e(TAG, "Failed to take screenshot.", e);
               }
 
-              JSONObject viewTree = new JSONObject();
-
-              try {
-                viewTree.put("screenname", activityName);
-                viewTree.put("screenshot", screenshot);
-
-                JSONArray viewArray = new JSONArray();
-                JSONObject rootViewInfo = ViewHierarchy.getDictionaryOfView(rootView);
-                viewArray.put(rootViewInfo);
-                viewTree.put("view", viewArray);
-              } catch (JSONException e) {
-                Log.e(TAG, "Failed to create JSONObject");
-              }
-
-              String tree = viewTree.toString();
-              sendToServer(tree);
+              // the same string as a JSONObject of screenname, screenshot and view would give
+              String tree =
+                  new StringBuilder(rootViewInfo.length() + screenshot.length() + 64)
+                      .append("{\"screenname\":")
+                      .append(JSONObject.quote(activityName))
+                      .append(",\"screenshot\":")
+                      .append(JSONObject.quote(screenshot))
+                      .append(",\"view\":[")
+                      .append(rootViewInfo)
+                      .append("]}")
+                      .toString();
+              sendToServer(tree, treeHashes);
             } catch (Exception e) {
               Log.e(TAG, "UI Component tree indexing failure!", e);
             }
@@ -144,13 +159,18 @@ public class ViewIndexer {
                 @Override
                 public void run() {
                   try {
-                    if (indexingTimer != null) {
-                      indexingTimer.cancel();
+                    if (indexingFuture != null) {
+                      indexingFuture.cancel(false);
                     }
                     previousDigest = null;
-                    indexingTimer = new Timer();
-                    indexingTimer.scheduleAtFixedRate(
-                        indexingTask, 0, Constants.APP_INDEXING_SCHEDULE_INTERVAL_MS);
+                    uploadedTreeHashes = null;
+                    indexingFuture =
+                        SdkExecutors.getSerialLane("view_indexer")
+                            .scheduleAtFixedRate(
+                                indexingTask,
+                                0,
+                                Constants.APP_INDEXING_SCHEDULE_INTERVAL_MS,
+                                TimeUnit.MILLISECONDS);
                   } catch (Exception e) {
                     Log.e(TAG, "Error scheduling indexing job", e);
                   }
@@ -167,10 +187,10 @@ public class ViewIndexer {
       return;
     }
 
-    if (indexingTimer != null) {
+    if (indexingFuture != null) {
       try {
-        indexingTimer.cancel();
-        indexingTimer = null;
+        indexingFuture.cancel(false);
+        indexingFuture = null;
       } catch (Exception e) {
         Log.e(TAG, "Error unscheduling indexing job", e);
       }
@@ -190,6 +210,10 @@ public class ViewIndexer {
   }
 
   private void sendToServer(final String tree) {
+    sendToServer(tree, null);
+  }
+
+  private void sendToServer(final String tree, @Nullable final ViewTreeHashes treeHashes) {
     FacebookSdk.getExecutor()
         .execute(
             new Runnable() {
@@ -214,6 +238,9 @@ public class ViewIndexer {
                             TAG,
                             "Successfully send UI component tree to server");
                         previousDigest = currentDigest;
+                        if (treeHashes != null) {
+                          uploadedTreeHashes = treeHashes;
+                        }
                       }
 
                       if (jsonRes.has(Constants.APP_INDEXING_ENABLED)) {
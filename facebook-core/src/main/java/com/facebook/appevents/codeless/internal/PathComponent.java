@@ -70,4 +70,36 @@ public final class PathComponent {
     hint = component.optString(PATH_HINT_KEY);
     matchBitmask = component.optInt(PATH_MATCH_BITMASK_KEY);
   }
+
+  @Override
+  public int hashCode() {
+    int result = className.hashCode();
+    result = 31 * result + index;
+    result = 31 * result + id;
+    result = 31 * result + text.hashCode();
+    result = 31 * result + tag.hashCode();
+    result = 31 * result + description.hashCode();
+    result = 31 * result + hint.hashCode();
+    result = 31 * result + matchBitmask;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof PathComponent)) {
+      return false;
+    }
+    PathComponent p = (PathComponent) o;
+    return index == p.index
+        && id == p.id
+        && matchBitmask == p.matchBitmask
+        && className.equals(p.className)
+        && text.equals(p.text)
+        && tag.equals(p.tag)
+        && description.equals(p.description)
+        && hint.equals(p.hint);
+  }
 }
@@ -177,9 +177,7 @@ public class ViewHierarchy {
   }
 
   public static JSONObject getDictionaryOfView(View view) {
-    if (view.getClass().getName().equals(CLASS_RCTROOTVIEW)) {
-      RCTRootViewReference = new WeakReference<>(view);
-    }
+    updateRCTRootViewReference(view);
 
     JSONObject json = new JSONObject();
 
@@ -201,6 +199,12 @@ public class ViewHierarchy {
     return json;
   }
 
+  static void updateRCTRootViewReference(View view) {
+    if (view.getClass().getName().equals(CLASS_RCTROOTVIEW)) {
+      RCTRootViewReference = new WeakReference<>(view);
+    }
+  }
+
   public static int getClassTypeBitmask(View view) {
     int bitmask = 0;
     if (view instanceof ImageView) {
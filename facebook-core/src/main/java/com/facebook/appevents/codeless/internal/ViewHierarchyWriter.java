@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.appevents.codeless.internal;
+
+import static com.facebook.appevents.internal.ViewHierarchyConstants.*;
+
+import android.view.View;
+import android.view.ViewGroup;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.facebook.internal.Utility;
+import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
+
+/**
+ * Writes the view dictionary of {@link ViewHierarchy#getDictionaryOfView} as JSON straight into a
+ * {@link StringBuilder}, in a single pass over the views and without building a JSONObject per
+ * view. The output is the same string as {@code getDictionaryOfView(view).toString()}.
+ */
+@AutoHandleExceptions
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class ViewHierarchyWriter {
+
+  private final StringBuilder out;
+  @Nullable private final ViewTreeHashes.Builder hashes;
+  private boolean isFirstField;
+
+  private ViewHierarchyWriter(StringBuilder out, @Nullable ViewTreeHashes.Builder hashes) {
+    this.out = out;
+    this.hashes = hashes;
+  }
+
+  /**
+   * Appends the JSON of {@code view} and its descendants to {@code out}, and gives every view to
+   * {@code hashes} if it is not null.
+   */
+  public static void write(View view, StringBuilder out, @Nullable ViewTreeHashes.Builder hashes) {
+    new ViewHierarchyWriter(out, hashes).writeView(view);
+  }
+
+  private void writeView(View view) {
+    ViewHierarchy.updateRCTRootViewReference(view);
+
+    out.append('{');
+    isFirstField = true;
+    if (hashes != null) {
+      hashes.startView();
+    }
+    writeBasicInfo(view);
+
+    writeKey(CHILDREN_VIEW_KEY);
+    out.append('[');
+    if (view instanceof ViewGroup) {
+      ViewGroup viewGroup = (ViewGroup) view;
+      int count = viewGroup.getChildCount();
+      for (int i = 0; i < count; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        writeView(viewGroup.getChildAt(i));
+      }
+    }
+    out.append(']');
+
+    if (hashes != null) {
+      hashes.endView();
+    }
+    out.append('}');
+  }
+
+  // the same fields in the same order as ViewHierarchy.updateBasicInfoOfView
+  private void writeBasicInfo(View view) {
+    String text = ViewHierarchy.getTextOfView(view);
+    String hint = ViewHierarchy.getHintOfView(view);
+    Object tag = view.getTag();
+    CharSequence description = view.getContentDescription();
+
+    String className = view.getClass().getCanonicalName();
+    if (className != null) {
+      writeField(CLASS_NAME_KEY, className);
+    }
+    writeField(CLASS_TYPE_BITMASK_KEY, ViewHierarchy.getClassTypeBitmask(view));
+    writeField(ID_KEY, view.getId());
+    if (!SensitiveUserDataUtils.isSensitiveUserData(view)) {
+      writeField(TEXT_KEY, Utility.coerceValueIfNullOrEmpty(Utility.sha256hash(text), ""));
+    } else {
+      writeField(TEXT_KEY, "");
+      writeKey(IS_USER_INPUT_KEY);
+      out.append("true");
+      hashField(IS_USER_INPUT_KEY, "true");
+    }
+    writeField(HINT_KEY, Utility.coerceValueIfNullOrEmpty(Utility.sha256hash(hint), ""));
+    if (tag != null) {
+      writeField(
+          TAG_KEY, Utility.coerceValueIfNullOrEmpty(Utility.sha256hash(tag.toString()), ""));
+    }
+    if (description != null) {
+      writeField(
+          DESC_KEY,
+          Utility.coerceValueIfNullOrEmpty(Utility.sha256hash(description.toString()), ""));
+    }
+
+    writeKey(DIMENSION_KEY);
+    int start = out.length();
+    out.append('{');
+    isFirstField = true;
+    writeNumber(DIMENSION_TOP_KEY, view.getTop());
+    writeNumber(DIMENSION_LEFT_KEY, view.getLeft());
+    writeNumber(DIMENSION_WIDTH_KEY, view.getWidth());
+    writeNumber(DIMENSION_HEIGHT_KEY, view.getHeight());
+    writeNumber(DIMENSION_SCROLL_X_KEY, view.getScrollX());
+    writeNumber(DIMENSION_SCROLL_Y_KEY, view.getScrollY());
+    writeNumber(DIMENSION_VISIBILITY_KEY, view.getVisibility());
+    out.append('}');
+    isFirstField = false;
+    if (hashes != null) {
+      // hashed as its JSON, like String.valueOf of the nested JSONObject
+      hashes.addField(DIMENSION_KEY, out, start, out.length());
+    }
+  }
+
+  private void writeField(String key, String value) {
+    writeKey(key);
+    writeString(value);
+    hashField(key, value);
+  }
+
+  private void writeField(String key, int value) {
+    writeNumber(key, value);
+    if (hashes != null) {
+      hashes.addField(key, String.valueOf(value));
+    }
+  }
+
+  private void writeNumber(String key, int value) {
+    writeKey(key);
+    out.append(value);
+  }
+
+  private void hashField(String key, String value) {
+    if (hashes != null) {
+      hashes.addField(key, value);
+    }
+  }
+
+  private void writeKey(String key) {
+    if (!isFirstField) {
+      out.append(',');
+    }
+    isFirstField = false;
+    writeString(key);
+    out.append(':');
+  }
+
+  // escapes the same characters as JSONObject.toString
+  private void writeString(String value) {
+    out.append('"');
+    for (int i = 0, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+        case '\\':
+        case '/':
+          out.append('\\').append(c);
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        case '\b':
+          out.append("\\b");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\f':
+          out.append("\\f");
+          break;
+        default:
+          if (c <= 0x1F) {
+            out.append("\\u00");
+            out.append(Character.forDigit(c >> 4, 16));
+            out.append(Character.forDigit(c & 0xF, 16));
+          } else {
+            out.append(c);
+          }
+          break;
+      }
+    }
+    out.append('"');
+  }
+}
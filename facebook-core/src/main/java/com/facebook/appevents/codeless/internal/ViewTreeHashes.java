@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.appevents.codeless.internal;
+
+import static com.facebook.appevents.internal.ViewHierarchyConstants.CHILDREN_VIEW_KEY;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Structural hashes of a view dictionary built by {@link ViewHierarchy#getDictionaryOfView}, one
+ * per view and one for the whole tree, so that two trees can be compared view by view without
+ * comparing their JSON. {@link ViewHierarchyWriter} feeds a {@link Builder} while it writes the
+ * JSON, which gives the same hashes as {@link #of} on the equivalent dictionary.
+ */
+@AutoHandleExceptions
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class ViewTreeHashes {
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  // keyed by the position of the view in the tree, see Frame
+  private final Map<String, Long> viewHashes;
+  private final long rootHash;
+
+  private ViewTreeHashes(Map<String, Long> viewHashes, long rootHash) {
+    this.viewHashes = viewHashes;
+    this.rootHash = rootHash;
+  }
+
+  @VisibleForTesting
+  public static ViewTreeHashes of(JSONObject rootViewInfo) {
+    Builder builder = new Builder();
+    add(builder, rootViewInfo);
+    return builder.build();
+  }
+
+  /** Hash of the whole tree; equal hashes mean the trees serialize to the same JSON. */
+  public long getRootHash() {
+    return rootHash;
+  }
+
+  public int getViewCount() {
+    return viewHashes.size();
+  }
+
+  /**
+   * Returns how many views were added, removed or changed since {@code previous}. Every view
+   * counts as changed when there is no previous tree.
+   */
+  public int countChangedViews(@Nullable ViewTreeHashes previous) {
+    if (previous == null) {
+      return getViewCount();
+    }
+    if (previous.rootHash == rootHash) {
+      return 0;
+    }
+    int count = 0;
+    for (Map.Entry<String, Long> entry : viewHashes.entrySet()) {
+      Long previousHash = previous.viewHashes.get(entry.getKey());
+      if (previousHash == null || previousHash.longValue() != entry.getValue().longValue()) {
+        count++;
+      }
+    }
+    for (String position : previous.viewHashes.keySet()) {
+      if (!viewHashes.containsKey(position)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static void add(Builder builder, JSONObject viewInfo) {
+    builder.startView();
+    Iterator<String> keys = viewInfo.keys();
+    while (keys.hasNext()) {
+      String key = keys.next();
+      if (!CHILDREN_VIEW_KEY.equals(key)) {
+        builder.addField(key, String.valueOf(viewInfo.opt(key)));
+      }
+    }
+    JSONArray children = viewInfo.optJSONArray(CHILDREN_VIEW_KEY);
+    int childCount = children == null ? 0 : children.length();
+    for (int i = 0; i < childCount; i++) {
+      JSONObject child = children.optJSONObject(i);
+      if (child != null) {
+        add(builder, child);
+      }
+    }
+    builder.endView();
+  }
+
+  /**
+   * Collects the hashes of a tree given one view at a time in pre-order: {@link #startView}, the
+   * fields of the view, its children, then {@link #endView}.
+   */
+  public static final class Builder {
+    private final Map<String, Long> viewHashes = new HashMap<>();
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private long rootHash;
+
+    public void startView() {
+      Frame parent = frames.peek();
+      String position;
+      if (parent == null) {
+        position = "0";
+      } else {
+        parent.sealViewHash();
+        position = parent.position + "." + parent.childCount;
+      }
+      frames.push(new Frame(position));
+    }
+
+    /** Adds a field of the current view, whose value is {@code value.subSequence(start, end)}. */
+    public void addField(String key, CharSequence value, int start, int end) {
+      Frame frame = frames.peek();
+      frame.viewHash = hash(hash(frame.viewHash, key, 0, key.length()), value, start, end);
+    }
+
+    public void addField(String key, String value) {
+      addField(key, value, 0, value.length());
+    }
+
+    public void endView() {
+      Frame frame = frames.pop();
+      frame.sealViewHash();
+      viewHashes.put(frame.position, frame.viewHash);
+      long subtreeHash = hash(frame.subtreeHash, frame.childCount);
+      Frame parent = frames.peek();
+      if (parent == null) {
+        rootHash = subtreeHash;
+      } else {
+        parent.subtreeHash = hash(parent.subtreeHash, subtreeHash);
+        parent.childCount++;
+      }
+    }
+
+    public ViewTreeHashes build() {
+      return new ViewTreeHashes(viewHashes, rootHash);
+    }
+  }
+
+  private static class Frame {
+    // "0" for the root and "0.2" for its third child
+    final String position;
+    long viewHash = FNV_OFFSET_BASIS;
+    long subtreeHash;
+    boolean isViewHashSealed;
+    int childCount;
+
+    Frame(String position) {
+      this.position = position;
+    }
+
+    // the fields of a view all come before its children
+    void sealViewHash() {
+      if (!isViewHashSealed) {
+        subtreeHash = hash(FNV_OFFSET_BASIS, viewHash);
+        isViewHashSealed = true;
+      }
+    }
+  }
+
+  private static long hash(long hash, CharSequence value, int start, int end) {
+    hash = hash(hash, end - start);
+    for (int i = start; i < end; i++) {
+      hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static long hash(long hash, long value) {
+    for (int i = 0; i < 8; i++) {
+      hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+      value >>>= 8;
+    }
+    return hash;
+  }
+}
@@ -27,7 +27,8 @@ import com.facebook.internal.FetchedAppSettings;
 import com.facebook.internal.FetchedAppSettingsManager;
 import com.facebook.internal.Utility;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -41,8 +42,9 @@ import org.json.JSONObject;
 public final class EventDeactivationManager {
 
   private static boolean enabled = false;
-  private static final List<DeprecatedParamFilter> deprecatedParamFilters = new ArrayList<>();
-  private static final Set<String> deprecatedEvents = new HashSet<>();
+  // event name -> deprecated params, replaced as a whole when settings are updated
+  private static volatile Map<String, Set<String>> deprecatedParams = Collections.emptyMap();
+  private static volatile Set<String> deprecatedEvents = Collections.emptySet();
 
   public static void enable() {
     enabled = true;
@@ -60,7 +62,8 @@ public final class EventDeactivationManager {
       if (!eventFilterResponse.isEmpty()) {
         JSONObject jsonObject = new JSONObject(eventFilterResponse);
 
-        deprecatedParamFilters.clear();
+        Map<String, Set<String>> newDeprecatedParams = new HashMap<>();
+        Set<String> newDeprecatedEvents = new HashSet<>();
 
         Iterator<String> keys = jsonObject.keys();
         while (keys.hasNext()) {
@@ -68,19 +71,19 @@ public final class EventDeactivationManager {
           JSONObject json = jsonObject.getJSONObject(key);
           if (json != null) {
             if (json.optBoolean("is_deprecated_event")) {
-              deprecatedEvents.add(key);
+              newDeprecatedEvents.add(key);
             } else {
               JSONArray deprecatedParamJsonArray = json.optJSONArray("deprecated_param");
-              DeprecatedParamFilter deprecatedParamFilter =
-                  new DeprecatedParamFilter(key, new ArrayList<String>());
-              if (deprecatedParamJsonArray != null) {
-                deprecatedParamFilter.deprecateParams =
-                    Utility.convertJSONArrayToList(deprecatedParamJsonArray);
+              if (deprecatedParamJsonArray != null && deprecatedParamJsonArray.length() > 0) {
+                newDeprecatedParams.put(
+                    key, new HashSet<>(Utility.convertJSONArrayToList(deprecatedParamJsonArray)));
               }
-              deprecatedParamFilters.add(deprecatedParamFilter);
             }
           }
         }
+
+        deprecatedParams = newDeprecatedParams;
+        deprecatedEvents = newDeprecatedEvents;
       }
     } catch (Exception e) {
       /* swallow */
@@ -105,28 +108,12 @@ public final class EventDeactivationManager {
     if (!enabled) {
       return;
     }
-    List<String> keys = new ArrayList<>(parameters.keySet());
-    List<DeprecatedParamFilter> deprecatedParamFiltersCopy =
-        new ArrayList<>(deprecatedParamFilters);
-    for (DeprecatedParamFilter filter : deprecatedParamFiltersCopy) {
-      if (!filter.eventName.equals(eventName)) {
-        continue;
-      }
-      for (String key : keys) {
-        if (filter.deprecateParams.contains(key)) {
-          parameters.remove(key);
-        }
-      }
+    Set<String> eventDeprecatedParams = deprecatedParams.get(eventName);
+    if (eventDeprecatedParams == null) {
+      return;
     }
-  }
-
-  static class DeprecatedParamFilter {
-    String eventName;
-    List<String> deprecateParams;
-
-    DeprecatedParamFilter(String eventName, List<String> deprecateParams) {
-      this.eventName = eventName;
-      this.deprecateParams = deprecateParams;
+    for (String param : eventDeprecatedParams) {
+      parameters.remove(param);
     }
   }
 }
@@ -20,14 +20,19 @@
 
 package com.facebook.appevents.integrity;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import com.facebook.FacebookSdk;
 import com.facebook.appevents.ml.ModelManager;
 import com.facebook.internal.FetchedAppGateKeepersManager;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 @AutoHandleExceptions
@@ -41,6 +46,17 @@ public final class IntegrityManager {
   private static boolean enabled = false;
   private static boolean isSampleEnabled = false;
 
+  // predictions of recently seen texts, least recently used first, for the model version below
+  private static final int MAX_CACHED_CHARS = 32 * 1024;
+  // rough per entry cost of the map entry and the two strings, in chars
+  private static final int CACHE_ENTRY_OVERHEAD_CHARS = 48;
+  private static final LinkedHashMap<String, String> predictionCache =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private static int cachedChars = 0;
+  private static int cachedVersionId = -1;
+  private static long cacheHitCount = 0;
+  private static long cacheMissCount = 0;
+
   public static void enable() {
     enabled = true;
     isSampleEnabled =
@@ -73,10 +89,73 @@ public final class IntegrityManager {
   }
 
   private static boolean shouldFilter(String input) {
-    String predictResult = getIntegrityPredictionResult(input);
+    int versionId = ModelManager.getVersionId(ModelManager.Task.MTML_INTEGRITY_DETECT);
+    String predictResult = getCachedPredictionResult(input, versionId);
+    if (predictResult == null) {
+      predictResult = getIntegrityPredictionResult(input);
+      cachePredictionResult(input, predictResult, versionId);
+    }
     return !INTEGRITY_TYPE_NONE.equals(predictResult);
   }
 
+  /**
+   * Returns the hit and miss counts of the prediction cache since the last model change, and how
+   * many texts it holds.
+   */
+  @Nullable
+  public static synchronized JSONObject getCacheMetrics() {
+    try {
+      JSONObject metrics = new JSONObject();
+      metrics.put("version_id", cachedVersionId);
+      metrics.put("hit_count", cacheHitCount);
+      metrics.put("miss_count", cacheMissCount);
+      metrics.put("cached_count", predictionCache.size());
+      return metrics;
+    } catch (JSONException e) {
+      return null;
+    }
+  }
+
+  @VisibleForTesting
+  static synchronized void clearCache() {
+    predictionCache.clear();
+    cachedChars = 0;
+    cacheHitCount = 0;
+    cacheMissCount = 0;
+  }
+
+  @Nullable
+  private static synchronized String getCachedPredictionResult(String textFeature, int versionId) {
+    if (versionId != cachedVersionId) {
+      // the predictions of another model no longer apply
+      clearCache();
+      cachedVersionId = versionId;
+    }
+    String predictResult = predictionCache.get(textFeature);
+    if (predictResult != null) {
+      cacheHitCount++;
+    } else {
+      cacheMissCount++;
+    }
+    return predictResult;
+  }
+
+  private static synchronized void cachePredictionResult(
+      String textFeature, String predictResult, int versionId) {
+    int entryChars = textFeature.length() + CACHE_ENTRY_OVERHEAD_CHARS;
+    if (versionId != cachedVersionId || entryChars > MAX_CACHED_CHARS) {
+      return;
+    }
+    if (predictionCache.put(textFeature, predictResult) == null) {
+      cachedChars += entryChars;
+    }
+    Iterator<String> iterator = predictionCache.keySet().iterator();
+    while (cachedChars > MAX_CACHED_CHARS && iterator.hasNext()) {
+      cachedChars -= iterator.next().length() + CACHE_ENTRY_OVERHEAD_CHARS;
+      iterator.remove();
+    }
+  }
+
   private static String getIntegrityPredictionResult(String textFeature) {
     float[] dense = new float[30];
     Arrays.fill(dense, 0);
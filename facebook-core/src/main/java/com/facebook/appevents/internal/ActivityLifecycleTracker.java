@@ -37,12 +37,13 @@ import com.facebook.internal.FeatureManager;
 import com.facebook.internal.FetchedAppSettings;
 import com.facebook.internal.FetchedAppSettingsManager;
 import com.facebook.internal.Logger;
+import com.facebook.internal.SdkExecutors;
 import com.facebook.internal.Utility;
+import com.facebook.internal.WriteBehindStore;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.lang.ref.WeakReference;
 import java.util.UUID;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -58,7 +59,7 @@ public class ActivityLifecycleTracker {
           + "activateApp from your Application's onCreate method";
   private static final long INTERRUPTION_THRESHOLD_MILLISECONDS = 1000;
   private static final ScheduledExecutorService singleThreadExecutor =
-      Executors.newSingleThreadScheduledExecutor();
+      SdkExecutors.getSerialLane("activity_lifecycle");
   private static volatile ScheduledFuture currentFuture;
   private static final Object currentFutureLock = new Object();
   private static AtomicInteger foregroundActivityCount = new AtomicInteger(0);
@@ -236,6 +237,9 @@ public class ActivityLifecycleTracker {
 
             currentSession.setSessionLastEventTime(currentTime);
             if (foregroundActivityCount.get() <= 0) {
+              // the process may be killed anytime from now on
+              WriteBehindStore.flushAll();
+
               // Schedule check to see if we still have 0 foreground
               // activities in our set time. This indicates that the app has
               // been backgrounded
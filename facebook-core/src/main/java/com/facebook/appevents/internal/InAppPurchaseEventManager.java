@@ -26,6 +26,7 @@ import android.os.Bundle;
 import android.os.IBinder;
 import androidx.annotation.Nullable;
 import com.facebook.FacebookSdk;
+import com.facebook.internal.SettingsStore;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.lang.reflect.InvocationTargetException;
@@ -82,11 +83,9 @@ class InAppPurchaseEventManager {
   private static final String SKU_DETAILS_STORE = "com.facebook.internal.SKU_DETAILS";
   private static final String PURCHASE_INAPP_STORE = "com.facebook.internal.PURCHASE";
   private static final SharedPreferences skuDetailSharedPrefs =
-      FacebookSdk.getApplicationContext()
-          .getSharedPreferences(SKU_DETAILS_STORE, Context.MODE_PRIVATE);
+      SettingsStore.getSharedPreferences(SKU_DETAILS_STORE);
   private static final SharedPreferences purchaseInappSharedPrefs =
-      FacebookSdk.getApplicationContext()
-          .getSharedPreferences(PURCHASE_INAPP_STORE, Context.MODE_PRIVATE);
+      SettingsStore.getSharedPreferences(PURCHASE_INAPP_STORE);
 
   @Nullable
   static Object asInterface(Context context, IBinder service) {
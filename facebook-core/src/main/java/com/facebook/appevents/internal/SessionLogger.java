@@ -33,6 +33,7 @@ import com.facebook.appevents.AppEventsConstants;
 import com.facebook.appevents.AppEventsLogger;
 import com.facebook.appevents.InternalAppEventsLogger;
 import com.facebook.internal.Logger;
+import com.facebook.internal.SettingsStore;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
@@ -43,6 +44,8 @@ import java.util.Locale;
 @AutoHandleExceptions
 class SessionLogger {
   private static final String PACKAGE_CHECKSUM = "PCKGCHKSUM";
+  private static final String PACKAGE_CHECKSUM_STORE =
+      "com.facebook.appevents.SessionLogger.PackageChecksum";
 
   private static final String TAG = SessionLogger.class.getCanonicalName();
 
@@ -152,7 +155,8 @@ class SessionLogger {
       String packageVersion = pm.getPackageInfo(context.getPackageName(), 0).versionName;
       String packageHashSharedPrefKey = PACKAGE_CHECKSUM + ";" + packageVersion;
       SharedPreferences preferences =
-          context.getSharedPreferences(FacebookSdk.APP_EVENT_PREFERENCES, Context.MODE_PRIVATE);
+          SettingsStore.getSharedPreferences(
+              PACKAGE_CHECKSUM_STORE, FacebookSdk.APP_EVENT_PREFERENCES, packageHashSharedPrefKey);
       String packageHash = preferences.getString(packageHashSharedPrefKey, null);
       if (packageHash != null && packageHash.length() == 32) {
         return packageHash;
@@ -161,7 +165,8 @@ class SessionLogger {
       // Compute checksum and cache it.
       ApplicationInfo ai = pm.getApplicationInfo(context.getPackageName(), 0);
       packageHash = HashUtils.computeChecksum(ai.sourceDir);
-      preferences.edit().putString(packageHashSharedPrefKey, packageHash).apply();
+      // only the checksum of the current version is kept
+      preferences.edit().clear().putString(packageHashSharedPrefKey, packageHash).apply();
       return packageHash;
     } catch (Exception e) {
       return null;
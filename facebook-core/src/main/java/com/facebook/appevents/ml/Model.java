@@ -25,8 +25,6 @@ import static com.facebook.appevents.ml.ModelManager.Task.*;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
-import com.facebook.internal.qualityvalidation.Excuse;
-import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -41,7 +39,6 @@ import java.util.Set;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-@ExcusesForDesignViolations(@Excuse(type = "MISSING_UNIT_TEST", reason = "Legacy"))
 @AutoHandleExceptions
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public final class Model {
@@ -91,7 +88,50 @@ public final class Model {
   }
 
   @Nullable
-  public MTensor predictOnMTML(MTensor dense, String[] texts, String task) {
+  public MTensor predictOnMTML(final MTensor dense, final String[] texts, String task) {
+    final MTensor fc3_weight = final_weights.get(task + ".weight");
+    final MTensor fc3_bias = final_weights.get(task + ".bias");
+    if (fc3_weight == null || fc3_bias == null) {
+      return null;
+    }
+
+    final int n_examples = texts.length;
+    if (n_examples < ModelExecutor.MIN_PARALLEL_EXAMPLES || ModelExecutor.getParallelism() <= 1) {
+      return predictOnMTML(dense, texts, fc3_weight, fc3_bias);
+    }
+
+    // Examples are independent, so each thread runs the whole network on a slice of the batch
+    final int dense_size = dense.getShape(1);
+    final MTensor[] partials = new MTensor[n_examples];
+    ModelExecutor.forkJoin(
+        n_examples,
+        new ModelExecutor.RangeTask() {
+          @Override
+          public void run(int start, int end) {
+            MTensor dense_slice = new MTensor(new int[] {end - start, dense_size});
+            System.arraycopy(
+                dense.getData(),
+                start * dense_size,
+                dense_slice.getData(),
+                0,
+                (end - start) * dense_size);
+            String[] texts_slice = Arrays.copyOfRange(texts, start, end);
+            partials[start] = predictOnMTML(dense_slice, texts_slice, fc3_weight, fc3_bias);
+          }
+        });
+
+    int output_size = partials[0].getShape(1);
+    MTensor res = new MTensor(new int[] {n_examples, output_size});
+    for (int start = 0; start < n_examples; start += partials[start].getShape(0)) {
+      MTensor partial = partials[start];
+      System.arraycopy(
+          partial.getData(), 0, res.getData(), start * output_size, partial.getData().length);
+    }
+    return res;
+  }
+
+  private MTensor predictOnMTML(
+      MTensor dense, String[] texts, MTensor fc3_weight, MTensor fc3_bias) {
     MTensor embed_x = Operator.embedding(texts, SEQ_LEN, embedding);
 
     MTensor c0 = Operator.conv1D(embed_x, convs_0_weight);
@@ -122,18 +162,48 @@ public final class Model {
     MTensor dense2_x = Operator.dense(dense1_x, fc2_weight, fc2_bias);
     Operator.relu(dense2_x);
 
-    MTensor fc3_weight = final_weights.get(task + ".weight");
-    MTensor fc3_bias = final_weights.get(task + ".bias");
-    if (fc3_weight == null || fc3_bias == null) {
-      return null;
-    }
-
     MTensor res = Operator.dense(dense2_x, fc3_weight, fc3_bias);
     Operator.softmax(res);
 
     return res;
   }
 
+  /**
+   * Runs every task head of the model once on an empty input, to catch truncated or corrupted
+   * weights before the model is published.
+   */
+  boolean validate() {
+    try {
+      int dense_size =
+          fc1_weight.getShape(0)
+              - convs_0_bias.getShape(0)
+              - convs_1_bias.getShape(0)
+              - convs_2_bias.getShape(0);
+      if (dense_size < 0 || final_weights.isEmpty()) {
+        return false;
+      }
+      MTensor dense = new MTensor(new int[] {1, dense_size});
+      for (String key : final_weights.keySet()) {
+        if (!key.endsWith(".weight")) {
+          continue;
+        }
+        String task = key.substring(0, key.length() - ".weight".length());
+        MTensor res = predictOnMTML(dense, new String[] {""}, task);
+        if (res == null) {
+          return false;
+        }
+        for (float value : res.getData()) {
+          if (Float.isNaN(value) || Float.isInfinite(value)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
   @Nullable
   public static Model build(File file) {
     Map<String, MTensor> weights = parse(file);
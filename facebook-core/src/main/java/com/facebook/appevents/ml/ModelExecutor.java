@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.appevents.ml;
+
+import androidx.annotation.VisibleForTesting;
+import com.facebook.internal.SdkExecutors;
+import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Small bounded fork/join helper used by {@link Model} and {@link Operator} to spread independent
+ * work (examples of a batch, output channels of a layer) across a few threads of the SDK CPU pool.
+ * Work submitted from a thread that is already executing a forked range runs inline, so nested
+ * calls never wait on the pool they occupy.
+ */
+@AutoHandleExceptions
+final class ModelExecutor {
+
+  interface RangeTask {
+    void run(int start, int end);
+  }
+
+  static final int MAX_THREAD_COUNT = 4;
+  static final int MIN_PARALLEL_EXAMPLES = 2;
+  // multiply-adds below which splitting a conv layer costs more than it saves
+  static final long MIN_PARALLEL_CONV_OPS = 1 << 20;
+
+  private static final ThreadLocal<Boolean> isForked = new ThreadLocal<>();
+  private static int threadCount =
+      Math.max(1, Math.min(MAX_THREAD_COUNT, Runtime.getRuntime().availableProcessors()));
+
+  private ModelExecutor() {}
+
+  static synchronized int getThreadCount() {
+    return threadCount;
+  }
+
+  @VisibleForTesting
+  static synchronized void setThreadCount(int count) {
+    threadCount = Math.max(1, Math.min(MAX_THREAD_COUNT, count));
+  }
+
+  static int getParallelism() {
+    if (Boolean.TRUE.equals(isForked.get())) {
+      return 1;
+    }
+    return getThreadCount();
+  }
+
+  /**
+   * Splits [0, total) into at most {@link #getParallelism()} contiguous ranges and runs them
+   * concurrently, the first one on the calling thread. Returns once every range has completed.
+   * Ranges must write to disjoint outputs; a range whose worker failed is re-run on the caller.
+   */
+  static void forkJoin(int total, final RangeTask task) {
+    int chunks = Math.min(getParallelism(), total);
+    if (chunks <= 1) {
+      task.run(0, total);
+      return;
+    }
+
+    ExecutorService service = SdkExecutors.getCpuExecutor();
+    int chunkSize = (total + chunks - 1) / chunks;
+    List<int[]> ranges = new ArrayList<>();
+    List<Future<?>> futures = new ArrayList<>();
+    for (int start = chunkSize; start < total; start += chunkSize) {
+      final int rangeStart = start;
+      final int rangeEnd = Math.min(total, start + chunkSize);
+      Future<?> future = null;
+      try {
+        future =
+            service.submit(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    runForked(task, rangeStart, rangeEnd);
+                  }
+                });
+      } catch (RejectedExecutionException e) {
+        /* no op */
+      }
+      ranges.add(new int[] {rangeStart, rangeEnd});
+      futures.add(future);
+    }
+
+    runForked(task, 0, Math.min(total, chunkSize));
+
+    boolean interrupted = false;
+    for (int i = 0; i < futures.size(); i++) {
+      Future<?> future = futures.get(i);
+      boolean done = false;
+      if (future != null) {
+        try {
+          future.get();
+          done = true;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          /* no op */
+        }
+      }
+      if (!done) {
+        int[] range = ranges.get(i);
+        runForked(task, range[0], range[1]);
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void runForked(RangeTask task, int start, int end) {
+    Boolean previous = isForked.get();
+    isForked.set(true);
+    try {
+      task.run(start, end);
+    } finally {
+      isForked.set(previous);
+    }
+  }
+}
@@ -23,9 +23,11 @@ package com.facebook.appevents.ml;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
 import com.facebook.FacebookSdk;
 import com.facebook.GraphRequest;
 import com.facebook.appevents.AppEventsConstants;
@@ -36,22 +38,26 @@ import com.facebook.appevents.suggestedevents.ViewOnClickListener;
 import com.facebook.internal.FeatureManager;
 import com.facebook.internal.Utility;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
-import com.facebook.internal.qualityvalidation.Excuse;
-import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
+import com.facebook.internal.logging.monitor.Monitor;
+import com.facebook.internal.logging.monitor.PerformanceEventName;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-@ExcusesForDesignViolations(@Excuse(type = "MISSING_UNIT_TEST", reason = "Legacy"))
 @AutoHandleExceptions
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public final class ModelManager {
@@ -95,6 +101,13 @@ public final class ModelManager {
   private static final String RULES_URI_KEY = "rules_uri";
   private static final String THRESHOLD_KEY = "thresholds";
 
+  private static final String METRICS_VERSION_ID = "version_id";
+  private static final String METRICS_PREVIOUS_VERSION_ID = "previous_version_id";
+  private static final String METRICS_LOAD_TIME = "load_time_ms";
+  private static final String METRICS_PREDICTION_COUNT = "prediction_count";
+  private static final String METRICS_PREDICTION_TIME = "prediction_time_ns";
+  private static final String METRICS_VERSIONS = "versions";
+
   private static final Integer MODEL_REQUEST_INTERVAL_MILLISECONDS = 1000 * 60 * 60 * 24 * 3;
   private static final String CACHE_KEY_REQUEST_TIMESTAMP = "model_request_timestamp";
 
@@ -166,6 +179,11 @@ public final class ModelManager {
         if (handler == null) {
           continue;
         }
+        // keep serving the loaded model until the new version has been downloaded and validated
+        TaskHandler existing = mTaskHandlers.get(handler.useCase);
+        if (existing != null) {
+          handler.inheritSlots(existing);
+        }
         mTaskHandlers.put(handler.useCase, handler);
       }
     } catch (JSONException je) {
@@ -286,17 +304,84 @@ public final class ModelManager {
   @Nullable
   public static File getRuleFile(Task task) {
     TaskHandler handler = mTaskHandlers.get(task.toUseCase());
-    if (handler == null) {
+    ModelSlot slot = handler == null ? null : handler.slot;
+    if (slot == null) {
+      return null;
+    }
+
+    return slot.ruleFile;
+  }
+
+  /**
+   * Switches the task back to the model it used before the latest swap. Calling it again rolls
+   * forward to the newer model.
+   *
+   * @return true if there was a previous model to switch to
+   */
+  public static boolean rollback(Task task) {
+    TaskHandler handler = mTaskHandlers.get(task.toUseCase());
+    return handler != null && handler.rollback();
+  }
+
+  /**
+   * Returns the version, load time and prediction latency of the model currently serving the
+   * task, or null if no model is loaded. The latency of the previous model, if any, is reported
+   * under its version in {@code versions}, next to the current one, so that it can be compared
+   * across a swap or a rollback.
+   */
+  @Nullable
+  public static JSONObject getMetrics(Task task) {
+    return getMetrics(mTaskHandlers.get(task.toUseCase()));
+  }
+
+  @VisibleForTesting
+  @Nullable
+  static JSONObject getMetrics(@Nullable TaskHandler handler) {
+    ModelSlot slot = handler == null ? null : handler.slot;
+    if (slot == null) {
       return null;
     }
+    try {
+      JSONObject metrics = new JSONObject();
+      JSONObject versions = new JSONObject();
+      metrics.put(METRICS_VERSION_ID, slot.versionId);
+      versions.put(String.valueOf(slot.versionId), getSlotMetrics(slot));
+      ModelSlot previousSlot = handler.previousSlot;
+      if (previousSlot != null) {
+        metrics.put(METRICS_PREVIOUS_VERSION_ID, previousSlot.versionId);
+        versions.put(String.valueOf(previousSlot.versionId), getSlotMetrics(previousSlot));
+      }
+      metrics.put(METRICS_LOAD_TIME, slot.loadTimeMillis);
+      metrics.put(METRICS_PREDICTION_COUNT, slot.predictionCount.get());
+      metrics.put(METRICS_PREDICTION_TIME, slot.predictionTimeNanos.get());
+      metrics.put(METRICS_VERSIONS, versions);
+      return metrics;
+    } catch (JSONException e) {
+      return null;
+    }
+  }
+
+  private static JSONObject getSlotMetrics(ModelSlot slot) throws JSONException {
+    JSONObject metrics = new JSONObject();
+    metrics.put(METRICS_LOAD_TIME, slot.loadTimeMillis);
+    metrics.put(METRICS_PREDICTION_COUNT, slot.predictionCount.get());
+    metrics.put(METRICS_PREDICTION_TIME, slot.predictionTimeNanos.get());
+    return metrics;
+  }
 
-    return handler.ruleFile;
+  /** Returns the version of the model currently serving the task, or -1 if no model is loaded. */
+  public static int getVersionId(Task task) {
+    TaskHandler handler = mTaskHandlers.get(task.toUseCase());
+    ModelSlot slot = handler == null ? null : handler.slot;
+    return slot == null ? -1 : slot.versionId;
   }
 
   @Nullable
   public static String[] predict(Task task, float[][] denses, String[] texts) {
     TaskHandler handler = mTaskHandlers.get(task.toUseCase());
-    if (handler == null || handler.model == null) {
+    // read the slot once, so model and thresholds always come from the same version
+    ModelSlot slot = handler == null ? null : handler.slot;
+    if (slot == null) {
       return null;
     }
 
@@ -307,8 +392,19 @@ public final class ModelManager {
       System.arraycopy(denses[n], 0, dense.getData(), n * dense_size, dense_size);
     }
 
-    MTensor res = handler.model.predictOnMTML(dense, texts, task.toKey());
-    float[] thresholds = handler.thresholds;
+    boolean isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.MODEL_PREDICT);
+    long startTime = System.nanoTime();
+    MTensor res;
+    try {
+      res = slot.model.predictOnMTML(dense, texts, task.toKey());
+      slot.predictionCount.incrementAndGet();
+      slot.predictionTimeNanos.addAndGet(System.nanoTime() - startTime);
+    } finally {
+      if (isMeasured) {
+        Monitor.stopMeasurePerfFor(PerformanceEventName.MODEL_PREDICT);
+      }
+    }
+    float[] thresholds = slot.thresholds;
     if (res == null || thresholds == null || res.getData().length == 0 || thresholds.length == 0) {
       return null;
     }
@@ -366,14 +462,46 @@ public final class ModelManager {
     return result;
   }
 
-  private static class TaskHandler {
+  /**
+   * An immutable, validated model version together with the thresholds and rules it was shipped
+   * with. Slots are only ever published whole, so readers never see a half-loaded model.
+   */
+  @VisibleForTesting
+  static final class ModelSlot {
+    final int versionId;
+    final Model model;
+    @Nullable final float[] thresholds;
+    @Nullable final File modelFile;
+    @Nullable final File ruleFile;
+    final long loadTimeMillis;
+    final AtomicLong predictionCount = new AtomicLong(0);
+    final AtomicLong predictionTimeNanos = new AtomicLong(0);
+
+    ModelSlot(
+        int versionId,
+        Model model,
+        @Nullable float[] thresholds,
+        @Nullable File modelFile,
+        @Nullable File ruleFile,
+        long loadTimeMillis) {
+      this.versionId = versionId;
+      this.model = model;
+      this.thresholds = thresholds;
+      this.modelFile = modelFile;
+      this.ruleFile = ruleFile;
+      this.loadTimeMillis = loadTimeMillis;
+    }
+  }
+
+  @VisibleForTesting
+  static class TaskHandler {
     String useCase;
     String assetUri;
     @Nullable String ruleUri;
     int versionId;
     @Nullable float[] thresholds;
-    File ruleFile;
-    @Nullable Model model;
+    @Nullable volatile ModelSlot slot;
+    @Nullable volatile ModelSlot previousSlot;
     private Runnable onPostExecute;
 
     TaskHandler(
@@ -394,6 +522,31 @@ public final class ModelManager {
       return this;
     }
 
+    synchronized void inheritSlots(TaskHandler other) {
+      synchronized (other) {
+        slot = other.slot;
+        previousSlot = other.previousSlot;
+      }
+    }
+
+    synchronized void publish(ModelSlot newSlot) {
+      ModelSlot currentSlot = slot;
+      if (currentSlot != null && currentSlot.versionId != newSlot.versionId) {
+        previousSlot = currentSlot;
+      }
+      slot = newSlot;
+    }
+
+    synchronized boolean rollback() {
+      ModelSlot currentSlot = slot;
+      if (previousSlot == null) {
+        return false;
+      }
+      slot = previousSlot;
+      previousSlot = currentSlot;
+      return true;
+    }
+
     @Nullable
     static TaskHandler build(@Nullable JSONObject json) {
       if (json == null) {
@@ -415,41 +568,63 @@ public final class ModelManager {
       execute(handler, Collections.singletonList(handler));
     }
 
-    static void execute(TaskHandler master, final List<TaskHandler> slaves) {
-      deleteOldFiles(master.useCase, master.versionId);
-
+    static void execute(final TaskHandler master, final List<TaskHandler> slaves) {
       String modelFileName = master.useCase + "_" + master.versionId;
       download(
           master.assetUri,
           modelFileName,
           new FileDownloadTask.Callback() {
             @Override
-            public void onComplete(File file) {
-              final Model model = Model.build(file);
-              if (model != null) {
-                for (final TaskHandler slave : slaves) {
-                  String ruleFileName = slave.useCase + "_" + slave.versionId + "_rule";
-                  download(
-                      slave.ruleUri,
-                      ruleFileName,
-                      new FileDownloadTask.Callback() {
-                        @Override
-                        public void onComplete(File file) {
-                          slave.model = model;
-                          slave.ruleFile = file;
-                          if (slave.onPostExecute != null) {
-                            slave.onPostExecute.run();
-                          }
+            public void onComplete(final File modelFile) {
+              long startTime = SystemClock.elapsedRealtime();
+              final Model model = Model.build(modelFile);
+              if (model == null || !model.validate()) {
+                // corrupted download, keep the current model and fetch the file again next time
+                modelFile.delete();
+                return;
+              }
+              final long loadTimeMillis = SystemClock.elapsedRealtime() - startTime;
+              final AtomicInteger pendingSlaves = new AtomicInteger(slaves.size());
+              for (final TaskHandler slave : slaves) {
+                String ruleFileName = slave.useCase + "_" + slave.versionId + "_rule";
+                download(
+                    slave.ruleUri,
+                    ruleFileName,
+                    new FileDownloadTask.Callback() {
+                      @Override
+                      public void onComplete(File ruleFile) {
+                        slave.publish(
+                            new ModelSlot(
+                                slave.versionId,
+                                model,
+                                slave.thresholds,
+                                modelFile,
+                                ruleFile,
+                                loadTimeMillis));
+                        if (slave.onPostExecute != null) {
+                          slave.onPostExecute.run();
                         }
-                      });
-                }
+                        if (pendingSlaves.decrementAndGet() == 0) {
+                          // only once every slot is published, and never the files of a slot
+                          // that can still be served or rolled back to
+                          List<TaskHandler> handlers = new ArrayList<>(slaves);
+                          handlers.addAll(mTaskHandlers.values());
+                          deleteOldFiles(Utils.getMlDir(), master, handlers);
+                        }
+                      }
+                    });
               }
             }
           });
     }
 
-    private static void deleteOldFiles(String useCase, int versionId) {
-      File dir = Utils.getMlDir();
+    /**
+     * Deletes the files of the older versions of the use case of {@code master}, except the files
+     * of the versions the handlers are downloading and of their current and previous slots.
+     */
+    @VisibleForTesting
+    static void deleteOldFiles(
+        @Nullable File dir, TaskHandler master, Collection<TaskHandler> handlers) {
       if (dir == null) {
         return;
       }
@@ -457,15 +632,45 @@ public final class ModelManager {
       if (existingFiles == null || existingFiles.length == 0) {
         return;
       }
-      String prefixWithVersion = useCase + "_" + versionId;
+      Set<String> keptPrefixes = new HashSet<>();
+      Set<String> keptNames = new HashSet<>();
+      keptPrefixes.add(master.useCase + "_" + master.versionId);
+      for (TaskHandler handler : handlers) {
+        keptPrefixes.add(handler.useCase + "_" + handler.versionId);
+        addFileNames(keptNames, handler.slot);
+        addFileNames(keptNames, handler.previousSlot);
+      }
       for (File f : existingFiles) {
         String name = f.getName();
-        if (name.startsWith(useCase) && !name.startsWith(prefixWithVersion)) {
+        if (name.startsWith(master.useCase)
+            && !keptNames.contains(name)
+            && !startsWithAny(name, keptPrefixes)) {
           f.delete();
         }
       }
     }
 
+    private static void addFileNames(Set<String> names, @Nullable ModelSlot slot) {
+      if (slot == null) {
+        return;
+      }
+      if (slot.modelFile != null) {
+        names.add(slot.modelFile.getName());
+      }
+      if (slot.ruleFile != null) {
+        names.add(slot.ruleFile.getName());
+      }
+    }
+
+    private static boolean startsWithAny(String name, Set<String> prefixes) {
+      for (String prefix : prefixes) {
+        if (name.startsWith(prefix)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
     private static void download(String uri, String name, FileDownloadTask.Callback onComplete) {
       File file = new File(Utils.getMlDir(), name);
       if (uri == null || file.exists()) {
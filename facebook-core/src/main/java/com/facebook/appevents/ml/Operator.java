@@ -158,16 +158,15 @@ final class Operator {
     MTensor y = new MTensor(new int[] {n_examples, seq_len, embedding_size});
     float[] y_data = y.getData();
     float[] w_data = w.getData();
+    int[] vectorize_text = new int[seq_len];
 
+    int desPos = 0;
     for (int i = 0; i < n_examples; i++) {
-      int[] vectorize_text = Utils.vectorize(texts[i], seq_len);
+      Utils.vectorize(texts[i], vectorize_text, 0, seq_len);
       for (int j = 0; j < seq_len; j++) {
         System.arraycopy(
-            w_data,
-            vectorize_text[j] * embedding_size,
-            y_data,
-            embedding_size * seq_len * i + embedding_size * j,
-            embedding_size);
+            w_data, vectorize_text[j] * embedding_size, y_data, desPos, embedding_size);
+        desPos += embedding_size;
       }
     }
     return y;
@@ -207,19 +206,93 @@ final class Operator {
   }
 
   static MTensor conv1D(MTensor x, MTensor w) {
-    int n_examples = x.getShape(0);
-    int input_seq_len = x.getShape(1);
-    int input_size = x.getShape(2);
-    int kernel_size = w.getShape(0);
-    int output_seq_len = input_seq_len - kernel_size + 1;
-    int output_size = w.getShape(2);
+    final int n_examples = x.getShape(0);
+    final int input_seq_len = x.getShape(1);
+    final int input_size = x.getShape(2);
+    final int kernel_size = w.getShape(0);
+    final int output_seq_len = input_seq_len - kernel_size + 1;
+    final int output_size = w.getShape(2);
     MTensor y = new MTensor(new int[] {n_examples, output_seq_len, output_size});
-    float[] x_data = x.getData();
-    float[] y_data = y.getData();
-    float[] w_data = w.getData();
+    final float[] x_data = x.getData();
+    final float[] y_data = y.getData();
+    final float[] w_data = w.getData();
 
-    for (int n = 0; n < n_examples; n++) {
-      for (int o = 0; o < output_size; o++) {
+    long ops = (long) n_examples * output_seq_len * output_size * kernel_size * input_size;
+    int parallelism = ModelExecutor.getParallelism();
+    if (parallelism <= 1 || ops < ModelExecutor.MIN_PARALLEL_CONV_OPS) {
+      conv1D(
+          x_data,
+          w_data,
+          y_data,
+          input_seq_len,
+          input_size,
+          kernel_size,
+          output_size,
+          0,
+          n_examples,
+          0,
+          output_size);
+    } else if (n_examples >= parallelism) {
+      // split the batch by example
+      ModelExecutor.forkJoin(
+          n_examples,
+          new ModelExecutor.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+              conv1D(
+                  x_data,
+                  w_data,
+                  y_data,
+                  input_seq_len,
+                  input_size,
+                  kernel_size,
+                  output_size,
+                  start,
+                  end,
+                  0,
+                  output_size);
+            }
+          });
+    } else {
+      // too few examples to keep every thread busy, split by output channel instead
+      ModelExecutor.forkJoin(
+          output_size,
+          new ModelExecutor.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+              conv1D(
+                  x_data,
+                  w_data,
+                  y_data,
+                  input_seq_len,
+                  input_size,
+                  kernel_size,
+                  output_size,
+                  0,
+                  n_examples,
+                  start,
+                  end);
+            }
+          });
+    }
+    return y;
+  }
+
+  private static void conv1D(
+      float[] x_data,
+      float[] w_data,
+      float[] y_data,
+      int input_seq_len,
+      int input_size,
+      int kernel_size,
+      int output_size,
+      int n_start,
+      int n_end,
+      int o_start,
+      int o_end) {
+    int output_seq_len = input_seq_len - kernel_size + 1;
+    for (int n = n_start; n < n_end; n++) {
+      for (int o = o_start; o < o_end; o++) {
         for (int i = 0; i < output_seq_len; i++) {
           float sum = 0;
           for (int m = 0; m < kernel_size; m++) {
@@ -233,7 +306,6 @@ final class Operator {
         }
       }
     }
-    return y;
   }
 
   static MTensor maxPool1D(MTensor x, int pool_size) {
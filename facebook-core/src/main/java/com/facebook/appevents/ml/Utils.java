@@ -20,16 +20,12 @@
 
 package com.facebook.appevents.ml;
 
-import android.text.TextUtils;
 import androidx.annotation.Nullable;
 import com.facebook.FacebookSdk;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
-import com.facebook.internal.qualityvalidation.Excuse;
-import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.io.File;
-import java.nio.charset.Charset;
+import java.util.Arrays;
 
-@ExcusesForDesignViolations(@Excuse(type = "MISSING_UNIT_TEST", reason = "Legacy"))
 @AutoHandleExceptions
 public class Utils {
 
@@ -37,23 +33,76 @@ public class Utils {
 
   static int[] vectorize(final String texts, int maxLen) {
     int[] ret = new int[maxLen];
-    String normalizedStr = normalizeString(texts);
-    byte[] strBytes = normalizedStr.getBytes(Charset.forName("UTF-8"));
-    for (int i = 0; i < maxLen; i++) {
-      if (i < strBytes.length) {
-        ret[i] = strBytes[i] & 0xFF;
+    vectorize(texts, ret, 0, maxLen);
+    return ret;
+  }
+
+  /**
+   * Writes the UTF-8 bytes of the normalized text into {@code buffer} starting at {@code offset},
+   * truncated or zero padded to {@code maxLen}. The text is normalized the way the model was
+   * trained, {@code TextUtils.join(" ", text.trim().split("\\s+"))}, in the same single pass that
+   * encodes it, without intermediate strings or byte arrays.
+   */
+  static void vectorize(final String text, int[] buffer, int offset, int maxLen) {
+    int start = 0;
+    int end = text.length();
+    // same as String.trim()
+    while (start < end && text.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && text.charAt(end - 1) <= ' ') {
+      end--;
+    }
+
+    int pos = offset;
+    int limit = offset + maxLen;
+    boolean inWhitespace = false;
+    for (int i = start; i < end && pos < limit; i++) {
+      char c = text.charAt(i);
+      if (isWhitespace(c)) {
+        // a run of whitespace becomes a single space
+        if (!inWhitespace) {
+          buffer[pos++] = ' ';
+          inWhitespace = true;
+        }
+        continue;
+      }
+      inWhitespace = false;
+      if (c < 0x80) {
+        buffer[pos++] = c;
+      } else if (c < 0x800) {
+        pos = put(buffer, pos, limit, 0xC0 | (c >> 6));
+        pos = put(buffer, pos, limit, 0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < end
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+        pos = put(buffer, pos, limit, 0xF0 | (codePoint >> 18));
+        pos = put(buffer, pos, limit, 0x80 | ((codePoint >> 12) & 0x3F));
+        pos = put(buffer, pos, limit, 0x80 | ((codePoint >> 6) & 0x3F));
+        pos = put(buffer, pos, limit, 0x80 | (codePoint & 0x3F));
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        // unpaired surrogates are replaced the same way String.getBytes does
+        buffer[pos++] = '?';
       } else {
-        ret[i] = 0;
+        pos = put(buffer, pos, limit, 0xE0 | (c >> 12));
+        pos = put(buffer, pos, limit, 0x80 | ((c >> 6) & 0x3F));
+        pos = put(buffer, pos, limit, 0x80 | (c & 0x3F));
       }
     }
-    return ret;
+    Arrays.fill(buffer, pos, limit, 0);
   }
 
-  static String normalizeString(final String str) {
-    String trim = str.trim();
-    String[] strArray = trim.split("\\s+");
-    String joinedString = TextUtils.join(" ", strArray);
-    return joinedString;
+  // the characters matched by \s in a regex
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+  }
+
+  private static int put(int[] buffer, int pos, int limit, int value) {
+    if (pos < limit) {
+      buffer[pos++] = value;
+    }
+    return pos;
   }
 
   @Nullable
@@ -20,21 +20,18 @@
 
 package com.facebook.appevents.restrictivedatafilter;
 
-import android.util.Log;
-import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import com.facebook.FacebookSdk;
 import com.facebook.internal.FetchedAppSettings;
 import com.facebook.internal.FetchedAppSettingsManager;
 import com.facebook.internal.Utility;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -44,8 +41,10 @@ public final class RestrictiveDataManager {
 
   private static boolean enabled = false;
   private static final String TAG = RestrictiveDataManager.class.getCanonicalName();
-  private static final List<RestrictiveParamFilter> restrictiveParamFilters = new ArrayList<>();
-  private static final Set<String> restrictedEvents = new CopyOnWriteArraySet<>();
+  // event name -> restrictive param -> rule type, replaced as a whole when settings are updated
+  private static volatile Map<String, Map<String, String>> restrictiveParamRules =
+      Collections.emptyMap();
+  private static volatile Set<String> restrictedEvents = Collections.emptySet();
   private static final String REPLACEMENT_STRING = "_removed_";
   private static final String PROCESS_EVENT_NAME = "process_event_name";
   private static final String RESTRICTIVE_PARAM = "restrictive_param";
@@ -70,8 +69,8 @@ public final class RestrictiveDataManager {
       }
       JSONObject restrictiveData = new JSONObject(restrictiveDataSetting);
 
-      restrictiveParamFilters.clear();
-      restrictedEvents.clear();
+      Map<String, Map<String, String>> newRestrictiveParamRules = new HashMap<>();
+      Set<String> newRestrictedEvents = new HashSet<>();
 
       Iterator<String> keys = restrictiveData.keys();
       while (keys.hasNext()) {
@@ -79,18 +78,18 @@ public final class RestrictiveDataManager {
         JSONObject filteredValues = restrictiveData.getJSONObject(key);
         if (filteredValues != null) {
           JSONObject restrictiveParamJson = filteredValues.optJSONObject(RESTRICTIVE_PARAM);
-          RestrictiveParamFilter restrictiveParamFilter =
-              new RestrictiveParamFilter(key, new HashMap<String, String>());
           if (restrictiveParamJson != null) {
-            restrictiveParamFilter.restrictiveParams =
-                Utility.convertJSONObjectToStringMap(restrictiveParamJson);
-            restrictiveParamFilters.add(restrictiveParamFilter);
+            newRestrictiveParamRules.put(
+                key, Utility.convertJSONObjectToStringMap(restrictiveParamJson));
           }
           if (filteredValues.has(PROCESS_EVENT_NAME)) {
-            restrictedEvents.add(restrictiveParamFilter.eventName);
+            newRestrictedEvents.add(key);
           }
         }
       }
+
+      restrictiveParamRules = newRestrictiveParamRules;
+      restrictedEvents = newRestrictedEvents;
     } catch (Exception e) {
       /* swallow */
     }
@@ -107,15 +106,19 @@ public final class RestrictiveDataManager {
     if (!enabled) {
       return;
     }
+    Map<String, String> paramRules = restrictiveParamRules.get(eventName);
+    if (paramRules == null) {
+      return;
+    }
 
     Map<String, String> restrictedParams = new HashMap<>();
-    List<String> keys = new ArrayList<>(parameters.keySet());
-
-    for (String key : keys) {
-      String type = RestrictiveDataManager.getMatchedRuleType(eventName, key);
+    Iterator<Map.Entry<String, String>> iterator = parameters.entrySet().iterator();
+    while (iterator.hasNext()) {
+      String key = iterator.next().getKey();
+      String type = paramRules.get(key);
       if (type != null) {
         restrictedParams.put(key, type);
-        parameters.remove(key);
+        iterator.remove();
       }
     }
 
@@ -133,41 +136,7 @@ public final class RestrictiveDataManager {
     }
   }
 
-  @Nullable
-  private static String getMatchedRuleType(String eventName, String paramKey) {
-    try {
-      List<RestrictiveParamFilter> restrictiveParamFiltersCopy =
-          new ArrayList<>(restrictiveParamFilters);
-      for (RestrictiveParamFilter filter : restrictiveParamFiltersCopy) {
-        if (filter == null) { // sanity check
-          continue;
-        }
-
-        if (eventName.equals(filter.eventName)) {
-          for (String param : filter.restrictiveParams.keySet()) {
-            if (paramKey.equals(param)) {
-              return filter.restrictiveParams.get(param);
-            }
-          }
-        }
-      }
-    } catch (Exception e) {
-      Log.w(TAG, "getMatchedRuleType failed", e);
-    }
-    return null;
-  }
-
   private static boolean isRestrictedEvent(String eventName) {
     return restrictedEvents.contains(eventName);
   }
-
-  static class RestrictiveParamFilter {
-    String eventName;
-    Map<String, String> restrictiveParams;
-
-    RestrictiveParamFilter(String eventName, Map<String, String> restrictiveParams) {
-      this.eventName = eventName;
-      this.restrictiveParams = restrictiveParams;
-    }
-  }
 }
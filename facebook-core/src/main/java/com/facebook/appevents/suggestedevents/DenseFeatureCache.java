@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.appevents.suggestedevents;
+
+import static com.facebook.appevents.internal.ViewHierarchyConstants.CHILDREN_VIEW_KEY;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Per-screen memo of {@link FeatureExtractor} results keyed by a structural fingerprint of each
+ * view subtree. Only the subtrees that changed since the previous click of the same screen have
+ * their features recomputed; everything else is served from the previous pass.
+ */
+@AutoHandleExceptions
+final class DenseFeatureCache {
+  private static final int MAX_SCREEN_COUNT = 4;
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  // most views contribute nothing, so they all share this instead of keeping their own array
+  private static final float[] NO_FEATURES = new float[0];
+
+  private static final Map<String, DenseFeatureCache> caches =
+      new LinkedHashMap<String, DenseFeatureCache>(MAX_SCREEN_COUNT, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DenseFeatureCache> eldest) {
+          return size() > MAX_SCREEN_COUNT;
+        }
+      };
+
+  // features of subtrees seen in the previous and the ongoing pass
+  private Map<Long, float[]> previous = new HashMap<>();
+  private Map<Long, float[]> current = new HashMap<>();
+  private long formFieldsFingerprint;
+  @Nullable private float[] formFieldsFeatures;
+  private int recomputedCount;
+
+  static synchronized DenseFeatureCache forScreen(String screenName) {
+    DenseFeatureCache cache = caches.get(screenName);
+    if (cache == null) {
+      cache = new DenseFeatureCache();
+      caches.put(screenName, cache);
+    }
+    return cache;
+  }
+
+  static synchronized void clear() {
+    caches.clear();
+  }
+
+  /**
+   * Fingerprint of everything in the node, children included, so that two subtrees with the same
+   * fingerprint also serialize to the same JSON.
+   */
+  static long fingerprint(JSONObject node, @Nullable JSONArray children, long[] childFingerprints) {
+    long hash = FNV_OFFSET_BASIS;
+    Iterator<String> keys = node.keys();
+    while (keys.hasNext()) {
+      String key = keys.next();
+      hash = hash(hash, key);
+      if (CHILDREN_VIEW_KEY.equals(key) && children != null) {
+        hash = hash(hash, childFingerprints.length);
+        for (long childFingerprint : childFingerprints) {
+          hash = hash(hash, childFingerprint);
+        }
+      } else {
+        hash = hash(hash, String.valueOf(node.opt(key)));
+      }
+    }
+    return hash;
+  }
+
+  private static long hash(long hash, String value) {
+    hash = hash(hash, value.length());
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static long hash(long hash, long value) {
+    for (int i = 0; i < 8; i++) {
+      hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+      value >>>= 8;
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the cached features of a subtree, or null if it has to be computed. The result is
+   * shared and must not be modified; an empty array stands for all zeros.
+   */
+  @Nullable
+  float[] getParseFeatures(long fingerprint) {
+    float[] features = current.get(fingerprint);
+    if (features == null) {
+      features = previous.get(fingerprint);
+      if (features != null) {
+        current.put(fingerprint, features);
+      }
+    }
+    return features;
+  }
+
+  void putParseFeatures(long fingerprint, float[] features) {
+    recomputedCount++;
+    for (float feature : features) {
+      if (feature != 0) {
+        current.put(fingerprint, features);
+        return;
+      }
+    }
+    current.put(fingerprint, NO_FEATURES);
+  }
+
+  @Nullable
+  float[] getFormFieldsFeatures(long fingerprint) {
+    return formFieldsFeatures != null && formFieldsFingerprint == fingerprint
+        ? formFieldsFeatures
+        : null;
+  }
+
+  void putFormFieldsFeatures(long fingerprint, float[] features) {
+    formFieldsFingerprint = fingerprint;
+    formFieldsFeatures = features;
+  }
+
+  /** Drops the subtrees that were not part of the pass that just finished. */
+  void finishPass() {
+    previous = current;
+    current = new HashMap<>();
+  }
+
+  @VisibleForTesting
+  int getRecomputedCount() {
+    return recomputedCount;
+  }
+}
@@ -22,14 +22,18 @@ import static com.facebook.appevents.internal.ViewHierarchyConstants.*;
 
 import android.text.InputType;
 import androidx.annotation.Nullable;
+import com.facebook.internal.KeywordMatcher;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 import org.json.JSONArray;
@@ -54,21 +58,36 @@ final class FeatureExtractor {
   private static final String REGEX_ADD_TO_CART_PAGE_TITLE =
       "(?i)add to(\\s|\\Z)|update(\\s|\\Z)|cart|shop|buy";
 
+  private static final Rule CR_HAS_CONFIRM_PASSWORD_FIELD =
+      Rule.compile(REGEX_CR_HAS_CONFIRM_PASSWORD_FIELD);
+  private static final Rule CR_HAS_LOG_IN_KEYWORDS = Rule.compile(REGEX_CR_HAS_LOG_IN_KEYWORDS);
+  private static final Rule CR_HAS_SIGN_ON_KEYWORDS = Rule.compile(REGEX_CR_HAS_SIGN_ON_KEYWORDS);
+  private static final Rule ADD_TO_CART_BUTTON_TEXT = Rule.compile(REGEX_ADD_TO_CART_BUTTON_TEXT);
+  private static final Rule ADD_TO_CART_PAGE_TITLE = Rule.compile(REGEX_ADD_TO_CART_PAGE_TITLE);
+
+  private static final KeywordMatcher PRICE_INDICATORS =
+      KeywordMatcher.build("$", "amount", "price", "total");
+  private static final KeywordMatcher PASSWORD_INDICATORS = KeywordMatcher.build("password", "pwd");
+  private static final KeywordMatcher PHONE_INDICATORS = KeywordMatcher.build("tel", "phone");
+  private static final KeywordMatcher SEARCH_INDICATORS = KeywordMatcher.build("search");
+  private static final KeywordMatcher SUBMIT_INDICATORS =
+      KeywordMatcher.build("complete", "confirm", "done", "submit");
+
   private static Map<String, String> languageInfo;
   private static Map<String, String> eventInfo;
   private static Map<String, String> textTypeInfo;
-  private static JSONObject rules;
+  // positive rules from the rules file, compiled once and keyed by language, event and text type
+  private static Map<String, Rule> positiveRules;
   private static boolean initialized = false;
 
   static void initialize(File file) {
     try {
-      rules = new JSONObject();
       InputStream inputStream = new FileInputStream(file);
       int size = inputStream.available();
       byte[] buffer = new byte[size];
       inputStream.read(buffer);
       inputStream.close();
-      rules = new JSONObject(new String(buffer, "UTF-8"));
+      positiveRules = compileRules(new JSONObject(new String(buffer, "UTF-8")));
     } catch (Exception ex) {
       return;
     }
@@ -117,34 +136,60 @@ final class FeatureExtractor {
     }
     float[] ret = new float[NUM_OF_FEATURES];
     Arrays.fill(ret, 0);
-    try {
-      appName = appName.toLowerCase();
-      JSONObject viewTree =
-          new JSONObject(viewHierarchy.optJSONObject(VIEW_KEY).toString()); // copy
+    appName = appName.toLowerCase();
+    String screenName = viewHierarchy.optString(SCREEN_NAME_KEY);
+    JSONArray siblings = new JSONArray();
 
-      String screenName = viewHierarchy.optString(SCREEN_NAME_KEY);
-      JSONArray siblings = new JSONArray();
+    JSONObject viewTree = pruneTree(viewHierarchy.optJSONObject(VIEW_KEY), siblings);
+    JSONObject interactedNode = viewTree == null ? null : getInteractedNode(viewTree);
+    if (interactedNode == null) {
+      return null;
+    }
 
-      pruneTree(viewTree, siblings); // viewTree is updated here
-      float[] parseResult = parseFeatures(viewTree);
-      sum(ret, parseResult);
+    // unchanged subtrees keep their features from the previous click on this screen
+    DenseFeatureCache cache = DenseFeatureCache.forScreen(screenName);
+    synchronized (cache) {
+      long treeFingerprint = parseFeatures(viewTree, cache);
+      sum(ret, cache.getParseFeatures(treeFingerprint));
 
-      JSONObject interactedNode = getInteractedNode(viewTree);
-      if (interactedNode == null) {
-        return null;
-      }
       float[] nonparseFeatures =
-          nonparseFeatures(interactedNode, siblings, screenName, viewTree.toString(), appName);
+          nonparseFeatures(
+              interactedNode, siblings, screenName, viewTree, treeFingerprint, appName, cache);
       sum(ret, nonparseFeatures);
-      return ret;
-    } catch (JSONException je) {
-      /*no op*/
+      cache.finishPass();
     }
-
     return ret;
   }
 
-  private static float[] parseFeatures(JSONObject node) {
+  /**
+   * Computes the parse features of every subtree that is not in the cache yet and returns the
+   * fingerprint under which the features of {@code node} are cached.
+   */
+  private static long parseFeatures(JSONObject node, DenseFeatureCache cache) {
+    JSONArray childViews = node.optJSONArray(CHILDREN_VIEW_KEY);
+    int len = childViews == null ? 0 : childViews.length();
+    long[] childFingerprints = new long[len];
+    for (int i = 0; i < len; i++) {
+      JSONObject child = childViews.optJSONObject(i);
+      if (child != null) {
+        childFingerprints[i] = parseFeatures(child, cache);
+      }
+    }
+
+    long fingerprint = DenseFeatureCache.fingerprint(node, childViews, childFingerprints);
+    if (cache.getParseFeatures(fingerprint) == null) {
+      float[] densefeat = parseNodeFeatures(node);
+      for (int i = 0; i < len; i++) {
+        if (childViews.optJSONObject(i) != null) {
+          sum(densefeat, cache.getParseFeatures(childFingerprints[i]));
+        }
+      }
+      cache.putParseFeatures(fingerprint, densefeat);
+    }
+    return fingerprint;
+  }
+
+  private static float[] parseNodeFeatures(JSONObject node) {
     float[] densefeat = new float[NUM_OF_FEATURES];
     Arrays.fill(densefeat, 0);
     String text = node.optString(TEXT_KEY).toLowerCase();
@@ -154,19 +199,19 @@ final class FeatureExtractor {
 
     String[] textValues = new String[] {text, hint};
 
-    if (matchIndicators(new String[] {"$", "amount", "price", "total"}, textValues)) {
+    if (matchIndicators(PRICE_INDICATORS, textValues)) {
       densefeat[0] += 1.0;
     }
 
-    if (matchIndicators(new String[] {"password", "pwd"}, textValues)) {
+    if (matchIndicators(PASSWORD_INDICATORS, textValues)) {
       densefeat[1] += 1.0;
     }
 
-    if (matchIndicators(new String[] {"tel", "phone"}, textValues)) {
+    if (matchIndicators(PHONE_INDICATORS, textValues)) {
       densefeat[2] += 1.0;
     }
 
-    if (matchIndicators(new String[] {"search"}, textValues)) {
+    if (matchIndicators(SEARCH_INDICATORS, textValues)) {
       densefeat[4] += 1.0;
     }
 
@@ -191,8 +236,7 @@ final class FeatureExtractor {
       densefeat[8] += 1.0;
     }
 
-    if (matchIndicators(
-        new String[] {"complete", "confirm", "done", "submit"}, new String[] {text})) {
+    if (SUBMIT_INDICATORS.containsAny(text)) {
       densefeat[10] += 1.0;
     }
 
@@ -201,16 +245,6 @@ final class FeatureExtractor {
       densefeat[12] += 1.0;
     }
 
-    try {
-      JSONArray childViews = node.optJSONArray(CHILDREN_VIEW_KEY);
-      int len = childViews.length();
-      for (int i = 0; i < len; i++) {
-        sum(densefeat, parseFeatures(childViews.getJSONObject(i)));
-      }
-    } catch (JSONException je) {
-      /*no op*/
-    }
-
     return densefeat;
   }
 
@@ -218,8 +252,10 @@ final class FeatureExtractor {
       JSONObject node,
       JSONArray siblings,
       String screenName,
-      String formFieldsJSON,
-      String appName) {
+      JSONObject formFields,
+      long formFieldsFingerprint,
+      String appName,
+      DenseFeatureCache cache) {
 
     float[] densefeat = new float[NUM_OF_FEATURES];
     Arrays.fill(densefeat, 0);
@@ -253,20 +289,29 @@ final class FeatureExtractor {
     densefeat[16] = regexMatched(ENGLISH, COMPLETE_REGISTRATION, PAGE_TITLE, pageTitle) ? 1 : 0;
     densefeat[17] = regexMatched(ENGLISH, COMPLETE_REGISTRATION, BUTTON_ID, buttonID) ? 1 : 0;
 
-    // TODO: (T54293420) update the logic to include inputtype
-    densefeat[18] = formFieldsJSON.contains(REGEX_CR_PASSWORD_FIELD) ? 1 : 0;
-
-    densefeat[19] = regexMatched(REGEX_CR_HAS_CONFIRM_PASSWORD_FIELD, formFieldsJSON) ? 1 : 0;
-    densefeat[20] = regexMatched(REGEX_CR_HAS_LOG_IN_KEYWORDS, formFieldsJSON) ? 1 : 0;
-    densefeat[21] = regexMatched(REGEX_CR_HAS_SIGN_ON_KEYWORDS, formFieldsJSON) ? 1 : 0;
+    // the form fields only need to be serialized and scanned again when the pruned tree changed
+    float[] formFieldsFeatures = cache.getFormFieldsFeatures(formFieldsFingerprint);
+    if (formFieldsFeatures == null) {
+      String formFieldsJSON = formFields.toString();
+      formFieldsFeatures =
+          new float[] {
+            // TODO: (T54293420) update the logic to include inputtype
+            formFieldsJSON.contains(REGEX_CR_PASSWORD_FIELD) ? 1 : 0,
+            CR_HAS_CONFIRM_PASSWORD_FIELD.find(formFieldsJSON) ? 1 : 0,
+            CR_HAS_LOG_IN_KEYWORDS.find(formFieldsJSON) ? 1 : 0,
+            CR_HAS_SIGN_ON_KEYWORDS.find(formFieldsJSON) ? 1 : 0,
+          };
+      cache.putFormFieldsFeatures(formFieldsFingerprint, formFieldsFeatures);
+    }
+    System.arraycopy(formFieldsFeatures, 0, densefeat, 18, formFieldsFeatures.length);
 
     // [2] Purchase specific features
     densefeat[22] = regexMatched(ENGLISH, PURCHASE, BUTTON_TEXT, buttonText) ? 1 : 0;
     densefeat[24] = regexMatched(ENGLISH, PURCHASE, PAGE_TITLE, pageTitle) ? 1 : 0;
 
     // [3] AddToCart specific features
-    densefeat[25] = regexMatched(REGEX_ADD_TO_CART_BUTTON_TEXT, buttonText) ? 1 : 0;
-    densefeat[27] = regexMatched(REGEX_ADD_TO_CART_PAGE_TITLE, pageTitle) ? 1 : 0;
+    densefeat[25] = ADD_TO_CART_BUTTON_TEXT.find(buttonText) ? 1 : 0;
+    densefeat[27] = ADD_TO_CART_PAGE_TITLE.find(pageTitle) ? 1 : 0;
 
     // [4] Lead specific features
     // TODO: (T54293420) do we need to remove this part?
@@ -278,80 +323,119 @@ final class FeatureExtractor {
 
   private static boolean regexMatched(
       String language, String event, String textType, String matchText) {
-    String regex =
-        rules
-            .optJSONObject("rulesForLanguage")
-            .optJSONObject(languageInfo.get(language))
-            .optJSONObject("rulesForEvent")
-            .optJSONObject(eventInfo.get(event))
-            .optJSONObject("positiveRules")
-            .optString(textTypeInfo.get(textType));
-    return regexMatched(regex, matchText);
+    Rule rule =
+        positiveRules.get(
+            ruleKey(
+                languageInfo.get(language), eventInfo.get(event), textTypeInfo.get(textType)));
+    // a rule missing from an otherwise valid rules file is an empty regex, which always matches
+    return rule == null || rule.find(matchText);
   }
 
-  private static boolean regexMatched(String pattern, String matchText) {
-    return Pattern.compile(pattern).matcher(matchText).find();
+  private static Map<String, Rule> compileRules(JSONObject rules) {
+    Map<String, Rule> compiled = new HashMap<>();
+    JSONObject rulesForLanguage = rules.optJSONObject("rulesForLanguage");
+    if (rulesForLanguage == null) {
+      return compiled;
+    }
+    Iterator<String> languages = rulesForLanguage.keys();
+    while (languages.hasNext()) {
+      String language = languages.next();
+      JSONObject languageRules = rulesForLanguage.optJSONObject(language);
+      JSONObject rulesForEvent =
+          languageRules == null ? null : languageRules.optJSONObject("rulesForEvent");
+      if (rulesForEvent == null) {
+        continue;
+      }
+      Iterator<String> events = rulesForEvent.keys();
+      while (events.hasNext()) {
+        String event = events.next();
+        JSONObject eventRules = rulesForEvent.optJSONObject(event);
+        JSONObject eventPositiveRules =
+            eventRules == null ? null : eventRules.optJSONObject("positiveRules");
+        if (eventPositiveRules == null) {
+          continue;
+        }
+        Iterator<String> textTypes = eventPositiveRules.keys();
+        while (textTypes.hasNext()) {
+          String textType = textTypes.next();
+          compiled.put(
+              ruleKey(language, event, textType),
+              Rule.compile(eventPositiveRules.optString(textType)));
+        }
+      }
+    }
+    return compiled;
   }
 
-  private static boolean matchIndicators(String[] indicators, String[] values) {
-    for (String indicator : indicators) {
-      for (String value : values) {
-        if (value.contains(indicator)) {
-          return true;
-        }
+  private static String ruleKey(String language, String event, String textType) {
+    return language + "/" + event + "/" + textType;
+  }
+
+  private static boolean matchIndicators(KeywordMatcher indicators, String[] values) {
+    for (String value : values) {
+      if (indicators.containsAny(value)) {
+        return true;
       }
     }
 
     return false;
   }
 
-  private static boolean pruneTree(JSONObject node, JSONArray siblings) {
+  /**
+   * Returns the part of the tree leading to the interacted view, or null if it is not in this
+   * subtree. Nodes on the way are copied instead of pruned in place, so the given tree is left
+   * untouched and unchanged subtrees can be shared with it.
+   */
+  @Nullable
+  private static JSONObject pruneTree(JSONObject node, JSONArray siblings) {
     try {
       boolean isInteracted = node.optBoolean(IS_INTERACTED_KEY);
       if (isInteracted) {
-        return true;
+        return node;
       }
 
-      boolean isChildInteracted = false;
-      boolean isDescendantInteracted = false;
-
       JSONArray childViews = node.optJSONArray(CHILDREN_VIEW_KEY);
+      if (childViews == null) {
+        return null;
+      }
       for (int i = 0; i < childViews.length(); i++) {
         JSONObject child = childViews.getJSONObject(i);
         if (child.optBoolean(IS_INTERACTED_KEY)) {
-          isChildInteracted = true;
-          isDescendantInteracted = true;
-          break;
+          for (int j = 0; j < childViews.length(); j++) {
+            siblings.put(childViews.getJSONObject(j));
+          }
+          return node;
         }
       }
 
       JSONArray newChildren = new JSONArray();
-      if (isChildInteracted) {
-        for (int i = 0; i < childViews.length(); i++) {
-          JSONObject child = childViews.getJSONObject(i);
-          siblings.put(child);
-        }
-      } else {
-        for (int i = 0; i < childViews.length(); i++) {
-          JSONObject child = childViews.getJSONObject(i);
-          if (pruneTree(child, siblings)) {
-            isDescendantInteracted = true;
-            newChildren.put(child);
-          }
+      for (int i = 0; i < childViews.length(); i++) {
+        JSONObject child = pruneTree(childViews.getJSONObject(i), siblings);
+        if (child != null) {
+          newChildren.put(child);
         }
-        node.put(CHILDREN_VIEW_KEY, newChildren);
+      }
+      if (newChildren.length() == 0) {
+        return null;
       }
 
-      return isDescendantInteracted;
+      JSONObject prunedNode = new JSONObject();
+      Iterator<String> keys = node.keys();
+      while (keys.hasNext()) {
+        String key = keys.next();
+        prunedNode.put(key, CHILDREN_VIEW_KEY.equals(key) ? newChildren : node.get(key));
+      }
+      return prunedNode;
     } catch (JSONException je) {
       /*no op*/
     }
 
-    return false;
+    return null;
   }
 
+  // b may be shorter than a, cached parse features are empty when they are all zeros
   private static void sum(float[] a, float[] b) {
-    for (int i = 0; i < a.length; i++) {
+    for (int i = 0; i < b.length; i++) {
       a[i] = a[i] + b[i];
     }
   }
@@ -410,4 +494,55 @@ final class FeatureExtractor {
 
     return null;
   }
+
+  /**
+   * A regex from the rules, compiled once. Rules that are only an alternation of plain keywords,
+   * like {@code (?i)(sign in)|login|signIn}, are matched with a {@link KeywordMatcher} instead.
+   */
+  private static final class Rule {
+    private static final String CASE_INSENSITIVE_FLAG = "(?i)";
+    private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    @Nullable private final KeywordMatcher keywords;
+    @Nullable private final Pattern pattern;
+
+    private Rule(@Nullable KeywordMatcher keywords, @Nullable Pattern pattern) {
+      this.keywords = keywords;
+      this.pattern = pattern;
+    }
+
+    static Rule compile(String regex) {
+      List<String> alternatives = new ArrayList<>();
+      boolean ignoreCase = regex.startsWith(CASE_INSENSITIVE_FLAG);
+      String body = ignoreCase ? regex.substring(CASE_INSENSITIVE_FLAG.length()) : regex;
+      for (String alternative : body.split("\\|", -1)) {
+        if (alternative.length() > 2
+            && alternative.charAt(0) == '('
+            && alternative.charAt(alternative.length() - 1) == ')') {
+          alternative = alternative.substring(1, alternative.length() - 1);
+        }
+        if (!isLiteral(alternative)) {
+          return new Rule(null, Pattern.compile(regex));
+        }
+        alternatives.add(alternative);
+      }
+      return new Rule(KeywordMatcher.build(alternatives, ignoreCase), null);
+    }
+
+    boolean find(String text) {
+      return keywords != null ? keywords.containsAny(text) : pattern.matcher(text).find();
+    }
+
+    private static boolean isLiteral(String text) {
+      if (text.isEmpty()) {
+        return false;
+      }
+      for (int i = 0; i < text.length(); i++) {
+        if (REGEX_META_CHARACTERS.indexOf(text.charAt(i)) >= 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
 }
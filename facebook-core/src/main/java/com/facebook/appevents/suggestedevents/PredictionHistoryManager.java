@@ -23,17 +23,17 @@ package com.facebook.appevents.suggestedevents;
 import static com.facebook.appevents.internal.ViewHierarchyConstants.CLASS_NAME_KEY;
 import static com.facebook.appevents.internal.ViewHierarchyConstants.TEXT_KEY;
 
-import android.content.Context;
 import android.content.SharedPreferences;
 import android.view.View;
 import androidx.annotation.Nullable;
-import com.facebook.FacebookSdk;
 import com.facebook.appevents.codeless.internal.ViewHierarchy;
+import com.facebook.internal.SettingsStore;
 import com.facebook.internal.Utility;
+import com.facebook.internal.WriteBehindStore;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.json.JSONArray;
@@ -43,21 +43,38 @@ import org.json.JSONObject;
 @ExcusesForDesignViolations(@Excuse(type = "MISSING_UNIT_TEST", reason = "Legacy"))
 @AutoHandleExceptions
 final class PredictionHistoryManager {
-  private static final Map<String, String> clickedViewPaths = new HashMap<>();
+  private static final int MAX_HISTORY_SIZE = 1000;
+  // least recently clicked paths first, guarded by the class lock
+  private static final Map<String, String> clickedViewPaths =
+      new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > MAX_HISTORY_SIZE;
+        }
+      };
   private static final String SUGGESTED_EVENTS_HISTORY = "SUGGESTED_EVENTS_HISTORY";
   private static final String CLICKED_PATH_STORE = "com.facebook.internal.SUGGESTED_EVENTS_HISTORY";
-  private static SharedPreferences shardPreferences;
+  private static WriteBehindStore store;
   private static final AtomicBoolean initialized = new AtomicBoolean(false);
 
-  private static void initAndWait() {
+  private static final WriteBehindStore.ValueProvider historyProvider =
+      new WriteBehindStore.ValueProvider() {
+        @Override
+        public String getValue() {
+          synchronized (PredictionHistoryManager.class) {
+            return Utility.mapToJsonStr(clickedViewPaths);
+          }
+        }
+      };
+
+  private static synchronized void initAndWait() {
     if (initialized.get()) {
       return;
     }
-    shardPreferences =
-        FacebookSdk.getApplicationContext()
-            .getSharedPreferences(CLICKED_PATH_STORE, Context.MODE_PRIVATE);
+    SharedPreferences sharedPreferences = SettingsStore.getSharedPreferences(CLICKED_PATH_STORE);
     clickedViewPaths.putAll(
-        Utility.JsonStrToMap(shardPreferences.getString(SUGGESTED_EVENTS_HISTORY, "")));
+        Utility.JsonStrToMap(sharedPreferences.getString(SUGGESTED_EVENTS_HISTORY, "")));
+    store = new WriteBehindStore(sharedPreferences);
     initialized.set(true);
   }
 
@@ -66,11 +83,11 @@ final class PredictionHistoryManager {
       initAndWait();
     }
 
-    clickedViewPaths.put(pathID, predictedEvent);
-    shardPreferences
-        .edit()
-        .putString(SUGGESTED_EVENTS_HISTORY, Utility.mapToJsonStr(clickedViewPaths))
-        .apply();
+    synchronized (PredictionHistoryManager.class) {
+      clickedViewPaths.put(pathID, predictedEvent);
+    }
+    // outside of the class lock, which the store takes while holding its own
+    store.markDirty(SUGGESTED_EVENTS_HISTORY, historyProvider);
   }
 
   @Nullable
@@ -91,7 +108,7 @@ final class PredictionHistoryManager {
   }
 
   @Nullable
-  static String queryEvent(String pathID) {
-    return clickedViewPaths.containsKey(pathID) ? clickedViewPaths.get(pathID) : null;
+  static synchronized String queryEvent(String pathID) {
+    return clickedViewPaths.get(pathID);
   }
 }
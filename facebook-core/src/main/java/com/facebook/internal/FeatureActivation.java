@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * com.facebook.internal is solely for the use of other packages within the Facebook SDK for
+ * Android. Use of any of the classes in this package is unsupported, and they may be modified or
+ * removed without warning at any time.
+ *
+ * <p>Lazy activation of the optional SDK subsystems. With lazy activation enabled, {@code
+ * FacebookSdk.sdkInitialize} registers the start function of each subsystem here instead of
+ * starting it. The subsystem is then started the first time its API is used, through {@link
+ * #activate}, or, for subsystems without an API of their own, as soon as the gatekeepers show its
+ * feature enabled. That is checked when the cached gatekeepers are loaded, expired or not, and
+ * again after every fetch.
+ */
+@AutoHandleExceptions
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class FeatureActivation {
+
+  private static final Map<FeatureManager.Feature, Runnable> pendingActivations =
+      new ConcurrentHashMap<>();
+  private static final Set<FeatureManager.Feature> gateKeeperActivations =
+      Collections.newSetFromMap(new ConcurrentHashMap<FeatureManager.Feature, Boolean>());
+
+  private FeatureActivation() {}
+
+  /**
+   * Registers the start function of a subsystem, to be run once the feature is activated and
+   * enabled.
+   *
+   * @param feature the feature of the subsystem
+   * @param activateOnGateKeeper whether to also activate the feature when the gatekeepers are
+   *     updated and it is enabled
+   * @param start starts the subsystem
+   */
+  public static void register(
+      FeatureManager.Feature feature, boolean activateOnGateKeeper, Runnable start) {
+    pendingActivations.put(feature, start);
+    if (activateOnGateKeeper) {
+      gateKeeperActivations.add(feature);
+    }
+  }
+
+  /**
+   * Starts the subsystem of the feature if it was registered and hasn't been started yet, and the
+   * feature is enabled. This is cheap once every registered feature has been activated, so it can
+   * be called on every use of the subsystem API.
+   */
+  public static void activate(FeatureManager.Feature feature) {
+    if (pendingActivations.isEmpty()) {
+      return;
+    }
+    final Runnable start = pendingActivations.remove(feature);
+    if (start == null) {
+      return;
+    }
+    gateKeeperActivations.remove(feature);
+    FeatureManager.checkFeature(
+        feature,
+        new FeatureManager.Callback() {
+          @Override
+          public void onCompleted(boolean enabled) {
+            if (enabled) {
+              start.run();
+            }
+          }
+        });
+  }
+
+  public static boolean isPending(FeatureManager.Feature feature) {
+    return pendingActivations.containsKey(feature);
+  }
+
+  /** Starts the pending subsystems whose feature the current gatekeepers enable. */
+  static void onGateKeepersUpdated() {
+    for (FeatureManager.Feature feature : gateKeeperActivations) {
+      if (!FeatureManager.isEnabled(feature)) {
+        // checked again the next time the gatekeepers are fetched
+        continue;
+      }
+      gateKeeperActivations.remove(feature);
+      Runnable start = pendingActivations.remove(feature);
+      if (start != null) {
+        start.run();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static void reset() {
+    pendingActivations.clear();
+    gateKeeperActivations.clear();
+  }
+}
@@ -20,7 +20,6 @@
 
 package com.facebook.internal;
 
-import android.content.Context;
 import androidx.annotation.RestrictTo;
 import com.facebook.FacebookSdk;
 import java.util.HashMap;
@@ -58,9 +57,7 @@ public final class FeatureManager {
     }
 
     String version =
-        FacebookSdk.getApplicationContext()
-            .getSharedPreferences(FEATURE_MANAGER_STORE, Context.MODE_PRIVATE)
-            .getString(feature.toKey(), null);
+        SettingsStore.getSharedPreferences(FEATURE_MANAGER_STORE).getString(feature.toKey(), null);
     if (version != null && version.equals(FacebookSdk.getSdkVersion())) {
       return false;
     }
@@ -74,8 +71,7 @@ public final class FeatureManager {
   }
 
   public static void disableFeature(Feature feature) {
-    FacebookSdk.getApplicationContext()
-        .getSharedPreferences(FEATURE_MANAGER_STORE, Context.MODE_PRIVATE)
+    SettingsStore.getSharedPreferences(FEATURE_MANAGER_STORE)
         .edit()
         .putString(feature.toKey(), FacebookSdk.getSdkVersion())
         .apply();
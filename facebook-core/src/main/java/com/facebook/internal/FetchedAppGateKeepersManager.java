@@ -29,8 +29,11 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import com.facebook.FacebookSdk;
 import com.facebook.GraphRequest;
+import com.facebook.internal.logging.monitor.Monitor;
+import com.facebook.internal.logging.monitor.PerformanceEventName;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -53,6 +56,8 @@ public final class FetchedAppGateKeepersManager {
       "com.facebook.internal.preferences.APP_GATEKEEPERS";
   private static final String APP_GATEKEEPERS_PREFS_KEY_FORMAT =
       "com.facebook.internal.APP_GATEKEEPERS.%s";
+  private static final String APP_GATEKEEPERS_PREFS_TIMESTAMP_KEY_FORMAT =
+      "com.facebook.internal.APP_GATEKEEPERS_TIMESTAMP.%s";
   private static final String APP_PLATFORM = "android";
   private static final String APPLICATION_GATEKEEPER_EDGE = "mobile_sdk_gk";
   private static final String APPLICATION_GATEKEEPER_FIELD = "gatekeepers";
@@ -66,7 +71,7 @@ public final class FetchedAppGateKeepersManager {
   private static final Map<String, JSONObject> fetchedAppGateKeepers = new ConcurrentHashMap<>();
 
   private static final long APPLICATION_GATEKEEPER_CACHE_TIMEOUT = 60 * 60 * 1000;
-  private static @Nullable Long timestamp;
+  private static volatile @Nullable Long timestamp;
 
   static void loadAppGateKeepersAsync() {
     loadAppGateKeepersAsync(null);
@@ -84,27 +89,23 @@ public final class FetchedAppGateKeepersManager {
 
     final Context context = FacebookSdk.getApplicationContext();
     final String applicationId = FacebookSdk.getApplicationId();
-    final String gateKeepersKey = String.format(APP_GATEKEEPERS_PREFS_KEY_FORMAT, applicationId);
 
     if (context == null) {
       return;
     }
 
-    // See if we had a cached copy of gatekeepers and use that immediately
-    SharedPreferences gateKeepersSharedPrefs =
-        context.getSharedPreferences(APP_GATEKEEPERS_PREFS_STORE, Context.MODE_PRIVATE);
-    String gateKeepersJSONString = gateKeepersSharedPrefs.getString(gateKeepersKey, null);
-
-    if (!Utility.isNullOrEmpty(gateKeepersJSONString)) {
-      JSONObject gateKeepersJSON = null;
-      try {
-        gateKeepersJSON = new JSONObject(gateKeepersJSONString);
-      } catch (JSONException je) {
-        Utility.logd(Utility.LOG_TAG, je);
-      }
-      if (gateKeepersJSON != null) {
-        parseAppGateKeepersFromJSON(applicationId, gateKeepersJSON);
-      }
+    // See if we had a cached copy of gatekeepers and use that immediately. It's only parsed the
+    // first time, and doesn't need to be fetched again while it's not expired.
+    if (!fetchedAppGateKeepers.containsKey(applicationId)
+        && loadCachedAppGateKeepers(applicationId)
+        && isTimestampValid(timestamp)) {
+      pollCallbacks();
+      return;
+    }
+
+    // An expired copy is passed to the callbacks right away and revalidated in the background
+    if (fetchedAppGateKeepers.containsKey(applicationId)) {
+      pollCallbacks();
     }
 
     Executor executor = FacebookSdk.getExecutor();
@@ -120,18 +121,8 @@ public final class FetchedAppGateKeepersManager {
         new Runnable() {
           @Override
           public void run() {
-            JSONObject gateKeepersResultJSON = getAppGateKeepersQueryResponse(applicationId);
-            if (gateKeepersResultJSON != null) {
-              parseAppGateKeepersFromJSON(applicationId, gateKeepersResultJSON);
-
-              SharedPreferences gateKeepersSharedPrefs =
-                  context.getSharedPreferences(APP_GATEKEEPERS_PREFS_STORE, Context.MODE_PRIVATE);
-              gateKeepersSharedPrefs
-                  .edit()
-                  .putString(gateKeepersKey, gateKeepersResultJSON.toString())
-                  .apply();
-              // Update timestamp only when the GKs are successfully fetched and stored
-              timestamp = System.currentTimeMillis();
+            if (refreshAppGateKeepers(applicationId) != null) {
+              FeatureActivation.onGateKeepersUpdated();
             }
             pollCallbacks();
             isLoading.set(false);
@@ -139,6 +130,98 @@ public final class FetchedAppGateKeepersManager {
         });
   }
 
+  /**
+   * Parses the copy of the gatekeepers cached on disk, along with the time it was fetched.
+   *
+   * @return true if there was a cached copy
+   */
+  private static boolean loadCachedAppGateKeepers(final String applicationId) {
+    SharedPreferences gateKeepersSharedPrefs =
+        SettingsStore.getSharedPreferences(APP_GATEKEEPERS_PREFS_STORE);
+    String gateKeepersJSONString =
+        gateKeepersSharedPrefs.getString(
+            String.format(APP_GATEKEEPERS_PREFS_KEY_FORMAT, applicationId), null);
+    if (Utility.isNullOrEmpty(gateKeepersJSONString)) {
+      return false;
+    }
+
+    JSONObject gateKeepersJSON;
+    try {
+      gateKeepersJSON = new JSONObject(gateKeepersJSONString);
+    } catch (JSONException je) {
+      Utility.logd(Utility.LOG_TAG, je);
+      return false;
+    }
+    parseAppGateKeepersFromJSON(applicationId, gateKeepersJSON);
+
+    long cachedTimestamp =
+        gateKeepersSharedPrefs.getLong(
+            String.format(APP_GATEKEEPERS_PREFS_TIMESTAMP_KEY_FORMAT, applicationId), 0);
+    if (cachedTimestamp > 0) {
+      timestamp = cachedTimestamp;
+    }
+
+    // The cached copy is served until it's refreshed, expired or not, so the features it enables
+    // are started now rather than after a fetch that may never succeed
+    Executor executor = FacebookSdk.getExecutor();
+    if (executor != null) {
+      executor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              FeatureActivation.onGateKeepersUpdated();
+            }
+          });
+    }
+    return true;
+  }
+
+  // Note that this method makes a synchronous Graph API call, so should not be called from the
+  // main thread.
+  @Nullable
+  private static JSONObject refreshAppGateKeepers(final String applicationId) {
+    Long cachedTimestamp = timestamp;
+    if (cachedTimestamp != null) {
+      Monitor.recordPerfFor(
+          PerformanceEventName.APP_GATEKEEPERS_CACHE_AGE, getCacheAge(cachedTimestamp));
+    }
+
+    boolean isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.APP_GATEKEEPERS_REFRESH);
+    JSONObject gateKeepersResultJSON;
+    try {
+      gateKeepersResultJSON = getAppGateKeepersQueryResponse(applicationId);
+    } finally {
+      if (isMeasured) {
+        Monitor.stopMeasurePerfFor(PerformanceEventName.APP_GATEKEEPERS_REFRESH);
+      }
+    }
+    if (gateKeepersResultJSON == null) {
+      return null;
+    }
+
+    // The gatekeepers are served without an ETag, so an unchanged response is recognized by
+    // comparing it with the cached copy, and then doesn't need to be parsed or written again.
+    SharedPreferences gateKeepersSharedPrefs =
+        SettingsStore.getSharedPreferences(APP_GATEKEEPERS_PREFS_STORE);
+    SharedPreferences.Editor editor = gateKeepersSharedPrefs.edit();
+    String gateKeepersKey = String.format(APP_GATEKEEPERS_PREFS_KEY_FORMAT, applicationId);
+    String gateKeepersJSONString = gateKeepersResultJSON.toString();
+    JSONObject result = fetchedAppGateKeepers.get(applicationId);
+    if (result == null
+        || !gateKeepersJSONString.equals(gateKeepersSharedPrefs.getString(gateKeepersKey, null))) {
+      result = parseAppGateKeepersFromJSON(applicationId, gateKeepersResultJSON);
+      editor.putString(gateKeepersKey, gateKeepersJSONString);
+    }
+
+    // Update timestamp only when the GKs are successfully fetched and stored
+    long now = System.currentTimeMillis();
+    editor
+        .putLong(String.format(APP_GATEKEEPERS_PREFS_TIMESTAMP_KEY_FORMAT, applicationId), now)
+        .apply();
+    timestamp = now;
+    return result;
+  }
+
   private static void pollCallbacks() {
     final Handler handler = new Handler(Looper.getMainLooper());
 
@@ -167,19 +250,7 @@ public final class FetchedAppGateKeepersManager {
       return fetchedAppGateKeepers.get(applicationId);
     }
 
-    JSONObject response = getAppGateKeepersQueryResponse(applicationId);
-    if (response == null) {
-      return null;
-    }
-
-    final Context context = FacebookSdk.getApplicationContext();
-    final String gateKeepersKey = String.format(APP_GATEKEEPERS_PREFS_KEY_FORMAT, applicationId);
-
-    SharedPreferences gateKeepersSharedPrefs =
-        context.getSharedPreferences(APP_GATEKEEPERS_PREFS_STORE, Context.MODE_PRIVATE);
-    gateKeepersSharedPrefs.edit().putString(gateKeepersKey, response.toString()).apply();
-
-    return parseAppGateKeepersFromJSON(applicationId, response);
+    return refreshAppGateKeepers(applicationId);
   }
 
   public static boolean getGateKeeperForKey(
@@ -211,11 +282,19 @@ public final class FetchedAppGateKeepersManager {
 
   private static synchronized JSONObject parseAppGateKeepersFromJSON(
       final String applicationId, JSONObject gateKeepersJSON) {
-    JSONObject result;
-    if (fetchedAppGateKeepers.containsKey(applicationId)) {
-      result = fetchedAppGateKeepers.get(applicationId);
-    } else {
-      result = new JSONObject();
+    // Readers may hold the previous snapshot, so the update goes into a copy of it that replaces it
+    JSONObject result = new JSONObject();
+    JSONObject previous = fetchedAppGateKeepers.get(applicationId);
+    if (previous != null) {
+      Iterator<String> keys = previous.keys();
+      while (keys.hasNext()) {
+        String key = keys.next();
+        try {
+          result.put(key, previous.get(key));
+        } catch (JSONException je) {
+          Utility.logd(Utility.LOG_TAG, je);
+        }
+      }
     }
     JSONArray arr = gateKeepersJSON.optJSONArray(APPLICATION_GRAPH_DATA);
     JSONObject gateKeepers = null;
@@ -246,6 +325,10 @@ public final class FetchedAppGateKeepersManager {
     return System.currentTimeMillis() - timestamp < APPLICATION_GATEKEEPER_CACHE_TIMEOUT;
   }
 
+  private static int getCacheAge(long timestamp) {
+    return (int) Math.min(Math.max(System.currentTimeMillis() - timestamp, 0), Integer.MAX_VALUE);
+  }
+
   /** Callback for fetch GK when the GK results are valid. */
   public interface Callback {
     /** The method that will be called when the GK request completes. */
@@ -36,25 +36,25 @@ import org.json.JSONObject;
  */
 @ExcusesForDesignViolations(@Excuse(type = "MISSING_UNIT_TEST", reason = "Legacy"))
 public final class FetchedAppSettings {
-  private boolean supportsImplicitLogging;
-  private String nuxContent;
-  private boolean nuxEnabled;
-  private int sessionTimeoutInSeconds;
-  private EnumSet<SmartLoginOption> smartLoginOptions;
-  private Map<String, Map<String, DialogFeatureConfig>> dialogConfigMap;
-  private boolean automaticLoggingEnabled;
-  private FacebookRequestErrorClassification errorClassification;
-  private String smartLoginBookmarkIconURL;
-  private String smartLoginMenuIconURL;
-  private boolean IAPAutomaticLoggingEnabled;
-  private boolean codelessEventsEnabled;
-  private String sdkUpdateMessage;
-  private JSONArray eventBindings;
-  private boolean trackUninstallEnabled;
-  private boolean monitorViaDialogEnabled;
-  @Nullable private String rawAamRules;
-  @Nullable private String suggestedEventsSetting;
-  @Nullable private String restrictiveDataSetting;
+  private final boolean supportsImplicitLogging;
+  private final String nuxContent;
+  private final boolean nuxEnabled;
+  private final int sessionTimeoutInSeconds;
+  private final EnumSet<SmartLoginOption> smartLoginOptions;
+  private final Map<String, Map<String, DialogFeatureConfig>> dialogConfigMap;
+  private final boolean automaticLoggingEnabled;
+  private final FacebookRequestErrorClassification errorClassification;
+  private final String smartLoginBookmarkIconURL;
+  private final String smartLoginMenuIconURL;
+  private final boolean IAPAutomaticLoggingEnabled;
+  private final boolean codelessEventsEnabled;
+  private final String sdkUpdateMessage;
+  private final JSONArray eventBindings;
+  private final boolean trackUninstallEnabled;
+  private final boolean monitorViaDialogEnabled;
+  @Nullable private final String rawAamRules;
+  @Nullable private final String suggestedEventsSetting;
+  @Nullable private final String restrictiveDataSetting;
 
   public FetchedAppSettings(
       boolean supportsImplicitLogging,
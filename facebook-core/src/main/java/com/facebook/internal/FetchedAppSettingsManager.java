@@ -25,7 +25,6 @@ import static com.facebook.internal.FetchedAppSettingsManager.FetchAppSettingSta
 import static com.facebook.internal.FetchedAppSettingsManager.FetchAppSettingState.NOT_LOADED;
 import static com.facebook.internal.FetchedAppSettingsManager.FetchAppSettingState.SUCCESS;
 
-import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.Handler;
@@ -40,6 +39,8 @@ import com.facebook.appevents.internal.AutomaticAnalyticsLogger;
 import com.facebook.appevents.internal.Constants;
 import com.facebook.appevents.internal.InAppPurchaseActivityLifecycleTracker;
 import com.facebook.core.BuildConfig;
+import com.facebook.internal.logging.monitor.Monitor;
+import com.facebook.internal.logging.monitor.PerformanceEventName;
 import com.facebook.internal.qualityvalidation.Excuse;
 import com.facebook.internal.qualityvalidation.ExcusesForDesignViolations;
 import java.util.ArrayList;
@@ -118,8 +119,15 @@ public final class FetchedAppSettingsManager {
       };
   private static final String APPLICATION_FIELDS = "fields";
 
+  private static final String APP_SETTINGS_PREFS_TIMESTAMP_KEY_FORMAT =
+      "com.facebook.internal.APP_SETTINGS_TIMESTAMP.%s";
+  private static final long APP_SETTINGS_CACHE_TIMEOUT = 60 * 60 * 1000;
+
   private static final Map<String, FetchedAppSettings> fetchedAppSettings =
       new ConcurrentHashMap<>();
+  // when the snapshot of each application id was fetched from the network
+  private static final Map<String, Long> fetchedAppSettingsTimestamps = new ConcurrentHashMap<>();
+  private static final Map<String, Boolean> refreshingApplicationIds = new ConcurrentHashMap<>();
   private static final AtomicReference<FetchAppSettingState> loadingState =
       new AtomicReference<>(NOT_LOADED);
   private static final ConcurrentLinkedQueue<FetchedAppSettingsCallback>
@@ -131,7 +139,6 @@ public final class FetchedAppSettingsManager {
   @Nullable private static JSONArray unityEventBindings = null;
 
   public static void loadAppSettingsAsync() {
-    final Context context = FacebookSdk.getApplicationContext();
     final String applicationId = FacebookSdk.getApplicationId();
 
     if (Utility.isNullOrEmpty(applicationId)) {
@@ -139,8 +146,10 @@ public final class FetchedAppSettingsManager {
       pollCallbacks();
       return;
     } else if (fetchedAppSettings.containsKey(applicationId)) {
+      // Callbacks get the snapshot right away, even if it has expired and is being revalidated
       loadingState.set(SUCCESS);
       pollCallbacks();
+      refreshAppSettingsAsyncIfExpired(applicationId);
       return;
     }
 
@@ -153,35 +162,31 @@ public final class FetchedAppSettingsManager {
       return;
     }
 
-    final String settingsKey = String.format(APP_SETTINGS_PREFS_KEY_FORMAT, applicationId);
+    refreshingApplicationIds.put(applicationId, true);
 
     FacebookSdk.getExecutor()
         .execute(
             new Runnable() {
               @Override
               public void run() {
-                // See if we had a cached copy and use that immediately.
-                SharedPreferences sharedPrefs =
-                    context.getSharedPreferences(APP_SETTINGS_PREFS_STORE, Context.MODE_PRIVATE);
-                String settingsJSONString = sharedPrefs.getString(settingsKey, null);
-                FetchedAppSettings appSettings = null;
-                if (!Utility.isNullOrEmpty(settingsJSONString)) {
-                  JSONObject settingsJSON = null;
-                  try {
-                    settingsJSON = new JSONObject(settingsJSONString);
-                  } catch (JSONException je) {
-                    Utility.logd(Utility.LOG_TAG, je);
-                  }
-                  if (settingsJSON != null) {
-                    appSettings = parseAppSettingsFromJSON(applicationId, settingsJSON);
+                FetchedAppSettings appSettings;
+                try {
+                  // See if we had a cached copy and use that immediately, the network is only
+                  // queried when it's missing or has expired.
+                  appSettings = getCachedAppSettings(applicationId);
+                  if (appSettings != null) {
+                    loadingState.set(SUCCESS);
+                    pollCallbacks();
                   }
-                }
-
-                JSONObject resultJSON = getAppSettingsQueryResponse(applicationId);
-                if (resultJSON != null) {
-                  parseAppSettingsFromJSON(applicationId, resultJSON);
 
-                  sharedPrefs.edit().putString(settingsKey, resultJSON.toString()).apply();
+                  if (!isTimestampValid(fetchedAppSettingsTimestamps.get(applicationId))) {
+                    FetchedAppSettings refreshedAppSettings = refreshAppSettings(applicationId);
+                    if (refreshedAppSettings != null) {
+                      appSettings = refreshedAppSettings;
+                    }
+                  }
+                } finally {
+                  refreshingApplicationIds.remove(applicationId);
                 }
 
                 // Print log to notify developers to upgrade SDK when version is too old
@@ -196,7 +201,7 @@ public final class FetchedAppSettingsManager {
                 }
 
                 // Fetch GateKeepers
-                FetchedAppGateKeepersManager.queryAppGateKeepers(applicationId, true);
+                FetchedAppGateKeepersManager.loadAppGateKeepersAsync();
 
                 // Start log activate & deactivate app events, in case autoLogAppEvents flag is set
                 AutomaticAnalyticsLogger.logActivateAppEvent();
@@ -218,7 +223,8 @@ public final class FetchedAppSettingsManager {
 
   /**
    * Run callback with app settings if available. It is possible that app settings take a while to
-   * load due to latency or it is requested too early in the application lifecycle.
+   * load due to latency or it is requested too early in the application lifecycle. A copy cached
+   * from an earlier run is passed right away, even if it has expired and is being revalidated.
    *
    * @param callback Callback to be run after app settings are available
    */
@@ -273,18 +279,21 @@ public final class FetchedAppSettingsManager {
   @Nullable
   public static FetchedAppSettings queryAppSettings(
       final String applicationId, final boolean forceRequery) {
-    // Cache the last app checked results.
-    if (!forceRequery && fetchedAppSettings.containsKey(applicationId)) {
-      return fetchedAppSettings.get(applicationId);
+    // Cache the last app checked results. An expired copy is still returned and revalidated in the
+    // background, only a missing one is waited for.
+    if (!forceRequery) {
+      FetchedAppSettings appSettings = getCachedAppSettings(applicationId);
+      if (appSettings != null) {
+        refreshAppSettingsAsyncIfExpired(applicationId);
+        return appSettings;
+      }
     }
 
-    JSONObject response = getAppSettingsQueryResponse(applicationId);
-    if (response == null) {
+    FetchedAppSettings fetchedAppSettings = refreshAppSettings(applicationId);
+    if (fetchedAppSettings == null) {
       return null;
     }
 
-    FetchedAppSettings fetchedAppSettings = parseAppSettingsFromJSON(applicationId, response);
-
     if (applicationId.equals(FacebookSdk.getApplicationId())) {
       loadingState.set(SUCCESS);
       pollCallbacks();
@@ -293,6 +302,117 @@ public final class FetchedAppSettingsManager {
     return fetchedAppSettings;
   }
 
+  /**
+   * Returns the snapshot of the app settings in memory or, the first time, the copy cached on disk
+   * parsed into one, or null if there is neither.
+   */
+  @Nullable
+  private static FetchedAppSettings getCachedAppSettings(final String applicationId) {
+    FetchedAppSettings appSettings = fetchedAppSettings.get(applicationId);
+    if (appSettings != null) {
+      return appSettings;
+    }
+
+    SharedPreferences sharedPrefs = SettingsStore.getSharedPreferences(APP_SETTINGS_PREFS_STORE);
+    String settingsJSONString =
+        sharedPrefs.getString(String.format(APP_SETTINGS_PREFS_KEY_FORMAT, applicationId), null);
+    if (Utility.isNullOrEmpty(settingsJSONString)) {
+      return null;
+    }
+    JSONObject settingsJSON;
+    try {
+      settingsJSON = new JSONObject(settingsJSONString);
+    } catch (JSONException je) {
+      Utility.logd(Utility.LOG_TAG, je);
+      return null;
+    }
+    appSettings = parseAppSettingsFromJSON(applicationId, settingsJSON);
+    // a copy cached without its timestamp is treated as expired
+    fetchedAppSettingsTimestamps.put(
+        applicationId,
+        sharedPrefs.getLong(
+            String.format(APP_SETTINGS_PREFS_TIMESTAMP_KEY_FORMAT, applicationId), 0));
+    return appSettings;
+  }
+
+  private static void refreshAppSettingsAsyncIfExpired(final String applicationId) {
+    if (isTimestampValid(fetchedAppSettingsTimestamps.get(applicationId))
+        || refreshingApplicationIds.put(applicationId, true) != null) {
+      return;
+    }
+
+    FacebookSdk.getExecutor()
+        .execute(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  if (refreshAppSettings(applicationId) != null
+                      && applicationId.equals(FacebookSdk.getApplicationId())) {
+                    loadingState.set(SUCCESS);
+                    pollCallbacks();
+                  }
+                } finally {
+                  refreshingApplicationIds.remove(applicationId);
+                }
+              }
+            });
+  }
+
+  // Note that this method makes a synchronous Graph API call, so should not be called from the
+  // main thread.
+  @Nullable
+  private static FetchedAppSettings refreshAppSettings(final String applicationId) {
+    Long timestamp = fetchedAppSettingsTimestamps.get(applicationId);
+    if (timestamp != null) {
+      Monitor.recordPerfFor(PerformanceEventName.APP_SETTINGS_CACHE_AGE, getCacheAge(timestamp));
+    }
+
+    boolean isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.APP_SETTINGS_REFRESH);
+    JSONObject resultJSON;
+    try {
+      resultJSON = getAppSettingsQueryResponse(applicationId);
+    } finally {
+      if (isMeasured) {
+        Monitor.stopMeasurePerfFor(PerformanceEventName.APP_SETTINGS_REFRESH);
+      }
+    }
+    if (resultJSON == null) {
+      return null;
+    }
+
+    // The settings are served without an ETag, so an unchanged response is recognized by comparing
+    // it with the cached copy, and then doesn't need to be parsed or written again.
+    SharedPreferences sharedPrefs = SettingsStore.getSharedPreferences(APP_SETTINGS_PREFS_STORE);
+    SharedPreferences.Editor editor = sharedPrefs.edit();
+    String settingsKey = String.format(APP_SETTINGS_PREFS_KEY_FORMAT, applicationId);
+    String settingsJSONString = resultJSON.toString();
+    FetchedAppSettings appSettings = fetchedAppSettings.get(applicationId);
+    if (appSettings == null
+        || !settingsJSONString.equals(sharedPrefs.getString(settingsKey, null))) {
+      appSettings = parseAppSettingsFromJSON(applicationId, resultJSON);
+      editor.putString(settingsKey, settingsJSONString);
+    }
+
+    long now = System.currentTimeMillis();
+    editor
+        .putLong(String.format(APP_SETTINGS_PREFS_TIMESTAMP_KEY_FORMAT, applicationId), now)
+        .apply();
+    fetchedAppSettingsTimestamps.put(applicationId, now);
+    return appSettings;
+  }
+
+  private static boolean isTimestampValid(@Nullable Long timestamp) {
+    if (timestamp == null) {
+      return false;
+    }
+    return System.currentTimeMillis() - timestamp < APP_SETTINGS_CACHE_TIMEOUT;
+  }
+
+  private static int getCacheAge(long timestamp) {
+    return (int) Math.min(Math.max(System.currentTimeMillis() - timestamp, 0), Integer.MAX_VALUE);
+  }
+
   private static FetchedAppSettings parseAppSettingsFromJSON(
       String applicationId, final JSONObject settingsJSON) {
     JSONArray errorClassificationJSON =
@@ -23,6 +23,8 @@ package com.facebook.internal;
 import android.util.Log;
 import com.facebook.FacebookSdk;
 import com.facebook.LoggingBehavior;
+import com.facebook.internal.logging.monitor.Monitor;
+import com.facebook.internal.logging.monitor.PerformanceEventName;
 import java.io.*;
 import java.security.InvalidParameterException;
 import java.util.Date;
@@ -122,6 +124,17 @@ public final class FileLruCache {
   }
 
   public InputStream get(String key, String contentTag) throws IOException {
+    boolean isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.FILE_LRU_CACHE_GET);
+    try {
+      return openCachedStream(key, contentTag);
+    } finally {
+      if (isMeasured) {
+        Monitor.stopMeasurePerfFor(PerformanceEventName.FILE_LRU_CACHE_GET);
+      }
+    }
+  }
+
+  private InputStream openCachedStream(String key, String contentTag) throws IOException {
     File file = new File(this.directory, Utility.md5hash(key));
 
     FileInputStream input;
@@ -174,6 +187,17 @@ public final class FileLruCache {
   }
 
   public OutputStream openPutStream(final String key, String contentTag) throws IOException {
+    boolean isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.FILE_LRU_CACHE_PUT);
+    try {
+      return openBufferStream(key, contentTag);
+    } finally {
+      if (isMeasured) {
+        Monitor.stopMeasurePerfFor(PerformanceEventName.FILE_LRU_CACHE_PUT);
+      }
+    }
+  }
+
+  private OutputStream openBufferStream(final String key, String contentTag) throws IOException {
     final File buffer = BufferFile.newFile(this.directory);
     buffer.delete();
     if (!buffer.createNewFile()) {
@@ -308,6 +332,7 @@ public final class FileLruCache {
       isTrimPending = false;
       isTrimInProgress = true;
     }
+    boolean isMeasured = Monitor.startMeasurePerfFor(PerformanceEventName.FILE_LRU_CACHE_TRIM);
     try {
       Logger.log(LoggingBehavior.CACHE, TAG, "trim started");
       PriorityQueue<ModifiedFile> heap = new PriorityQueue<ModifiedFile>();
@@ -339,6 +364,9 @@ public final class FileLruCache {
         file.delete();
       }
     } finally {
+      if (isMeasured) {
+        Monitor.stopMeasurePerfFor(PerformanceEventName.FILE_LRU_CACHE_TRIM);
+      }
       synchronized (lock) {
         isTrimInProgress = false;
         lock.notifyAll();
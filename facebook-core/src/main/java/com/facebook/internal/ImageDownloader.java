@@ -152,7 +152,10 @@ public class ImageDownloader {
       // It is also necessary to hold on to the lock until after the workItem is created,
       // since calls to cancelRequest or prioritizeRequest might come in and expect a
       // registered request to have a workItem available as well.
-      downloaderContext.workItem = workQueue.addActiveWorkItem(workItem);
+      //
+      // The requests of each caller take turns with those of the other callers.
+      downloaderContext.workItem =
+          workQueue.addActiveWorkItem(workItem, WorkQueue.Priority.NORMAL, key.tag, true);
     }
   }
 
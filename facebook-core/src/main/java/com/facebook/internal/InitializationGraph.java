@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * com.facebook.internal is solely for the use of other packages within the Facebook SDK for
+ * Android. Use of any of the classes in this package is unsupported, and they may be modified or
+ * removed without warning at any time.
+ *
+ * <p>Dependency graph of the steps run by {@code FacebookSdk.sdkInitialize}. A step starts as soon
+ * as all of its dependencies have completed: {@link Mode#MAIN} steps run inline on the calling
+ * thread, {@link Mode#BACKGROUND} steps on the executor in parallel with them, and {@link
+ * Mode#AFTER_FIRST_FRAME} steps on the executor once the app has drawn its first frame. If a step
+ * throws, the steps that depend on it are skipped. The start offset, duration and thread of every
+ * step are recorded, and the whole trace is logged when the last step has finished.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class InitializationGraph {
+
+  public enum Mode {
+    MAIN,
+    BACKGROUND,
+    AFTER_FIRST_FRAME,
+  }
+
+  private static final String TAG = InitializationGraph.class.getSimpleName();
+  // deferred steps still run if no frame is drawn, e.g. when the app starts in the background
+  private static final long FIRST_FRAME_TIMEOUT_MILLISECONDS = 5000;
+
+  private final Executor executor;
+  private final Map<String, Step> steps = new LinkedHashMap<>();
+  private final AtomicInteger unfinishedSteps = new AtomicInteger();
+  private final AtomicBoolean firstFrameDrawn = new AtomicBoolean(false);
+  private long startNanos;
+  private boolean started = false;
+
+  public InitializationGraph(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Adds a step to the graph. The dependencies must have been added before, so the graph can't
+   * have cycles, and a {@link Mode#MAIN} step can only depend on other main steps.
+   */
+  public synchronized void addStep(String name, Mode mode, Runnable task, String... dependencies) {
+    if (started) {
+      throw new IllegalStateException("The initialization graph has already been started");
+    }
+    if (steps.containsKey(name)) {
+      throw new IllegalArgumentException("Duplicate initialization step: " + name);
+    }
+    Step step = new Step(name, mode, task);
+    for (String dependency : dependencies) {
+      Step parent = steps.get(dependency);
+      if (parent == null) {
+        throw new IllegalArgumentException(
+            "Initialization step " + name + " depends on unknown step " + dependency);
+      }
+      if (mode == Mode.MAIN && parent.mode != Mode.MAIN) {
+        throw new IllegalArgumentException(
+            "Main initialization step " + name + " can't depend on " + dependency);
+      }
+      parent.dependents.add(step);
+    }
+    int pending = dependencies.length + (mode == Mode.AFTER_FIRST_FRAME ? 1 : 0);
+    step.pendingDependencies.set(pending);
+    steps.put(name, step);
+  }
+
+  /**
+   * Starts the background steps that have no dependencies, then runs the main steps in the order
+   * they were added. Returns once all main steps have run; exceptions thrown by them are
+   * rethrown.
+   */
+  public void start() {
+    List<Step> mainSteps = new ArrayList<>();
+    boolean hasDeferredSteps = false;
+    synchronized (this) {
+      if (started) {
+        return;
+      }
+      started = true;
+      startNanos = System.nanoTime();
+      unfinishedSteps.set(steps.size());
+      for (Step step : steps.values()) {
+        if (step.mode == Mode.MAIN) {
+          mainSteps.add(step);
+        } else if (step.pendingDependencies.get() == 0) {
+          executeInBackground(step);
+        } else if (step.mode == Mode.AFTER_FIRST_FRAME) {
+          hasDeferredSteps = true;
+        }
+      }
+    }
+
+    for (Step step : mainSteps) {
+      if (step.pendingDependencies.get() == 0) {
+        run(step);
+      }
+    }
+
+    if (hasDeferredSteps) {
+      waitForFirstFrame();
+    }
+  }
+
+  /** Returns whether every step of the graph has either run or been skipped. */
+  public boolean isFinished() {
+    return started && unfinishedSteps.get() == 0;
+  }
+
+  /**
+   * Returns the steps that have run so far, with the time they started at and took in
+   * microseconds, and the thread they ran on.
+   */
+  public synchronized JSONArray getTrace() {
+    JSONArray trace = new JSONArray();
+    try {
+      for (Step step : steps.values()) {
+        if (step.status == Status.PENDING || step.status == Status.RUNNING) {
+          continue;
+        }
+        JSONObject entry = new JSONObject();
+        entry.put("name", step.name);
+        entry.put("mode", step.mode.name().toLowerCase(Locale.ROOT));
+        entry.put("status", step.status.name().toLowerCase(Locale.ROOT));
+        if (step.status != Status.SKIPPED) {
+          entry.put("start_us", (step.startNanos - startNanos) / 1000);
+          entry.put("duration_us", step.durationNanos / 1000);
+          entry.put("thread", step.threadName);
+        }
+        trace.put(entry);
+      }
+    } catch (JSONException e) {
+      // swallow
+    }
+    return trace;
+  }
+
+  @VisibleForTesting
+  void onFirstFrame() {
+    if (!firstFrameDrawn.compareAndSet(false, true)) {
+      return;
+    }
+    List<Step> deferredSteps = new ArrayList<>();
+    synchronized (this) {
+      for (Step step : steps.values()) {
+        if (step.mode == Mode.AFTER_FIRST_FRAME) {
+          deferredSteps.add(step);
+        }
+      }
+    }
+    for (Step step : deferredSteps) {
+      release(step);
+    }
+  }
+
+  private void waitForFirstFrame() {
+    final Handler handler = new Handler(Looper.getMainLooper());
+    final Runnable signal =
+        new Runnable() {
+          @Override
+          public void run() {
+            onFirstFrame();
+          }
+        };
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      handler.post(
+          new Runnable() {
+            @Override
+            public void run() {
+              Choreographer.getInstance()
+                  .postFrameCallback(
+                      new Choreographer.FrameCallback() {
+                        @Override
+                        public void doFrame(long frameTimeNanos) {
+                          // the frame callback runs before the traversal, so wait for it to end
+                          handler.post(signal);
+                        }
+                      });
+            }
+          });
+    } else {
+      handler.post(signal);
+    }
+    handler.postDelayed(signal, FIRST_FRAME_TIMEOUT_MILLISECONDS);
+  }
+
+  private void executeInBackground(final Step step) {
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              InitializationGraph.this.run(step);
+            } catch (RuntimeException e) {
+              // logged by run(), background steps never crash the executor thread
+            }
+          }
+        });
+  }
+
+  private void release(Step step) {
+    if (step.pendingDependencies.decrementAndGet() == 0 && step.mode != Mode.MAIN) {
+      executeInBackground(step);
+    }
+  }
+
+  private void run(Step step) {
+    step.status = Status.RUNNING;
+    step.threadName = Thread.currentThread().getName();
+    step.startNanos = System.nanoTime();
+    try {
+      step.task.run();
+    } catch (RuntimeException e) {
+      step.durationNanos = System.nanoTime() - step.startNanos;
+      step.status = Status.FAILED;
+      Utility.logd(TAG, "Initialization step " + step.name + " failed: " + e);
+      for (Step dependent : step.dependents) {
+        skip(dependent);
+      }
+      onStepFinished();
+      throw e;
+    }
+    step.durationNanos = System.nanoTime() - step.startNanos;
+    step.status = Status.COMPLETED;
+    for (Step dependent : step.dependents) {
+      release(dependent);
+    }
+    onStepFinished();
+  }
+
+  private void skip(Step step) {
+    // a step is only skipped once, even if several of its dependencies failed
+    synchronized (step) {
+      if (step.status != Status.PENDING) {
+        return;
+      }
+      step.status = Status.SKIPPED;
+    }
+    for (Step dependent : step.dependents) {
+      skip(dependent);
+    }
+    onStepFinished();
+  }
+
+  private void onStepFinished() {
+    if (unfinishedSteps.decrementAndGet() == 0) {
+      Utility.logd(TAG, "Initialization trace: " + getTrace());
+    }
+  }
+
+  private enum Status {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    SKIPPED,
+  }
+
+  private static class Step {
+    private final String name;
+    private final Mode mode;
+    private final Runnable task;
+    private final List<Step> dependents = new ArrayList<>();
+    private final AtomicInteger pendingDependencies = new AtomicInteger();
+    private volatile Status status = Status.PENDING;
+    private volatile String threadName;
+    private volatile long startNanos;
+    private volatile long durationNanos;
+
+    Step(String name, Mode mode, Runnable task) {
+      this.name = name;
+      this.mode = mode;
+      this.task = task;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import androidx.annotation.RestrictTo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * com.facebook.internal is solely for the use of other packages within the Facebook SDK for
+ * Android. Use of any of the classes in this package is unsupported, and they may be modified or
+ * removed without warning at any time.
+ *
+ * <p>Aho-Corasick automaton that finds which of a fixed set of keywords occur in a text with a
+ * single scan, independent of how many keywords there are. Instances are immutable and can be
+ * shared between threads.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class KeywordMatcher {
+
+  private static final int[] NO_OUTPUT = new int[0];
+
+  private final int keywordCount;
+  private final boolean ignoreCase;
+  // per state: sorted transition labels and their target states
+  private final char[][] labels;
+  private final int[][] targets;
+  private final int[] failure;
+  // per state: ids of every keyword ending here, including via failure links
+  private final int[][] outputs;
+
+  private KeywordMatcher(
+      int keywordCount,
+      boolean ignoreCase,
+      char[][] labels,
+      int[][] targets,
+      int[] failure,
+      int[][] outputs) {
+    this.keywordCount = keywordCount;
+    this.ignoreCase = ignoreCase;
+    this.labels = labels;
+    this.targets = targets;
+    this.failure = failure;
+    this.outputs = outputs;
+  }
+
+  public static KeywordMatcher build(String... keywords) {
+    return build(Arrays.asList(keywords), false);
+  }
+
+  /**
+   * Builds a matcher where keyword {@code i} of the list is reported as id {@code i}. With {@code
+   * ignoreCase}, ASCII letters are compared case-insensitively, like {@code (?i)} in a regex.
+   */
+  public static KeywordMatcher build(List<String> keywords, boolean ignoreCase) {
+    List<Map<Character, Integer>> gotos = new ArrayList<>();
+    List<List<Integer>> ends = new ArrayList<>();
+    gotos.add(new HashMap<Character, Integer>());
+    ends.add(new ArrayList<Integer>());
+
+    for (int id = 0; id < keywords.size(); id++) {
+      String keyword = keywords.get(id);
+      int state = 0;
+      for (int i = 0; i < keyword.length(); i++) {
+        char c = ignoreCase ? toLowerAscii(keyword.charAt(i)) : keyword.charAt(i);
+        Integer next = gotos.get(state).get(c);
+        if (next == null) {
+          next = gotos.size();
+          gotos.add(new HashMap<Character, Integer>());
+          ends.add(new ArrayList<Integer>());
+          gotos.get(state).put(c, next);
+        }
+        state = next;
+      }
+      ends.get(state).add(id);
+    }
+
+    int stateCount = gotos.size();
+    char[][] labels = new char[stateCount][];
+    int[][] targets = new int[stateCount][];
+    for (int state = 0; state < stateCount; state++) {
+      Map<Character, Integer> transitions = gotos.get(state);
+      char[] stateLabels = new char[transitions.size()];
+      int i = 0;
+      for (Character c : transitions.keySet()) {
+        stateLabels[i++] = c;
+      }
+      Arrays.sort(stateLabels);
+      int[] stateTargets = new int[stateLabels.length];
+      for (i = 0; i < stateLabels.length; i++) {
+        stateTargets[i] = transitions.get(stateLabels[i]);
+      }
+      labels[state] = stateLabels;
+      targets[state] = stateTargets;
+    }
+
+    // breadth first, so the failure state of a node is always resolved before the node itself
+    int[] failure = new int[stateCount];
+    int[][] outputs = new int[stateCount][];
+    outputs[0] = toArray(ends.get(0), NO_OUTPUT);
+    Queue<Integer> queue = new LinkedList<>();
+    for (int child : targets[0]) {
+      failure[child] = 0;
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.remove();
+      outputs[state] = toArray(ends.get(state), outputs[failure[state]]);
+      for (int i = 0; i < labels[state].length; i++) {
+        char c = labels[state][i];
+        int child = targets[state][i];
+        int fallback = failure[state];
+        while (fallback != 0 && next(labels, targets, fallback, c) < 0) {
+          fallback = failure[fallback];
+        }
+        int fallbackNext = next(labels, targets, fallback, c);
+        failure[child] = fallbackNext < 0 ? 0 : fallbackNext;
+        queue.add(child);
+      }
+    }
+
+    return new KeywordMatcher(keywords.size(), ignoreCase, labels, targets, failure, outputs);
+  }
+
+  public int getKeywordCount() {
+    return keywordCount;
+  }
+
+  /** Returns true if at least one keyword occurs in {@code text}. */
+  public boolean containsAny(CharSequence text) {
+    if (outputs[0].length > 0) {
+      // the empty keyword matches everything
+      return true;
+    }
+    int state = 0;
+    for (int i = 0; i < text.length(); i++) {
+      state = step(state, text.charAt(i));
+      if (outputs[state].length > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the ids of every keyword that occurs in {@code text}. */
+  public BitSet findAll(CharSequence text) {
+    BitSet found = new BitSet(keywordCount);
+    findAll(text, found);
+    return found;
+  }
+
+  /** Adds the ids of every keyword that occurs in {@code text} to {@code found}. */
+  public void findAll(CharSequence text, BitSet found) {
+    for (int id : outputs[0]) {
+      found.set(id);
+    }
+    int state = 0;
+    for (int i = 0; i < text.length(); i++) {
+      state = step(state, text.charAt(i));
+      for (int id : outputs[state]) {
+        found.set(id);
+      }
+    }
+  }
+
+  private int step(int state, char c) {
+    if (ignoreCase) {
+      c = toLowerAscii(c);
+    }
+    while (true) {
+      int nextState = next(labels, targets, state, c);
+      if (nextState >= 0) {
+        return nextState;
+      }
+      if (state == 0) {
+        return 0;
+      }
+      state = failure[state];
+    }
+  }
+
+  private static int next(char[][] labels, int[][] targets, int state, char c) {
+    int index = Arrays.binarySearch(labels[state], c);
+    return index < 0 ? -1 : targets[state][index];
+  }
+
+  private static char toLowerAscii(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  private static int[] toArray(List<Integer> own, int[] inherited) {
+    if (own.isEmpty()) {
+      return inherited;
+    }
+    int[] result = Arrays.copyOf(inherited, inherited.length + own.size());
+    for (int i = 0; i < own.size(); i++) {
+      result[inherited.length + i] = own.get(i);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * com.facebook.internal is solely for the use of other packages within the Facebook SDK for
+ * Android. Use of any of the classes in this package is unsupported, and they may be modified or
+ * removed without warning at any time.
+ *
+ * <p>The threads of the SDK. Work that has to run in order goes to a named serial lane, blocking
+ * work (network, disk) to the shared bounded I/O pool, and computations to the CPU pool. Idle
+ * threads stop after a while, so lanes that are rarely used don't keep a thread around.
+ *
+ * <p>Threads are virtual threads when enabled and the runtime supports them, which Android doesn't
+ * at this time.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class SdkExecutors {
+
+  private static final String THREAD_NAME_PREFIX = "FacebookSdk-";
+  private static final long KEEP_ALIVE_SECONDS = 30;
+  private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+  // the bounds of AsyncTask.THREAD_POOL_EXECUTOR, which used to run the SDK background work
+  private static final int IO_CORE_POOL_SIZE = Math.max(2, Math.min(CPU_COUNT - 1, 4));
+  private static final int IO_MAX_POOL_SIZE = CPU_COUNT * 2 + 1;
+  private static final int IO_QUEUE_CAPACITY = 128;
+  private static final int IO_BACKUP_POOL_SIZE = 5;
+
+  private static final Map<String, ScheduledThreadPoolExecutor> lanes = new ConcurrentHashMap<>();
+  private static final AtomicInteger threadCount = new AtomicInteger(0);
+  private static volatile boolean virtualThreadsEnabled = false;
+  @Nullable private static ThreadPoolExecutor ioExecutor;
+  @Nullable private static ThreadPoolExecutor ioBackupExecutor;
+  @Nullable private static ThreadPoolExecutor cpuExecutor;
+
+  private SdkExecutors() {}
+
+  /**
+   * Returns the serial lane of the given name, which runs its tasks one at a time in the order
+   * they are submitted or due.
+   *
+   * @param name the name of the lane, also used in its thread name
+   */
+  public static ScheduledThreadPoolExecutor getSerialLane(String name) {
+    ScheduledThreadPoolExecutor lane = lanes.get(name);
+    if (lane == null) {
+      synchronized (lanes) {
+        lane = lanes.get(name);
+        if (lane == null) {
+          // a single core thread, the pool never grows beyond it
+          lane = new ScheduledThreadPoolExecutor(1, new SdkThreadFactory(name));
+          lane.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+          lane.allowCoreThreadTimeOut(true);
+          lanes.put(name, lane);
+        }
+      }
+    }
+    return lane;
+  }
+
+  /**
+   * Returns the shared pool for blocking work. Like AsyncTask.THREAD_POOL_EXECUTOR on recent
+   * versions of Android, the tasks it can't take when all its threads are busy and its queue is
+   * full overflow to a backup pool with an unbounded queue, rather than being rejected.
+   */
+  public static synchronized ExecutorService getIoExecutor() {
+    if (ioExecutor == null) {
+      ioExecutor = createIoExecutor();
+    }
+    return ioExecutor;
+  }
+
+  @VisibleForTesting
+  static ThreadPoolExecutor createIoExecutor() {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            IO_CORE_POOL_SIZE,
+            IO_MAX_POOL_SIZE,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(IO_QUEUE_CAPACITY),
+            new SdkThreadFactory("io"),
+            new RejectedExecutionHandler() {
+              @Override
+              public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                if (executor.isShutdown()) {
+                  throw new RejectedExecutionException("The executor has been shut down");
+                }
+                getIoBackupExecutor().execute(runnable);
+              }
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static synchronized ThreadPoolExecutor getIoBackupExecutor() {
+    if (ioBackupExecutor == null) {
+      ioBackupExecutor =
+          new ThreadPoolExecutor(
+              IO_BACKUP_POOL_SIZE,
+              IO_BACKUP_POOL_SIZE,
+              KEEP_ALIVE_SECONDS,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(),
+              new SdkThreadFactory("io-backup"));
+      ioBackupExecutor.allowCoreThreadTimeOut(true);
+    }
+    return ioBackupExecutor;
+  }
+
+  /** Returns the shared pool for computations, with one thread per processor. */
+  public static synchronized ExecutorService getCpuExecutor() {
+    if (cpuExecutor == null) {
+      cpuExecutor =
+          new ThreadPoolExecutor(
+              CPU_COUNT,
+              CPU_COUNT,
+              KEEP_ALIVE_SECONDS,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(),
+              new SdkThreadFactory("cpu"));
+      cpuExecutor.allowCoreThreadTimeOut(true);
+    }
+    return cpuExecutor;
+  }
+
+  /**
+   * Makes the threads started from now on virtual threads, if the runtime supports them.
+   *
+   * @return whether virtual threads will be used
+   */
+  public static boolean setVirtualThreadsEnabled(boolean enabled) {
+    virtualThreadsEnabled = enabled && VirtualThreads.FACTORY != null;
+    return virtualThreadsEnabled;
+  }
+
+  public static boolean isVirtualThreadsEnabled() {
+    return virtualThreadsEnabled;
+  }
+
+  /** @return the number of threads of the lanes and the pools that are alive */
+  public static int getThreadCount() {
+    return threadCount.get();
+  }
+
+  /**
+   * @return the number of tasks waiting in the lane, including the delayed tasks which aren't due
+   *     yet, or 0 if there's no lane of this name
+   */
+  public static int getQueueDepth(String laneName) {
+    ScheduledThreadPoolExecutor lane = lanes.get(laneName);
+    return lane == null ? 0 : lane.getQueue().size();
+  }
+
+  /** @return the number of tasks waiting in the I/O pool, including those that overflowed */
+  public static synchronized int getIoQueueDepth() {
+    int depth = ioExecutor == null ? 0 : ioExecutor.getQueue().size();
+    return depth + (ioBackupExecutor == null ? 0 : ioBackupExecutor.getQueue().size());
+  }
+
+  public static synchronized int getCpuQueueDepth() {
+    return cpuExecutor == null ? 0 : cpuExecutor.getQueue().size();
+  }
+
+  /**
+   * Shuts down and forgets a lane created by a test. The lanes and pools of the SDK are never shut
+   * down, since their users keep them for the lifetime of the process.
+   */
+  @VisibleForTesting
+  static void removeLane(String name) {
+    ScheduledThreadPoolExecutor lane = lanes.remove(name);
+    if (lane != null) {
+      lane.shutdownNow();
+    }
+  }
+
+  private static class SdkThreadFactory implements ThreadFactory {
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    SdkThreadFactory(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      Runnable counted =
+          new Runnable() {
+            @Override
+            public void run() {
+              threadCount.incrementAndGet();
+              try {
+                runnable.run();
+              } finally {
+                threadCount.decrementAndGet();
+              }
+            }
+          };
+      String threadName = THREAD_NAME_PREFIX + name + "-" + count.incrementAndGet();
+      Thread thread = null;
+      if (virtualThreadsEnabled) {
+        thread = VirtualThreads.FACTORY.newThread(counted);
+      }
+      if (thread == null) {
+        thread = new Thread(counted);
+        thread.setDaemon(true);
+      }
+      thread.setName(threadName);
+      return thread;
+    }
+  }
+
+  // Thread.ofVirtual().factory(), looked up reflectively since it only exists on Java 21+
+  private static class VirtualThreads {
+    @Nullable static final ThreadFactory FACTORY = createFactory();
+
+    @Nullable
+    private static ThreadFactory createFactory() {
+      try {
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+      } catch (Exception e) {
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import com.facebook.FacebookSdk;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * com.facebook.internal is solely for the use of other packages within the Facebook SDK for
+ * Android. Use of any of the classes in this package is unsupported, and they may be modified or
+ * removed without warning at any time.
+ *
+ * <p>Single key-value store for the settings the SDK persists. Every component gets a namespace of
+ * the store as a {@link SharedPreferences}, backed by one preferences file, so that the SDK parses
+ * one file at startup instead of one per component. The file is loaded in the background by {@link
+ * #load} during initialization, and kept in memory; edits are applied to memory at once and
+ * written to disk in the background, where consecutive writes are coalesced into the last one.
+ *
+ * <p>The first time a namespace is opened, the content of the separate preferences file it used
+ * to live in is moved into the store. Only the moved keys are removed from that file, which may
+ * still hold the settings of other components.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class SettingsStore {
+
+  static final String SETTINGS_STORE = "com.facebook.sdk.SettingsStore";
+  private static final String KEY_SEPARATOR = "/";
+  private static final String MIGRATED_KEY_PREFIX = "com.facebook.sdk.SettingsStore.migrated/";
+
+  private static final Map<String, Namespace> namespaces = new ConcurrentHashMap<>();
+  @Nullable private static volatile SharedPreferences store;
+  @Nullable private static volatile Context storeContext;
+
+  private SettingsStore() {}
+
+  /**
+   * Loads the store into memory and waits for it to be parsed. It is called on a background thread
+   * during initialization, so that the first access from the main thread finds it in memory.
+   */
+  public static void load() {
+    // the first read waits for the file to be parsed
+    getStore().contains(SETTINGS_STORE);
+  }
+
+  /**
+   * Returns the namespace of the store that replaces the preferences file with the given name.
+   * The content of that file is moved into the namespace the first time it is opened.
+   */
+  public static SharedPreferences getSharedPreferences(String name) {
+    return getSharedPreferences(name, name);
+  }
+
+  /**
+   * Returns a namespace of the store, moving the given keys of a legacy preferences file into it
+   * the first time it is opened.
+   *
+   * @param namespace the name of the namespace
+   * @param legacyName the name of the preferences file the settings used to be in, or null for the
+   *     default preferences of the app
+   * @param legacyKeys the keys to move, or none to move the whole file. Pass the keys when other
+   *     components still use the legacy file
+   */
+  public static SharedPreferences getSharedPreferences(
+      String namespace, @Nullable String legacyName, String... legacyKeys) {
+    SharedPreferences sharedPreferences = getStore();
+    Namespace preferences = namespaces.get(namespace);
+    if (preferences != null) {
+      return preferences;
+    }
+    synchronized (namespaces) {
+      preferences = namespaces.get(namespace);
+      if (preferences == null) {
+        preferences = new Namespace(sharedPreferences, namespace);
+        migrate(preferences, legacyName, legacyKeys);
+        namespaces.put(namespace, preferences);
+      }
+    }
+    return preferences;
+  }
+
+  private static SharedPreferences getStore() {
+    Context context = FacebookSdk.getApplicationContext();
+    SharedPreferences sharedPreferences = store;
+    if (sharedPreferences != null && context == storeContext) {
+      return sharedPreferences;
+    }
+    synchronized (namespaces) {
+      // the namespaces are only reopened if the application context changes, as in tests
+      if (store == null || context != storeContext) {
+        namespaces.clear();
+        store = context.getSharedPreferences(SETTINGS_STORE, Context.MODE_PRIVATE);
+        storeContext = context;
+      }
+      return store;
+    }
+  }
+
+  private static void migrate(Namespace namespace, @Nullable String legacyName, String[] keys) {
+    SharedPreferences sharedPreferences = namespace.store;
+    String migratedKey = MIGRATED_KEY_PREFIX + namespace.name;
+    if (sharedPreferences.getBoolean(migratedKey, false)) {
+      return;
+    }
+
+    Context context = FacebookSdk.getApplicationContext();
+    SharedPreferences legacy =
+        legacyName == null
+            ? PreferenceManager.getDefaultSharedPreferences(context)
+            : context.getSharedPreferences(legacyName, Context.MODE_PRIVATE);
+    Map<String, ?> legacyValues = legacy.getAll();
+    if (keys.length > 0) {
+      Map<String, Object> values = new HashMap<>();
+      for (String key : keys) {
+        if (legacyValues.containsKey(key)) {
+          values.put(key, legacyValues.get(key));
+        }
+      }
+      legacyValues = values;
+    }
+
+    SharedPreferences.Editor editor = sharedPreferences.edit();
+    for (Map.Entry<String, ?> entry : legacyValues.entrySet()) {
+      put(editor, namespace.toStoreKey(entry.getKey()), entry.getValue());
+    }
+    editor.putBoolean(migratedKey, true);
+    // written before the legacy file is emptied, so the settings are never lost
+    editor.commit();
+
+    if (legacyValues.isEmpty()) {
+      return;
+    }
+    // never cleared, the keys written since getAll() may belong to someone else
+    SharedPreferences.Editor legacyEditor = legacy.edit();
+    for (String key : legacyValues.keySet()) {
+      legacyEditor.remove(key);
+    }
+    legacyEditor.apply();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void put(SharedPreferences.Editor editor, String key, @Nullable Object value) {
+    if (value instanceof String) {
+      editor.putString(key, (String) value);
+    } else if (value instanceof Boolean) {
+      editor.putBoolean(key, (Boolean) value);
+    } else if (value instanceof Integer) {
+      editor.putInt(key, (Integer) value);
+    } else if (value instanceof Long) {
+      editor.putLong(key, (Long) value);
+    } else if (value instanceof Float) {
+      editor.putFloat(key, (Float) value);
+    } else if (value instanceof Set) {
+      editor.putStringSet(key, (Set<String>) value);
+    }
+  }
+
+  @VisibleForTesting
+  static void reset() {
+    synchronized (namespaces) {
+      namespaces.clear();
+      store = null;
+      storeContext = null;
+    }
+  }
+
+  /** A namespace of the store, whose keys are stored prefixed with its name. */
+  private static class Namespace implements SharedPreferences {
+    private final SharedPreferences store;
+    private final String name;
+    private final String prefix;
+    // held weakly, as SharedPreferences does
+    private final Map<OnSharedPreferenceChangeListener, Object> listeners = new WeakHashMap<>();
+
+    Namespace(SharedPreferences store, String name) {
+      this.store = store;
+      this.name = name;
+      this.prefix = name + KEY_SEPARATOR;
+    }
+
+    String toStoreKey(String key) {
+      return prefix + key;
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+      Map<String, Object> values = new HashMap<>();
+      for (Map.Entry<String, ?> entry : store.getAll().entrySet()) {
+        if (entry.getKey().startsWith(prefix)) {
+          values.put(entry.getKey().substring(prefix.length()), entry.getValue());
+        }
+      }
+      return values;
+    }
+
+    @Nullable
+    @Override
+    public String getString(String key, @Nullable String defValue) {
+      return store.getString(toStoreKey(key), defValue);
+    }
+
+    @Nullable
+    @Override
+    public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+      return store.getStringSet(toStoreKey(key), defValues);
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+      return store.getInt(toStoreKey(key), defValue);
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+      return store.getLong(toStoreKey(key), defValue);
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+      return store.getFloat(toStoreKey(key), defValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+      return store.getBoolean(toStoreKey(key), defValue);
+    }
+
+    @Override
+    public boolean contains(String key) {
+      return store.contains(toStoreKey(key));
+    }
+
+    @Override
+    public SharedPreferences.Editor edit() {
+      return new NamespaceEditor(this, store.edit());
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(
+        OnSharedPreferenceChangeListener listener) {
+      synchronized (listeners) {
+        listeners.put(listener, this);
+      }
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(
+        OnSharedPreferenceChangeListener listener) {
+      synchronized (listeners) {
+        listeners.remove(listener);
+      }
+    }
+
+    // like SharedPreferences, the listeners are called on the main thread
+    void notifyListeners(final List<String> keys) {
+      final List<OnSharedPreferenceChangeListener> listenersToNotify;
+      synchronized (listeners) {
+        if (keys.isEmpty() || listeners.isEmpty()) {
+          return;
+        }
+        listenersToNotify = new ArrayList<>(listeners.keySet());
+      }
+      Runnable notification =
+          new Runnable() {
+            @Override
+            public void run() {
+              for (String key : keys) {
+                for (OnSharedPreferenceChangeListener listener : listenersToNotify) {
+                  listener.onSharedPreferenceChanged(Namespace.this, key);
+                }
+              }
+            }
+          };
+      if (Looper.myLooper() == Looper.getMainLooper()) {
+        notification.run();
+      } else {
+        new Handler(Looper.getMainLooper()).post(notification);
+      }
+    }
+  }
+
+  private static class NamespaceEditor implements SharedPreferences.Editor {
+    private final Namespace namespace;
+    private final SharedPreferences.Editor editor;
+    private final Set<String> editedKeys = new HashSet<>();
+    private boolean cleared = false;
+
+    NamespaceEditor(Namespace namespace, SharedPreferences.Editor editor) {
+      this.namespace = namespace;
+      this.editor = editor;
+    }
+
+    @Override
+    public SharedPreferences.Editor putString(String key, @Nullable String value) {
+      editor.putString(edited(key), value);
+      return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor putStringSet(String key, @Nullable Set<String> values) {
+      editor.putStringSet(edited(key), values);
+      return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor putInt(String key, int value) {
+      editor.putInt(edited(key), value);
+      return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor putLong(String key, long value) {
+      editor.putLong(edited(key), value);
+      return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor putFloat(String key, float value) {
+      editor.putFloat(edited(key), value);
+      return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor putBoolean(String key, boolean value) {
+      editor.putBoolean(edited(key), value);
+      return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor remove(String key) {
+      editor.remove(edited(key));
+      return this;
+    }
+
+    @Override
+    public SharedPreferences.Editor clear() {
+      cleared = true;
+      return this;
+    }
+
+    @Override
+    public boolean commit() {
+      List<String> changedKeys = applyClear();
+      boolean committed = editor.commit();
+      namespace.notifyListeners(changedKeys);
+      return committed;
+    }
+
+    @Override
+    public void apply() {
+      List<String> changedKeys = applyClear();
+      editor.apply();
+      namespace.notifyListeners(changedKeys);
+    }
+
+    private String edited(String key) {
+      String storeKey = namespace.toStoreKey(key);
+      editedKeys.add(storeKey);
+      return storeKey;
+    }
+
+    /**
+     * Like SharedPreferences, clear() only removes the keys that aren't set by the same edit.
+     *
+     * @return the keys of the namespace changed by the edit
+     */
+    private List<String> applyClear() {
+      List<String> changedKeys = new ArrayList<>();
+      for (String storeKey : editedKeys) {
+        changedKeys.add(storeKey.substring(namespace.prefix.length()));
+      }
+      if (!cleared) {
+        return changedKeys;
+      }
+      cleared = false;
+      for (String storeKey : namespace.store.getAll().keySet()) {
+        if (storeKey.startsWith(namespace.prefix) && !editedKeys.contains(storeKey)) {
+          editor.remove(storeKey);
+          changedKeys.add(storeKey.substring(namespace.prefix.length()));
+        }
+      }
+      return changedKeys;
+    }
+  }
+}
@@ -20,25 +20,71 @@
 
 package com.facebook.internal;
 
+import androidx.annotation.Nullable;
 import com.facebook.FacebookSdk;
+import com.facebook.internal.logging.monitor.MonitorHistogramLog;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * com.facebook.internal is solely for the use of other packages within the Facebook SDK for
  * Android. Use of any of the classes in this package is unsupported, and they may be modified or
  * removed without warning at any time.
+ *
+ * <p>Runs work items on an executor, at most maxConcurrent at a time. Pending items are started by
+ * priority, and the owners of the items of one priority take turns, so that an owner adding many
+ * items doesn't hold back the others. The number of pending items can be bounded, the time items
+ * wait and run is recorded into histograms.
  */
 public class WorkQueue {
   public static final int DEFAULT_MAX_CONCURRENT = 8;
+  public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  static final String WAIT_TIME_HISTOGRAM = "WORK_QUEUE_WAIT_TIME";
+  static final String RUN_TIME_HISTOGRAM = "WORK_QUEUE_RUN_TIME";
+
+  private static final Object NO_OWNER = new Object();
+  private static final Priority[] PRIORITIES = Priority.values();
+
+  public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW,
+  }
+
+  /** What happens when a work item is added while maxPending items are pending already. */
+  public enum RejectionPolicy {
+    /** The new item is rejected with a RejectedExecutionException. */
+    ABORT,
+    /**
+     * The oldest pending item of the lowest priority is cancelled to make room, unless it has a
+     * higher priority than the new item, which is then rejected.
+     */
+    DISCARD_OLDEST,
+  }
 
   private final Object workLock = new Object();
-  private WorkNode pendingJobs;
+  private final PriorityLevel[] pendingJobs = new PriorityLevel[PRIORITIES.length];
+  private int pendingCount = 0;
+  private long nextSequence = 0;
 
   private final int maxConcurrent;
+  private final int maxPending;
+  private final RejectionPolicy rejectionPolicy;
   private final Executor executor;
 
-  private WorkNode runningJobs = null;
+  private final Set<WorkNode> runningJobs = new HashSet<>();
   private int runningCount = 0;
+  private long rejectedCount = 0;
+
+  private final MonitorHistogramLog waitTimes = new MonitorHistogramLog(WAIT_TIME_HISTOGRAM, null);
+  private final MonitorHistogramLog runTimes = new MonitorHistogramLog(RUN_TIME_HISTOGRAM, null);
 
   public WorkQueue() {
     this(DEFAULT_MAX_CONCURRENT);
@@ -49,8 +95,18 @@ public class WorkQueue {
   }
 
   public WorkQueue(int maxConcurrent, Executor executor) {
+    this(maxConcurrent, UNBOUNDED, RejectionPolicy.ABORT, executor);
+  }
+
+  public WorkQueue(
+      int maxConcurrent, int maxPending, RejectionPolicy rejectionPolicy, Executor executor) {
     this.maxConcurrent = maxConcurrent;
+    this.maxPending = maxPending;
+    this.rejectionPolicy = rejectionPolicy;
     this.executor = executor;
+    for (int i = 0; i < pendingJobs.length; i++) {
+      pendingJobs[i] = new PriorityLevel();
+    }
   }
 
   public WorkItem addActiveWorkItem(Runnable callback) {
@@ -58,9 +114,43 @@ public class WorkQueue {
   }
 
   public WorkItem addActiveWorkItem(Runnable callback, boolean addToFront) {
-    WorkNode node = new WorkNode(callback);
+    return addActiveWorkItem(callback, Priority.NORMAL, null, addToFront);
+  }
+
+  public WorkItem addActiveWorkItem(Runnable callback, Priority priority, @Nullable Object owner) {
+    return addActiveWorkItem(callback, priority, owner, false);
+  }
+
+  /**
+   * Adds a work item to the pending items of its priority and owner.
+   *
+   * @param callback the work
+   * @param priority items of a higher priority are started first
+   * @param owner items of the same priority and a different owner are started in turns, null for
+   *     items without an owner, which share one turn
+   * @param addToFront whether the item is started before or after the pending items of its
+   *     priority and owner, an item added to the front also makes its owner's turn the next one
+   * @return the work item
+   * @throws RejectedExecutionException if the queue is full and the item can't be added
+   */
+  public WorkItem addActiveWorkItem(
+      Runnable callback, Priority priority, @Nullable Object owner, boolean addToFront) {
+    WorkNode node = new WorkNode(callback, priority, owner == null ? NO_OWNER : owner);
+    WorkNode discarded = null;
     synchronized (workLock) {
-      pendingJobs = node.addToList(pendingJobs, addToFront);
+      if (pendingCount >= maxPending) {
+        discarded = rejectionPolicy == RejectionPolicy.DISCARD_OLDEST ? findOldest() : null;
+        if (discarded == null || discarded.priority.compareTo(priority) < 0) {
+          rejectedCount++;
+          throw new RejectedExecutionException("WorkQueue is full");
+        }
+        removePending(discarded);
+        discarded.isCancelled = true;
+        rejectedCount++;
+      }
+      node.enqueueTime = System.nanoTime();
+      node.sequence = nextSequence++;
+      addPending(node, addToFront);
     }
 
     startItem();
@@ -72,19 +162,70 @@ public class WorkQueue {
       // Verify that all running items know they are running, and counts match
       int count = 0;
 
-      if (runningJobs != null) {
-        WorkNode walk = runningJobs;
-        do {
-          walk.verify(true);
-          count++;
-          walk = walk.getNext();
-        } while (walk != runningJobs);
+      for (WorkNode walk : runningJobs) {
+        walk.verify(true);
+        count++;
       }
 
       assert runningCount == count;
+
+      // Verify that the pending items are in their owner queue, and each owner queue has its turn
+      count = 0;
+      for (int i = 0; i < pendingJobs.length; i++) {
+        PriorityLevel level = pendingJobs[i];
+        assert level.turns.size() == level.ownerQueues.size();
+        for (OwnerQueue ownerQueue : level.turns) {
+          assert !ownerQueue.isEmpty();
+          assert level.ownerQueues.get(ownerQueue.owner) == ownerQueue;
+          for (WorkNode walk : ownerQueue) {
+            walk.verify(false);
+            assert walk.priority.ordinal() == i;
+            count++;
+          }
+        }
+      }
+
+      assert pendingCount == count;
+    }
+  }
+
+  public int getPendingCount() {
+    synchronized (workLock) {
+      return pendingCount;
     }
   }
 
+  public int getRunningCount() {
+    synchronized (workLock) {
+      return runningCount;
+    }
+  }
+
+  /** @return the number of items rejected or discarded because the queue was full */
+  public long getRejectedCount() {
+    synchronized (workLock) {
+      return rejectedCount;
+    }
+  }
+
+  /** @return a copy of the histogram of the milliseconds the started items had been pending */
+  public MonitorHistogramLog getWaitTimeHistogram() {
+    MonitorHistogramLog histogram = new MonitorHistogramLog(WAIT_TIME_HISTOGRAM, null);
+    synchronized (workLock) {
+      histogram.merge(waitTimes);
+    }
+    return histogram;
+  }
+
+  /** @return a copy of the histogram of the milliseconds the finished items ran */
+  public MonitorHistogramLog getRunTimeHistogram() {
+    MonitorHistogramLog histogram = new MonitorHistogramLog(RUN_TIME_HISTOGRAM, null);
+    synchronized (workLock) {
+      histogram.merge(runTimes);
+    }
+    return histogram;
+  }
+
   private void startItem() {
     finishItemAndStartNew(null);
   }
@@ -93,22 +234,22 @@ public class WorkQueue {
     WorkNode ready = null;
 
     synchronized (workLock) {
+      long now = System.nanoTime();
       if (finished != null) {
-        runningJobs = finished.removeFromList(runningJobs);
+        runningJobs.remove(finished);
         runningCount--;
+        runTimes.record(toMillis(now - finished.startTime));
       }
 
       if (runningCount < maxConcurrent) {
-        ready = pendingJobs; // Head of the pendingJobs queue
+        ready = pollPending();
         if (ready != null) {
-          // The Queue reassignments are necessary since 'ready' might have been
-          // added / removed from the front of either queue, which changes its
-          // respective head.
-          pendingJobs = ready.removeFromList(pendingJobs);
-          runningJobs = ready.addToList(runningJobs, false);
+          runningJobs.add(ready);
           runningCount++;
 
           ready.setIsRunning(true);
+          ready.startTime = now;
+          waitTimes.record(toMillis(now - ready.enqueueTime));
         }
       }
     }
@@ -123,30 +264,158 @@ public class WorkQueue {
         new Runnable() {
           @Override
           public void run() {
+            synchronized (workLock) {
+              node.runner = Thread.currentThread();
+            }
             try {
-              node.getCallback().run();
+              if (!node.isCancelled) {
+                node.getCallback().run();
+              }
             } finally {
+              synchronized (workLock) {
+                node.runner = null;
+                if (node.isCancelled) {
+                  // don't leave the interrupt of the cancelled item to the next one on this thread
+                  Thread.interrupted();
+                }
+              }
               finishItemAndStartNew(node);
             }
           }
         });
   }
 
+  private void addPending(WorkNode node, boolean addToFront) {
+    PriorityLevel level = pendingJobs[node.priority.ordinal()];
+    OwnerQueue ownerQueue = level.ownerQueues.get(node.owner);
+    if (ownerQueue == null) {
+      ownerQueue = new OwnerQueue(node.owner);
+      level.ownerQueues.put(node.owner, ownerQueue);
+      if (addToFront) {
+        level.turns.addFirst(ownerQueue);
+      } else {
+        level.turns.addLast(ownerQueue);
+      }
+    } else if (addToFront) {
+      level.turns.remove(ownerQueue);
+      level.turns.addFirst(ownerQueue);
+    }
+
+    if (addToFront) {
+      ownerQueue.addFirst(node);
+    } else {
+      ownerQueue.addLast(node);
+    }
+    pendingCount++;
+  }
+
+  private boolean removePending(WorkNode node) {
+    PriorityLevel level = pendingJobs[node.priority.ordinal()];
+    OwnerQueue ownerQueue = level.ownerQueues.get(node.owner);
+    if (ownerQueue == null || !ownerQueue.remove(node)) {
+      return false;
+    }
+    if (ownerQueue.isEmpty()) {
+      level.ownerQueues.remove(node.owner);
+      level.turns.remove(ownerQueue);
+    }
+    pendingCount--;
+    return true;
+  }
+
+  @Nullable
+  private WorkNode pollPending() {
+    for (PriorityLevel level : pendingJobs) {
+      OwnerQueue ownerQueue = level.turns.pollFirst();
+      if (ownerQueue == null) {
+        continue;
+      }
+      WorkNode node = ownerQueue.pollFirst();
+      if (ownerQueue.isEmpty()) {
+        level.ownerQueues.remove(ownerQueue.owner);
+      } else {
+        // the owner's next item waits until the other owners had their turn
+        level.turns.addLast(ownerQueue);
+      }
+      pendingCount--;
+      return node;
+    }
+    return null;
+  }
+
+  @Nullable
+  private WorkNode findOldest() {
+    for (int i = pendingJobs.length - 1; i >= 0; i--) {
+      WorkNode oldest = null;
+      for (OwnerQueue ownerQueue : pendingJobs[i].turns) {
+        for (WorkNode node : ownerQueue) {
+          if (oldest == null || node.sequence < oldest.sequence) {
+            oldest = node;
+          }
+        }
+      }
+      if (oldest != null) {
+        return oldest;
+      }
+    }
+    return null;
+  }
+
+  private static int toMillis(long nanos) {
+    return (int) Math.min(TimeUnit.NANOSECONDS.toMillis(nanos), Integer.MAX_VALUE);
+  }
+
+  private static class PriorityLevel {
+    // the owner queues with pending items, in the order of their turns
+    final ArrayDeque<OwnerQueue> turns = new ArrayDeque<>();
+    final Map<Object, OwnerQueue> ownerQueues = new HashMap<>();
+  }
+
+  private static class OwnerQueue extends ArrayDeque<WorkNode> {
+    final Object owner;
+
+    OwnerQueue(Object owner) {
+      this.owner = owner;
+    }
+  }
+
   private class WorkNode implements WorkItem {
     private final Runnable callback;
-    private WorkNode next;
-    private WorkNode prev;
+    private final Priority priority;
+    private final Object owner;
     private boolean isRunning;
+    private boolean isCancelled;
+    private long sequence;
+    private long enqueueTime;
+    private long startTime;
+    @Nullable private Thread runner;
 
-    WorkNode(Runnable callback) {
+    WorkNode(Runnable callback, Priority priority, Object owner) {
       this.callback = callback;
+      this.priority = priority;
+      this.owner = owner;
     }
 
     @Override
     public boolean cancel() {
+      return cancel(false);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
       synchronized (workLock) {
+        if (isCancelled) {
+          return false;
+        }
         if (!isRunning()) {
-          pendingJobs = removeFromList(pendingJobs);
+          isCancelled = removePending(this);
+          return isCancelled;
+        }
+        if (mayInterruptIfRunning && runningJobs.contains(this)) {
+          isCancelled = true;
+          if (runner != null) {
+            runner.interrupt();
+          }
           return true;
         }
       }
@@ -157,9 +426,8 @@ public class WorkQueue {
     @Override
     public void moveToFront() {
       synchronized (workLock) {
-        if (!isRunning()) {
-          pendingJobs = removeFromList(pendingJobs);
-          pendingJobs = addToList(pendingJobs, true);
+        if (!isRunning() && removePending(this)) {
+          addPending(this, true);
         }
       }
     }
@@ -169,64 +437,44 @@ public class WorkQueue {
       return isRunning;
     }
 
-    Runnable getCallback() {
-      return callback;
+    @Override
+    public boolean isCancelled() {
+      return isCancelled;
     }
 
-    WorkNode getNext() {
-      return next;
+    Runnable getCallback() {
+      return callback;
     }
 
     void setIsRunning(boolean isRunning) {
       this.isRunning = isRunning;
     }
 
-    WorkNode addToList(WorkNode list, boolean addToFront) {
-      assert next == null;
-      assert prev == null;
-
-      if (list == null) {
-        list = next = prev = this;
-      } else {
-        next = list;
-        prev = list.prev;
-        next.prev = prev.next = this;
-      }
-
-      return addToFront ? this : list;
-    }
-
-    WorkNode removeFromList(WorkNode list) {
-      assert next != null;
-      assert prev != null;
-
-      if (list == this) {
-        if (next == this) {
-          list = null;
-        } else {
-          list = next;
-        }
-      }
-
-      next.prev = prev;
-      prev.next = next;
-      next = prev = null;
-
-      return list;
-    }
-
     void verify(boolean shouldBeRunning) {
-      assert prev.next == this;
-      assert next.prev == this;
       assert isRunning() == shouldBeRunning;
     }
   }
 
   public interface WorkItem {
+    /**
+     * Removes the item if it is still pending.
+     *
+     * @return true if the item won't run
+     */
     boolean cancel();
 
+    /**
+     * Removes the item if it is still pending, otherwise interrupts the thread running it if
+     * mayInterruptIfRunning is set.
+     *
+     * @return true if the item won't run or has been interrupted
+     */
+    boolean cancel(boolean mayInterruptIfRunning);
+
     boolean isRunning();
 
+    boolean isCancelled();
+
     void moveToFront();
   }
 }
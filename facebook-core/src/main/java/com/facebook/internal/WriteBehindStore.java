@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.facebook.internal;
+
+import android.content.SharedPreferences;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * com.facebook.internal is solely for the use of other packages within the Facebook SDK for
+ * Android. Use of any of the classes in this package is unsupported, and they may be modified or
+ * removed without warning at any time.
+ *
+ * <p>Write-behind front of a {@link SharedPreferences} file. Updated keys are only marked dirty,
+ * and their values are serialized and written together in a single commit a short while later, or
+ * as soon as the app goes to the background, so that a burst of updates costs one write.
+ */
+@AutoHandleExceptions
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class WriteBehindStore {
+
+  /** Produces the current value of a key when it is written, or null to remove the key. */
+  public interface ValueProvider {
+    @Nullable
+    String getValue();
+  }
+
+  private static final long FLUSH_DELAY_MILLISECONDS = 5000;
+  private static final List<WriteBehindStore> stores = new CopyOnWriteArrayList<>();
+  @Nullable private static ScheduledExecutorService scheduler;
+
+  private final SharedPreferences sharedPreferences;
+  private final Map<String, ValueProvider> dirtyKeys = new HashMap<>();
+  private boolean flushScheduled = false;
+  private int writeCount = 0;
+
+  private final Runnable flushRunnable =
+      new Runnable() {
+        @Override
+        public void run() {
+          flush();
+        }
+      };
+
+  public WriteBehindStore(SharedPreferences sharedPreferences) {
+    this.sharedPreferences = sharedPreferences;
+    stores.add(this);
+  }
+
+  /**
+   * Marks the key as changed. Its value is read from the provider when the store is flushed, so
+   * only the last of several updates in a row is ever serialized.
+   */
+  public void markDirty(String key, ValueProvider valueProvider) {
+    synchronized (this) {
+      dirtyKeys.put(key, valueProvider);
+      if (flushScheduled) {
+        return;
+      }
+      flushScheduled = true;
+    }
+    getScheduler().schedule(flushRunnable, FLUSH_DELAY_MILLISECONDS, TimeUnit.MILLISECONDS);
+  }
+
+  /** Writes every dirty key now, with a single commit of the preferences. */
+  public synchronized void flush() {
+    flushScheduled = false;
+    if (dirtyKeys.isEmpty()) {
+      return;
+    }
+    SharedPreferences.Editor editor = sharedPreferences.edit();
+    for (Map.Entry<String, ValueProvider> entry : dirtyKeys.entrySet()) {
+      String value = entry.getValue().getValue();
+      if (value == null) {
+        editor.remove(entry.getKey());
+      } else {
+        editor.putString(entry.getKey(), value);
+      }
+    }
+    dirtyKeys.clear();
+    editor.apply();
+    writeCount++;
+  }
+
+  /** Returns how many times the store has written to its preferences. */
+  public synchronized int getWriteCount() {
+    return writeCount;
+  }
+
+  /** Flushes every store, when the app is about to go to the background. */
+  public static void flushAll() {
+    for (WriteBehindStore store : stores) {
+      store.flush();
+    }
+  }
+
+  private static synchronized ScheduledExecutorService getScheduler() {
+    if (scheduler == null) {
+      scheduler = SdkExecutors.getSerialLane("write_behind");
+    }
+    return scheduler;
+  }
+}
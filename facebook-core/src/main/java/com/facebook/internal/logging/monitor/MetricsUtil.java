@@ -20,14 +20,13 @@
 package com.facebook.internal.logging.monitor;
 
 import android.os.SystemClock;
-import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import com.facebook.FacebookSdk;
 import com.facebook.internal.Utility;
 import com.facebook.internal.instrument.crashshield.AutoHandleExceptions;
 import com.facebook.internal.logging.LogCategory;
 import com.facebook.internal.logging.LogEvent;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /*
  * startMeasureFor and stopMeasureFor should always be called in pairs.
@@ -58,10 +57,28 @@ import java.util.Map;
 public class MetricsUtil {
   private static MetricsUtil metricsUtil;
   private static final String CLASS_TAG = MetricsUtil.class.getCanonicalName();
-  private final Map<MetricsKey, TempMetrics> metricsDataMap = new HashMap<>();
   protected static final int INVALID_TIME = -1;
+  // the ongoing measurements are spread over independently locked stripes
+  private static final int STRIPE_BITS = 4;
+  private static final int STRIPE_COUNT = 1 << STRIPE_BITS;
+  private static final PerformanceEventName[] EVENT_NAMES = PerformanceEventName.values();
 
-  private MetricsUtil() {}
+  private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+  // per event name, shared by all of its logs
+  private final LogEvent[] logEvents = new LogEvent[EVENT_NAMES.length];
+  private final MonitorLog[] invalidLogs = new MonitorLog[EVENT_NAMES.length];
+
+  private MetricsUtil() {
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      stripes[i] = new Stripe();
+    }
+    for (PerformanceEventName eventName : EVENT_NAMES) {
+      LogEvent logEvent = new LogEvent(eventName.toString(), LogCategory.PERFORMANCE);
+      logEvents[eventName.ordinal()] = logEvent;
+      invalidLogs[eventName.ordinal()] =
+          new MonitorLog.LogBuilder(logEvent).timeSpent(INVALID_TIME).build();
+    }
+  }
 
   public static synchronized MetricsUtil getInstance() {
     if (metricsUtil == null) {
@@ -82,10 +99,9 @@ public class MetricsUtil {
    *     measurement tracks the same event name and extra id.
    */
   void startMeasureFor(PerformanceEventName eventName, long extraId) {
-    MetricsKey keyOfMetricsData = new MetricsKey(eventName, extraId);
     long timeStart = SystemClock.elapsedRealtime();
-    TempMetrics tempMetrics = new TempMetrics(timeStart);
-    metricsDataMap.put(keyOfMetricsData, tempMetrics);
+    int hash = hash(eventName.ordinal(), extraId);
+    stripes[hash & (STRIPE_COUNT - 1)].put(eventName.ordinal(), extraId, hash, timeStart);
   }
 
   /**
@@ -101,28 +117,19 @@ public class MetricsUtil {
    */
   MonitorLog stopMeasureFor(PerformanceEventName eventName, long extraId) {
     long timeEnd = SystemClock.elapsedRealtime();
-    MetricsKey keyOfMetricsData = new MetricsKey(eventName, extraId);
-    LogEvent logEvent = new LogEvent(eventName.toString(), LogCategory.PERFORMANCE);
-    MonitorLog monitorLog = new MonitorLog.LogBuilder(logEvent).timeSpent(INVALID_TIME).build();
-    if (!metricsDataMap.containsKey(keyOfMetricsData)) {
-      StringBuilder warningMessage = new StringBuilder();
-      warningMessage.append("Can't measure for ");
-      warningMessage.append(eventName);
-      warningMessage.append(", startMeasureFor hasn't been called before.");
-
-      Utility.logd(CLASS_TAG, warningMessage.toString());
-      return monitorLog;
-    }
-
-    TempMetrics tempMetrics = metricsDataMap.get(keyOfMetricsData);
-    if (tempMetrics != null) {
-      long timeStart = tempMetrics.timeStart;
-      int deltaTime = (int) (timeEnd - timeStart);
-      monitorLog = new MonitorLog.LogBuilder(logEvent).timeSpent(deltaTime).build();
+    int hash = hash(eventName.ordinal(), extraId);
+    long timeStart = stripes[hash & (STRIPE_COUNT - 1)].remove(eventName.ordinal(), extraId, hash);
+    if (timeStart == Stripe.NO_TIME) {
+      if (FacebookSdk.isDebugEnabled()) {
+        Utility.logd(
+            CLASS_TAG,
+            "Can't measure for " + eventName + ", startMeasureFor hasn't been called before.");
+      }
+      return invalidLogs[eventName.ordinal()];
     }
 
-    metricsDataMap.remove(keyOfMetricsData);
-    return monitorLog;
+    int deltaTime = (int) (timeEnd - timeStart);
+    return new MonitorLog.LogBuilder(logEvents[eventName.ordinal()]).timeSpent(deltaTime).build();
   }
 
   /**
@@ -135,46 +142,138 @@ public class MetricsUtil {
    *     measurement tracks the same event name and extra id.
    */
   void removeTempMetricsDataFor(PerformanceEventName eventName, long extraId) {
-    MetricsKey keyOfMetricsData = new MetricsKey(eventName, extraId);
-    metricsDataMap.remove(keyOfMetricsData);
+    int hash = hash(eventName.ordinal(), extraId);
+    stripes[hash & (STRIPE_COUNT - 1)].remove(eventName.ordinal(), extraId, hash);
+  }
+
+  /**
+   * This method will create the log for a value of the performance event which has been measured
+   * without startMeasureFor and stopMeasureFor, e.g. the age of a cached value.
+   *
+   * @param eventName the target function(s)
+   * @param timeSpent the measured value in milliseconds
+   */
+  MonitorLog createLogFor(PerformanceEventName eventName, int timeSpent) {
+    return new MonitorLog.LogBuilder(logEvents[eventName.ordinal()]).timeSpent(timeSpent).build();
+  }
+
+  private static int hash(int event, long extraId) {
+    long hash = (extraId * 31 + event) * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
   }
 
-  private static class MetricsKey {
-    private PerformanceEventName performanceEventName;
-    private long extraId;
+  /**
+   * Start times of the ongoing measurements of one stripe, in an open addressing table of primitive
+   * arrays, so that neither starting nor stopping a measurement allocates. The arrays only grow,
+   * when the table gets half full.
+   */
+  private static final class Stripe {
+    static final long NO_TIME = Long.MIN_VALUE;
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] events;
+    private long[] extraIds;
+    private int[] hashes;
+    private long[] timeStarts;
+    private int size;
 
-    MetricsKey(PerformanceEventName performanceEventName, long extraId) {
-      this.performanceEventName = performanceEventName;
-      this.extraId = extraId;
+    Stripe() {
+      allocate(INITIAL_CAPACITY);
+    }
+
+    synchronized void put(int event, long extraId, int hash, long timeStart) {
+      int slot = find(event, extraId, hash);
+      if (events[slot] == EMPTY) {
+        if (2 * (size + 1) > events.length) {
+          grow();
+          slot = find(event, extraId, hash);
+        }
+        events[slot] = event;
+        extraIds[slot] = extraId;
+        hashes[slot] = hash;
+        size++;
+      }
+      timeStarts[slot] = timeStart;
     }
 
-    @Override
-    public boolean equals(@Nullable Object o) {
-      if (this == o) {
-        return true;
+    /** Removes the measurement and returns its start time, or NO_TIME if there is none. */
+    synchronized long remove(int event, long extraId, int hash) {
+      int slot = find(event, extraId, hash);
+      if (events[slot] == EMPTY) {
+        return NO_TIME;
       }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
+      long timeStart = timeStarts[slot];
+      size--;
+
+      // shift back the entries after it that would no longer be found past the hole
+      int mask = events.length - 1;
+      int hole = slot;
+      int next = slot;
+      while (true) {
+        next = (next + 1) & mask;
+        if (events[next] == EMPTY) {
+          break;
+        }
+        int home = index(hashes[next], mask);
+        boolean reachable =
+            hole <= next ? hole < home && home <= next : hole < home || home <= next;
+        if (reachable) {
+          continue;
+        }
+        events[hole] = events[next];
+        extraIds[hole] = extraIds[next];
+        hashes[hole] = hashes[next];
+        timeStarts[hole] = timeStarts[next];
+        hole = next;
       }
-      MetricsKey that = (MetricsKey) o;
-      return extraId == that.extraId && performanceEventName == that.performanceEventName;
+      events[hole] = EMPTY;
+      return timeStart;
     }
 
-    @Override
-    public int hashCode() {
-      int hashCode = 17;
-      hashCode = 31 * hashCode + performanceEventName.hashCode();
-      hashCode = 31 * hashCode + (int) (extraId ^ (extraId >>> 32));
-      return hashCode;
+    // the slot holding the measurement, or the empty slot where it would go
+    private int find(int event, long extraId, int hash) {
+      int mask = events.length - 1;
+      int slot = index(hash, mask);
+      while (events[slot] != EMPTY && (events[slot] != event || extraIds[slot] != extraId)) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
     }
-  }
 
-  // TempMetrics stores the start status at the beginning of the measurement
-  private static class TempMetrics {
-    private long timeStart;
+    // the low bits of the hash pick the stripe, the table uses the others
+    private static int index(int hash, int mask) {
+      return (hash >>> STRIPE_BITS) & mask;
+    }
+
+    private void grow() {
+      int[] oldEvents = events;
+      long[] oldExtraIds = extraIds;
+      int[] oldHashes = hashes;
+      long[] oldTimeStarts = timeStarts;
+      allocate(oldEvents.length * 2);
+      int mask = events.length - 1;
+      for (int i = 0; i < oldEvents.length; i++) {
+        if (oldEvents[i] == EMPTY) {
+          continue;
+        }
+        int slot = index(oldHashes[i], mask);
+        while (events[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        events[slot] = oldEvents[i];
+        extraIds[slot] = oldExtraIds[i];
+        hashes[slot] = oldHashes[i];
+        timeStarts[slot] = oldTimeStarts[i];
+      }
+    }
 
-    TempMetrics(long timeStart) {
-      this.timeStart = timeStart;
+    private void allocate(int capacity) {
+      events = new int[capacity];
+      Arrays.fill(events, EMPTY);
+      extraIds = new long[capacity];
+      hashes = new int[capacity];
+      timeStarts = new long[capacity];
     }
   }
 }
@@ -144,11 +144,15 @@ public class Monitor {
    * @param extraId is an extra id that will be used with the performance event name, each
    *     measurement tracks the same event name and extra id. Especially For the case that
    *     startMeasurePerfFor and stopMeasurePerfFor are called from the different threads
+   * @return true if the measurement has been started, stopMeasurePerfFor only needs to be called
+   *     in this case. It's false if Monitor is disabled or the event is not sampled this time.
    */
-  public static void startMeasurePerfFor(PerformanceEventName eventName, long extraId) {
+  public static boolean startMeasurePerfFor(PerformanceEventName eventName, long extraId) {
     if (isEnabled && isSampled(eventName.toString())) {
       metricsUtil.startMeasureFor(eventName, extraId);
+      return true;
     }
+    return false;
   }
 
   /**
@@ -162,10 +166,12 @@ public class Monitor {
    * startMeasurePerfFor and stopMeasurePerfFor.
    *
    * @param eventName indicates the target function(s)
+   * @return true if the measurement has been started, stopMeasurePerfFor only needs to be called
+   *     in this case
    */
-  public static void startMeasurePerfFor(PerformanceEventName eventName) {
+  public static boolean startMeasurePerfFor(PerformanceEventName eventName) {
     long metricsCurrentThreadId = getCurrentThreadID();
-    startMeasurePerfFor(eventName, metricsCurrentThreadId);
+    return startMeasurePerfFor(eventName, metricsCurrentThreadId);
   }
 
   /**
@@ -180,6 +186,9 @@ public class Monitor {
    *     startMeasurePerfFor and stopMeasurePerfFor are called from the different threads
    */
   public static void stopMeasurePerfFor(PerformanceEventName eventName, long extraId) {
+    if (!isEnabled) {
+      return;
+    }
     MonitorLog monitorLog = metricsUtil.stopMeasureFor(eventName, extraId);
     if (monitorLog.isValid()) {
       addLog(monitorLog);
@@ -204,6 +213,23 @@ public class Monitor {
     stopMeasurePerfFor(eventName, metricsCurrentThreadId);
   }
 
+  /**
+   * record a value which has been measured without startMeasurePerfFor and stopMeasurePerfFor for
+   * the specific event, e.g. the age of a cached value, and create a new log which will be sent to
+   * the server later
+   *
+   * @param eventName indicates the target function(s)
+   * @param timeSpent the measured value in milliseconds
+   */
+  public static void recordPerfFor(PerformanceEventName eventName, int timeSpent) {
+    if (isEnabled && isSampled(eventName.toString())) {
+      MonitorLog monitorLog = metricsUtil.createLogFor(eventName, timeSpent);
+      if (monitorLog.isValid()) {
+        addLog(monitorLog);
+      }
+    }
+  }
+
   /**
    * This method will remove the temporary metrics data for the specific performance event.
    * Considering the stopMeasurePerfFor may not be guarantee to be executed, you can remove the
@@ -268,9 +294,9 @@ public class Monitor {
     if (Utility.isNullOrEmpty(eventName)) {
       return false;
     }
-    int samplingRate = defaultSamplingRate;
-    if (samplingRatesMap.containsKey(eventName)) {
-      samplingRate = samplingRatesMap.get(eventName);
+    Integer samplingRate = samplingRatesMap.get(eventName);
+    if (samplingRate == null) {
+      samplingRate = defaultSamplingRate;
     }
     return samplingRate > 0 && random.nextInt(samplingRate) == 0;
   }
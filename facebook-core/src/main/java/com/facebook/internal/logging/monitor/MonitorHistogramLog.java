@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal.logging.monitor;
+
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_APP_VERSION;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_CATEGORY;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_EVENT_NAME;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_HISTOGRAM_BUCKETS;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_SAMPLE_COUNT;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_TIME_SPENT_MAX;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_TIME_SPENT_MIN;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_TIME_SPENT_P50;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_TIME_SPENT_P95;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_TIME_SPENT_P99;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_TIME_SPENT_SUM;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import com.facebook.internal.logging.ExternalLog;
+import com.facebook.internal.logging.LogCategory;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * MonitorHistogramLog aggregates the time spent of many measurements of one performance event into
+ * a latency histogram, so that only a summary is sent to the server instead of one log per
+ * measurement.
+ *
+ * <p>Values up to 15 have their own bucket, every larger power of two is split into 8 buckets of
+ * equal width. A percentile is reported as the middle of its bucket, which is at most 1/16 off the
+ * recorded value. Histograms with the same event name and app version use the same buckets, so
+ * they can be merged without losing accuracy.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class MonitorHistogramLog implements ExternalLog {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int LINEAR_BUCKETS = 16;
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // the highest bit of a non negative int is bit 30
+  static final int BUCKET_COUNT = LINEAR_BUCKETS + (30 - 4 + 1) * SUB_BUCKETS;
+
+  private final String eventName;
+  private final String appVersion;
+  private final long[] bucketCounts = new long[BUCKET_COUNT];
+  private long count;
+  private long sum;
+  private int min = Integer.MAX_VALUE;
+  private int max;
+
+  public MonitorHistogramLog(String eventName, @Nullable String appVersion) {
+    this.eventName = eventName;
+    this.appVersion = appVersion == null ? "" : appVersion;
+  }
+
+  // restores a histogram read from the disk
+  MonitorHistogramLog(
+      String eventName,
+      @Nullable String appVersion,
+      long[] bucketCounts,
+      long count,
+      long sum,
+      int min,
+      int max) {
+    this(eventName, appVersion);
+    System.arraycopy(
+        bucketCounts, 0, this.bucketCounts, 0, Math.min(bucketCounts.length, BUCKET_COUNT));
+    this.count = count;
+    this.sum = sum;
+    this.min = count == 0 ? Integer.MAX_VALUE : min;
+    this.max = max;
+  }
+
+  @Override
+  public String getEventName() {
+    return eventName;
+  }
+
+  @Override
+  public LogCategory getLogCategory() {
+    return LogCategory.PERFORMANCE;
+  }
+
+  public String getAppVersion() {
+    return appVersion;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getSum() {
+    return sum;
+  }
+
+  public int getMin() {
+    return count == 0 ? 0 : min;
+  }
+
+  public int getMax() {
+    return max;
+  }
+
+  long getBucketCount(int index) {
+    return bucketCounts[index];
+  }
+
+  /** Adds one measurement, negative values are invalid and ignored. */
+  public void record(int timeSpent) {
+    if (timeSpent < 0) {
+      return;
+    }
+    bucketCounts[getBucketIndex(timeSpent)]++;
+    count++;
+    sum += timeSpent;
+    min = Math.min(min, timeSpent);
+    max = Math.max(max, timeSpent);
+  }
+
+  /** Adds all measurements of a histogram of the same event name and app version. */
+  public void merge(MonitorHistogramLog other) {
+    if (!eventName.equals(other.eventName) || !appVersion.equals(other.appVersion)) {
+      throw new IllegalArgumentException(
+          "Can't merge histograms of " + other.eventName + " into " + eventName);
+    }
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      bucketCounts[i] += other.bucketCounts[i];
+    }
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the time spent at the given percentile, or 0 if nothing was recorded
+   */
+  public int getPercentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * count);
+    // the lowest and the highest values are known exactly
+    if (rank <= 1) {
+      return min;
+    }
+    if (rank >= count) {
+      return max;
+    }
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += bucketCounts[i];
+      if (seen >= rank) {
+        return Math.min(Math.max(getBucketMiddle(i), min), max);
+      }
+    }
+    return max;
+  }
+
+  static int getBucketIndex(int value) {
+    if (value < LINEAR_BUCKETS) {
+      return value;
+    }
+    int exponent = 31 - Integer.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  static int getBucketMiddle(int index) {
+    if (index < LINEAR_BUCKETS) {
+      return index;
+    }
+    int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+    int shift = exponent - SUB_BUCKET_BITS;
+    long lower = (long) (SUB_BUCKETS + (index - LINEAR_BUCKETS) % SUB_BUCKETS) << shift;
+    return (int) Math.min(lower + (1L << shift) / 2, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %s, %s: %s, %s: %s, %s: %s, %s: %s, %s: %s",
+        PARAM_EVENT_NAME,
+        eventName,
+        PARAM_APP_VERSION,
+        appVersion,
+        PARAM_SAMPLE_COUNT,
+        count,
+        PARAM_TIME_SPENT_P50,
+        getPercentile(50),
+        PARAM_TIME_SPENT_P95,
+        getPercentile(95),
+        PARAM_TIME_SPENT_P99,
+        getPercentile(99));
+  }
+
+  @Override
+  public JSONObject convertToJSONObject() {
+    JSONObject object = new JSONObject();
+    try {
+      object.put(PARAM_EVENT_NAME, eventName);
+      object.put(PARAM_CATEGORY, LogCategory.PERFORMANCE);
+      object.put(PARAM_APP_VERSION, appVersion);
+      object.put(PARAM_SAMPLE_COUNT, count);
+      object.put(PARAM_TIME_SPENT_SUM, sum);
+      object.put(PARAM_TIME_SPENT_MIN, getMin());
+      object.put(PARAM_TIME_SPENT_MAX, max);
+      object.put(PARAM_TIME_SPENT_P50, getPercentile(50));
+      object.put(PARAM_TIME_SPENT_P95, getPercentile(95));
+      object.put(PARAM_TIME_SPENT_P99, getPercentile(99));
+
+      // only the non empty buckets, keyed by bucket index
+      JSONObject buckets = new JSONObject();
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        if (bucketCounts[i] > 0) {
+          buckets.put(String.valueOf(i), bucketCounts[i]);
+        }
+      }
+      object.put(PARAM_HISTOGRAM_BUCKETS, buckets);
+    } catch (JSONException e) {
+      /* no op */
+    }
+    return object;
+  }
+}
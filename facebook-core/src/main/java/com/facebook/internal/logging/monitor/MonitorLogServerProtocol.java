@@ -11,6 +11,15 @@ public class MonitorLogServerProtocol {
   public static final String PARAM_DEVICE_OS_VERSION = "device_os_version";
   public static final String PARAM_TIME_START = "time_start";
   public static final String PARAM_TIME_SPENT = "time_spent";
+  public static final String PARAM_APP_VERSION = "app_version";
+  public static final String PARAM_SAMPLE_COUNT = "sample_count";
+  public static final String PARAM_TIME_SPENT_SUM = "time_spent_sum";
+  public static final String PARAM_TIME_SPENT_MIN = "time_spent_min";
+  public static final String PARAM_TIME_SPENT_MAX = "time_spent_max";
+  public static final String PARAM_TIME_SPENT_P50 = "time_spent_p50";
+  public static final String PARAM_TIME_SPENT_P95 = "time_spent_p95";
+  public static final String PARAM_TIME_SPENT_P99 = "time_spent_p99";
+  public static final String PARAM_HISTOGRAM_BUCKETS = "histogram_buckets";
 
   public static final String APPLICATION_FIELDS = "fields";
   public static final String MONITOR_CONFIG = "monitoring_config";
@@ -30,15 +30,18 @@ import androidx.annotation.RestrictTo;
 import com.facebook.FacebookSdk;
 import com.facebook.GraphRequest;
 import com.facebook.GraphRequestBatch;
+import com.facebook.internal.SdkExecutors;
 import com.facebook.internal.Utility;
 import com.facebook.internal.logging.ExternalLog;
+import com.facebook.internal.logging.LogCategory;
 import com.facebook.internal.logging.LoggingCache;
 import com.facebook.internal.logging.LoggingManager;
 import com.facebook.internal.logging.LoggingStore;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -53,6 +56,10 @@ import org.json.JSONObject;
  * If yes, MonitorLoggingManager will send the logs back to our server. If not,
  * MonitorLoggingManager will schedule a future task of sending logs at regular intervals.
  *
+ * <p>Performance logs which only have a time spent are not queued one by one, they are recorded in
+ * a MonitorHistogramLog per event name and app version, and only the histograms are added to the
+ * MonitorLoggingQueue when flushing.
+ *
  * <p>Each GraphRequest can have limited number of logs in the parameter in maximum. We send the
  * GraphRequest(s) using GraphRequestBatch call.
  */
@@ -63,11 +70,14 @@ public class MonitorLoggingManager implements LoggingManager {
   private static final String ENTRIES_KEY = "entries";
   private static final String MONITORING_ENDPOINT = "monitorings";
   private final ScheduledExecutorService singleThreadExecutor =
-      Executors.newSingleThreadScheduledExecutor();
+      SdkExecutors.getSerialLane("monitor");
   private static MonitorLoggingManager monitorLoggingManager;
   private LoggingCache logQueue;
   private LoggingStore logStore;
   private ScheduledFuture flushTimer;
+  // key is the event name and the app version
+  private final Map<String, MonitorHistogramLog> histograms = new HashMap<>();
+  @Nullable private static String appVersion;
 
   // device information
   private static String deviceOSVersion;
@@ -111,7 +121,7 @@ public class MonitorLoggingManager implements LoggingManager {
         new Runnable() {
           @Override
           public void run() {
-            if (logQueue.addLog(log)) {
+            if (!addToHistogram(log) && logQueue.addLog(log)) {
               flushAndWait();
             } else if (flushTimer == null) {
               flushTimer =
@@ -121,10 +131,49 @@ public class MonitorLoggingManager implements LoggingManager {
         });
   }
 
+  /**
+   * Records the time spent of a performance log without a time start in the histogram of its event
+   * name.
+   *
+   * @return false if the log should be sent on its own
+   */
+  private boolean addToHistogram(ExternalLog log) {
+    if (!(log instanceof MonitorLog) || log.getLogCategory() != LogCategory.PERFORMANCE) {
+      return false;
+    }
+    MonitorLog monitorLog = (MonitorLog) log;
+    if (monitorLog.getTimeStart() != 0 || !monitorLog.isValid()) {
+      return false;
+    }
+
+    if (appVersion == null) {
+      appVersion = Utility.getAppVersion();
+    }
+    String key = monitorLog.getEventName() + "_" + appVersion;
+    synchronized (histograms) {
+      MonitorHistogramLog histogram = histograms.get(key);
+      if (histogram == null) {
+        histogram = new MonitorHistogramLog(monitorLog.getEventName(), appVersion);
+        histograms.put(key, histogram);
+      }
+      histogram.record(monitorLog.getTimeSpent());
+    }
+    return true;
+  }
+
   @Override
   public void flushAndWait() {
     if (flushTimer != null) {
       flushTimer.cancel(true);
+      flushTimer = null;
+    }
+
+    // only the histogram summaries are sent, the measurements are not kept after flushing
+    synchronized (histograms) {
+      if (!histograms.isEmpty()) {
+        logQueue.addLogs(histograms.values());
+        histograms.clear();
+      }
     }
 
     // build requests
@@ -21,18 +21,31 @@
 package com.facebook.internal.logging.monitor;
 
 import android.content.Context;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import com.facebook.FacebookSdk;
 import com.facebook.internal.Utility;
 import com.facebook.internal.logging.ExternalLog;
+import com.facebook.internal.logging.LogCategory;
+import com.facebook.internal.logging.LogEvent;
 import com.facebook.internal.logging.LoggingStore;
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * MonitorLoggingStore will read/write logs from/to the disk. When the app is stopped or crashed,
@@ -43,12 +56,33 @@ import java.util.Collection;
  * reduce the usage of storage.
  *
  * <p>We will fetch the logs in the disk and send them to the server once Monitor is enabled.
+ *
+ * <p>The logs are appended to the file as compact binary records: a header, then for each record
+ * its length, its type and its fields. The event name and category of the logs are written once
+ * in the file, and referred to by id afterwards. Once the file would grow over MAX_STORE_SIZE, it's
+ * rewritten with only the newest logs.
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public class MonitorLoggingStore implements LoggingStore {
   private static MonitorLoggingStore monitorLoggingStore;
   public static final String PERSISTED_LOGS_FILENAME = "facebooksdk.monitoring.persistedlogs";
 
+  private static final int MAGIC = 0x464d4c53;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 5;
+  private static final int RECORD_MONITOR_LOG = 1;
+  private static final int RECORD_HISTOGRAM_LOG = 2;
+  // defines the next event id, as a category and an event name
+  private static final int RECORD_LOG_EVENT = 3;
+
+  // in bytes, the file is trimmed to 3/4 of it when it's full
+  private static final Integer MAX_STORE_SIZE = 128 * 1024;
+
+  // the event ids defined in the file, and the size of the file when they were read or written.
+  // The file is read again if its size has changed since.
+  @Nullable private Map<String, Integer> eventIds;
+  private long knownFileSize = -1;
+
   private MonitorLoggingStore() {}
 
   public static synchronized MonitorLoggingStore getInstance() {
@@ -65,19 +99,15 @@ public class MonitorLoggingStore implements LoggingStore {
    * @return logs fetched from the disk
    */
   @Override
-  public Collection<ExternalLog> readAndClearStore() {
+  public synchronized Collection<ExternalLog> readAndClearStore() {
     Collection<ExternalLog> logs = new ArrayList<>();
     Context context = FacebookSdk.getApplicationContext();
-    ObjectInputStream ois = null;
     try {
-      InputStream is = context.openFileInput(PERSISTED_LOGS_FILENAME);
-      ois = new ObjectInputStream(new BufferedInputStream(is));
-      logs = (Collection<ExternalLog>) ois.readObject();
+      logs = readLogs(context.getFileStreamPath(PERSISTED_LOGS_FILENAME));
     } catch (Exception e) {
       // swallow Exception to avoid user's app to crash
     } finally {
-      Utility.closeQuietly(ois);
-
+      eventIds = null;
       try {
         context.getFileStreamPath(PERSISTED_LOGS_FILENAME).delete();
       } catch (Exception e) {
@@ -88,29 +118,261 @@ public class MonitorLoggingStore implements LoggingStore {
   }
 
   /**
-   * We will delete the file if there is any exception thrown.
+   * Appends the logs to the ones already on the disk. We will delete the file if there is any
+   * exception thrown.
    *
    * @param logs Collection of Externallog which should be written into disk
    */
   @Override
-  public void saveLogsToDisk(Collection<ExternalLog> logs) {
-    ObjectOutputStream oos = null;
+  public synchronized void saveLogsToDisk(Collection<ExternalLog> logs) {
     Context context = FacebookSdk.getApplicationContext();
-
+    File file = context.getFileStreamPath(PERSISTED_LOGS_FILENAME);
+    OutputStream os = null;
     try {
-      oos =
-          new ObjectOutputStream(
-              new BufferedOutputStream(context.openFileOutput(PERSISTED_LOGS_FILENAME, 0)));
-      oos.writeObject(logs);
+      if (eventIds == null || file.length() != knownFileSize) {
+        readLogs(file);
+      }
+      if (knownFileSize >= HEADER_SIZE) {
+        Map<String, Integer> ids = new HashMap<>(eventIds);
+        byte[] records = encodeLogs(logs, ids);
+        if (knownFileSize + records.length <= MAX_STORE_SIZE) {
+          os = new FileOutputStream(file, true);
+          os.write(records);
+          eventIds = ids;
+          knownFileSize += records.length;
+          return;
+        }
+      }
+
+      // the file is full or can't be appended to, rewrite it with the newest logs
+      List<ExternalLog> allLogs = readLogs(file);
+      allLogs.addAll(logs);
+      int first = 0;
+      int limit = MAX_STORE_SIZE;
+      Map<String, Integer> ids = new HashMap<>();
+      byte[] records = encodeLogs(allLogs, ids);
+      if (records.length == 0) {
+        return;
+      }
+      while (HEADER_SIZE + records.length > limit && first < allLogs.size()) {
+        limit = MAX_STORE_SIZE / 4 * 3;
+        // drop the oldest logs, about as many as there are bytes too many
+        int size = HEADER_SIZE + records.length;
+        int remaining = allLogs.size() - first;
+        first += Math.max(1, (int) ((long) remaining * (size - limit) / size));
+        ids = new HashMap<>();
+        records = encodeLogs(allLogs.subList(first, allLogs.size()), ids);
+      }
+
+      File tempFile = new File(file.getPath() + ".tmp");
+      os = new BufferedOutputStream(new FileOutputStream(tempFile));
+      DataOutputStream out = new DataOutputStream(os);
+      out.writeInt(MAGIC);
+      out.writeByte(FORMAT_VERSION);
+      out.write(records);
+      out.close();
+      if (!tempFile.renameTo(file)) {
+        throw new IOException("Failed to rename " + tempFile);
+      }
+      eventIds = ids;
+      knownFileSize = HEADER_SIZE + records.length;
     } catch (Exception e) {
       // delete the file anyway, since saving to the disk failed
+      eventIds = null;
       try {
-        context.getFileStreamPath(PERSISTED_LOGS_FILENAME).delete();
+        file.delete();
       } catch (Exception innerException) {
         // swallow Exception to avoid user's app to crash
       }
     } finally {
-      Utility.closeQuietly(oos);
+      Utility.closeQuietly(os);
+    }
+  }
+
+  /**
+   * Reads the logs of the file, oldest first, and loads its event ids. An incomplete record at the
+   * end of the file, e.g. if the app was killed while appending, is ignored.
+   */
+  private List<ExternalLog> readLogs(File file) throws IOException {
+    List<ExternalLog> logs = new ArrayList<>();
+    eventIds = new HashMap<>();
+    knownFileSize = -1;
+    if (!file.exists() || file.length() < HEADER_SIZE || file.length() > 2L * MAX_STORE_SIZE) {
+      return logs;
+    }
+
+    byte[] content = new byte[(int) file.length()];
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      in.readFully(content);
+    } finally {
+      Utility.closeQuietly(in);
+    }
+    in = new DataInputStream(new ByteArrayInputStream(content));
+    if (in.readInt() != MAGIC || in.readUnsignedByte() != FORMAT_VERSION) {
+      return logs;
+    }
+
+    List<LogEvent> logEvents = new ArrayList<>();
+    int end = HEADER_SIZE;
+    try {
+      while (in.available() > 0) {
+        int length = (int) readVarLong(in);
+        if (length < 0 || length > in.available()) {
+          break;
+        }
+        byte[] record = new byte[length];
+        in.readFully(record);
+        end = content.length - in.available();
+
+        ExternalLog log = decodeRecord(record, logEvents);
+        if (log != null) {
+          logs.add(log);
+        }
+      }
+    } catch (IOException e) {
+      // the length of the last record is incomplete
+    }
+
+    for (int i = 0; i < logEvents.size(); i++) {
+      LogEvent logEvent = logEvents.get(i);
+      eventIds.put(getEventKey(logEvent.getLogCategory(), logEvent.getEventName()), i);
+    }
+    // the file can't be appended to after an incomplete record
+    knownFileSize = end == content.length ? end : -1;
+    return logs;
+  }
+
+  /**
+   * Encodes the logs as records, preceded by the definitions of the event ids missing in eventIds.
+   *
+   * @return the records, empty if none of the logs can be stored
+   */
+  private static byte[] encodeLogs(
+      Collection<? extends ExternalLog> logs, Map<String, Integer> eventIds) throws IOException {
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    DataOutputStream recordsOut = new DataOutputStream(records);
+    ByteArrayOutputStream record = new ByteArrayOutputStream(32);
+    DataOutputStream out = new DataOutputStream(record);
+    for (ExternalLog log : logs) {
+      if (!(log instanceof MonitorLog) && !(log instanceof MonitorHistogramLog)) {
+        continue;
+      }
+      String key = getEventKey(log.getLogCategory(), log.getEventName());
+      Integer eventId = eventIds.get(key);
+      if (eventId == null) {
+        eventId = eventIds.size();
+        eventIds.put(key, eventId);
+        record.reset();
+        out.writeByte(RECORD_LOG_EVENT);
+        out.writeByte(log.getLogCategory().ordinal());
+        out.writeUTF(log.getEventName());
+        writeRecord(recordsOut, record);
+      }
+
+      record.reset();
+      if (log instanceof MonitorLog) {
+        MonitorLog monitorLog = (MonitorLog) log;
+        out.writeByte(RECORD_MONITOR_LOG);
+        writeVarLong(out, eventId);
+        writeVarLong(out, monitorLog.getTimeStart());
+        writeVarLong(out, monitorLog.getTimeSpent());
+      } else {
+        MonitorHistogramLog histogram = (MonitorHistogramLog) log;
+        out.writeByte(RECORD_HISTOGRAM_LOG);
+        writeVarLong(out, eventId);
+        out.writeUTF(histogram.getAppVersion());
+        writeVarLong(out, histogram.getCount());
+        writeVarLong(out, histogram.getSum());
+        writeVarLong(out, histogram.getMin());
+        writeVarLong(out, histogram.getMax());
+        // only the non empty buckets, as pairs of index and count
+        for (int i = 0; i < MonitorHistogramLog.BUCKET_COUNT; i++) {
+          long bucketCount = histogram.getBucketCount(i);
+          if (bucketCount > 0) {
+            writeVarLong(out, i);
+            writeVarLong(out, bucketCount);
+          }
+        }
+      }
+      writeRecord(recordsOut, record);
+    }
+    recordsOut.flush();
+    return records.toByteArray();
+  }
+
+  private static void writeRecord(DataOutputStream out, ByteArrayOutputStream record)
+      throws IOException {
+    writeVarLong(out, record.size());
+    record.writeTo(out);
+  }
+
+  /**
+   * @return the log of the record, or null if it's the definition of an event id or it can't be
+   *     read, e.g. it's of an unknown type
+   */
+  @Nullable
+  private static ExternalLog decodeRecord(byte[] record, List<LogEvent> logEvents) {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+    try {
+      int type = in.readUnsignedByte();
+      if (type == RECORD_LOG_EVENT) {
+        int category = in.readUnsignedByte();
+        String eventName = in.readUTF();
+        // keep the ids of the following events even if the category is unknown
+        logEvents.add(
+            category < LogCategory.values().length
+                ? new LogEvent(eventName, LogCategory.values()[category])
+                : null);
+      } else if (type == RECORD_MONITOR_LOG) {
+        LogEvent logEvent = logEvents.get((int) readVarLong(in));
+        return new MonitorLog.LogBuilder(logEvent)
+            .timeStart(readVarLong(in))
+            .timeSpent((int) readVarLong(in))
+            .build();
+      } else if (type == RECORD_HISTOGRAM_LOG) {
+        LogEvent logEvent = logEvents.get((int) readVarLong(in));
+        String appVersion = in.readUTF();
+        long count = readVarLong(in);
+        long sum = readVarLong(in);
+        int min = (int) readVarLong(in);
+        int max = (int) readVarLong(in);
+        long[] bucketCounts = new long[MonitorHistogramLog.BUCKET_COUNT];
+        while (in.available() > 0) {
+          bucketCounts[(int) readVarLong(in)] = readVarLong(in);
+        }
+        return new MonitorHistogramLog(
+            logEvent.getEventName(), appVersion, bucketCounts, count, sum, min, max);
+      }
+    } catch (Exception e) {
+      // a corrupted record, an unknown event id or an invalid event name
+    }
+    return null;
+  }
+
+  private static String getEventKey(LogCategory logCategory, String eventName) {
+    return logCategory.ordinal() + "_" + eventName;
+  }
+
+  // zigzag encoded, so that small negative values are small as well
+  private static void writeVarLong(DataOutput out, long value) throws IOException {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7fL) != 0) {
+      out.writeByte((int) ((zigzag & 0x7f) | 0x80));
+      zigzag >>>= 7;
+    }
+    out.writeByte((int) zigzag);
+  }
+
+  private static long readVarLong(DataInput in) throws IOException {
+    long zigzag = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      zigzag |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
     }
+    throw new IOException("Malformed varint");
   }
 }
@@ -6,7 +6,27 @@ import androidx.annotation.RestrictTo;
 public enum PerformanceEventName {
   EVENT_NAME_FOR_TEST_FIRST("EVENT_NAME_FOR_TEST_FIRST"),
   EVENT_NAME_FOR_TEST_SECOND("EVENT_NAME_FOR_TEST_SECOND"),
-  FB_CORE_STARTUP("FB_CORE_STARTUP");
+  FB_CORE_STARTUP("FB_CORE_STARTUP"),
+  // GraphRequest: writing the request body, waiting for the response, reading and parsing it
+  GRAPH_REQUEST_SERIALIZE("GRAPH_REQUEST_SERIALIZE"),
+  GRAPH_REQUEST_CONNECT("GRAPH_REQUEST_CONNECT"),
+  GRAPH_REQUEST_PARSE("GRAPH_REQUEST_PARSE"),
+  // AppEventQueue flush: building the requests from the collected events, sending them
+  APP_EVENTS_FLUSH_BUILD_REQUESTS("APP_EVENTS_FLUSH_BUILD_REQUESTS"),
+  APP_EVENTS_FLUSH_SEND("APP_EVENTS_FLUSH_SEND"),
+  APP_EVENT_STORE_READ("APP_EVENT_STORE_READ"),
+  APP_EVENT_STORE_WRITE("APP_EVENT_STORE_WRITE"),
+  FILE_LRU_CACHE_GET("FILE_LRU_CACHE_GET"),
+  FILE_LRU_CACHE_PUT("FILE_LRU_CACHE_PUT"),
+  FILE_LRU_CACHE_TRIM("FILE_LRU_CACHE_TRIM"),
+  MODEL_PREDICT("MODEL_PREDICT"),
+  CODELESS_MATCH("CODELESS_MATCH"),
+  // FetchedAppSettingsManager and FetchedAppGateKeepersManager: the age of the cached copy when it
+  // is revalidated, and the latency of the network refresh
+  APP_SETTINGS_CACHE_AGE("APP_SETTINGS_CACHE_AGE"),
+  APP_SETTINGS_REFRESH("APP_SETTINGS_REFRESH"),
+  APP_GATEKEEPERS_CACHE_AGE("APP_GATEKEEPERS_CACHE_AGE"),
+  APP_GATEKEEPERS_REFRESH("APP_GATEKEEPERS_REFRESH");
 
   private String eventName;
 
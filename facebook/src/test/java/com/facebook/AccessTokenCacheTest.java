@@ -251,6 +251,31 @@ public class AccessTokenCacheTest extends FacebookPowerMockTestCase {
     verify(cachingStrategy, times(1)).clear();
   }
 
+  @Test
+  public void testUpgradeKeepsCachedProfile() throws JSONException {
+    when(FacebookSdk.getApplicationContext()).thenReturn(RuntimeEnvironment.application);
+    RuntimeEnvironment.application
+        .getSharedPreferences("com.facebook.sdk.SettingsStore", Context.MODE_PRIVATE)
+        .edit()
+        .clear()
+        .commit();
+    AccessToken accessToken = createAccessToken();
+    String profile = new JSONObject().put("id", USER_ID).put("name", "Name").toString();
+    sharedPreferences
+        .edit()
+        .putString(
+            AccessTokenCache.CACHED_ACCESS_TOKEN_KEY, accessToken.toJSONObject().toString())
+        .putString(ProfileCache.CACHED_PROFILE_KEY, profile)
+        .commit();
+
+    AccessTokenCache cache = new AccessTokenCache();
+
+    assertEquals(accessToken, cache.load());
+    assertFalse(sharedPreferences.contains(AccessTokenCache.CACHED_ACCESS_TOKEN_KEY));
+    assertEquals(profile, sharedPreferences.getString(ProfileCache.CACHED_PROFILE_KEY, null));
+    assertEquals(USER_ID, new ProfileCache().load().getId());
+  }
+
   private AccessToken createAccessToken() {
     return createAccessToken(TOKEN_STRING, USER_ID);
   }
@@ -21,24 +21,22 @@
 package com.facebook.appevents;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
-import android.content.Context;
 import android.content.SharedPreferences;
 import com.facebook.FacebookPowerMockTestCase;
 import com.facebook.FacebookSdk;
+import com.facebook.internal.SettingsStore;
 import com.facebook.internal.Utility;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.ArgumentMatchers;
 import org.mockito.BDDMockito;
 import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
@@ -48,6 +46,7 @@ import org.powermock.reflect.Whitebox;
 @PrepareForTest({
   PerformanceGuardian.class,
   FacebookSdk.class,
+  SettingsStore.class,
   Utility.class,
 })
 public class PerformanceGuardianTest extends FacebookPowerMockTestCase {
@@ -68,9 +67,8 @@ public class PerformanceGuardianTest extends FacebookPowerMockTestCase {
   public void testIsBannedActivity() throws Exception {
     // Initialize
     SharedPreferences mockPrefs = Mockito.mock(SharedPreferences.class);
-    Context context = Mockito.mock(Context.class);
-    when(FacebookSdk.getApplicationContext()).thenReturn(context);
-    when(context.getSharedPreferences(anyString(), anyInt())).thenReturn(mockPrefs);
+    PowerMockito.mockStatic(SettingsStore.class);
+    when(SettingsStore.getSharedPreferences(anyString())).thenReturn(mockPrefs);
 
     // Mock return app version
     when(mockPrefs.getString("app_version", "")).thenReturn("1.2.0");
@@ -118,61 +116,109 @@ public class PerformanceGuardianTest extends FacebookPowerMockTestCase {
     Whitebox.setInternalState(PerformanceGuardian.class, "sharedPreferences", mockPrefs);
     SharedPreferences.Editor editor = Mockito.mock(SharedPreferences.Editor.class);
     when(mockPrefs.edit()).thenReturn(editor);
-    when(editor.putStringSet(anyString(), ArgumentMatchers.<String>anySet())).thenReturn(editor);
+    when(editor.remove(anyString())).thenReturn(editor);
     when(editor.putString(anyString(), anyString())).thenReturn(editor);
 
     PowerMockito.mockStatic(Utility.class);
     BDDMockito.given(Utility.getAppVersion()).willReturn("1.2.0");
 
-    Map<String, Integer> mockCodelessActivityMap = new HashMap<>();
-    mockCodelessActivityMap.put("activity_1", 1);
-    mockCodelessActivityMap.put("activity_2", 2);
-    Whitebox.setInternalState(
-        PerformanceGuardian.class, "activityProcessTimeMapCodeless", mockCodelessActivityMap);
-    Map<String, Integer> mockSuggestedEventActivityMap = new HashMap<>();
-    mockSuggestedEventActivityMap.put("activity_3", 1);
-    Whitebox.setInternalState(
-        PerformanceGuardian.class, "activityProcessTimeMapSe", mockSuggestedEventActivityMap);
+    Whitebox.<Map<String, ?>>getInternalState(PerformanceGuardian.class, "activityStatsCodeless")
+        .clear();
+    Whitebox.<Map<String, ?>>getInternalState(PerformanceGuardian.class, "activityStatsSe").clear();
 
-    Set<String> bannedCodelessActivitySet =
-        Whitebox.getInternalState(PerformanceGuardian.class, "bannedCodelessActivitySet");
-
-    Set<String> bannedSuggestedEventActivitySet =
-        Whitebox.getInternalState(PerformanceGuardian.class, "bannedSuggestedEventActivitySet");
-
-    // Test codeless banned activity
     // Test activity not exceed max count
     PerformanceGuardian.limitProcessTime(
         "activity_1", PerformanceGuardian.UseCase.CODELESS, 0, 100);
-    assertThat(bannedCodelessActivitySet.contains("activity_1")).isFalse();
-    assertThat(mockCodelessActivityMap.get("activity_1")).isEqualTo(2);
-
-    // Test activity exceed max count
     PerformanceGuardian.limitProcessTime(
-        "activity_2", PerformanceGuardian.UseCase.CODELESS, 0, 100);
-    assertThat(bannedCodelessActivitySet.contains("activity_2")).isTrue();
-    assertThat(mockCodelessActivityMap.get("activity_2")).isEqualTo(3);
+        "activity_1", PerformanceGuardian.UseCase.CODELESS, 0, 100);
+    assertThat(samplingRate("activity_1", PerformanceGuardian.UseCase.CODELESS)).isEqualTo(1.0);
+    assertThat(
+            PerformanceGuardian.isBannedActivity(
+                "activity_1", PerformanceGuardian.UseCase.CODELESS))
+        .isFalse();
 
-    // Test suggested event activity should not effect codeless
+    // Test activity exceed max count is processed every second time
     PerformanceGuardian.limitProcessTime(
-        "activity_1", PerformanceGuardian.UseCase.SUGGESTED_EVENT, 0, 100);
-    assertThat(mockSuggestedEventActivityMap.get("activity_1")).isEqualTo(1);
-    assertThat(bannedSuggestedEventActivitySet.contains("activity_1")).isFalse();
+        "activity_1", PerformanceGuardian.UseCase.CODELESS, 0, 100);
+    assertThat(samplingRate("activity_1", PerformanceGuardian.UseCase.CODELESS)).isEqualTo(0.5);
+    assertThat(
+            PerformanceGuardian.isBannedActivity(
+                "activity_1", PerformanceGuardian.UseCase.CODELESS))
+        .isTrue();
+    assertThat(
+            PerformanceGuardian.isBannedActivity(
+                "activity_1", PerformanceGuardian.UseCase.CODELESS))
+        .isFalse();
+    Mockito.verify(editor).putString("CODELESS_sampling_levels", "{\"activity_1\":1}");
 
-    assertThat(mockCodelessActivityMap.get("activity_1")).isEqualTo(2);
-    assertThat(bannedCodelessActivitySet.contains("activity_1")).isFalse();
+    // Test codeless should not effect suggested event
+    assertThat(
+            PerformanceGuardian.isBannedActivity(
+                "activity_1", PerformanceGuardian.UseCase.SUGGESTED_EVENT))
+        .isFalse();
 
-    // Test suggested event not exceed threshold
-    PerformanceGuardian.limitProcessTime(
-        "activity_3", PerformanceGuardian.UseCase.SUGGESTED_EVENT, 0, 10);
-    assertThat(mockSuggestedEventActivityMap.get("activity_3")).isEqualTo(1);
-    assertThat(bannedSuggestedEventActivitySet.contains("activity_3")).isFalse();
+    // Test sampling rate never goes to zero
+    for (int i = 0; i < 10 * PerformanceGuardian.MAX_SAMPLING_LEVEL; i++) {
+      PerformanceGuardian.limitProcessTime(
+          "activity_1", PerformanceGuardian.UseCase.CODELESS, 0, 100);
+    }
+    assertThat(samplingRate("activity_1", PerformanceGuardian.UseCase.CODELESS))
+        .isEqualTo(1.0 / (1 << PerformanceGuardian.MAX_SAMPLING_LEVEL));
 
-    // Test new suggested event exceed threshold
-    PerformanceGuardian.limitProcessTime(
-        "activity_4", PerformanceGuardian.UseCase.SUGGESTED_EVENT, 0, 100);
-    assertThat(mockSuggestedEventActivityMap.get("activity_4")).isEqualTo(1);
-    assertThat(bannedSuggestedEventActivitySet.contains("activity_4")).isFalse();
+    // Test activity recovers when it gets fast again
+    for (int i = 0; i < 3 * PerformanceGuardian.MAX_SAMPLING_LEVEL; i++) {
+      PerformanceGuardian.limitProcessTime(
+          "activity_1", PerformanceGuardian.UseCase.CODELESS, 0, 10);
+    }
+    assertThat(samplingRate("activity_1", PerformanceGuardian.UseCase.CODELESS)).isEqualTo(1.0);
+    assertThat(
+            PerformanceGuardian.isBannedActivity(
+                "activity_1", PerformanceGuardian.UseCase.CODELESS))
+        .isFalse();
+
+    JSONObject stats =
+        PerformanceGuardian.getProcessStats("activity_1", PerformanceGuardian.UseCase.CODELESS);
+    assertThat(stats.getInt("process_count")).isEqualTo(68);
+    assertThat(stats.getLong("max_process_time_us")).isEqualTo(100000);
+    assertThat(stats.getLong("p50_process_time_us")).isEqualTo(100000);
+    assertThat(stats.getLong("p99_process_time_us")).isEqualTo(100000);
+    assertThat(stats.getInt("dropped_count")).isEqualTo(1);
+    assertThat(
+            PerformanceGuardian.getProcessStats(PerformanceGuardian.UseCase.CODELESS)
+                .has("activity_1"))
+        .isTrue();
+  }
+
+  private static double samplingRate(String activityName, PerformanceGuardian.UseCase useCase)
+      throws Exception {
+    return PerformanceGuardian.getProcessStats(activityName, useCase).getDouble("sampling_rate");
+  }
+
+  @Test
+  public void testReportProcessStats() throws Exception {
+    assertThat(
+            PerformanceGuardian.getProcessStats(
+                "activity_5", PerformanceGuardian.UseCase.CODELESS))
+        .isNull();
+
+    PerformanceGuardian.reportProcessStats(
+        "activity_5", PerformanceGuardian.UseCase.CODELESS, 10, 3, 20);
+    PerformanceGuardian.reportProcessStats(
+        "activity_5", PerformanceGuardian.UseCase.CODELESS, 4, 1, 5);
+
+    JSONObject stats =
+        PerformanceGuardian.getProcessStats("activity_5", PerformanceGuardian.UseCase.CODELESS);
+    assertThat(stats.getInt("process_count")).isEqualTo(2);
+    assertThat(stats.getLong("total_process_time_us")).isEqualTo(14);
+    assertThat(stats.getLong("max_process_time_us")).isEqualTo(10);
+    assertThat(stats.getInt("coalesced_count")).isEqualTo(4);
+    assertThat(stats.getInt("skipped_count")).isEqualTo(25);
+
+    // Codeless stats should not effect suggested event
+    assertThat(
+            PerformanceGuardian.getProcessStats(
+                "activity_5", PerformanceGuardian.UseCase.SUGGESTED_EVENT))
+        .isNull();
   }
 
   @Test
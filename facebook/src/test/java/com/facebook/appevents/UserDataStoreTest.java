@@ -27,6 +27,7 @@ import com.facebook.FacebookPowerMockTestCase;
 import com.facebook.FacebookSdk;
 import com.facebook.MockSharedPreference;
 import com.facebook.TestUtils;
+import com.facebook.internal.SettingsStore;
 import com.facebook.internal.Utility;
 import java.util.HashMap;
 import java.util.Map;
@@ -49,6 +50,8 @@ import org.robolectric.RuntimeEnvironment;
 })
 public class UserDataStoreTest extends FacebookPowerMockTestCase {
 
+  private static final String USER_DATA_STORE = "com.facebook.appevents.UserDataStore";
+
   private final Executor mockExecutor = new FacebookSerialExecutor();
 
   @Before
@@ -77,23 +80,47 @@ public class UserDataStoreTest extends FacebookPowerMockTestCase {
         Whitebox.getInternalState(UserDataStore.class, "externalHashedUserData");
     Assert.assertTrue(externalHashedUserData.isEmpty());
 
-    // Test initStore with cache in SharedPreference
+    // Test initStore with cache in the settings store
     Map<String, String> cacheData = new HashMap<>();
     cacheData.put("key1", "val1");
     cacheData.put("key2", "val2");
     Whitebox.setInternalState(UserDataStore.class, "initialized", new AtomicBoolean(false));
+    SettingsStore.getSharedPreferences(USER_DATA_STORE)
+        .edit()
+        .putString(
+            "com.facebook.appevents.UserDataStore.userData",
+            (new JSONObject(cacheData)).toString())
+        .commit();
+
+    UserDataStore.initStore();
+    externalHashedUserData =
+        Whitebox.getInternalState(UserDataStore.class, "externalHashedUserData");
+    Assert.assertEquals(cacheData, externalHashedUserData);
+  }
+
+  @Test
+  public void testInitStoreMigratesDefaultPreferences() throws Exception {
+    Map<String, String> cacheData = new HashMap<>();
+    cacheData.put("key1", "val1");
+    MockSharedPreference mockPreference = new MockSharedPreference();
     mockPreference
         .edit()
         .putString(
             "com.facebook.appevents.UserDataStore.userData",
-            (new JSONObject(cacheData)).toString());
+            (new JSONObject(cacheData)).toString())
+        .putString("app_key", "app_value");
     PowerMockito.doReturn(mockPreference)
         .when(PreferenceManager.class, "getDefaultSharedPreferences", Matchers.any(Context.class));
+    Whitebox.setInternalState(UserDataStore.class, "initialized", new AtomicBoolean(false));
 
     UserDataStore.initStore();
-    externalHashedUserData =
+    Map<String, String> externalHashedUserData =
         Whitebox.getInternalState(UserDataStore.class, "externalHashedUserData");
     Assert.assertEquals(cacheData, externalHashedUserData);
+
+    // only the keys of the user data store are moved out of the preferences of the app
+    Assert.assertFalse(mockPreference.contains("com.facebook.appevents.UserDataStore.userData"));
+    Assert.assertEquals("app_value", mockPreference.getString("app_key", null));
   }
 
   @Test
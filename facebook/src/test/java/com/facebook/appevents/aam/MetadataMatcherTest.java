@@ -20,7 +20,21 @@
 
 package com.facebook.appevents.aam;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
 import com.facebook.FacebookPowerMockTestCase;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.json.JSONObject;
 import org.junit.Test;
 
 public class MetadataMatcherTest extends FacebookPowerMockTestCase {
@@ -28,11 +42,71 @@ public class MetadataMatcherTest extends FacebookPowerMockTestCase {
   public void testGetCurrentViewIndicators() throws Exception {}
 
   @Test
-  public void testMatchIndicator() throws Exception {}
+  public void testMatchIndicator() throws Exception {
+    JSONObject rules = new JSONObject();
+    for (int i = 0; i < 50; i++) {
+      rules.put("r" + i, new JSONObject().put("k", "key" + i + ",shared" + (i % 7)));
+    }
+    rules.put("r_email", new JSONObject().put("k", "email,e-mail"));
+    MetadataRule.updateRules(rules.toString());
+
+    List<String> indicators = Arrays.asList("please enter your e-mail", "shared3", "key12x");
+    BitSet foundKeys = null;
+    for (MetadataRule rule : MetadataRule.getRules()) {
+      if (foundKeys == null) {
+        foundKeys = MetadataMatcher.findKeys(indicators, rule.getKeyMatcher());
+      }
+      // same result as checking every key of every rule with String.contains
+      boolean expected = false;
+      for (String indicator : indicators) {
+        for (String key : rule.getKeyRules()) {
+          expected |= indicator.contains(key);
+        }
+      }
+      assertEquals(rule.getName(), expected, MetadataMatcher.matchIndicator(foundKeys, rule));
+    }
+  }
 
   @Test
-  public void TestMatchValue() throws Exception {}
+  public void TestMatchValue() throws Exception {
+    Pattern rule = Pattern.compile("^[0-9]{5}$");
+    assertTrue(MetadataMatcher.matchValue("94025", rule));
+    assertFalse(MetadataMatcher.matchValue("940250", rule));
+    assertFalse(MetadataMatcher.matchValue("a94025", rule));
+  }
 
   @Test
-  public void TestGetTextIndicators() throws Exception {}
+  public void TestGetTextIndicators() throws Exception {
+    // a chain of nested groups deeper than the traversal goes, then a wide group
+    View deepView = mockTextView("deep");
+    for (int i = 0; i < 20; i++) {
+      deepView = mockViewGroup(deepView);
+    }
+    View[] labels = new View[200];
+    for (int i = 0; i < labels.length; i++) {
+      labels[i] = mockTextView("label " + i);
+    }
+    View root = mockViewGroup(mockTextView("Name"), deepView, mockViewGroup(labels));
+
+    List<String> indicators = MetadataMatcher.getTextIndicators(root);
+    assertEquals("Name", indicators.get(0));
+    assertFalse(indicators.contains("deep"));
+    assertTrue(indicators.contains("label 0"));
+    assertTrue(indicators.size() < labels.length);
+  }
+
+  private static View mockTextView(String text) {
+    TextView view = mock(TextView.class);
+    when(view.getText()).thenReturn(text);
+    return view;
+  }
+
+  private static View mockViewGroup(View... children) {
+    ViewGroup viewGroup = mock(ViewGroup.class);
+    when(viewGroup.getChildCount()).thenReturn(children.length);
+    for (int i = 0; i < children.length; i++) {
+      when(viewGroup.getChildAt(i)).thenReturn(children[i]);
+    }
+    return viewGroup;
+  }
 }
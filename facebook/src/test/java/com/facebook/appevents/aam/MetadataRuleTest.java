@@ -20,7 +20,17 @@
 
 package com.facebook.appevents.aam;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
 import com.facebook.FacebookPowerMockTestCase;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import org.json.JSONObject;
 import org.junit.Test;
 
 public class MetadataRuleTest extends FacebookPowerMockTestCase {
@@ -28,7 +38,37 @@ public class MetadataRuleTest extends FacebookPowerMockTestCase {
   public void TestUpdateRules() throws Exception {}
 
   @Test
-  public void TestConstructRules() throws Exception {}
+  public void TestConstructRules() throws Exception {
+    JSONObject rules = new JSONObject();
+    rules.put("r1", new JSONObject().put("k", "email,e-mail").put("v", "^.+@.+$"));
+    rules.put("r2", new JSONObject().put("k", "phone,email"));
+    rules.put("r3", new JSONObject().put("k", "zip").put("v", "[0-9"));
+    rules.put("r4", new JSONObject().put("v", "^.+$"));
+    MetadataRule.updateRules(rules.toString());
+
+    // rules without keys or with an invalid value regex are dropped
+    assertEquals(new HashSet<>(Arrays.asList("r1", "r2")), MetadataRule.getEnabledRuleNames());
+    MetadataRule r1 = null;
+    MetadataRule r2 = null;
+    for (MetadataRule rule : MetadataRule.getRules()) {
+      if (rule.getName().equals("r1")) {
+        r1 = rule;
+      } else {
+        r2 = rule;
+      }
+    }
+    assertNotNull(r1.getValPattern());
+    assertNull(r2.getValPattern());
+    // the keys are shared by all the rules
+    assertSame(r1.getKeyMatcher(), r2.getKeyMatcher());
+    assertEquals(3, r1.getKeyMatcher().getKeywordCount());
+    BitSet sharedKeys = (BitSet) r1.getKeyIds().clone();
+    sharedKeys.and(r2.getKeyIds());
+    assertEquals(1, sharedKeys.cardinality());
+
+    MetadataRule.updateRules("not json");
+    assertEquals(Collections.emptySet(), MetadataRule.getRules());
+  }
 
   @Test
   public void TestRemoveUnusedRules() throws Exception {}
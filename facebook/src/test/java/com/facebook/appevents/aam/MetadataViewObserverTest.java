@@ -20,10 +20,140 @@
 
 package com.facebook.appevents.aam;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.never;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
 import com.facebook.FacebookPowerMockTestCase;
+import com.facebook.FacebookSdk;
+import com.facebook.appevents.InternalAppEventsLogger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.json.JSONObject;
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.Whitebox;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
 
+@PrepareForTest({FacebookSdk.class, InternalAppEventsLogger.class, MetadataMatcher.class})
 public class MetadataViewObserverTest extends FacebookPowerMockTestCase {
+
+  private final List<Runnable> backgroundTasks = new ArrayList<>();
+  private final List<Thread> matchingThreads = new ArrayList<>();
+  private Activity activity;
+  private EditText editText;
+
+  @Before
+  public void init() {
+    mockStatic(FacebookSdk.class);
+    when(FacebookSdk.getExecutor())
+        .thenReturn(
+            new Executor() {
+              @Override
+              public void execute(Runnable command) {
+                backgroundTasks.add(command);
+              }
+            });
+    mockStatic(InternalAppEventsLogger.class);
+    PowerMockito.spy(MetadataMatcher.class);
+
+    activity = Robolectric.buildActivity(Activity.class).create().get();
+    LinearLayout parent = new LinearLayout(activity);
+    TextView label = new TextView(activity);
+    label.setText("Label");
+    editText = new EditText(activity);
+    editText.setHint("Email");
+    editText.setText("test@example.com");
+    parent.addView(label);
+    parent.addView(editText);
+    activity.setContentView(parent);
+  }
+
   @Test
-  public void testProcessEditText() throws Exception {}
+  public void testProcessEditText() throws Exception {
+    MetadataRule.updateRules(
+        new JSONObject()
+            .put("r_email", new JSONObject().put("k", "email"))
+            .put("r_label", new JSONObject().put("k", "label"))
+            .toString());
+    MetadataViewObserver observer =
+        Whitebox.invokeConstructor(MetadataViewObserver.class, activity);
+
+    Whitebox.invokeMethod(observer, "processEditText", editText);
+
+    // nothing is matched on the UI thread
+    assertEquals(1, backgroundTasks.size());
+    verifyStatic(InternalAppEventsLogger.class, never());
+    InternalAppEventsLogger.setInternalUserData(anyMapOf(String.class, String.class));
+
+    // the label rule needs the indicators around the view, which are collected on the UI thread
+    runBackgroundTasks();
+    ShadowLooper.idleMainLooper();
+    assertEquals(1, backgroundTasks.size());
+    runBackgroundTasks();
+
+    Map<String, String> expectedUserData = new HashMap<>();
+    expectedUserData.put("r_email", "test@example.com");
+    expectedUserData.put("r_label", "test@example.com");
+    assertUserData(expectedUserData);
+    for (Thread thread : matchingThreads) {
+      assertNotSame(Looper.getMainLooper().getThread(), thread);
+    }
+  }
+
+  @Test
+  public void testAroundViewIndicatorsOnlyCollectedWhenNeeded() throws Exception {
+    MetadataRule.updateRules(
+        new JSONObject().put("r_email", new JSONObject().put("k", "email")).toString());
+    MetadataViewObserver observer =
+        Whitebox.invokeConstructor(MetadataViewObserver.class, activity);
+
+    Whitebox.invokeMethod(observer, "processEditText", editText);
+    runBackgroundTasks();
+    ShadowLooper.idleMainLooper();
+
+    assertEquals(0, backgroundTasks.size());
+    verifyStatic(MetadataMatcher.class, never());
+    MetadataMatcher.getAroundViewIndicators(any(View.class));
+    Map<String, String> expectedUserData = new HashMap<>();
+    expectedUserData.put("r_email", "test@example.com");
+    assertUserData(expectedUserData);
+  }
+
+  private void runBackgroundTasks() throws InterruptedException {
+    List<Runnable> tasks = new ArrayList<>(backgroundTasks);
+    backgroundTasks.clear();
+    for (Runnable task : tasks) {
+      Thread thread = new Thread(task);
+      matchingThreads.add(thread);
+      thread.start();
+      thread.join();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void assertUserData(Map<String, String> expected) {
+    ArgumentCaptor<Map> userData = ArgumentCaptor.forClass(Map.class);
+    verifyStatic(InternalAppEventsLogger.class);
+    InternalAppEventsLogger.setInternalUserData(userData.capture());
+    assertEquals(expected, userData.getValue());
+  }
 }
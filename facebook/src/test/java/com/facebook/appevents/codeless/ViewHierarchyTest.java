@@ -20,14 +20,18 @@
 
 package com.facebook.appevents.codeless;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import android.content.Context;
 import android.view.View;
 import android.view.ViewParent;
 import android.widget.AdapterView;
+import android.widget.TextView;
 import androidx.core.view.NestedScrollingChild;
 import com.facebook.appevents.codeless.internal.ViewHierarchy;
+import com.facebook.appevents.codeless.internal.ViewHierarchyWriter;
+import com.facebook.appevents.codeless.internal.ViewTreeHashes;
 import com.facebook.internal.Utility;
 import java.lang.reflect.Method;
 import org.json.JSONObject;
@@ -57,6 +61,25 @@ public class ViewHierarchyTest extends CodelessTestBase {
     assertTrue(innerText.equalsIgnoreCase(Utility.sha256hash("Inner Label")));
   }
 
+  @Test
+  public void testWriteDictionaryOfView() throws Exception {
+    TextView taggedLabel = new TextView(activity);
+    taggedLabel.setText("Tagged Label");
+    taggedLabel.setTag("tag");
+    taggedLabel.setContentDescription("Description");
+    root.addView(taggedLabel);
+
+    StringBuilder out = new StringBuilder();
+    ViewTreeHashes.Builder hashes = new ViewTreeHashes.Builder();
+    ViewHierarchyWriter.write(root, out, hashes);
+
+    JSONObject dict = ViewHierarchy.getDictionaryOfView(root);
+    assertEquals(dict.toString(), out.toString());
+    ViewTreeHashes expectedHashes = ViewTreeHashes.of(dict);
+    assertEquals(expectedHashes.getRootHash(), hashes.build().getRootHash());
+    assertEquals(0, hashes.build().countChangedViews(expectedHashes));
+  }
+
   abstract static class TestAdapterView extends AdapterView implements ViewParent {
     public TestAdapterView(Context context) {
       super(context);
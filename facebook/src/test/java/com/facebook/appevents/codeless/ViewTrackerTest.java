@@ -22,8 +22,11 @@ package com.facebook.appevents.codeless;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import com.facebook.appevents.codeless.internal.EventBinding;
+import java.util.ArrayList;
 import java.util.List;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -54,4 +57,86 @@ public class ViewTrackerTest extends CodelessTestBase {
             sampleBinding, root, sampleBinding.getViewPath(), 0, -1, "Activity");
     assertEquals(1, matched.size());
   }
+
+  @Test
+  public void testEventBindingTreeMatchesFindViewByPath() throws JSONException {
+    String[] paths = {
+      "[{'class_name': 'android.widget.LinearLayout'},"
+          + " {'class_name': 'android.widget.LinearLayout'},"
+          + " {'class_name': 'android.widget.TextView', 'text': 'Inner Label'}]",
+      "[{'class_name': 'android.widget.LinearLayout'},"
+          + " {'class_name': 'android.widget.LinearLayout'},"
+          + " {'class_name': 'android.widget.TextView', 'text': 'Inner Label'}]",
+      "[{'class_name': 'android.widget.LinearLayout'},"
+          + " {'class_name': 'android.widget.TextView', 'index': 0}]",
+      "[{'class_name': 'android.widget.LinearLayout'}, {'class_name': '.'}]",
+      "[{'class_name': 'android.widget.LinearLayout'},"
+          + " {'class_name': 'android.widget.LinearLayout'},"
+          + " {'class_name': '..'},"
+          + " {'class_name': 'android.widget.TextView'}]",
+      "[{'class_name': 'android.widget.LinearLayout'},"
+          + " {'class_name': 'android.widget.LinearLayout'}]",
+      "[{'class_name': 'android.widget.Button'}]",
+      "[]",
+    };
+    List<EventBinding> bindings = new ArrayList<>();
+    for (String path : paths) {
+      String sample =
+          "{'event_name': 'sample_event',"
+              + "'method': 'MANUAL', 'event_type': 'CLICK',"
+              + "'app_version': '1.0', 'path_type': 'absolute',"
+              + "'path': "
+              + path
+              + "}";
+      bindings.add(EventBinding.getInstanceFromJson(new JSONObject(sample)));
+    }
+
+    EventBindingTree tree = new EventBindingTree(bindings, "Activity");
+    List<List<CodelessMatcher.MatchedView>> matched = tree.match(root);
+    assertEquals(bindings.size(), matched.size());
+    for (int i = 0; i < bindings.size(); i++) {
+      EventBinding binding = bindings.get(i);
+      List<CodelessMatcher.MatchedView> expected =
+          CodelessMatcher.ViewMatcher.findViewByPath(
+              binding, root, binding.getViewPath(), 0, -1, "Activity");
+      assertEquals(expected.size(), matched.get(i).size());
+      for (int j = 0; j < expected.size(); j++) {
+        assertSame(expected.get(j).getView(), matched.get(i).get(j).getView());
+        assertEquals(expected.get(j).getViewMapKey(), matched.get(i).get(j).getViewMapKey());
+      }
+    }
+    assertEquals(1, matched.get(0).size());
+    assertEquals(0, matched.get(6).size());
+  }
+
+  @Test
+  public void testEventBindingTreeReusesComparisons() throws JSONException {
+    String sample =
+        "{'event_name': 'sample_event',"
+            + "'method': 'MANUAL', 'event_type': 'CLICK',"
+            + "'app_version': '1.0', 'path_type': 'absolute',"
+            + "'path': ["
+            + "   {'class_name': 'android.widget.LinearLayout'},"
+            + "   {'class_name': 'android.widget.LinearLayout'},"
+            + "   {"
+            + "       'class_name': 'android.widget.TextView',"
+            + "       'text': 'Inner Label'"
+            + "   }"
+            + "]"
+            + "}";
+    List<EventBinding> bindings = new ArrayList<>();
+    bindings.add(EventBinding.getInstanceFromJson(new JSONObject(sample)));
+    EventBindingTree tree = new EventBindingTree(bindings, "Activity");
+
+    EventBindingTree.Pass pass = tree.newPass(root);
+    while (!pass.run(0)) {}
+    assertEquals(1, pass.getResult().get(0).size());
+    assertEquals(0, pass.getSkippedCount());
+
+    // Nothing changed, so the second pass reuses every comparison of the first
+    EventBindingTree.Pass secondPass = tree.newPass(root);
+    assertTrue(secondPass.run(Long.MAX_VALUE));
+    assertEquals(1, secondPass.getResult().get(0).size());
+    assertEquals(4, secondPass.getSkippedCount());
+  }
 }
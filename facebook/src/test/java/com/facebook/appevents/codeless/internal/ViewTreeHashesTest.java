@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.appevents.codeless.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.facebook.FacebookTestCase;
+import com.facebook.appevents.internal.ViewHierarchyConstants;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ViewTreeHashesTest extends FacebookTestCase {
+
+  private static JSONObject view(String className, String text, JSONObject... children)
+      throws JSONException {
+    JSONObject view = new JSONObject();
+    view.put(ViewHierarchyConstants.CLASS_NAME_KEY, className);
+    view.put(ViewHierarchyConstants.TEXT_KEY, text);
+    JSONArray childViews = new JSONArray();
+    for (JSONObject child : children) {
+      childViews.put(child);
+    }
+    view.put(ViewHierarchyConstants.CHILDREN_VIEW_KEY, childViews);
+    return view;
+  }
+
+  private static JSONObject screen(String buttonText, int rowCount) throws JSONException {
+    JSONObject list = view("android.widget.ListView", "");
+    for (int i = 0; i < rowCount; i++) {
+      list.getJSONArray(ViewHierarchyConstants.CHILDREN_VIEW_KEY)
+          .put(view("android.widget.TextView", "row " + i));
+    }
+    return view(
+        "android.widget.LinearLayout",
+        "",
+        view("android.widget.TextView", "title"),
+        list,
+        view("android.widget.Button", buttonText));
+  }
+
+  @Test
+  public void testCountChangedViews() throws JSONException {
+    ViewTreeHashes hashes = ViewTreeHashes.of(screen("buy", 3));
+    assertEquals(7, hashes.getViewCount());
+    assertEquals(7, hashes.countChangedViews(null));
+    assertEquals(0, hashes.countChangedViews(ViewTreeHashes.of(screen("buy", 3))));
+    assertEquals(1, hashes.countChangedViews(ViewTreeHashes.of(screen("sell", 3))));
+    // the list view itself is unchanged, only a row went away
+    assertEquals(1, hashes.countChangedViews(ViewTreeHashes.of(screen("buy", 2))));
+    assertNotEquals(hashes.getRootHash(), ViewTreeHashes.of(screen("buy", 2)).getRootHash());
+  }
+
+  @Test
+  public void testBytesUploadedPerTickOnStaticScreen() throws JSONException {
+    // one tick a second for ten seconds, the button text changes once
+    int[] uploadedBytes = new int[10];
+    ViewTreeHashes uploaded = null;
+    for (int tick = 0; tick < uploadedBytes.length; tick++) {
+      JSONObject tree = screen(tick < 6 ? "buy" : "sell", 50);
+      ViewTreeHashes hashes = ViewTreeHashes.of(tree);
+      if (hashes.countChangedViews(uploaded) > 0) {
+        uploadedBytes[tick] = tree.toString().length();
+        uploaded = hashes;
+      }
+    }
+
+    int treeBytes = screen("buy", 50).toString().length();
+    for (int tick = 0; tick < uploadedBytes.length; tick++) {
+      int expected = tick == 0 ? treeBytes : (tick == 6 ? treeBytes + 1 : 0);
+      assertEquals(expected, uploadedBytes[tick]);
+    }
+  }
+}
@@ -112,20 +112,19 @@ public class EventDeactivationManagerTest extends FacebookPowerMockTestCase {
         .willReturn(fetchedAppSettings);
 
     EventDeactivationManager.enable();
-    List<EventDeactivationManager.DeprecatedParamFilter> deprecatedParams =
-        Whitebox.getInternalState(EventDeactivationManager.class, "deprecatedParamFilters");
+    Map<String, Set<String>> deprecatedParams =
+        Whitebox.getInternalState(EventDeactivationManager.class, "deprecatedParams");
     Set<String> deprecatedEvents =
         Whitebox.getInternalState(EventDeactivationManager.class, "deprecatedEvents");
 
-    assertThat(deprecatedParams.size()).isEqualTo(2);
-    EventDeactivationManager.DeprecatedParamFilter rule = deprecatedParams.get(0);
-    assertThat(rule.eventName).isEqualTo("fb_test_event");
+    // events without deprecated params are left out of the table
+    assertThat(deprecatedParams.size()).isEqualTo(1);
+    assertThat(deprecatedParams.containsKey("fb_test_event")).isEqualTo(false);
     assertThat(deprecatedEvents.size()).isEqualTo(1);
     assertThat(deprecatedEvents.contains("fb_deprecated_event")).isEqualTo(true);
 
-    EventDeactivationManager.DeprecatedParamFilter real = deprecatedParams.get(1);
-    assertThat(real.eventName).isEqualTo("fb_test_deprecated_event");
-    assertThat(real.deprecateParams).isEqualTo(expectDeprecatedParam);
+    assertThat(deprecatedParams.get("fb_test_deprecated_event"))
+        .isEqualTo(new HashSet<>(expectDeprecatedParam));
   }
 
   @Test
@@ -149,18 +148,13 @@ public class EventDeactivationManagerTest extends FacebookPowerMockTestCase {
 
   @Test
   public void testProcessDeprecatedParameters() {
-    List<EventDeactivationManager.DeprecatedParamFilter> mockDeprecatedParams = new ArrayList<>();
-    Map<String, String> mockParameters = new HashMap<>();
-    mockParameters.put("last_name", "0");
-    mockParameters.put("first_name", "1");
-    List<String> mockDeprecatedParam = new ArrayList<>();
+    Map<String, Set<String>> mockDeprecatedParams = new HashMap<>();
+    Set<String> mockDeprecatedParam = new HashSet<>();
     mockDeprecatedParam.add("ssn");
 
-    mockDeprecatedParams.add(
-        new EventDeactivationManager.DeprecatedParamFilter(
-            "fb_restrictive_event", mockDeprecatedParam));
+    mockDeprecatedParams.put("fb_restrictive_event", mockDeprecatedParam);
     Whitebox.setInternalState(
-        EventDeactivationManager.class, "deprecatedParamFilters", mockDeprecatedParams);
+        EventDeactivationManager.class, "deprecatedParams", mockDeprecatedParams);
 
     Map<String, String> mockEventParam = getEventParam();
     EventDeactivationManager.processDeprecatedParameters(mockEventParam, "fb_test_event");
@@ -49,6 +49,7 @@ public class IntegrityManagerTest extends FacebookPowerMockTestCase {
     Whitebox.setInternalState(FacebookSdk.class, "sdkInitialized", true);
     Whitebox.setInternalState(FacebookSdk.class, "executor", mockExecutor);
     IntegrityManager.enable();
+    IntegrityManager.clearCache();
     PowerMockito.spy(IntegrityManager.class);
     Whitebox.setInternalState(IntegrityManager.class, "isSampleEnabled", true);
   }
@@ -110,4 +111,32 @@ public class IntegrityManagerTest extends FacebookPowerMockTestCase {
     assertEquals(2, mockParameters.size());
     assertEquals(expectedParameters, mockParameters);
   }
+
+  @Test
+  public void testRepeatedValuesSkipPrediction() throws Exception {
+    PowerMockito.doReturn(IntegrityManager.INTEGRITY_TYPE_NONE)
+        .when(IntegrityManager.class, "getIntegrityPredictionResult", "level_name");
+    PowerMockito.doReturn(IntegrityManager.INTEGRITY_TYPE_NONE)
+        .when(IntegrityManager.class, "getIntegrityPredictionResult", "Level 1");
+
+    Map<String, String> mockParameters = new HashMap<>();
+    mockParameters.put("level_name", "Level 1");
+    IntegrityManager.processParameters(mockParameters);
+    assertEquals(1, mockParameters.size());
+
+    // a prediction now would filter the value, so only cached results are used
+    PowerMockito.doReturn(IntegrityManager.INTEGRITY_TYPE_HEALTH)
+        .when(IntegrityManager.class, "getIntegrityPredictionResult", "Level 1");
+    for (int i = 0; i < 9; i++) {
+      mockParameters = new HashMap<>();
+      mockParameters.put("level_name", "Level 1");
+      IntegrityManager.processParameters(mockParameters);
+      assertEquals("Level 1", mockParameters.get("level_name"));
+    }
+
+    JSONObject metrics = IntegrityManager.getCacheMetrics();
+    assertEquals(2, metrics.getLong("miss_count"));
+    assertEquals(18, metrics.getLong("hit_count"));
+    assertEquals(2, metrics.getInt("cached_count"));
+  }
 }
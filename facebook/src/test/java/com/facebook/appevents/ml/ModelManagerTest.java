@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.appevents.ml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.FacebookTestCase;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModelManagerTest extends FacebookTestCase {
+
+  private static final String USE_CASE = "MTML_APP_EVENT_PRED";
+
+  private File dir;
+  private Model model;
+
+  @Before
+  public void before() throws Exception {
+    dir = File.createTempFile("facebook_ml", null);
+    dir.delete();
+    dir.mkdirs();
+    model =
+        Model.build(
+            ModelTest.writeModelFile(ModelTest.createShapes(), new HashMap<String, Float>()));
+  }
+
+  @Test
+  public void testPublishKeepsPreviousSlot() {
+    ModelManager.TaskHandler handler = createHandler(2);
+    ModelManager.ModelSlot first = createSlot(1);
+    ModelManager.ModelSlot second = createSlot(2);
+
+    handler.publish(first);
+    assertSame(first, handler.slot);
+    assertNull(handler.previousSlot);
+
+    handler.publish(second);
+    assertSame(second, handler.slot);
+    assertSame(first, handler.previousSlot);
+
+    // republishing the same version keeps the previous one to roll back to
+    ModelManager.ModelSlot reloaded = createSlot(2);
+    handler.publish(reloaded);
+    assertSame(reloaded, handler.slot);
+    assertSame(first, handler.previousSlot);
+  }
+
+  @Test
+  public void testRollbackSwapsSlots() {
+    ModelManager.TaskHandler handler = createHandler(2);
+    ModelManager.ModelSlot first = createSlot(1);
+    ModelManager.ModelSlot second = createSlot(2);
+
+    assertFalse(handler.rollback());
+    handler.publish(first);
+    assertFalse(handler.rollback());
+    assertSame(first, handler.slot);
+
+    handler.publish(second);
+    assertTrue(handler.rollback());
+    assertSame(first, handler.slot);
+    assertSame(second, handler.previousSlot);
+
+    // rolling back again returns to the newer slot
+    assertTrue(handler.rollback());
+    assertSame(second, handler.slot);
+    assertSame(first, handler.previousSlot);
+  }
+
+  @Test
+  public void testMetricsReportBothVersions() throws Exception {
+    ModelManager.TaskHandler handler = createHandler(2);
+    assertNull(ModelManager.getMetrics(handler));
+    ModelManager.ModelSlot first = createSlot(1);
+    ModelManager.ModelSlot second = createSlot(2);
+    first.predictionCount.set(3);
+    first.predictionTimeNanos.set(300);
+    second.predictionCount.set(2);
+    second.predictionTimeNanos.set(500);
+    handler.publish(first);
+    handler.publish(second);
+
+    JSONObject metrics = ModelManager.getMetrics(handler);
+    assertEquals(2, metrics.getInt("version_id"));
+    assertEquals(1, metrics.getInt("previous_version_id"));
+    assertEquals(2, metrics.getLong("prediction_count"));
+    JSONObject versions = metrics.getJSONObject("versions");
+    assertEquals(2, versions.length());
+    assertEquals(3, versions.getJSONObject("1").getLong("prediction_count"));
+    assertEquals(300, versions.getJSONObject("1").getLong("prediction_time_ns"));
+    assertEquals(500, versions.getJSONObject("2").getLong("prediction_time_ns"));
+  }
+
+  @Test
+  public void testDeleteOldFilesKeepsServedSlots() throws IOException {
+    ModelManager.TaskHandler master = new ModelManager.TaskHandler("MTML", "uri", null, 3, null);
+    ModelManager.TaskHandler handler = createHandler(3);
+    handler.publish(createSlot(1));
+    handler.publish(createSlot(2));
+    String[] kept = {
+      "MTML_1", USE_CASE + "_1_rule", "MTML_2", USE_CASE + "_2_rule", "MTML_3", "other"
+    };
+    String[] deleted = {"MTML_0", USE_CASE + "_0_rule"};
+    for (String name : kept) {
+      new File(dir, name).createNewFile();
+    }
+    for (String name : deleted) {
+      new File(dir, name).createNewFile();
+    }
+
+    ModelManager.TaskHandler.deleteOldFiles(dir, master, Collections.singletonList(handler));
+
+    for (String name : kept) {
+      assertTrue(name, new File(dir, name).exists());
+    }
+    for (String name : deleted) {
+      assertFalse(name, new File(dir, name).exists());
+    }
+  }
+
+  private ModelManager.TaskHandler createHandler(int versionId) {
+    return new ModelManager.TaskHandler(USE_CASE, "uri", "rule_uri", versionId, null);
+  }
+
+  private ModelManager.ModelSlot createSlot(int versionId) {
+    return new ModelManager.ModelSlot(
+        versionId,
+        model,
+        null,
+        new File(dir, "MTML_" + versionId),
+        new File(dir, USE_CASE + "_" + versionId + "_rule"),
+        0);
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.appevents.ml;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.FacebookTestCase;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ModelTest extends FacebookTestCase {
+
+  @Test
+  public void testValidateAcceptsWellFormedModel() throws Exception {
+    Model model = Model.build(writeModelFile(createShapes(), new HashMap<String, Float>()));
+
+    assertNotNull(model);
+    assertTrue(model.validate());
+  }
+
+  @Test
+  public void testBuildRejectsTruncatedFile() throws Exception {
+    File file = writeModelFile(createShapes(), new HashMap<String, Float>());
+    RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+    truncated.setLength(truncated.length() - 4);
+    truncated.close();
+
+    assertNull(Model.build(file));
+  }
+
+  @Test
+  public void testValidateRejectsTruncatedWeights() throws Exception {
+    Map<String, int[]> shapes = createShapes();
+    // fewer inputs than the convolutions output
+    shapes.put("fc1.weight", new int[] {2, 4});
+    Model model = Model.build(writeModelFile(shapes, new HashMap<String, Float>()));
+
+    assertNotNull(model);
+    assertFalse(model.validate());
+  }
+
+  @Test
+  public void testValidateRejectsNaNWeights() throws Exception {
+    Map<String, Float> values = new HashMap<>();
+    values.put("integrity_detect.bias", Float.NaN);
+    Model model = Model.build(writeModelFile(createShapes(), values));
+
+    assertNotNull(model);
+    assertFalse(model.validate());
+  }
+
+  /** The shapes of the smallest model with both task heads. */
+  static Map<String, int[]> createShapes() {
+    Map<String, int[]> shapes = new TreeMap<>();
+    shapes.put("embed.weight", new int[] {256, 2});
+    for (int i = 0; i < 3; i++) {
+      shapes.put("convs." + i + ".weight", new int[] {2, 2, 2});
+      shapes.put("convs." + i + ".bias", new int[] {2});
+    }
+    // the outputs of the three convolutions and two dense features
+    shapes.put("fc1.weight", new int[] {2, 8});
+    shapes.put("fc1.bias", new int[] {2});
+    shapes.put("fc2.weight", new int[] {2, 2});
+    shapes.put("fc2.bias", new int[] {2});
+    for (ModelManager.Task task : ModelManager.Task.values()) {
+      shapes.put(task.toKey() + ".weight", new int[] {2, 2});
+      shapes.put(task.toKey() + ".bias", new int[] {2});
+    }
+    return shapes;
+  }
+
+  /**
+   * Writes a model file in the format the server ships: the length of a JSON object of the weight
+   * shapes, the object, then the weights in the order of their sorted names.
+   *
+   * @param values the value of every weight of a tensor, 0.1 for the tensors not listed
+   */
+  static File writeModelFile(Map<String, int[]> shapes, Map<String, Float> values)
+      throws IOException, JSONException {
+    Map<String, int[]> sortedShapes = new TreeMap<>(shapes);
+    JSONObject info = new JSONObject();
+    int count = 0;
+    for (Map.Entry<String, int[]> entry : sortedShapes.entrySet()) {
+      JSONArray shape = new JSONArray();
+      int size = 1;
+      for (int dim : entry.getValue()) {
+        shape.put(dim);
+        size *= dim;
+      }
+      info.put(entry.getKey(), shape);
+      count += size;
+    }
+    byte[] json = info.toString().getBytes("UTF-8");
+    ByteBuffer buffer = ByteBuffer.allocate(4 + json.length + count * 4);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(json.length);
+    buffer.put(json);
+    for (Map.Entry<String, int[]> entry : sortedShapes.entrySet()) {
+      int size = 1;
+      for (int dim : entry.getValue()) {
+        size *= dim;
+      }
+      float[] weights = new float[size];
+      Float value = values.get(entry.getKey());
+      Arrays.fill(weights, value == null ? 0.1f : value);
+      for (float weight : weights) {
+        buffer.putFloat(weight);
+      }
+    }
+
+    File file = File.createTempFile("model", null);
+    file.deleteOnExit();
+    FileOutputStream outputStream = new FileOutputStream(file);
+    try {
+      outputStream.write(buffer.array());
+    } finally {
+      outputStream.close();
+    }
+    return file;
+  }
+}
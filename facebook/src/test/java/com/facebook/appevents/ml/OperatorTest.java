@@ -22,6 +22,7 @@ package com.facebook.appevents.ml;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.util.Random;
 import org.junit.Test;
 import org.powermock.reflect.Whitebox;
 
@@ -383,4 +384,55 @@ public class OperatorTest {
         };
     assertArrayEquals(output.getData(), expected_data, (float) 0.0001);
   }
+
+  @Test
+  public void testConv1DParallel() {
+    Random random = new Random(0);
+    MTensor input = new MTensor(new int[] {3, 128, 64});
+    float[] input_data = input.getData();
+    for (int i = 0; i < input_data.length; i++) {
+      input_data[i] = random.nextFloat() - 0.5f;
+    }
+    MTensor weight = new MTensor(new int[] {3, 64, 64});
+    float[] weight_data = weight.getData();
+    for (int i = 0; i < weight_data.length; i++) {
+      weight_data[i] = random.nextFloat() - 0.5f;
+    }
+
+    int thread_count = ModelExecutor.getThreadCount();
+    try {
+      ModelExecutor.setThreadCount(1);
+      float[] expected_data = Operator.conv1D(input, weight).getData();
+      for (int threads : new int[] {2, 4}) {
+        ModelExecutor.setThreadCount(threads);
+        assertArrayEquals(expected_data, Operator.conv1D(input, weight).getData(), 0);
+      }
+    } finally {
+      ModelExecutor.setThreadCount(thread_count);
+    }
+  }
+
+  @Test
+  public void testForkJoinCoversAllRanges() {
+    final int[] visits = new int[10];
+    int thread_count = ModelExecutor.getThreadCount();
+    try {
+      ModelExecutor.setThreadCount(4);
+      ModelExecutor.forkJoin(
+          visits.length,
+          new ModelExecutor.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+              for (int i = start; i < end; i++) {
+                visits[i]++;
+              }
+            }
+          });
+    } finally {
+      ModelExecutor.setThreadCount(thread_count);
+    }
+    for (int visit : visits) {
+      assertEquals(1, visit);
+    }
+  }
 }
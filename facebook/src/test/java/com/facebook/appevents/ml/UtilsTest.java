@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.appevents.ml;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+import org.junit.Test;
+
+public class UtilsTest {
+  private static final int MAX_LEN = 128;
+
+  @Test
+  public void testVectorize() {
+    String[] texts =
+        new String[] {
+          "",
+          "   ",
+          "Sign Up",
+          "  add \t to\n\n cart  ",
+          "caf\u00e9 \u6ce8\u518c \ud83d\ude00",
+          "lone \ud83d surrogate \ude00",
+          "\u0001control\u0001 \u0000chars",
+          new String(new char[200]).replace('\0', 'a'),
+        };
+    for (String text : texts) {
+      assertArrayEquals(text, vectorizeReference(text, MAX_LEN), Utils.vectorize(text, MAX_LEN));
+    }
+  }
+
+  @Test
+  public void testVectorizeRandomText() {
+    Random random = new Random(0);
+    char[] alphabet = " \t\n\u000b\f\r\u0001ab\u00e9\u6ce8\ud83d\ude00".toCharArray();
+    for (int n = 0; n < 1000; n++) {
+      char[] chars = new char[random.nextInt(150)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String text = new String(chars);
+      assertArrayEquals(text, vectorizeReference(text, MAX_LEN), Utils.vectorize(text, MAX_LEN));
+    }
+  }
+
+  @Test
+  public void testVectorizeIntoBuffer() {
+    int[] buffer = new int[] {-1, -1, -1, -1, -1, -1};
+    Utils.vectorize(" a  b ", buffer, 1, 4);
+    assertArrayEquals(new int[] {-1, 'a', ' ', 'b', 0, -1}, buffer);
+  }
+
+  // the trim, split and join normalization the model was trained with
+  private static int[] vectorizeReference(String text, int maxLen) {
+    String[] tokens = text.trim().split("\\s+");
+    StringBuilder normalized = new StringBuilder();
+    for (int i = 0; i < tokens.length; i++) {
+      normalized.append(i > 0 ? " " : "").append(tokens[i]);
+    }
+    byte[] bytes = normalized.toString().getBytes(Charset.forName("UTF-8"));
+    int[] ret = new int[maxLen];
+    for (int i = 0; i < maxLen && i < bytes.length; i++) {
+      ret[i] = bytes[i] & 0xFF;
+    }
+    return ret;
+  }
+}
@@ -31,9 +31,7 @@ import com.facebook.FacebookPowerMockTestCase;
 import com.facebook.FacebookSdk;
 import com.facebook.internal.FetchedAppSettings;
 import com.facebook.internal.FetchedAppSettingsManager;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
@@ -111,35 +109,30 @@ public class RestrictiveDataManagerTest extends FacebookPowerMockTestCase {
             FetchedAppSettingsManager.queryAppSettings(nullable(String.class), anyBoolean()))
         .willReturn(fetchedAppSettings);
 
-    List<RestrictiveDataManager.RestrictiveParamFilter> restrictiveParamFilters =
-        Whitebox.getInternalState(RestrictiveDataManager.class, "restrictiveParamFilters");
-    restrictiveParamFilters.clear();
+    RestrictiveDataManager.enable();
 
+    Map<String, Map<String, String>> restrictiveParamRules =
+        Whitebox.getInternalState(RestrictiveDataManager.class, "restrictiveParamRules");
     Set<String> restrictedEvents =
         Whitebox.getInternalState(RestrictiveDataManager.class, "restrictedEvents");
-    restrictedEvents.clear();
-
-    RestrictiveDataManager.enable();
 
-    assertEquals(2, restrictiveParamFilters.size());
-    RestrictiveDataManager.RestrictiveParamFilter rule = restrictiveParamFilters.get(0);
-    assertEquals("fb_test_event", rule.eventName);
-    assertEquals(expectedParam, rule.restrictiveParams);
+    assertEquals(2, restrictiveParamRules.size());
+    assertEquals(expectedParam, restrictiveParamRules.get("fb_test_event"));
+    assertEquals(expectedParamDetail, restrictiveParamRules.get("manual_initiated_checkout"));
     assertEquals(1, restrictedEvents.size());
     assertTrue(restrictedEvents.contains("manual_initiated_checkout"));
   }
 
   @Test
   public void testProcessParameters() {
-    List<RestrictiveDataManager.RestrictiveParamFilter> mockRestrictiveParams = new ArrayList<>();
+    Map<String, Map<String, String>> mockRestrictiveParams = new HashMap<>();
     Map<String, String> mockParam = new HashMap<>();
     mockParam.put("last_name", "0");
     mockParam.put("first_name", "1");
 
-    mockRestrictiveParams.add(
-        new RestrictiveDataManager.RestrictiveParamFilter("fb_restrictive_event", mockParam));
+    mockRestrictiveParams.put("fb_restrictive_event", mockParam);
     Whitebox.setInternalState(
-        RestrictiveDataManager.class, "restrictiveParamFilters", mockRestrictiveParams);
+        RestrictiveDataManager.class, "restrictiveParamRules", mockRestrictiveParams);
 
     Map<String, String> mockEventParam = getEventParam();
     RestrictiveDataManager.processParameters(mockEventParam, "fb_test_event");
@@ -154,6 +147,34 @@ public class RestrictiveDataManagerTest extends FacebookPowerMockTestCase {
     assertFalse(mockEventParam.containsKey("first_name"));
   }
 
+  @Test
+  public void testProcessParametersWithManyRules() throws JSONException {
+    Map<String, Map<String, String>> mockRestrictiveParams = new HashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      Map<String, String> mockParam = new HashMap<>();
+      mockParam.put("last_name", "0");
+      mockParam.put("param_" + i, "1");
+      mockRestrictiveParams.put("fb_restrictive_event_" + i, mockParam);
+    }
+    Whitebox.setInternalState(
+        RestrictiveDataManager.class, "restrictiveParamRules", mockRestrictiveParams);
+
+    // each event only looks up the rules of its own name
+    for (int i = 0; i < 100000; i++) {
+      String eventName = "fb_restrictive_event_" + (i % 1000);
+      String param = "param_" + (i % 1000);
+      Map<String, String> mockEventParam = getEventParam();
+      mockEventParam.put(param, "val");
+      RestrictiveDataManager.processParameters(mockEventParam, eventName);
+      assertFalse(mockEventParam.containsKey("last_name"));
+      assertFalse(mockEventParam.containsKey(param));
+      JSONObject restrictedParams = new JSONObject(mockEventParam.get("_restrictedParams"));
+      assertEquals(2, restrictedParams.length());
+      assertEquals("0", restrictedParams.getString("last_name"));
+      assertEquals("1", restrictedParams.getString(param));
+    }
+  }
+
   @Test
   public void testProcessEvent() throws Exception {
     String input = "name_should_be_replaced";
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.appevents.suggestedevents;
+
+import static com.facebook.appevents.internal.ViewHierarchyConstants.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.FacebookTestCase;
+import java.io.File;
+import java.io.FileOutputStream;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FeatureExtractorTest extends FacebookTestCase {
+  private static final String RULES =
+      "{\"rulesForLanguage\":{\"1\":{\"rulesForEvent\":{"
+          + "\"6\":{\"positiveRules\":{\"1\":\"(?i)buy|pay|order\",\"2\":\"(?i)checkout\"}},"
+          + "\"7\":{\"positiveRules\":{\"1\":\"(?i)contact\",\"2\":\"(?i)support\"}},"
+          + "\"8\":{\"positiveRules\":{\"1\":\"(?i)sign up|register\",\"2\":\"(?i)signup\","
+          + "\"4\":\"(?i)email\"}}}}}}";
+  private static final int ROW_COUNT = 50;
+
+  @Before
+  @Override
+  public void setUp() {
+    super.setUp();
+    try {
+      File rules = File.createTempFile("rules", ".json");
+      rules.deleteOnExit();
+      FileOutputStream outputStream = new FileOutputStream(rules);
+      outputStream.write(RULES.getBytes("UTF-8"));
+      outputStream.close();
+      FeatureExtractor.initialize(rules);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+    DenseFeatureCache.clear();
+  }
+
+  @Test
+  public void testIncrementalFeaturesMatchFullRecompute() throws Exception {
+    JSONObject hierarchy = buildHierarchy();
+    float[] first = FeatureExtractor.getDenseFeatures(hierarchy, "App");
+    assertNotNull(first);
+
+    // same screen, one label next to the clicked button changed
+    JSONObject changedRow = getRow(hierarchy, 20);
+    changedRow.getJSONArray(CHILDREN_VIEW_KEY).getJSONObject(0).put(TEXT_KEY, "Total price");
+    DenseFeatureCache cache = DenseFeatureCache.forScreen("checkout");
+    int recomputedBefore = cache.getRecomputedCount();
+    float[] incremental = FeatureExtractor.getDenseFeatures(hierarchy, "App");
+    int recomputed = cache.getRecomputedCount() - recomputedBefore;
+
+    DenseFeatureCache.clear();
+    float[] full = FeatureExtractor.getDenseFeatures(hierarchy, "App");
+
+    assertArrayEquals(full, incremental, 0);
+    assertEquals(first[0] + 1, incremental[0], 0);
+    // the changed label, its row and the path up to the root
+    assertTrue(recomputed <= 5);
+  }
+
+  @Test
+  public void testRepeatedClickIsServedFromCache() throws Exception {
+    JSONObject hierarchy = buildHierarchy();
+    float[] first = FeatureExtractor.getDenseFeatures(hierarchy, "App");
+    DenseFeatureCache cache = DenseFeatureCache.forScreen("checkout");
+    int recomputedBefore = cache.getRecomputedCount();
+    float[] second = FeatureExtractor.getDenseFeatures(hierarchy, "App");
+
+    assertArrayEquals(first, second, 0);
+    assertEquals(recomputedBefore, cache.getRecomputedCount());
+  }
+
+  @Test
+  public void testHierarchyIsNotModified() throws Exception {
+    JSONObject hierarchy = buildHierarchy();
+    String before = hierarchy.toString();
+    FeatureExtractor.getDenseFeatures(hierarchy, "App");
+    assertEquals(before, hierarchy.toString());
+  }
+
+  private static JSONObject buildHierarchy() throws Exception {
+    JSONArray rows = new JSONArray();
+    for (int i = 0; i < ROW_COUNT; i++) {
+      JSONArray cells = new JSONArray();
+      cells.put(node("TextView", "Item " + i, 0, new JSONArray()));
+      cells.put(node("EditText", "", 0, new JSONArray()).put(HINT_KEY, "Quantity"));
+      JSONObject button = node("Button", i == 20 ? "Sign up" : "Buy", 1 << 5, new JSONArray());
+      if (i == 20) {
+        button.put(IS_INTERACTED_KEY, true);
+      }
+      cells.put(button);
+      rows.put(node("LinearLayout", "", 0, cells));
+    }
+    JSONObject list = node("LinearLayout", "", 0, rows);
+    JSONObject root = node("DecorView", "", 0, new JSONArray().put(list));
+
+    JSONObject hierarchy = new JSONObject();
+    hierarchy.put(VIEW_KEY, root);
+    hierarchy.put(SCREEN_NAME_KEY, "checkout");
+    return hierarchy;
+  }
+
+  private static JSONObject getRow(JSONObject hierarchy, int index) throws Exception {
+    return hierarchy
+        .getJSONObject(VIEW_KEY)
+        .getJSONArray(CHILDREN_VIEW_KEY)
+        .getJSONObject(0)
+        .getJSONArray(CHILDREN_VIEW_KEY)
+        .getJSONObject(index);
+  }
+
+  private static JSONObject node(String className, String text, int bitmask, JSONArray children)
+      throws Exception {
+    JSONObject node = new JSONObject();
+    node.put(CLASS_NAME_KEY, className);
+    node.put(CLASS_TYPE_BITMASK_KEY, bitmask);
+    if (!text.isEmpty()) {
+      node.put(TEXT_KEY, text);
+    }
+    node.put(CHILDREN_VIEW_KEY, children);
+    return node;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+import com.facebook.FacebookPowerMockTestCase;
+import com.facebook.FacebookSdk;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.robolectric.RuntimeEnvironment;
+
+@PrepareForTest({FeatureManager.class, FacebookSdk.class})
+public final class FeatureActivationTest extends FacebookPowerMockTestCase {
+
+  private final List<String> started = new ArrayList<>();
+
+  @Before
+  public void init() {
+    mockStatic(FeatureManager.class);
+    FeatureActivation.reset();
+  }
+
+  @Test
+  public void testActivateChecksFeatureOnce() {
+    FeatureActivation.register(FeatureManager.Feature.AppEvents, false, record("app_events"));
+    assertTrue(FeatureActivation.isPending(FeatureManager.Feature.AppEvents));
+
+    FeatureActivation.activate(FeatureManager.Feature.AppEvents);
+    FeatureActivation.activate(FeatureManager.Feature.AppEvents);
+
+    assertFalse(FeatureActivation.isPending(FeatureManager.Feature.AppEvents));
+    verifyStatic(FeatureManager.class, times(1));
+    FeatureManager.checkFeature(
+        eq(FeatureManager.Feature.AppEvents), any(FeatureManager.Callback.class));
+  }
+
+  @Test
+  public void testActivateUnregisteredFeature() {
+    FeatureActivation.activate(FeatureManager.Feature.Monitoring);
+
+    verifyStatic(FeatureManager.class, never());
+    FeatureManager.checkFeature(
+        any(FeatureManager.Feature.class), any(FeatureManager.Callback.class));
+  }
+
+  @Test
+  public void testGateKeeperUpdateStartsEnabledFeatures() {
+    FeatureActivation.register(FeatureManager.Feature.Monitoring, true, record("monitoring"));
+    FeatureActivation.register(FeatureManager.Feature.Instrument, true, record("instrument"));
+    FeatureActivation.register(FeatureManager.Feature.AppEvents, false, record("app_events"));
+    when(FeatureManager.isEnabled(FeatureManager.Feature.Monitoring)).thenReturn(true);
+    when(FeatureManager.isEnabled(FeatureManager.Feature.AppEvents)).thenReturn(true);
+
+    FeatureActivation.onGateKeepersUpdated();
+    assertEquals(Arrays.asList("monitoring"), started);
+    assertTrue(FeatureActivation.isPending(FeatureManager.Feature.Instrument));
+    // app events are only started when used
+    assertTrue(FeatureActivation.isPending(FeatureManager.Feature.AppEvents));
+
+    when(FeatureManager.isEnabled(FeatureManager.Feature.Instrument)).thenReturn(true);
+    FeatureActivation.onGateKeepersUpdated();
+    FeatureActivation.onGateKeepersUpdated();
+    assertEquals(Arrays.asList("monitoring", "instrument"), started);
+    assertFalse(FeatureActivation.isPending(FeatureManager.Feature.Instrument));
+  }
+
+  @Test
+  public void testExpiredCachedGateKeepersStartEnabledFeatures() throws Exception {
+    final List<Runnable> backgroundTasks = new ArrayList<>();
+    mockStatic(FacebookSdk.class);
+    when(FacebookSdk.getApplicationContext()).thenReturn(RuntimeEnvironment.application);
+    when(FacebookSdk.getApplicationId()).thenReturn("123");
+    when(FacebookSdk.getExecutor())
+        .thenReturn(
+            new Executor() {
+              @Override
+              public void execute(Runnable command) {
+                backgroundTasks.add(command);
+              }
+            });
+    SettingsStore.getSharedPreferences("com.facebook.internal.preferences.APP_GATEKEEPERS")
+        .edit()
+        .putString(
+            "com.facebook.internal.APP_GATEKEEPERS.123",
+            new JSONObject().put("data", new JSONObject()).toString())
+        // fetched long ago
+        .putLong("com.facebook.internal.APP_GATEKEEPERS_TIMESTAMP.123", 1)
+        .commit();
+    FeatureActivation.register(FeatureManager.Feature.Monitoring, true, record("monitoring"));
+    when(FeatureManager.isEnabled(FeatureManager.Feature.Monitoring)).thenReturn(true);
+
+    FetchedAppGateKeepersManager.loadAppGateKeepersAsync();
+
+    // the activation is posted before the refresh, which isn't run here
+    assertEquals(2, backgroundTasks.size());
+    backgroundTasks.get(0).run();
+    assertEquals(Arrays.asList("monitoring"), started);
+  }
+
+  private Runnable record(final String name) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        started.add(name);
+      }
+    };
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+import android.content.SharedPreferences;
+import com.facebook.FacebookPowerMockTestCase;
+import com.facebook.FacebookSdk;
+import com.facebook.MockSharedPreference;
+import java.util.Map;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.Whitebox;
+
+@PrepareForTest({
+  FacebookSdk.class,
+  FetchedAppSettingsManager.class,
+  SettingsStore.class,
+})
+public final class FetchedAppSettingsManagerTest extends FacebookPowerMockTestCase {
+
+  private static final String APP_ID = "123";
+  private static final String SETTINGS_KEY = "com.facebook.internal.APP_SETTINGS.123";
+  private static final String TIMESTAMP_KEY = "com.facebook.internal.APP_SETTINGS_TIMESTAMP.123";
+
+  private final SharedPreferences preferences = new MockSharedPreference();
+  private JSONObject responseJSON;
+
+  @Before
+  public void init() throws Exception {
+    mockStatic(FacebookSdk.class);
+    when(FacebookSdk.getApplicationId()).thenReturn(APP_ID);
+    when(FacebookSdk.getExecutor()).thenReturn(new FacebookSerialExecutor());
+    mockStatic(SettingsStore.class);
+    when(SettingsStore.getSharedPreferences(anyString())).thenReturn(preferences);
+
+    responseJSON = new JSONObject();
+    responseJSON.put("app_events_session_timeout", 42);
+    PowerMockito.spy(FetchedAppSettingsManager.class);
+    PowerMockito.doReturn(responseJSON)
+        .when(FetchedAppSettingsManager.class, "getAppSettingsQueryResponse", APP_ID);
+
+    Whitebox.<Map<?, ?>>getInternalState(FetchedAppSettingsManager.class, "fetchedAppSettings")
+        .clear();
+    Whitebox.<Map<?, ?>>getInternalState(
+            FetchedAppSettingsManager.class, "fetchedAppSettingsTimestamps")
+        .clear();
+  }
+
+  @Test
+  public void testFreshCachedCopyIsServedWithoutQuery() throws Exception {
+    preferences
+        .edit()
+        .putString(SETTINGS_KEY, "{\"app_events_session_timeout\":30}")
+        .putLong(TIMESTAMP_KEY, System.currentTimeMillis())
+        .apply();
+
+    FetchedAppSettings appSettings = FetchedAppSettingsManager.queryAppSettings(APP_ID, false);
+
+    assertEquals(30, appSettings.getSessionTimeoutInSeconds());
+    PowerMockito.verifyPrivate(FetchedAppSettingsManager.class, never())
+        .invoke("getAppSettingsQueryResponse", APP_ID);
+  }
+
+  @Test
+  public void testExpiredCachedCopyIsServedAndRevalidated() {
+    preferences
+        .edit()
+        .putString(SETTINGS_KEY, "{\"app_events_session_timeout\":30}")
+        .putLong(TIMESTAMP_KEY, 1)
+        .apply();
+
+    FetchedAppSettings appSettings = FetchedAppSettingsManager.queryAppSettings(APP_ID, false);
+
+    // the stale copy is returned, the serial executor has revalidated it by now
+    assertEquals(30, appSettings.getSessionTimeoutInSeconds());
+    assertEquals(
+        42,
+        FetchedAppSettingsManager.getAppSettingsWithoutQuery(APP_ID).getSessionTimeoutInSeconds());
+    assertEquals(responseJSON.toString(), preferences.getString(SETTINGS_KEY, null));
+    assertTrue(preferences.getLong(TIMESTAMP_KEY, 0) > 1);
+  }
+
+  @Test
+  public void testUnchangedResponseKeepsSnapshot() {
+    preferences
+        .edit()
+        .putString(SETTINGS_KEY, responseJSON.toString())
+        .putLong(TIMESTAMP_KEY, 1)
+        .apply();
+
+    FetchedAppSettings appSettings = FetchedAppSettingsManager.queryAppSettings(APP_ID, false);
+
+    assertSame(appSettings, FetchedAppSettingsManager.getAppSettingsWithoutQuery(APP_ID));
+    assertTrue(preferences.getLong(TIMESTAMP_KEY, 0) > 1);
+  }
+
+  @Test
+  public void testMissingCachedCopyIsQueried() {
+    FetchedAppSettings appSettings = FetchedAppSettingsManager.queryAppSettings(APP_ID, false);
+
+    assertEquals(42, appSettings.getSessionTimeoutInSeconds());
+    assertEquals(responseJSON.toString(), preferences.getString(SETTINGS_KEY, null));
+  }
+}
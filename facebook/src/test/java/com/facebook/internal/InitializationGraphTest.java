@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.facebook.FacebookTestCase;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.shadows.ShadowLooper;
+
+public final class InitializationGraphTest extends FacebookTestCase {
+
+  private final List<String> events = new ArrayList<>();
+  private final List<Runnable> queuedTasks = new ArrayList<>();
+  private InitializationGraph graph;
+
+  @Before
+  @Override
+  public void setUp() {
+    super.setUp();
+    graph =
+        new InitializationGraph(
+            new Executor() {
+              @Override
+              public void execute(Runnable command) {
+                queuedTasks.add(command);
+              }
+            });
+  }
+
+  @Test
+  public void testBackgroundStepsAreStartedBeforeMainSteps() {
+    graph.addStep("main", InitializationGraph.Mode.MAIN, record("main"));
+    graph.addStep("background", InitializationGraph.Mode.BACKGROUND, record("background"));
+
+    graph.start();
+
+    // the background step is handed to the executor before the main step runs inline
+    assertEquals(Arrays.asList("main"), events);
+    assertEquals(1, queuedTasks.size());
+    runQueuedTasks();
+    assertEquals(Arrays.asList("main", "background"), events);
+    assertTrue(graph.isFinished());
+  }
+
+  @Test
+  public void testStepsRunAfterTheirDependencies() {
+    graph.addStep("main", InitializationGraph.Mode.MAIN, record("main"));
+    graph.addStep("first", InitializationGraph.Mode.BACKGROUND, record("first"));
+    graph.addStep("second", InitializationGraph.Mode.BACKGROUND, record("second"), "first");
+    graph.addStep("third", InitializationGraph.Mode.BACKGROUND, record("third"), "main", "second");
+
+    graph.start();
+    assertEquals(1, queuedTasks.size());
+    runQueuedTasks();
+
+    assertEquals(Arrays.asList("main", "first", "second", "third"), events);
+    assertTrue(graph.isFinished());
+  }
+
+  @Test
+  public void testDeferredStepsRunOnceAfterFirstFrame() {
+    graph.addStep("deferred", InitializationGraph.Mode.AFTER_FIRST_FRAME, record("deferred"));
+
+    ShadowLooper.pauseMainLooper();
+    graph.start();
+    assertTrue(queuedTasks.isEmpty());
+    assertFalse(graph.isFinished());
+
+    // both the frame callback and the timeout fallback fire, the step only runs once
+    ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    graph.onFirstFrame();
+    runQueuedTasks();
+    ShadowLooper.unPauseMainLooper();
+
+    assertEquals(Arrays.asList("deferred"), events);
+    assertTrue(graph.isFinished());
+  }
+
+  @Test
+  public void testDependentsOfFailedStepAreSkipped() {
+    graph.addStep(
+        "failing",
+        InitializationGraph.Mode.BACKGROUND,
+        new Runnable() {
+          @Override
+          public void run() {
+            throw new IllegalStateException("failed");
+          }
+        });
+    graph.addStep("dependent", InitializationGraph.Mode.BACKGROUND, record("dependent"), "failing");
+    graph.addStep("independent", InitializationGraph.Mode.BACKGROUND, record("independent"));
+
+    graph.start();
+    runQueuedTasks();
+
+    assertEquals(Arrays.asList("independent"), events);
+    assertTrue(graph.isFinished());
+    JSONArray trace = graph.getTrace();
+    assertEquals("failed", trace.optJSONObject(0).optString("status"));
+    assertEquals("skipped", trace.optJSONObject(1).optString("status"));
+    assertEquals("completed", trace.optJSONObject(2).optString("status"));
+  }
+
+  @Test
+  public void testMainStepExceptionIsRethrown() {
+    graph.addStep(
+        "failing",
+        InitializationGraph.Mode.MAIN,
+        new Runnable() {
+          @Override
+          public void run() {
+            throw new IllegalStateException("failed");
+          }
+        });
+
+    try {
+      graph.start();
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("failed", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testTraceRecordsEachStep() throws Exception {
+    graph.addStep("main", InitializationGraph.Mode.MAIN, record("main"));
+    graph.addStep("background", InitializationGraph.Mode.BACKGROUND, record("background"), "main");
+
+    graph.start();
+    runQueuedTasks();
+
+    JSONArray trace = graph.getTrace();
+    assertEquals(2, trace.length());
+    JSONObject main = trace.getJSONObject(0);
+    assertEquals("main", main.getString("name"));
+    assertEquals("main", main.getString("mode"));
+    assertEquals("completed", main.getString("status"));
+    assertEquals(Thread.currentThread().getName(), main.getString("thread"));
+    assertTrue(main.getLong("start_us") >= 0);
+    assertTrue(main.getLong("duration_us") >= 0);
+    JSONObject background = trace.getJSONObject(1);
+    assertEquals("background", background.getString("mode"));
+    assertTrue(background.getLong("start_us") >= main.getLong("start_us"));
+  }
+
+  @Test
+  public void testInvalidDependencies() {
+    graph.addStep("background", InitializationGraph.Mode.BACKGROUND, record("background"));
+
+    try {
+      graph.addStep("unknown", InitializationGraph.Mode.BACKGROUND, record("unknown"), "missing");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      graph.addStep("main", InitializationGraph.Mode.MAIN, record("main"), "background");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      graph.addStep("background", InitializationGraph.Mode.BACKGROUND, record("background"));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private Runnable record(final String name) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        events.add(name);
+      }
+    };
+  }
+
+  private void runQueuedTasks() {
+    while (!queuedTasks.isEmpty()) {
+      queuedTasks.remove(0).run();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public final class KeywordMatcherTest {
+
+  @Test
+  public void testContainsAny() {
+    KeywordMatcher matcher = KeywordMatcher.build("$", "amount", "price", "total");
+    assertTrue(matcher.containsAny("total: 12"));
+    assertTrue(matcher.containsAny("12$"));
+    assertTrue(matcher.containsAny("the amounts"));
+    assertFalse(matcher.containsAny("tota prize"));
+    assertFalse(matcher.containsAny(""));
+  }
+
+  @Test
+  public void testOverlappingKeywords() {
+    KeywordMatcher matcher = KeywordMatcher.build("he", "she", "his", "hers");
+    BitSet found = matcher.findAll("ushers");
+    assertTrue(found.get(0));
+    assertTrue(found.get(1));
+    assertFalse(found.get(2));
+    assertTrue(found.get(3));
+    assertEquals(3, found.cardinality());
+  }
+
+  @Test
+  public void testIgnoreCase() {
+    KeywordMatcher matcher =
+        KeywordMatcher.build(Arrays.asList("sign in", "login", "signIn"), true);
+    assertTrue(matcher.containsAny("Please SIGN IN"));
+    assertTrue(matcher.containsAny("SignInButton"));
+    assertFalse(matcher.containsAny("sign-in"));
+    assertFalse(KeywordMatcher.build(Arrays.asList("login"), false).containsAny("LOGIN"));
+  }
+
+  @Test
+  public void testMatchesRegexAlternation() {
+    Pattern pattern = Pattern.compile("(?i)(sign in)|login|signIn");
+    KeywordMatcher matcher =
+        KeywordMatcher.build(Arrays.asList("sign in", "login", "signIn"), true);
+    String[] texts =
+        new String[] {
+          "{\"text\":\"log in\"}", "LogIn", "signing", "SIGNIN", "sign  in", "designin", "",
+        };
+    for (String text : texts) {
+      assertEquals(text, pattern.matcher(text).find(), matcher.containsAny(text));
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import com.facebook.FacebookTestCase;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+public class SdkExecutorsTest extends FacebookTestCase {
+
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private final List<String> laneNames = new ArrayList<>();
+
+  @After
+  public void after() {
+    for (String name : laneNames) {
+      SdkExecutors.removeLane(name);
+    }
+    SdkExecutors.setVirtualThreadsEnabled(false);
+  }
+
+  @Test
+  public void testSerialLanesAreCachedByName() {
+    ScheduledThreadPoolExecutor lane = getLane("test_cached");
+
+    assertSame(lane, SdkExecutors.getSerialLane("test_cached"));
+    assertNotSame(lane, getLane("test_other"));
+  }
+
+  @Test
+  public void testSerialLaneRunsTasksOneAtATimeInOrder() throws Exception {
+    ScheduledThreadPoolExecutor lane = getLane("test_order");
+    final List<Integer> runOrder = Collections.synchronizedList(new ArrayList<Integer>());
+    final AtomicInteger running = new AtomicInteger(0);
+    final AtomicInteger maxRunning = new AtomicInteger(0);
+    int taskCount = 50;
+    final CountDownLatch done = new CountDownLatch(taskCount);
+
+    for (int i = 0; i < taskCount; i++) {
+      final int index = i;
+      lane.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              int current = running.incrementAndGet();
+              maxRunning.set(Math.max(maxRunning.get(), current));
+              runOrder.add(index);
+              running.decrementAndGet();
+              done.countDown();
+            }
+          });
+    }
+
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(1, maxRunning.get());
+    for (int i = 0; i < taskCount; i++) {
+      assertEquals(i, runOrder.get(i).intValue());
+    }
+  }
+
+  @Test
+  public void testThreadCountAndQueueDepth() throws Exception {
+    ScheduledThreadPoolExecutor lane = getLane("test_metrics");
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    assertEquals(0, SdkExecutors.getQueueDepth("test_metrics"));
+    assertEquals(0, SdkExecutors.getQueueDepth("test_unknown"));
+
+    lane.execute(new BlockingRunnable(started, release));
+    for (int i = 0; i < 3; i++) {
+      lane.execute(new BlockingRunnable(null, release));
+    }
+
+    assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(3, SdkExecutors.getQueueDepth("test_metrics"));
+    assertTrue(SdkExecutors.getThreadCount() >= 1);
+
+    release.countDown();
+    lane.shutdown();
+    assertTrue(lane.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(0, SdkExecutors.getQueueDepth("test_metrics"));
+  }
+
+  @Test
+  public void testIoExecutorOverflowsWhenSaturated() throws Exception {
+    assertSame(SdkExecutors.getIoExecutor(), SdkExecutors.getIoExecutor());
+    ThreadPoolExecutor ioExecutor = SdkExecutors.createIoExecutor();
+    int capacity = ioExecutor.getMaximumPoolSize() + 128;
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch overflowed = new CountDownLatch(1);
+
+    try {
+      for (int i = 0; i < capacity; i++) {
+        ioExecutor.execute(new BlockingRunnable(null, release));
+      }
+      assertEquals(128, ioExecutor.getQueue().size());
+
+      // runs on the backup pool while every thread of the pool is still blocked
+      ioExecutor.execute(new BlockingRunnable(overflowed, null));
+      assertTrue(overflowed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+      ioExecutor.shutdown();
+    }
+    assertTrue(ioExecutor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    try {
+      ioExecutor.execute(new BlockingRunnable(null, null));
+      fail("expected the pool to reject tasks once shut down");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCpuExecutorRunsTasks() throws Exception {
+    final CountDownLatch done = new CountDownLatch(1);
+    SdkExecutors.getCpuExecutor().execute(new BlockingRunnable(done, null));
+
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(0, SdkExecutors.getCpuQueueDepth());
+  }
+
+  @Test
+  public void testVirtualThreadsFallBackToPlatformThreads() throws Exception {
+    boolean enabled = SdkExecutors.setVirtualThreadsEnabled(true);
+    assertEquals(enabled, SdkExecutors.isVirtualThreadsEnabled());
+    final AtomicReference<Thread> thread = new AtomicReference<>();
+    final CountDownLatch done = new CountDownLatch(1);
+
+    getLane("test_threads")
+        .execute(
+            new Runnable() {
+              @Override
+              public void run() {
+                thread.set(Thread.currentThread());
+                done.countDown();
+              }
+            });
+
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    // virtual threads are always daemon threads, so are the platform threads of the SDK
+    assertTrue(thread.get().isDaemon());
+    assertTrue(thread.get().getName().startsWith("FacebookSdk-test_threads-"));
+
+    SdkExecutors.setVirtualThreadsEnabled(false);
+    assertFalse(SdkExecutors.isVirtualThreadsEnabled());
+  }
+
+  private ScheduledThreadPoolExecutor getLane(String name) {
+    laneNames.add(name);
+    return SdkExecutors.getSerialLane(name);
+  }
+
+  private static class BlockingRunnable implements Runnable {
+    private final CountDownLatch started;
+    private final CountDownLatch release;
+
+    BlockingRunnable(CountDownLatch started, CountDownLatch release) {
+      this.started = started;
+      this.release = release;
+    }
+
+    @Override
+    public void run() {
+      if (started != null) {
+        started.countDown();
+      }
+      if (release == null) {
+        return;
+      }
+      try {
+        release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
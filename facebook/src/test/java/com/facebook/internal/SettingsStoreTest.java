@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import com.facebook.FacebookPowerMockTestCase;
+import com.facebook.FacebookSdk;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.robolectric.RuntimeEnvironment;
+
+@PrepareForTest({FacebookSdk.class})
+public final class SettingsStoreTest extends FacebookPowerMockTestCase {
+
+  private static final String[] LEGACY_STORES = {
+    "com.facebook.internal.preferences.APP_SETTINGS",
+    "com.facebook.internal.preferences.APP_GATEKEEPERS",
+    "com.facebook.internal.FEATURE_MANAGER",
+    "com.facebook.internal.BANNED_ACTIVITY",
+    "com.facebook.internal.SKU_DETAILS",
+    "com.facebook.internal.PURCHASE",
+    "com.facebook.internal.SUGGESTED_EVENTS_HISTORY",
+    "com.facebook.AccessTokenManager.SharedPreferences",
+  };
+
+  private Context context;
+
+  @Before
+  public void init() {
+    context = RuntimeEnvironment.application;
+    mockStatic(FacebookSdk.class);
+    when(FacebookSdk.getApplicationContext()).thenReturn(context);
+    SettingsStore.reset();
+    context.getSharedPreferences(SettingsStore.SETTINGS_STORE, Context.MODE_PRIVATE)
+        .edit()
+        .clear()
+        .commit();
+  }
+
+  @Test
+  public void testNamespacesShareOneFile() {
+    SettingsStore.getSharedPreferences("first").edit().putString("key", "first_value").apply();
+    SettingsStore.getSharedPreferences("second").edit().putString("key", "second_value").apply();
+
+    assertEquals("first_value", SettingsStore.getSharedPreferences("first").getString("key", null));
+    assertEquals(
+        "second_value", SettingsStore.getSharedPreferences("second").getString("key", null));
+    assertEquals(1, SettingsStore.getSharedPreferences("first").getAll().size());
+    SharedPreferences store =
+        context.getSharedPreferences(SettingsStore.SETTINGS_STORE, Context.MODE_PRIVATE);
+    assertEquals("first_value", store.getString("first/key", null));
+    assertEquals("second_value", store.getString("second/key", null));
+  }
+
+  @Test
+  public void testClearOnlyRemovesNamespace() {
+    SettingsStore.getSharedPreferences("first")
+        .edit()
+        .putString("removed", "value")
+        .putString("kept", "old_value")
+        .apply();
+    SettingsStore.getSharedPreferences("second").edit().putString("key", "value").apply();
+
+    // as with SharedPreferences, the values set by the same edit survive clear()
+    SettingsStore.getSharedPreferences("first")
+        .edit()
+        .putString("kept", "new_value")
+        .clear()
+        .apply();
+
+    SharedPreferences first = SettingsStore.getSharedPreferences("first");
+    assertFalse(first.contains("removed"));
+    assertEquals("new_value", first.getString("kept", null));
+    assertEquals("value", SettingsStore.getSharedPreferences("second").getString("key", null));
+  }
+
+  @Test
+  public void testMigratesLegacyPreferences() {
+    Set<String> values = new HashSet<>(Arrays.asList("a", "b"));
+    SharedPreferences legacy = context.getSharedPreferences("legacy", Context.MODE_PRIVATE);
+    legacy
+        .edit()
+        .putString("string", "value")
+        .putBoolean("boolean", true)
+        .putLong("long", 42L)
+        .putStringSet("set", values)
+        .commit();
+
+    SharedPreferences preferences = SettingsStore.getSharedPreferences("legacy");
+    assertEquals("value", preferences.getString("string", null));
+    assertTrue(preferences.getBoolean("boolean", false));
+    assertEquals(42L, preferences.getLong("long", 0));
+    assertEquals(values, preferences.getStringSet("set", null));
+    assertTrue(legacy.getAll().isEmpty());
+
+    // a namespace is only migrated once
+    legacy.edit().putString("string", "stale_value").commit();
+    SettingsStore.reset();
+    preferences = SettingsStore.getSharedPreferences("legacy");
+    assertEquals("value", preferences.getString("string", null));
+  }
+
+  @Test
+  public void testMigratesLegacyKeys() {
+    SharedPreferences legacy = context.getSharedPreferences("shared", Context.MODE_PRIVATE);
+    legacy.edit().putString("moved", "value").putString("other", "other_value").commit();
+
+    SharedPreferences preferences = SettingsStore.getSharedPreferences("moved", "shared", "moved");
+
+    assertEquals("value", preferences.getString("moved", null));
+    assertNull(preferences.getString("other", null));
+    assertFalse(legacy.contains("moved"));
+    assertEquals("other_value", legacy.getString("other", null));
+  }
+
+  @Test
+  public void testListenersAreNotifiedOfNamespaceChanges() {
+    final List<String> changedKeys = new ArrayList<>();
+    SharedPreferences.OnSharedPreferenceChangeListener listener =
+        new SharedPreferences.OnSharedPreferenceChangeListener() {
+          @Override
+          public void onSharedPreferenceChanged(SharedPreferences preferences, String key) {
+            changedKeys.add(key);
+          }
+        };
+    SharedPreferences first = SettingsStore.getSharedPreferences("first");
+    first.edit().putString("removed", "value").apply();
+    first.registerOnSharedPreferenceChangeListener(listener);
+
+    first.edit().putString("key", "value").commit();
+    SettingsStore.getSharedPreferences("second").edit().putString("key", "value").apply();
+    first.edit().clear().apply();
+    assertEquals(Arrays.asList("key", "key", "removed"), sorted(changedKeys));
+
+    first.unregisterOnSharedPreferenceChangeListener(listener);
+    first.edit().putString("key", "other_value").apply();
+    assertEquals(3, changedKeys.size());
+  }
+
+  @Test
+  public void testFirstAccessReadsOneFile() {
+    for (String name : LEGACY_STORES) {
+      SharedPreferences.Editor editor =
+          context.getSharedPreferences(name, Context.MODE_PRIVATE).edit();
+      for (int i = 0; i < 20; i++) {
+        editor.putString("key" + i, "value" + i);
+      }
+      editor.commit();
+      SettingsStore.getSharedPreferences(name);
+    }
+    for (String name : LEGACY_STORES) {
+      assertTrue(context.getSharedPreferences(name, Context.MODE_PRIVATE).getAll().isEmpty());
+    }
+
+    // what the first components to read their settings open once the store has been loaded
+    Context spyContext = spy(context);
+    when(FacebookSdk.getApplicationContext()).thenReturn(spyContext);
+    SettingsStore.reset();
+    SettingsStore.load();
+    for (String name : LEGACY_STORES) {
+      assertEquals("value19", SettingsStore.getSharedPreferences(name).getString("key19", null));
+    }
+
+    verify(spyContext, times(1)).getSharedPreferences(anyString(), anyInt());
+    verify(spyContext, times(1))
+        .getSharedPreferences(SettingsStore.SETTINGS_STORE, Context.MODE_PRIVATE);
+  }
+
+  private static List<String> sorted(List<String> values) {
+    List<String> copy = new ArrayList<>(values);
+    Collections.sort(copy);
+    return copy;
+  }
+}
@@ -21,12 +21,21 @@
 package com.facebook.internal;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 
 import com.facebook.FacebookTestCase;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -193,6 +202,191 @@ public class WorkQueueTest extends FacebookTestCase {
     }
   }
 
+  @Test
+  public void testPriorityOrder() {
+    List<String> runOrder = new ArrayList<>();
+    RecordingRunnable low = new RecordingRunnable(runOrder, "low");
+    RecordingRunnable normal = new RecordingRunnable(runOrder, "normal");
+    RecordingRunnable high = new RecordingRunnable(runOrder, "high");
+    ScriptableExecutor executor = new ScriptableExecutor();
+    WorkQueue manager = new WorkQueue(1, executor);
+
+    CountingRunnable first = new CountingRunnable();
+    addActiveWorkItem(manager, first);
+    manager.addActiveWorkItem(low, WorkQueue.Priority.LOW, null);
+    manager.addActiveWorkItem(normal, WorkQueue.Priority.NORMAL, null);
+    manager.addActiveWorkItem(high, WorkQueue.Priority.HIGH, null);
+    manager.validate();
+
+    for (int i = 0; i < 4; i++) {
+      executeNext(manager, executor);
+    }
+    assertEquals(Arrays.asList("high", "normal", "low"), runOrder);
+  }
+
+  @Test
+  public void testOwnersTakeTurns() {
+    List<String> runOrder = new ArrayList<>();
+    ScriptableExecutor executor = new ScriptableExecutor();
+    WorkQueue manager = new WorkQueue(1, executor);
+    Object busyOwner = new Object();
+    Object otherOwner = new Object();
+
+    addActiveWorkItem(manager, new CountingRunnable());
+    for (int i = 0; i < 3; i++) {
+      manager.addActiveWorkItem(
+          new RecordingRunnable(runOrder, "busy" + i), WorkQueue.Priority.NORMAL, busyOwner);
+    }
+    for (int i = 0; i < 2; i++) {
+      manager.addActiveWorkItem(
+          new RecordingRunnable(runOrder, "other" + i), WorkQueue.Priority.NORMAL, otherOwner);
+    }
+    manager.validate();
+
+    for (int i = 0; i < 6; i++) {
+      executeNext(manager, executor);
+    }
+    assertEquals(
+        Arrays.asList("busy0", "other0", "busy1", "other1", "busy2"), runOrder);
+  }
+
+  @Test
+  public void testBoundedQueueAborts() {
+    ScriptableExecutor executor = new ScriptableExecutor();
+    WorkQueue manager = new WorkQueue(1, 1, WorkQueue.RejectionPolicy.ABORT, executor);
+
+    addActiveWorkItem(manager, new CountingRunnable());
+    addActiveWorkItem(manager, new CountingRunnable());
+    try {
+      manager.addActiveWorkItem(new CountingRunnable());
+      fail();
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+    manager.validate();
+    assertEquals(1, manager.getPendingCount());
+    assertEquals(1, manager.getRejectedCount());
+  }
+
+  @Test
+  public void testBoundedQueueDiscardsOldestOfLowestPriority() {
+    ScriptableExecutor executor = new ScriptableExecutor();
+    WorkQueue manager = new WorkQueue(1, 2, WorkQueue.RejectionPolicy.DISCARD_OLDEST, executor);
+
+    addActiveWorkItem(manager, new CountingRunnable());
+    WorkQueue.WorkItem normal =
+        manager.addActiveWorkItem(new CountingRunnable(), WorkQueue.Priority.NORMAL, null);
+    WorkQueue.WorkItem low =
+        manager.addActiveWorkItem(new CountingRunnable(), WorkQueue.Priority.LOW, null);
+    manager.addActiveWorkItem(new CountingRunnable(), WorkQueue.Priority.HIGH, null);
+    manager.validate();
+
+    assertTrue(low.isCancelled());
+    assertFalse(normal.isCancelled());
+    assertEquals(2, manager.getPendingCount());
+
+    // a pending item of a higher priority isn't discarded for a low priority one
+    manager.addActiveWorkItem(new CountingRunnable(), WorkQueue.Priority.NORMAL, null);
+    try {
+      manager.addActiveWorkItem(new CountingRunnable(), WorkQueue.Priority.LOW, null);
+      fail();
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+    assertEquals(3, manager.getRejectedCount());
+  }
+
+  @Test
+  public void testCancelInterruptsRunningItem() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      WorkQueue manager = new WorkQueue(1, executor);
+      WorkQueue.WorkItem workItem =
+          manager.addActiveWorkItem(
+              new Runnable() {
+                @Override
+                public void run() {
+                  started.countDown();
+                  try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                  } catch (InterruptedException e) {
+                    interrupted.countDown();
+                  }
+                }
+              });
+
+      assertTrue(started.await(1, TimeUnit.SECONDS));
+      assertFalse(workItem.cancel());
+      assertTrue(workItem.cancel(true));
+      assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+      assertTrue(workItem.isCancelled());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testHistograms() {
+    ScriptableExecutor executor = new ScriptableExecutor();
+    WorkQueue manager = new WorkQueue(1, executor);
+
+    addActiveWorkItem(manager, new CountingRunnable());
+    addActiveWorkItem(manager, new CountingRunnable());
+    executeNext(manager, executor);
+
+    assertEquals(2, manager.getWaitTimeHistogram().getCount());
+    assertEquals(1, manager.getRunTimeHistogram().getCount());
+    assertTrue(manager.getRunTimeHistogram().getMax() >= 1);
+  }
+
+  // Contention benchmark: threads add small items to a shared queue, run manually to compare the
+  // throughput and the wait and run times of queue changes
+  @Ignore
+  @Test
+  public void testContentionBenchmark() throws Exception {
+    final int threadCount = 8;
+    final int itemsPerThread = 20000;
+    ExecutorService executor = Executors.newFixedThreadPool(WorkQueue.DEFAULT_MAX_CONCURRENT);
+    final WorkQueue manager = new WorkQueue(WorkQueue.DEFAULT_MAX_CONCURRENT, executor);
+    final CountDownLatch done = new CountDownLatch(threadCount * itemsPerThread);
+    final Runnable item =
+        new Runnable() {
+          @Override
+          public void run() {
+            done.countDown();
+          }
+        };
+
+    long start = System.nanoTime();
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      final Object owner = t;
+      threads[t] =
+          new Thread() {
+            @Override
+            public void run() {
+              for (int i = 0; i < itemsPerThread; i++) {
+                manager.addActiveWorkItem(item, WorkQueue.Priority.NORMAL, owner);
+              }
+            }
+          };
+      threads[t].start();
+    }
+    assertTrue(done.await(60, TimeUnit.SECONDS));
+    long elapsed = System.nanoTime() - start;
+    executor.shutdown();
+
+    System.out.println(
+        String.format(
+            "%d items in %d ms, wait p50 %d ms p99 %d ms",
+            threadCount * itemsPerThread,
+            TimeUnit.NANOSECONDS.toMillis(elapsed),
+            manager.getWaitTimeHistogram().getPercentile(50),
+            manager.getWaitTimeHistogram().getPercentile(99)));
+  }
+
   private WorkQueue.WorkItem addActiveWorkItem(WorkQueue manager, Runnable runnable) {
     manager.validate();
     WorkQueue.WorkItem workItem = manager.addActiveWorkItem(runnable);
@@ -323,6 +517,23 @@ public class WorkQueueTest extends FacebookTestCase {
     }
   }
 
+  static class RecordingRunnable implements Runnable {
+    private final List<String> runOrder;
+    private final String name;
+
+    RecordingRunnable(List<String> runOrder, String name) {
+      this.runOrder = runOrder;
+      this.name = name;
+    }
+
+    @Override
+    public void run() {
+      synchronized (runOrder) {
+        runOrder.add(name);
+      }
+    }
+  }
+
   static class CountingRunnable implements Runnable {
     private int runCount = 0;
 
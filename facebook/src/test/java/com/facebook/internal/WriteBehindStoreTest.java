@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.facebook.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.facebook.MockSharedPreference;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public final class WriteBehindStoreTest {
+
+  @Test
+  public void testCoalescesWrites() {
+    MockSharedPreference sharedPreferences = new MockSharedPreference();
+    WriteBehindStore store = new WriteBehindStore(sharedPreferences);
+    final Map<String, String> data = new HashMap<>();
+    WriteBehindStore.ValueProvider provider =
+        new WriteBehindStore.ValueProvider() {
+          @Override
+          public String getValue() {
+            return Utility.mapToJsonStr(data);
+          }
+        };
+
+    for (int i = 0; i < 1000; i++) {
+      data.put("key" + (i % 10), "val" + i);
+      store.markDirty("data", provider);
+    }
+    store.flush();
+
+    // one write for the 1000 updates, with the last value of each key
+    assertEquals(1, store.getWriteCount());
+    assertEquals(Utility.mapToJsonStr(data), sharedPreferences.getString("data", null));
+
+    // nothing is written again until something changes
+    store.flush();
+    WriteBehindStore.flushAll();
+    assertEquals(1, store.getWriteCount());
+  }
+
+  @Test
+  public void testNullValueRemovesKey() {
+    MockSharedPreference sharedPreferences = new MockSharedPreference();
+    sharedPreferences.edit().putString("data", "value").apply();
+    WriteBehindStore store = new WriteBehindStore(sharedPreferences);
+
+    store.markDirty(
+        "data",
+        new WriteBehindStore.ValueProvider() {
+          @Override
+          public String getValue() {
+            return null;
+          }
+        });
+    WriteBehindStore.flushAll();
+
+    assertEquals(1, store.getWriteCount());
+    assertFalse(sharedPreferences.contains("data"));
+  }
+}
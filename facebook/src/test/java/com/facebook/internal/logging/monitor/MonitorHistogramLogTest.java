@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc. All rights reserved.
+ *
+ * You are hereby granted a non-exclusive, worldwide, royalty-free license to use,
+ * copy, modify, and distribute this software in source code or binary form for use
+ * in connection with the web services and APIs provided by Facebook.
+ *
+ * As with any software that integrates with the Facebook platform, your use of
+ * this software is subject to the Facebook Developer Principles and Policies
+ * [http://developers.facebook.com/policy/]. This copyright notice shall be
+ * included in all copies or substantial portions of the software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.internal.logging.monitor;
+
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_APP_VERSION;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_EVENT_NAME;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_HISTOGRAM_BUCKETS;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_SAMPLE_COUNT;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_TIME_SPENT_P50;
+import static com.facebook.internal.logging.monitor.MonitorLogServerProtocol.PARAM_TIME_SPENT_SUM;
+import static com.facebook.internal.logging.monitor.MonitorLoggingTestUtil.TEST_EVENT_NAME;
+
+import com.facebook.FacebookPowerMockTestCase;
+import java.util.Arrays;
+import java.util.Random;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MonitorHistogramLogTest extends FacebookPowerMockTestCase {
+
+  private static final String TEST_APP_VERSION = "1.0";
+  // the middle of a bucket is at most 1/16 away from the values in the bucket
+  private static final double MAX_RELATIVE_ERROR = 1.0 / 16;
+
+  @Test
+  public void testBucketIndex() {
+    for (int i = 0; i < 16; i++) {
+      Assert.assertEquals(i, MonitorHistogramLog.getBucketIndex(i));
+      Assert.assertEquals(i, MonitorHistogramLog.getBucketMiddle(i));
+    }
+    Assert.assertEquals(
+        MonitorHistogramLog.BUCKET_COUNT - 1,
+        MonitorHistogramLog.getBucketIndex(Integer.MAX_VALUE));
+
+    int lastIndex = 0;
+    for (int value = 0; value < 1 << 20; value++) {
+      int index = MonitorHistogramLog.getBucketIndex(value);
+      Assert.assertTrue(index == lastIndex || index == lastIndex + 1);
+      lastIndex = index;
+      int middle = MonitorHistogramLog.getBucketMiddle(index);
+      Assert.assertTrue(Math.abs(middle - value) <= value * MAX_RELATIVE_ERROR);
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    MonitorHistogramLog histogram = new MonitorHistogramLog(TEST_EVENT_NAME, TEST_APP_VERSION);
+    for (int i = 1; i <= 10000; i++) {
+      histogram.record(i);
+    }
+
+    Assert.assertEquals(10000, histogram.getCount());
+    Assert.assertEquals(1, histogram.getMin());
+    Assert.assertEquals(10000, histogram.getMax());
+    assertPercentile(5000, histogram.getPercentile(50));
+    assertPercentile(9500, histogram.getPercentile(95));
+    assertPercentile(9900, histogram.getPercentile(99));
+    Assert.assertEquals(10000, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void testMergeIsSameAsRecordingAll() throws JSONException {
+    Random random = new Random(42);
+    MonitorHistogramLog all = new MonitorHistogramLog(TEST_EVENT_NAME, TEST_APP_VERSION);
+    MonitorHistogramLog first = new MonitorHistogramLog(TEST_EVENT_NAME, TEST_APP_VERSION);
+    MonitorHistogramLog second = new MonitorHistogramLog(TEST_EVENT_NAME, TEST_APP_VERSION);
+    int[] values = new int[5000];
+    for (int i = 0; i < values.length; i++) {
+      // long tailed, like real latencies
+      values[i] = (int) (Math.exp(random.nextGaussian() * 1.5 + 4));
+      all.record(values[i]);
+      if (i % 3 == 0) {
+        first.record(values[i]);
+      } else {
+        second.record(values[i]);
+      }
+    }
+
+    first.merge(second);
+
+    Assert.assertEquals(all.getCount(), first.getCount());
+    Assert.assertEquals(all.getSum(), first.getSum());
+    Assert.assertEquals(all.getMin(), first.getMin());
+    Assert.assertEquals(all.getMax(), first.getMax());
+    Assert.assertEquals(
+        all.convertToJSONObject().toString(), first.convertToJSONObject().toString());
+
+    Arrays.sort(values);
+    double[] percentiles = {50, 95, 99};
+    for (double percentile : percentiles) {
+      int exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+      assertPercentile(exact, first.getPercentile(percentile));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMergeDifferentAppVersion() {
+    MonitorHistogramLog histogram = new MonitorHistogramLog(TEST_EVENT_NAME, TEST_APP_VERSION);
+    histogram.merge(new MonitorHistogramLog(TEST_EVENT_NAME, "2.0"));
+  }
+
+  @Test
+  public void testRecordInvalidTime() {
+    MonitorHistogramLog histogram = new MonitorHistogramLog(TEST_EVENT_NAME, TEST_APP_VERSION);
+    histogram.record(-1);
+
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMin());
+    Assert.assertEquals(0, histogram.getPercentile(50));
+  }
+
+  @Test
+  public void testConvertToJSONObject() throws JSONException {
+    MonitorHistogramLog histogram = new MonitorHistogramLog(TEST_EVENT_NAME, TEST_APP_VERSION);
+    histogram.record(3);
+    histogram.record(3);
+    histogram.record(100);
+
+    JSONObject json = histogram.convertToJSONObject();
+    Assert.assertEquals(TEST_EVENT_NAME, json.getString(PARAM_EVENT_NAME));
+    Assert.assertEquals(TEST_APP_VERSION, json.getString(PARAM_APP_VERSION));
+    Assert.assertEquals(3, json.getLong(PARAM_SAMPLE_COUNT));
+    Assert.assertEquals(106, json.getLong(PARAM_TIME_SPENT_SUM));
+    Assert.assertEquals(3, json.getInt(PARAM_TIME_SPENT_P50));
+
+    JSONObject buckets = json.getJSONObject(PARAM_HISTOGRAM_BUCKETS);
+    Assert.assertEquals(2, buckets.length());
+    Assert.assertEquals(2, buckets.getLong("3"));
+    Assert.assertEquals(
+        1, buckets.getLong(String.valueOf(MonitorHistogramLog.getBucketIndex(100))));
+  }
+
+  private static void assertPercentile(int expected, int actual) {
+    Assert.assertTrue(
+        "expected " + expected + " but was " + actual,
+        Math.abs(actual - expected) <= Math.ceil(expected * MAX_RELATIVE_ERROR));
+  }
+}
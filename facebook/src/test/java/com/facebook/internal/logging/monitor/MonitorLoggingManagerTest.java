@@ -29,6 +29,7 @@ import static com.facebook.internal.logging.monitor.MonitorLoggingTestUtil.TEST_
 import static java.lang.Thread.sleep;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -127,6 +128,24 @@ public class MonitorLoggingManagerTest extends FacebookPowerMockTestCase {
     verify(mockMonitorLoggingManager).flushAndWait();
   }
 
+  @Test
+  public void testAddLogsWithoutTimeStartAreAggregated() {
+    // keep the flushed logs in the queue
+    PowerMockito.when(FacebookSdk.getApplicationId()).thenReturn(null);
+    Whitebox.setInternalState(MonitorLoggingManager.class, "appVersion", "1.0");
+    MonitorLog logWithoutTimeStart = MonitorLoggingTestUtil.getTestMonitorLog(0);
+    for (int i = 0; i < TIMES; i++) {
+      mockMonitorLoggingManager.addLog(logWithoutTimeStart);
+    }
+    verify(mockMonitorLoggingQueue, never()).addLog(any(ExternalLog.class));
+
+    mockMonitorLoggingManager.flushAndWait();
+    ExternalLog log = mockMonitorLoggingQueue.fetchLog();
+    Assert.assertTrue(log instanceof MonitorHistogramLog);
+    Assert.assertEquals(TIMES, ((MonitorHistogramLog) log).getCount());
+    Assert.assertTrue(mockMonitorLoggingQueue.isEmpty());
+  }
+
   @Test
   public void testFlushAndWait() {
     PowerMockito.mockStatic(GraphRequest.class);
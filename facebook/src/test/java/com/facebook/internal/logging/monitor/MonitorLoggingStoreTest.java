@@ -20,6 +20,7 @@
 
 package com.facebook.internal.logging.monitor;
 
+import static com.facebook.internal.logging.monitor.MonitorLoggingTestUtil.TEST_EVENT_NAME;
 import static com.facebook.internal.logging.monitor.MonitorLoggingTestUtil.TEST_TIME_SPENT;
 import static com.facebook.internal.logging.monitor.MonitorLoggingTestUtil.TEST_TIME_START;
 import static org.mockito.Mockito.when;
@@ -27,9 +28,16 @@ import static org.mockito.Mockito.when;
 import com.facebook.FacebookPowerMockTestCase;
 import com.facebook.FacebookSdk;
 import com.facebook.internal.logging.ExternalLog;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.Executor;
 import org.junit.Assert;
 import org.junit.Before;
@@ -38,12 +46,15 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.reflect.Whitebox;
 import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
 
 @PrepareForTest({FacebookSdk.class})
 public class MonitorLoggingStoreTest extends FacebookPowerMockTestCase {
 
   private final Executor mockExecutor = new FacebookSerialExecutor();
   private static final int LOGS_BATCH_NUMBER = 3;
+  private static final int TEST_MAX_STORE_SIZE = 256;
+  private static final String TEST_APP_VERSION = "1.0";
 
   @Before
   public void init() {
@@ -64,30 +75,140 @@ public class MonitorLoggingStoreTest extends FacebookPowerMockTestCase {
     logStore.saveLogsToDisk(firstLogsWriteToStore);
 
     // add logs after adding the first log list
-    // to see if the first ones are erased
+    // to see if they are appended to the first ones
     Collection<ExternalLog> secondLogsWriteToStore = new ArrayList<>();
     for (int i = 0; i < LOGS_BATCH_NUMBER; i++) {
-      log = MonitorLoggingTestUtil.getTestMonitorLog(TEST_TIME_START, TEST_TIME_SPENT);
+      log = MonitorLoggingTestUtil.getTestMonitorLog(TEST_TIME_START + i, TEST_TIME_SPENT);
       secondLogsWriteToStore.add(log);
     }
 
     logStore.saveLogsToDisk(secondLogsWriteToStore);
     Collection<ExternalLog> logsReadFromStore = logStore.readAndClearStore();
 
-    // Logs read from store should only have the ones we added at second time
-    // compare the size
-    Assert.assertEquals(secondLogsWriteToStore.size(), logsReadFromStore.size());
+    // Logs read from store should have the ones of both lists, in the order they were added
+    List<ExternalLog> expectedLogs = new ArrayList<>(firstLogsWriteToStore);
+    expectedLogs.addAll(secondLogsWriteToStore);
+    Assert.assertEquals(expectedLogs.size(), logsReadFromStore.size());
 
-    Iterator<ExternalLog> iteratorOfSecondLogsWriteToStore = secondLogsWriteToStore.iterator();
+    Iterator<ExternalLog> iteratorOfExpectedLogs = expectedLogs.iterator();
     Iterator<ExternalLog> iteratorOfLogsReadFromStore = logsReadFromStore.iterator();
 
-    while (iteratorOfSecondLogsWriteToStore.hasNext() && iteratorOfLogsReadFromStore.hasNext()) {
-      Assert.assertEquals(
-          iteratorOfSecondLogsWriteToStore.next(), iteratorOfLogsReadFromStore.next());
+    while (iteratorOfExpectedLogs.hasNext() && iteratorOfLogsReadFromStore.hasNext()) {
+      Assert.assertEquals(iteratorOfExpectedLogs.next(), iteratorOfLogsReadFromStore.next());
     }
 
     // make sure the file is deleted
     logsReadFromStore = logStore.readAndClearStore();
     Assert.assertEquals(0, logsReadFromStore.size());
   }
+
+  @Test
+  public void testWriteAndReadHistogramLog() {
+    MonitorLoggingStore logStore = MonitorLoggingStore.getInstance();
+    MonitorHistogramLog histogram = new MonitorHistogramLog(TEST_EVENT_NAME, TEST_APP_VERSION);
+    for (int i = 0; i < 1000; i++) {
+      histogram.record(i * 7);
+    }
+    Collection<ExternalLog> logs = new ArrayList<>();
+    logs.add(histogram);
+    logStore.saveLogsToDisk(logs);
+
+    Collection<ExternalLog> logsReadFromStore = logStore.readAndClearStore();
+    Assert.assertEquals(1, logsReadFromStore.size());
+    MonitorHistogramLog histogramReadFromStore =
+        (MonitorHistogramLog) logsReadFromStore.iterator().next();
+    Assert.assertEquals(TEST_APP_VERSION, histogramReadFromStore.getAppVersion());
+    Assert.assertEquals(
+        histogram.convertToJSONObject().toString(),
+        histogramReadFromStore.convertToJSONObject().toString());
+  }
+
+  @Test
+  public void testOldestLogsAreEvicted() {
+    MonitorLoggingStore logStore = MonitorLoggingStore.getInstance();
+    Integer maxStoreSize =
+        ReflectionHelpers.getStaticField(MonitorLoggingStore.class, "MAX_STORE_SIZE");
+    ReflectionHelpers.setStaticField(
+        MonitorLoggingStore.class, "MAX_STORE_SIZE", TEST_MAX_STORE_SIZE);
+    try {
+      for (int i = 0; i < 100; i++) {
+        Collection<ExternalLog> logs = new ArrayList<>();
+        logs.add(MonitorLoggingTestUtil.getTestMonitorLog(i + 1));
+        logStore.saveLogsToDisk(logs);
+        Assert.assertTrue(getStoreFile().length() <= TEST_MAX_STORE_SIZE);
+      }
+
+      List<ExternalLog> logsReadFromStore = new ArrayList<>(logStore.readAndClearStore());
+      Assert.assertTrue(logsReadFromStore.size() > 0);
+      Assert.assertTrue(logsReadFromStore.size() < 100);
+      // the newest logs are kept, in order
+      for (int i = 0; i < logsReadFromStore.size(); i++) {
+        MonitorLog log = (MonitorLog) logsReadFromStore.get(i);
+        Assert.assertEquals(100 - logsReadFromStore.size() + i + 1, log.getTimeStart());
+      }
+    } finally {
+      ReflectionHelpers.setStaticField(MonitorLoggingStore.class, "MAX_STORE_SIZE", maxStoreSize);
+    }
+  }
+
+  @Test
+  public void testIncompleteRecordIsIgnored() throws IOException {
+    MonitorLoggingStore logStore = MonitorLoggingStore.getInstance();
+    Collection<ExternalLog> logs = new ArrayList<>();
+    for (int i = 0; i < LOGS_BATCH_NUMBER; i++) {
+      logs.add(MonitorLoggingTestUtil.getTestMonitorLog(TEST_TIME_START + i));
+    }
+    logStore.saveLogsToDisk(logs);
+
+    // as if the app was killed while appending the last log
+    RandomAccessFile file = new RandomAccessFile(getStoreFile(), "rw");
+    file.setLength(file.length() - 1);
+    file.close();
+
+    Assert.assertEquals(LOGS_BATCH_NUMBER - 1, logStore.readAndClearStore().size());
+  }
+
+  @Test
+  public void testStoreOfUnknownFormatIsDiscarded() throws IOException {
+    MonitorLoggingStore logStore = MonitorLoggingStore.getInstance();
+    Collection<ExternalLog> logs = new ArrayList<>();
+    logs.add(MonitorLoggingTestUtil.getTestMonitorLog(TEST_TIME_START));
+
+    // the java serialization written by the previous versions
+    ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(getStoreFile()));
+    oos.writeObject(new ArrayList<>(logs));
+    oos.close();
+    Assert.assertEquals(0, logStore.readAndClearStore().size());
+
+    oos = new ObjectOutputStream(new FileOutputStream(getStoreFile()));
+    oos.writeObject(new ArrayList<>(logs));
+    oos.close();
+    logStore.saveLogsToDisk(logs);
+    Assert.assertEquals(1, logStore.readAndClearStore().size());
+  }
+
+  @Test
+  public void testStoreIsSmallerThanJavaSerialization() throws IOException {
+    MonitorLoggingStore logStore = MonitorLoggingStore.getInstance();
+    ArrayList<ExternalLog> logs = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      logs.add(
+          MonitorLoggingTestUtil.getTestMonitorLog(System.currentTimeMillis() + i, i % 500));
+    }
+    logStore.saveLogsToDisk(logs);
+    long storeSize = getStoreFile().length();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bytes);
+    oos.writeObject(logs);
+    oos.close();
+
+    Assert.assertTrue(storeSize < bytes.size());
+    Assert.assertEquals(logs, new ArrayList<>(logStore.readAndClearStore()));
+  }
+
+  private static File getStoreFile() {
+    return FacebookSdk.getApplicationContext()
+        .getFileStreamPath(MonitorLoggingStore.PERSISTED_LOGS_FILENAME);
+  }
 }
@@ -150,7 +150,7 @@ public class MonitorTest extends FacebookPowerMockTestCase {
   @Test
   public void testMeasurePerfForWithoutExtraId() {
     testMeasurePerfInit();
-    Monitor.startMeasurePerfFor(TEST_PERFORMANCE_EVENT_NAME);
+    Assert.assertTrue(Monitor.startMeasurePerfFor(TEST_PERFORMANCE_EVENT_NAME));
     Monitor.stopMeasurePerfFor(TEST_PERFORMANCE_EVENT_NAME);
     verify(mockMonitorLoggingManager).addLog(any(MonitorLog.class));
   }
@@ -164,6 +164,18 @@ public class MonitorTest extends FacebookPowerMockTestCase {
     verify(mockMonitorLoggingManager).addLog(any(MonitorLog.class));
   }
 
+  @Test
+  public void testStartMeasurePerfForWhenDisabled() {
+    Assert.assertFalse(Monitor.startMeasurePerfFor(TEST_PERFORMANCE_EVENT_NAME));
+  }
+
+  @Test
+  public void testStartMeasurePerfForWhenNotSampled() {
+    PowerMockito.when(Monitor.isSampled(anyString())).thenReturn(false);
+    Monitor.enable();
+    Assert.assertFalse(Monitor.startMeasurePerfFor(TEST_PERFORMANCE_EVENT_NAME));
+  }
+
   @Test
   public void testStopMeasurePerfForWithoutStartMeasurePerfFor() {
     testMeasurePerfInit();
@@ -5,6 +5,7 @@ import com.facebook.FacebookPowerMockTestCase
 import com.facebook.internal.logging.LogCategory
 import com.facebook.internal.logging.LogEvent
 import com.facebook.internal.logging.monitor.MetricsUtil.INVALID_TIME
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.test.Test
 import kotlin.test.assertEquals
 import org.junit.Before
@@ -146,4 +147,33 @@ class MetricsUtilTest : FacebookPowerMockTestCase() {
 
     assertEquals(expectedMonitorLogFirst, monitorLogFirst)
   }
+
+  @Test
+  fun `test measuring from multiple threads at once`() {
+    whenCalled(AndroidOsSystemClock.elapsedRealtime()).thenReturn(mockStartTimeFirst)
+    val threadCount = 8
+    val measurementCount = 1000
+    val failureCount = AtomicInteger(0)
+
+    // each thread keeps many measurements going at once and stops them in reverse order
+    val threads =
+        (0 until threadCount).map { threadIndex ->
+          Thread {
+            val extraIds =
+                (0 until measurementCount).map { (threadIndex * measurementCount + it).toLong() }
+            extraIds.forEach { metricsUtil.startMeasureFor(mockPerformanceEventNameFirst, it) }
+            extraIds.reversed().forEach {
+              val monitorLog = metricsUtil.stopMeasureFor(mockPerformanceEventNameFirst, it)
+              val repeatedLog = metricsUtil.stopMeasureFor(mockPerformanceEventNameFirst, it)
+              if (monitorLog.timeSpent == INVALID_TIME || repeatedLog.timeSpent != INVALID_TIME) {
+                failureCount.incrementAndGet()
+              }
+            }
+          }
+        }
+    threads.forEach { it.start() }
+    threads.forEach { it.join() }
+
+    assertEquals(0, failureCount.get())
+  }
 }